@@ -0,0 +1,77 @@
+package it.unimi.dsi.sux4j.bits;
+
+/*
+ * Sux4J: Succinct data structures for Java
+ *
+ * Copyright (C) 2020 Sebastiano Vigna
+ *
+ *  This library is free software; you can redistribute it and/or modify it
+ *  under the terms of the GNU Lesser General Public License as published by the Free
+ *  Software Foundation; either version 3 of the License, or (at your option)
+ *  any later version.
+ *
+ *  This library is distributed in the hope that it will be useful, but
+ *  WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ *  or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License
+ *  for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with this program; if not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+import it.unimi.dsi.util.XoRoShiRo128PlusRandom;
+
+/**
+ * The order in which a benchmark queries a structure.
+ *
+ * <p>
+ * Each pattern generates an array of queries in a range {@code [0..n)}, which a benchmark scans
+ * cyclically.
+ */
+public enum AccessPattern {
+	/** Independent queries, uniformly distributed. */
+	RANDOM,
+	/** Increasing queries, evenly spaced, so that consecutive queries access nearby memory. */
+	SEQUENTIAL,
+	/**
+	 * Groups of {@value #CLUSTER_SIZE} random queries in a window of {@value #CLUSTER_WIDTH}
+	 * consecutive values starting at a random value.
+	 */
+	CLUSTERED;
+
+	/** The number of queries in a cluster. */
+	public static final int CLUSTER_SIZE = 64;
+	/** The width of the window containing a cluster. */
+	public static final int CLUSTER_WIDTH = 4096;
+
+	/**
+	 * Returns queries following this pattern.
+	 *
+	 * @param count the number of queries, a power of two.
+	 * @param n the (exclusive) upper bound for queries.
+	 * @param seed a seed for the pseudorandom number generator.
+	 * @return an array of {@code count} queries in {@code [0..n)}.
+	 */
+	public long[] queries(final int count, final long n, final long seed) {
+		if (Integer.bitCount(count) != 1) throw new IllegalArgumentException("The number of queries must be a power of two: " + count);
+		if (n <= 0) throw new IllegalArgumentException("Empty query range");
+		final XoRoShiRo128PlusRandom r = new XoRoShiRo128PlusRandom(seed);
+		final long[] queries = new long[count];
+		switch (this) {
+		case RANDOM:
+			for (int i = 0; i < count; i++) queries[i] = r.nextLong(n);
+			break;
+		case SEQUENTIAL:
+			for (int i = 0; i < count; i++) queries[i] = (long)((double)i / count * n);
+			break;
+		case CLUSTERED:
+			final long width = Math.min(CLUSTER_WIDTH, n);
+			for (int i = 0; i < count; i += CLUSTER_SIZE) {
+				final long start = r.nextLong(n - width + 1);
+				for (int j = i; j < Math.min(count, i + CLUSTER_SIZE); j++) queries[j] = start + r.nextLong(width);
+			}
+			break;
+		}
+		return queries;
+	}
+}
@@ -0,0 +1,77 @@
+package it.unimi.dsi.sux4j.bits;
+
+/*
+ * Sux4J: Succinct data structures for Java
+ *
+ * Copyright (C) 2020 Sebastiano Vigna
+ *
+ *  This library is free software; you can redistribute it and/or modify it
+ *  under the terms of the GNU Lesser General Public License as published by the Free
+ *  Software Foundation; either version 3 of the License, or (at your option)
+ *  any later version.
+ *
+ *  This library is distributed in the hope that it will be useful, but
+ *  WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ *  or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License
+ *  for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with this program; if not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+import it.unimi.dsi.bits.LongArrayBitVector;
+import it.unimi.dsi.util.XoRoShiRo128PlusRandom;
+
+/**
+ * Random data with a given density for the benchmarks.
+ *
+ * <p>
+ * Gaps between ones are geometrically distributed, so that each bit is independently set with
+ * probability equal to the density, and generation time depends on the number of ones rather than
+ * on the number of bits.
+ */
+public final class RandomBits {
+	private RandomBits() {}
+
+	/**
+	 * Returns a geometrically distributed gap (always positive).
+	 *
+	 * @param r a pseudorandom number generator.
+	 * @param density the probability of a one.
+	 * @return the distance to the next one.
+	 */
+	private static long gap(final XoRoShiRo128PlusRandom r, final double density) {
+		if (density >= 1) return 1;
+		return 1 + (long)(Math.log(1 - r.nextDouble()) / Math.log(1 - density));
+	}
+
+	/**
+	 * Returns a random bit vector.
+	 *
+	 * @param length the length of the bit vector.
+	 * @param density the probability that a bit is set.
+	 * @param seed a seed for the pseudorandom number generator.
+	 * @return a bit vector of given length in which each bit is set with probability {@code density}.
+	 */
+	public static LongArrayBitVector vector(final long length, final double density, final long seed) {
+		final XoRoShiRo128PlusRandom r = new XoRoShiRo128PlusRandom(seed);
+		final LongArrayBitVector v = LongArrayBitVector.ofLength(length);
+		for (long p = gap(r, density) - 1; p < length; p += gap(r, density)) v.set(p);
+		return v;
+	}
+
+	/**
+	 * Returns random gaps.
+	 *
+	 * @param n the number of gaps.
+	 * @param density the density of the sequence of the prefix sums of the gaps.
+	 * @param seed a seed for the pseudorandom number generator.
+	 * @return {@code n} nonnegative gaps with average {@code 1 / density - 1}.
+	 */
+	public static long[] gaps(final int n, final double density, final long seed) {
+		final XoRoShiRo128PlusRandom r = new XoRoShiRo128PlusRandom(seed);
+		final long[] gaps = new long[n];
+		for (int i = 0; i < n; i++) gaps[i] = gap(r, density) - 1;
+		return gaps;
+	}
+}
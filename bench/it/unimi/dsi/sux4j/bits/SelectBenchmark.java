@@ -0,0 +1,115 @@
+package it.unimi.dsi.sux4j.bits;
+
+/*
+ * Sux4J: Succinct data structures for Java
+ *
+ * Copyright (C) 2020 Sebastiano Vigna
+ *
+ *  This library is free software; you can redistribute it and/or modify it
+ *  under the terms of the GNU Lesser General Public License as published by the Free
+ *  Software Foundation; either version 3 of the License, or (at your option)
+ *  any later version.
+ *
+ *  This library is distributed in the hope that it will be useful, but
+ *  WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ *  or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License
+ *  for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with this program; if not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import it.unimi.dsi.bits.LongArrayBitVector;
+
+/**
+ * Benchmarks the select structures of this package.
+ *
+ * <p>
+ * Each structure is built on a {@linkplain RandomBits#vector(long, double, long) random bit
+ * vector} of given length and density, and queried following an {@linkplain AccessPattern access
+ * pattern}; for {@link SimpleSelectZero} the benchmark selects zeroes. Results are written in JSON
+ * format by the {@code bench} Ant target.
+ *
+ * @see RankBenchmark
+ */
+@State(Scope.Benchmark)
+@Fork(value = 1, jvmArgsAppend = "-Xmx16G")
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class SelectBenchmark {
+	/** The number of queries, a power of two. */
+	static final int QUERIES = 1 << 16;
+
+	@Param({ "Select9", "SimpleSelect", "SparseSelect", "HintedBsearchSelect", "SimpleSelectZero" })
+	public String structure;
+
+	@Param({ "0.01", "0.1", "0.5", "0.9" })
+	public double density;
+
+	@Param({ "65536", "16777216", "1073741824" })
+	public long size;
+
+	@Param({ "RANDOM", "SEQUENTIAL", "CLUSTERED" })
+	public AccessPattern access;
+
+	/** The structure under test, if it selects ones. */
+	private Select select;
+	/** The structure under test, if it selects zeroes. */
+	private SelectZero selectZero;
+	/** The queries. */
+	private long[] queries;
+
+	/** The per-thread position in {@link SelectBenchmark#queries}. */
+	@State(Scope.Thread)
+	public static class Cursor {
+		int index;
+	}
+
+	@Setup
+	public void setup() {
+		final LongArrayBitVector v = RandomBits.vector(size, density, 0);
+		switch (structure) {
+		case "Select9":
+			select = new Select9(new Rank9(v));
+			break;
+		case "SimpleSelect":
+			select = new SimpleSelect(v);
+			break;
+		case "SparseSelect":
+			select = new SparseSelect(v);
+			break;
+		case "HintedBsearchSelect":
+			select = new HintedBsearchSelect(new Rank9(v));
+			break;
+		case "SimpleSelectZero":
+			selectZero = new SimpleSelectZero(v);
+			break;
+		default:
+			throw new IllegalArgumentException("Unknown structure: " + structure);
+		}
+		final long ones = v.count();
+		queries = access.queries(QUERIES, select != null ? ones : size - ones, 1);
+	}
+
+	@Benchmark
+	public long select(final Cursor cursor) {
+		final long rank = queries[cursor.index++ & QUERIES - 1];
+		return select != null ? select.select(rank) : selectZero.selectZero(rank);
+	}
+}
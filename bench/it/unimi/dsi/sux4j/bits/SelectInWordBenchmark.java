@@ -0,0 +1,95 @@
+package it.unimi.dsi.sux4j.bits;
+
+/*
+ * Sux4J: Succinct data structures for Java
+ *
+ * Copyright (C) 2020 Sebastiano Vigna
+ *
+ *  This library is free software; you can redistribute it and/or modify it
+ *  under the terms of the GNU Lesser General Public License as published by the Free
+ *  Software Foundation; either version 3 of the License, or (at your option)
+ *  any later version.
+ *
+ *  This library is distributed in the hope that it will be useful, but
+ *  WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ *  or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License
+ *  for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with this program; if not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import it.unimi.dsi.bits.Fast;
+import it.unimi.dsi.util.XoRoShiRo128PlusRandom;
+
+/**
+ * Benchmarks selection inside a word.
+ *
+ * <p>
+ * Compares the broadword algorithm of {@link Fast#select(long, int)} with {@link SelectInWord#select(long, int)},
+ * which on Java 19 or later uses {@code Long.expand()} (the {@code bench} Ant target puts the Java 19
+ * version of the class first on the class path). Words are random words with given density, and ranks are
+ * uniformly distributed among the ones of each word. The effect on whole structures can be measured using
+ * {@link SelectBenchmark} with and without the {@value SelectInWord#EXPAND_PROPERTY} system property.
+ */
+@State(Scope.Benchmark)
+@Fork(value = 1)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class SelectInWordBenchmark {
+	/** The number of words, a power of two. */
+	static final int WORDS = 1 << 12;
+
+	@Param({ "Fast", "SelectInWord" })
+	public String kernel;
+
+	@Param({ "0.1", "0.5", "0.9" })
+	public double density;
+
+	/** The words. */
+	private long[] words;
+	/** The ranks, one for each word. */
+	private int[] ranks;
+
+	@Setup
+	public void setup() {
+		final XoRoShiRo128PlusRandom r = new XoRoShiRo128PlusRandom(0);
+		words = new long[WORDS];
+		ranks = new int[WORDS];
+		for (int i = 0; i < WORDS; i++) {
+			long word = 0;
+			for (int j = 0; j < Long.SIZE; j++) if (r.nextDouble() < density) word |= 1L << j;
+			if (word == 0) word = 1L << r.nextInt(Long.SIZE);
+			words[i] = word;
+			ranks[i] = r.nextInt(Long.bitCount(word));
+		}
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(WORDS)
+	public long select() {
+		final long[] words = this.words;
+		final int[] ranks = this.ranks;
+		long sum = 0;
+		if ("Fast".equals(kernel)) for (int i = 0; i < WORDS; i++) sum += Fast.select(words[i], ranks[i]);
+		else for (int i = 0; i < WORDS; i++) sum += SelectInWord.select(words[i], ranks[i]);
+		return sum;
+	}
+}
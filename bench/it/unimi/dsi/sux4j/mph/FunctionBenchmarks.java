@@ -0,0 +1,186 @@
+package it.unimi.dsi.sux4j.mph;
+
+/*
+ * Sux4J: Succinct data structures for Java
+ *
+ * Copyright (C) 2020 Sebastiano Vigna
+ *
+ *  This library is free software; you can redistribute it and/or modify it
+ *  under the terms of the GNU Lesser General Public License as published by the Free
+ *  Software Foundation; either version 3 of the License, or (at your option)
+ *  any later version.
+ *
+ *  This library is distributed in the hope that it will be useful, but
+ *  WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ *  or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License
+ *  for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with this program; if not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+
+import it.unimi.dsi.bits.TransformationStrategies;
+import it.unimi.dsi.bits.TransformationStrategy;
+import it.unimi.dsi.fastutil.longs.LongArrayList;
+import it.unimi.dsi.fastutil.longs.LongArrays;
+import it.unimi.dsi.fastutil.longs.LongBigList;
+import it.unimi.dsi.fastutil.longs.LongBigLists;
+import it.unimi.dsi.fastutil.objects.Object2LongFunction;
+import it.unimi.dsi.util.XoRoShiRo128PlusRandom;
+
+/**
+ * Key generation and function construction shared by the benchmarks of this package.
+ *
+ * <p>
+ * Keys are distinct nonnegative random longs, sorted in increasing order, and represented as
+ * {@linkplain #STRING fixed-length decimal strings}, {@linkplain #LONG longs} or {@linkplain #BYTES
+ * the ASCII bytes of the strings}; in all cases, keys are prefix free and iteration order is
+ * lexicographical, so the same keys can be used to build monotone functions.
+ */
+final class FunctionBenchmarks {
+	private FunctionBenchmarks() {}
+
+	/** Keys are {@link String} instances, transformed by {@link TransformationStrategies#utf16()}. */
+	static final String STRING = "string";
+	/** Keys are {@link Long} instances, transformed by {@link TransformationStrategies#fixedLong()}. */
+	static final String LONG = "long";
+	/**
+	 * Keys are byte arrays, transformed by {@link TransformationStrategies#rawByteArray()} (or
+	 * {@link TransformationStrategies#byteArray()}, for monotone functions).
+	 */
+	static final String BYTES = "bytes";
+
+	/**
+	 * Returns distinct nonnegative random longs in increasing order.
+	 *
+	 * @param size the number of longs.
+	 * @param seed a seed for the generator.
+	 * @return an array of {@code size} distinct nonnegative longs in increasing order.
+	 */
+	static long[] keys(final int size, final long seed) {
+		final XoRoShiRo128PlusRandom random = new XoRoShiRo128PlusRandom(seed);
+		final long[] keys = new long[size];
+		for (;;) {
+			for (int i = 0; i < size; i++) keys[i] = random.nextLong() >>> 1;
+			LongArrays.parallelQuickSort(keys);
+			boolean distinct = true;
+			for (int i = 1; i < size; i++) if (keys[i - 1] == keys[i]) distinct = false;
+			if (distinct) return keys;
+		}
+	}
+
+	/**
+	 * Represents longs as keys of a given type.
+	 *
+	 * @param keyType {@link #STRING}, {@link #LONG} or {@link #BYTES}.
+	 * @param keys an array of nonnegative longs.
+	 * @return an array containing the representation of each element of {@code keys}.
+	 */
+	static Object[] keys(final String keyType, final long[] keys) {
+		final Object[] result = new Object[keys.length];
+		for (int i = 0; i < keys.length; i++) {
+			switch (keyType) {
+			case STRING:
+				result[i] = String.format("%019d", Long.valueOf(keys[i]));
+				break;
+			case LONG:
+				result[i] = Long.valueOf(keys[i]);
+				break;
+			case BYTES:
+				result[i] = String.format("%019d", Long.valueOf(keys[i])).getBytes(StandardCharsets.US_ASCII);
+				break;
+			default:
+				throw new IllegalArgumentException("Unknown key type: " + keyType);
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Returns the transformation strategy used for a key type.
+	 *
+	 * @param keyType {@link #STRING}, {@link #LONG} or {@link #BYTES}.
+	 * @param monotone whether the strategy must preserve lexicographical order.
+	 * @return a transformation strategy for keys of type {@code keyType}.
+	 */
+	@SuppressWarnings("unchecked")
+	static TransformationStrategy<Object> transform(final String keyType, final boolean monotone) {
+		switch (keyType) {
+		case STRING:
+			return (TransformationStrategy<Object>)(TransformationStrategy<?>)TransformationStrategies.utf16();
+		case LONG:
+			return (TransformationStrategy<Object>)(TransformationStrategy<?>)TransformationStrategies.fixedLong();
+		case BYTES:
+			return (TransformationStrategy<Object>)(TransformationStrategy<?>)(monotone ? TransformationStrategies.byteArray() : TransformationStrategies.rawByteArray());
+		default:
+			throw new IllegalArgumentException("Unknown key type: " + keyType);
+		}
+	}
+
+	/**
+	 * Builds a function.
+	 *
+	 * <p>
+	 * Functions that require values will map each key to its rank.
+	 *
+	 * @param function the simple name of a function class of this package.
+	 * @param keyType {@link #STRING}, {@link #LONG} or {@link #BYTES}.
+	 * @param keys the keys, in lexicographical order.
+	 * @return a function of type {@code function} on {@code keys}.
+	 */
+	@SuppressWarnings("deprecation")
+	static Object2LongFunction<Object> build(final String function, final String keyType, final Object[] keys) throws IOException {
+		final List<Object> k = Arrays.asList(keys);
+		final TransformationStrategy<Object> t = transform(keyType, function.contains("Monotone"));
+		final LongArrayList ranks = new LongArrayList(keys.length);
+		for (int i = 0; i < keys.length; i++) ranks.add(i);
+		final LongBigList values = LongBigLists.asBigList(ranks);
+
+		switch (function) {
+		case "GOV3Function":
+			return new GOV3Function.Builder<>().keys(k).transform(t).build();
+		case "GOV4Function":
+			return new GOV4Function.Builder<>().keys(k).transform(t).build();
+		case "GOVMinimalPerfectHashFunction":
+			return new GOVMinimalPerfectHashFunction.Builder<>().keys(k).transform(t).build();
+		case "CHDMinimalPerfectHashFunction":
+			return new CHDMinimalPerfectHashFunction.Builder<>().keys(k).transform(t).build();
+		case "GV3CompressedFunction":
+			return new GV3CompressedFunction.Builder<>().keys(k).transform(t).values(values).build();
+		case "GV4CompressedFunction":
+			return new GV4CompressedFunction.Builder<>().keys(k).transform(t).values(values).build();
+		case "TwoStepsGOV3Function":
+			return new TwoStepsGOV3Function.Builder<>().keys(k).transform(t).values(values).build();
+		case "MWHCFunction":
+			return new MWHCFunction.Builder<>().keys(k).transform(t).build();
+		case "MinimalPerfectHashFunction":
+			return new MinimalPerfectHashFunction.Builder<>().keys(k).transform(t).build();
+		case "TwoStepsMWHCFunction":
+			return new TwoStepsMWHCFunction.Builder<>().keys(k).transform(t).values(values).build();
+		case "LcpMonotoneMinimalPerfectHashFunction":
+			return new LcpMonotoneMinimalPerfectHashFunction.Builder<>().keys(k).transform(t).build();
+		case "TwoStepsLcpMonotoneMinimalPerfectHashFunction":
+			return new TwoStepsLcpMonotoneMinimalPerfectHashFunction.Builder<>().keys(k).transform(t).build();
+		case "VLLcpMonotoneMinimalPerfectHashFunction":
+			return new VLLcpMonotoneMinimalPerfectHashFunction<>(k, t);
+		case "HollowTrieMonotoneMinimalPerfectHashFunction":
+			return new HollowTrieMonotoneMinimalPerfectHashFunction<>(k, t);
+		case "HollowTrieDistributorMonotoneMinimalPerfectHashFunction":
+			return new HollowTrieDistributorMonotoneMinimalPerfectHashFunction<>(k, t);
+		case "PaCoTrieDistributorMonotoneMinimalPerfectHashFunction":
+			return new PaCoTrieDistributorMonotoneMinimalPerfectHashFunction<>(k, t);
+		case "VLPaCoTrieDistributorMonotoneMinimalPerfectHashFunction":
+			return new VLPaCoTrieDistributorMonotoneMinimalPerfectHashFunction<>(k, t);
+		case "ZFastTrieDistributorMonotoneMinimalPerfectHashFunction":
+			return new ZFastTrieDistributorMonotoneMinimalPerfectHashFunction.Builder<>().keys(k).transform(t).build();
+		default:
+			throw new IllegalArgumentException("Unknown function: " + function);
+		}
+	}
+}
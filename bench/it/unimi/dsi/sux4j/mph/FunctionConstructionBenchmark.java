@@ -0,0 +1,99 @@
+package it.unimi.dsi.sux4j.mph;
+
+/*
+ * Sux4J: Succinct data structures for Java
+ *
+ * Copyright (C) 2020 Sebastiano Vigna
+ *
+ *  This library is free software; you can redistribute it and/or modify it
+ *  under the terms of the GNU Lesser General Public License as published by the Free
+ *  Software Foundation; either version 3 of the License, or (at your option)
+ *  any later version.
+ *
+ *  This library is distributed in the hope that it will be useful, but
+ *  WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ *  or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License
+ *  for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with this program; if not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import it.unimi.dsi.fastutil.objects.Object2LongFunction;
+
+/**
+ * Benchmarks the construction of the functions of this package.
+ *
+ * <p>
+ * Besides the number of constructions per second, this benchmark reports as a secondary result
+ * ({@code keys}) the number of keys per second processed by the construction. The number of
+ * construction threads, which is passed to the functions using the system property
+ * {@value GOV3Function#NUMBER_OF_THREADS_PROPERTY}, is a benchmark parameter; note that not all
+ * functions have a parallel construction.
+ *
+ * @see FunctionQueryBenchmark
+ */
+@State(Scope.Benchmark)
+@Fork(value = 1, jvmArgsAppend = "-Xmx16G")
+@Warmup(iterations = 1, time = 10)
+@Measurement(iterations = 5, time = 10)
+public class FunctionConstructionBenchmark {
+	@Param({ "GOV3Function", "GOV4Function", "GOVMinimalPerfectHashFunction", "CHDMinimalPerfectHashFunction", "GV3CompressedFunction", "GV4CompressedFunction", "TwoStepsGOV3Function", "MWHCFunction", "MinimalPerfectHashFunction", "TwoStepsMWHCFunction", "LcpMonotoneMinimalPerfectHashFunction", "TwoStepsLcpMonotoneMinimalPerfectHashFunction", "VLLcpMonotoneMinimalPerfectHashFunction", "HollowTrieMonotoneMinimalPerfectHashFunction", "HollowTrieDistributorMonotoneMinimalPerfectHashFunction", "PaCoTrieDistributorMonotoneMinimalPerfectHashFunction", "VLPaCoTrieDistributorMonotoneMinimalPerfectHashFunction", "ZFastTrieDistributorMonotoneMinimalPerfectHashFunction" })
+	public String function;
+
+	@Param({ FunctionBenchmarks.STRING, FunctionBenchmarks.LONG, FunctionBenchmarks.BYTES })
+	public String keyType;
+
+	@Param({ "100000", "10000000" })
+	public int size;
+
+	@Param({ "1", "2", "4", "8" })
+	public int threads;
+
+	/** The keys. */
+	private Object[] keys;
+
+	/** Counts the keys processed during an iteration. */
+	@State(Scope.Thread)
+	@AuxCounters(AuxCounters.Type.OPERATIONS)
+	public static class Keys {
+		public long keys;
+
+		@Setup(Level.Iteration)
+		public void reset() {
+			keys = 0;
+		}
+	}
+
+	@Setup
+	public void setup() {
+		System.setProperty(GOV3Function.NUMBER_OF_THREADS_PROPERTY, Integer.toString(threads));
+		keys = FunctionBenchmarks.keys(keyType, FunctionBenchmarks.keys(size, 0));
+	}
+
+	@Benchmark
+	@BenchmarkMode(Mode.Throughput)
+	@OutputTimeUnit(TimeUnit.SECONDS)
+	public Object2LongFunction<Object> build(final Keys counter) throws IOException {
+		final Object2LongFunction<Object> f = FunctionBenchmarks.build(function, keyType, keys);
+		counter.keys += size;
+		return f;
+	}
+}
@@ -0,0 +1,118 @@
+package it.unimi.dsi.sux4j.mph;
+
+/*
+ * Sux4J: Succinct data structures for Java
+ *
+ * Copyright (C) 2020 Sebastiano Vigna
+ *
+ *  This library is free software; you can redistribute it and/or modify it
+ *  under the terms of the GNU Lesser General Public License as published by the Free
+ *  Software Foundation; either version 3 of the License, or (at your option)
+ *  any later version.
+ *
+ *  This library is distributed in the hope that it will be useful, but
+ *  WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ *  or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License
+ *  for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with this program; if not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import it.unimi.dsi.fastutil.objects.Object2LongFunction;
+import it.unimi.dsi.util.XoRoShiRo128PlusRandom;
+
+/**
+ * Benchmarks the queries of the functions of this package.
+ *
+ * <p>
+ * Each function is built on random keys of the specified {@linkplain FunctionBenchmarks type};
+ * sizes range from sets whose function fits in the L1 cache to sets whose function is much larger
+ * than the last-level cache. Keys are queried in random order. The {@link #throughput(Cursor)}
+ * benchmark issues independent queries, which the processor can overlap, whereas in the
+ * {@link #latency(Cursor)} benchmark the choice of each key depends on the result of the previous
+ * query, so that the full latency of each query is measured.
+ *
+ * <p>
+ * The number of querying threads can be set with the JMH option {@code -t}; for example,
+ * <pre>
+ * ant bench -Dbench.args="FunctionQueryBenchmark -p function=GOV3Function -p keyType=long -t 4"
+ * </pre>
+ *
+ * @see FunctionConstructionBenchmark
+ */
+@State(Scope.Benchmark)
+@Fork(value = 1, jvmArgsAppend = "-Xmx16G")
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class FunctionQueryBenchmark {
+	@Param({ "GOV3Function", "GOV4Function", "GOVMinimalPerfectHashFunction", "CHDMinimalPerfectHashFunction", "GV3CompressedFunction", "GV4CompressedFunction", "TwoStepsGOV3Function", "MWHCFunction", "MinimalPerfectHashFunction", "TwoStepsMWHCFunction", "LcpMonotoneMinimalPerfectHashFunction", "TwoStepsLcpMonotoneMinimalPerfectHashFunction", "VLLcpMonotoneMinimalPerfectHashFunction", "HollowTrieMonotoneMinimalPerfectHashFunction", "HollowTrieDistributorMonotoneMinimalPerfectHashFunction", "PaCoTrieDistributorMonotoneMinimalPerfectHashFunction", "VLPaCoTrieDistributorMonotoneMinimalPerfectHashFunction", "ZFastTrieDistributorMonotoneMinimalPerfectHashFunction" })
+	public String function;
+
+	@Param({ FunctionBenchmarks.STRING, FunctionBenchmarks.LONG, FunctionBenchmarks.BYTES })
+	public String keyType;
+
+	@Param({ "1000", "100000", "10000000" })
+	public int size;
+
+	/** The function under test. */
+	private Object2LongFunction<Object> f;
+	/** The keys, in random order. */
+	private Object[] queries;
+
+	/** The per-thread position in {@link FunctionQueryBenchmark#queries}. */
+	@State(Scope.Thread)
+	public static class Cursor {
+		int index;
+
+		@Setup
+		public void setup(final FunctionQueryBenchmark benchmark) {
+			index = new XoRoShiRo128PlusRandom().nextInt(benchmark.queries.length);
+		}
+	}
+
+	@Setup
+	public void setup() throws IOException {
+		final Object[] keys = FunctionBenchmarks.keys(keyType, FunctionBenchmarks.keys(size, 0));
+		f = FunctionBenchmarks.build(function, keyType, keys);
+		queries = keys.clone();
+		Collections.shuffle(Arrays.asList(queries), new XoRoShiRo128PlusRandom(1));
+	}
+
+	@Benchmark
+	@BenchmarkMode(Mode.Throughput)
+	@OutputTimeUnit(TimeUnit.MICROSECONDS)
+	public long throughput(final Cursor cursor) {
+		final int index = cursor.index;
+		cursor.index = index + 1 == queries.length ? 0 : index + 1;
+		return f.getLong(queries[index]);
+	}
+
+	@Benchmark
+	@BenchmarkMode(Mode.AverageTime)
+	@OutputTimeUnit(TimeUnit.NANOSECONDS)
+	public long latency(final Cursor cursor) {
+		final long result = f.getLong(queries[cursor.index]);
+		// The sign bit is always zero, but the next query must wait for the result anyway
+		final int next = cursor.index + 1 + (int)(result >>> 63);
+		cursor.index = next >= queries.length ? next - queries.length : next;
+		return result;
+	}
+}
@@ -0,0 +1,119 @@
+package it.unimi.dsi.sux4j.mph;
+
+/*
+ * Sux4J: Succinct data structures for Java
+ *
+ * Copyright (C) 2020 Sebastiano Vigna
+ *
+ *  This library is free software; you can redistribute it and/or modify it
+ *  under the terms of the GNU Lesser General Public License as published by the Free
+ *  Software Foundation; either version 3 of the License, or (at your option)
+ *  any later version.
+ *
+ *  This library is distributed in the hope that it will be useful, but
+ *  WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ *  or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License
+ *  for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with this program; if not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import it.unimi.dsi.fastutil.longs.LongArrayList;
+import it.unimi.dsi.fastutil.longs.LongArrays;
+import it.unimi.dsi.util.XoRoShiRo128PlusRandom;
+
+/**
+ * Benchmarks the queries of the functions of this package specialized for primitive longs.
+ *
+ * <p>
+ * This class mirrors {@link FunctionQueryBenchmark}, but calls the specialized methods
+ * {@link Long2LongGOV3Function#getLong(long)} and
+ * {@link LongGOVMinimalPerfectHashFunction#getLong(long)}, which hash keys without boxing them or
+ * creating a bit vector.
+ */
+@State(Scope.Benchmark)
+@Fork(value = 1, jvmArgsAppend = "-Xmx16G")
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class LongFunctionQueryBenchmark {
+	@Param({ "Long2LongGOV3Function", "LongGOVMinimalPerfectHashFunction" })
+	public String function;
+
+	@Param({ "1000", "100000", "10000000" })
+	public int size;
+
+	/** The function under test, if it is a {@link Long2LongGOV3Function}. */
+	private Long2LongGOV3Function gov3;
+	/** The function under test, if it is a {@link LongGOVMinimalPerfectHashFunction}. */
+	private LongGOVMinimalPerfectHashFunction mph;
+	/** The keys, in random order. */
+	private long[] queries;
+
+	/** The per-thread position in {@link LongFunctionQueryBenchmark#queries}. */
+	@State(Scope.Thread)
+	public static class Cursor {
+		int index;
+
+		@Setup
+		public void setup(final LongFunctionQueryBenchmark benchmark) {
+			index = new XoRoShiRo128PlusRandom().nextInt(benchmark.queries.length);
+		}
+	}
+
+	@Setup
+	public void setup() throws IOException {
+		final long[] keys = FunctionBenchmarks.keys(size, 0);
+		switch (function) {
+		case "Long2LongGOV3Function":
+			gov3 = new Long2LongGOV3Function.Builder().keys(LongArrayList.wrap(keys)).build();
+			break;
+		case "LongGOVMinimalPerfectHashFunction":
+			mph = new LongGOVMinimalPerfectHashFunction.Builder().keys(LongArrayList.wrap(keys)).build();
+			break;
+		default:
+			throw new IllegalArgumentException("Unknown function: " + function);
+		}
+		queries = keys.clone();
+		LongArrays.shuffle(queries, new XoRoShiRo128PlusRandom(1));
+	}
+
+	private long getLong(final long key) {
+		return gov3 != null ? gov3.getLong(key) : mph.getLong(key);
+	}
+
+	@Benchmark
+	@BenchmarkMode(Mode.Throughput)
+	@OutputTimeUnit(TimeUnit.MICROSECONDS)
+	public long throughput(final Cursor cursor) {
+		final int index = cursor.index;
+		cursor.index = index + 1 == queries.length ? 0 : index + 1;
+		return getLong(queries[index]);
+	}
+
+	@Benchmark
+	@BenchmarkMode(Mode.AverageTime)
+	@OutputTimeUnit(TimeUnit.NANOSECONDS)
+	public long latency(final Cursor cursor) {
+		final long result = getLong(queries[cursor.index]);
+		// The sign bit is always zero, but the next query must wait for the result anyway
+		final int next = cursor.index + 1 + (int)(result >>> 63);
+		cursor.index = next >= queries.length ? next - queries.length : next;
+		return result;
+	}
+}
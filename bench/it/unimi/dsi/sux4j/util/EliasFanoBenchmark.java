@@ -0,0 +1,109 @@
+package it.unimi.dsi.sux4j.util;
+
+/*
+ * Sux4J: Succinct data structures for Java
+ *
+ * Copyright (C) 2020 Sebastiano Vigna
+ *
+ *  This library is free software; you can redistribute it and/or modify it
+ *  under the terms of the GNU Lesser General Public License as published by the Free
+ *  Software Foundation; either version 3 of the License, or (at your option)
+ *  any later version.
+ *
+ *  This library is distributed in the hope that it will be useful, but
+ *  WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ *  or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License
+ *  for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with this program; if not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import it.unimi.dsi.fastutil.longs.LongArrayList;
+import it.unimi.dsi.fastutil.longs.LongBigList;
+import it.unimi.dsi.sux4j.bits.AccessPattern;
+import it.unimi.dsi.sux4j.bits.RandomBits;
+
+/**
+ * Benchmarks random access to the Elias&ndash;Fano lists of this package.
+ *
+ * <p>
+ * Monotone lists contain the prefix sums of {@linkplain RandomBits#gaps(int, double, long) random
+ * gaps}, so that the density parameter is the ratio between the number of elements and the upper
+ * bound; the other lists contain the gaps themselves. Lists are accessed following an
+ * {@linkplain AccessPattern access pattern}. Results are written in JSON format by the
+ * {@code bench} Ant target.
+ */
+@State(Scope.Benchmark)
+@Fork(value = 1, jvmArgsAppend = "-Xmx16G")
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class EliasFanoBenchmark {
+	/** The number of queries, a power of two. */
+	static final int QUERIES = 1 << 16;
+
+	@Param({ "EliasFanoMonotoneLongBigList", "EliasFanoMonotoneLongBigList16", "EliasFanoLongBigList", "EliasFanoPrefixSumLongBigList" })
+	public String structure;
+
+	@Param({ "0.01", "0.1", "0.5", "0.9" })
+	public double density;
+
+	@Param({ "1024", "1048576", "67108864" })
+	public int size;
+
+	@Param({ "RANDOM", "SEQUENTIAL", "CLUSTERED" })
+	public AccessPattern access;
+
+	/** The list under test. */
+	private LongBigList list;
+	/** The queries. */
+	private long[] queries;
+
+	/** The per-thread position in {@link EliasFanoBenchmark#queries}. */
+	@State(Scope.Thread)
+	public static class Cursor {
+		int index;
+	}
+
+	@Setup
+	public void setup() {
+		final long[] gaps = RandomBits.gaps(size, density, 0);
+		switch (structure) {
+		case "EliasFanoMonotoneLongBigList":
+		case "EliasFanoMonotoneLongBigList16":
+			for (int i = 1; i < size; i++) gaps[i] += gaps[i - 1];
+			list = structure.endsWith("16") ? new EliasFanoMonotoneLongBigList16(LongArrayList.wrap(gaps)) : new EliasFanoMonotoneLongBigList(LongArrayList.wrap(gaps));
+			break;
+		case "EliasFanoLongBigList":
+			list = new EliasFanoLongBigList(LongArrayList.wrap(gaps));
+			break;
+		case "EliasFanoPrefixSumLongBigList":
+			list = new EliasFanoPrefixSumLongBigList(LongArrayList.wrap(gaps));
+			break;
+		default:
+			throw new IllegalArgumentException("Unknown structure: " + structure);
+		}
+		queries = access.queries(QUERIES, size, 1);
+	}
+
+	@Benchmark
+	public long getLong(final Cursor cursor) {
+		return list.getLong(queries[cursor.index++ & QUERIES - 1]);
+	}
+}
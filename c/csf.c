@@ -25,6 +25,27 @@
 #include <string.h>
 #include "csf.h"
 
+static int block(const csf * const csf, const uint64_t value, int curr) {
+	while (value >= csf->last_codeword_plus_one[curr]) curr++;
+	return curr;
+}
+
+static void build_direct_table(csf *csf) {
+	// The escape codeword is the longest one, so this is the maximum codeword length
+	const int w = csf->escape_length + csf->escaped_symbol_length;
+	const int bits = w < CSF_DIRECT_BITS ? w : CSF_DIRECT_BITS;
+	csf->direct_shift = w - bits;
+	for (uint64_t i = 0; i < UINT64_C(1) << bits; i++) {
+		const uint64_t first = i << csf->direct_shift;
+		const uint64_t last = first | (UINT64_C(1) << csf->direct_shift) - 1;
+		const int curr = block(csf, first, 0);
+		if (block(csf, last, curr) == curr && csf->shift[curr] >= csf->direct_shift) {
+			const int s = csf->shift[curr];
+			csf->direct[i] = (first >> s) - (csf->last_codeword_plus_one[curr] >> s) + csf->how_many_up_to_block[curr];
+		} else csf->direct[i] = ~curr;
+	}
+}
+
 csf *load_csf(int h) {
 	csf *csf = calloc(1, sizeof *csf);
 	read(h, &csf->size, sizeof csf->size);
@@ -74,5 +95,6 @@ csf *load_csf(int h) {
 	csf->symbol = (uint64_t *)p;
 	read(h, csf->symbol, num_symbols * sizeof *csf->symbol);
 
+	build_direct_table(csf);
 	return csf;
 }
@@ -20,6 +20,9 @@
 
 #include <inttypes.h>
 
+// The maximum number of bits used to index the direct decoding table
+#define CSF_DIRECT_BITS 10
+
 #ifdef USE_MMAP
 #include <sys/mman.h>
 #include <sys/resource.h>
@@ -41,6 +44,10 @@ typedef struct {
 	uint64_t *last_codeword_plus_one;
 	uint32_t *how_many_up_to_block;
 	uint8_t *shift;
+	// Direct decoding table: a nonnegative entry is the rank of a symbol, a negative
+	// entry is the bitwise negation of the block at which the canonical scan must start
+	int direct_shift;
+	int32_t direct[1 << CSF_DIRECT_BITS];
 } csf;
 
 csf *load_csf(int h);
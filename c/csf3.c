@@ -25,8 +25,10 @@
 #include "csf3.h"
 #include "spooky.h"
 
-static uint64_t inline decode(const csf * const csf, const uint64_t value) {	
-	for (int curr = 0;; curr++)
+static uint64_t inline decode(const csf * const csf, const uint64_t value) {
+	const int32_t entry = csf->direct[value >> csf->direct_shift];
+	if (entry >= 0) return csf->symbol[entry];
+	for (int curr = ~entry;; curr++)
 		if (value < csf->last_codeword_plus_one[curr]) {
 			const int s = csf->shift[curr];
 			return csf->symbol[(value >> s) - (csf->last_codeword_plus_one[curr] >> s) + csf->how_many_up_to_block[curr]];
@@ -0,0 +1,60 @@
+package it.unimi.dsi.sux4j.bits;
+
+/*
+ * Sux4J: Succinct data structures for Java
+ *
+ * Copyright (C) 2020 Sebastiano Vigna
+ *
+ *  This library is free software; you can redistribute it and/or modify it
+ *  under the terms of the GNU Lesser General Public License as published by the Free
+ *  Software Foundation; either version 3 of the License, or (at your option)
+ *  any later version.
+ *
+ *  This library is distributed in the hope that it will be useful, but
+ *  WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ *  or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License
+ *  for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with this program; if not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+import it.unimi.dsi.bits.Fast;
+
+/** Selection of a bit of given rank inside a word (Java 19 version).
+ *
+ * <p>This version of the class is used on Java 19 or later, and selects using {@link Long#expand(long, long)}: the bit of given rank
+ * is the only one set in {@code Long.expand(1L << rank, word)}. On x86-64 processors supporting BMI2, {@link Long#expand(long, long)}
+ * is intrinsified to a <code>PDEP</code> instruction. Unless the system property {@value #EXPAND_PROPERTY} is set,
+ * {@link Long#expand(long, long)} is used on x86-64 architectures only; elsewhere, this class delegates to
+ * {@link Fast#select(long, int)}.
+ *
+ * @author Sebastiano Vigna
+ * @since 5.1.0
+ */
+
+public final class SelectInWord {
+	/** The system property that forces or disables the usage of {@link Long#expand(long, long)}. */
+	public static final String EXPAND_PROPERTY = "it.unimi.dsi.sux4j.bits.SelectInWord.expand";
+
+	/** Whether we use {@link Long#expand(long, long)}. */
+	private static final boolean EXPAND;
+
+	static {
+		final String arch = System.getProperty("os.arch");
+		EXPAND = Boolean.parseBoolean(System.getProperty(EXPAND_PROPERTY, Boolean.toString("amd64".equals(arch) || "x86_64".equals(arch))));
+	}
+
+	private SelectInWord() {}
+
+	/** Returns the position of the bit of given rank in a word.
+	 *
+	 * @param word a word.
+	 * @param rank a rank, smaller than the number of ones in {@code word}.
+	 * @return the position of the one of rank {@code rank} in {@code word}.
+	 */
+	public static int select(final long word, final int rank) {
+		return EXPAND ? Long.numberOfTrailingZeros(Long.expand(1L << rank, word)) : Fast.select(word, rank);
+	}
+}
@@ -0,0 +1,136 @@
+package it.unimi.dsi.sux4j.bits;
+
+/*
+ * Sux4J: Succinct data structures for Java
+ *
+ * Copyright (C) 2020 Sebastiano Vigna
+ *
+ *  This library is free software; you can redistribute it and/or modify it
+ *  under the terms of the GNU Lesser General Public License as published by the Free
+ *  Software Foundation; either version 3 of the License, or (at your option)
+ *  any later version.
+ *
+ *  This library is distributed in the hope that it will be useful, but
+ *  WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ *  or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License
+ *  for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with this program; if not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+
+import it.unimi.dsi.bits.BitVector;
+import it.unimi.dsi.bits.Fast;
+import it.unimi.dsi.bits.LongBigArrayBitVector;
+import it.unimi.dsi.fastutil.BigArrays;
+import it.unimi.dsi.fastutil.longs.LongBigArrays;
+
+/** A {@link Rank9} working on a bit array stored in a {@linkplain BigArrays big array}.
+ *
+ * <p>{@link Rank9} (as all ranking structures based on {@link BitVector#bits()}) can handle bit vectors of at most
+ * about 2<sup>37</sup> bits. This class implements the same algorithm on a bit array specified by a big array of longs
+ * (the same you would {@linkplain LongBigArrayBitVector#wrap(long[][], long) wrap} into a {@link LongBigArrayBitVector}; in particular,
+ * bits beyond the specified length must be zero), so there is no practical limit on the size of the bit array;
+ * counts are stored in a big array, too. Accesses are slightly slower than with a {@link Rank9}.
+ *
+ * @author Sebastiano Vigna
+ * @since 5.1.0
+ */
+
+public class BigRank9 extends AbstractRank implements Rank {
+	private static final long serialVersionUID = 0L;
+
+	/** The underlying bit array. */
+	protected final long[][] bits;
+	/** The number of bits in {@link #bits}. */
+	protected final long length;
+	/** A bit vector wrapping {@link #bits}. */
+	protected transient BitVector bitVector;
+	protected final long[][] count;
+	protected final long numWords;
+	protected final long numOnes;
+	protected final long lastOne;
+
+	/** Creates a new ranking structure using a bit array specified by a big array of longs and a number of bits.
+	 *
+	 * @param bits a big array of longs representing a bit array.
+	 * @param length the number of bits to use from <code>bits</code>.
+	 */
+	public BigRank9(final long[][] bits, final long length) {
+		this.bitVector = LongBigArrayBitVector.wrap(bits, length);
+		this.bits = bits;
+		this.length = length;
+
+		numWords = (length + Long.SIZE - 1) / Long.SIZE;
+
+		final long numCounts = (length + 8 * Long.SIZE - 1) / (8 * Long.SIZE) * 2;
+		// Init rank/select structure
+		count = LongBigArrays.newBigArray(numCounts + 1);
+
+		long c = 0, l = -1, pos = 0;
+		for(long i = 0; i < numWords; i += 8, pos += 2) {
+			BigArrays.set(count, pos, c);
+			long word = BigArrays.get(bits, i);
+			c += Long.bitCount(word);
+			if (word != 0) l = i * Long.SIZE + Fast.mostSignificantBit(word);
+			long subcounts = 0;
+			for(int j = 1;  j < 8; j++) {
+				subcounts |= (i + j <= numWords ? c - BigArrays.get(count, pos) : 0x1FFL) << 9 * (j - 1);
+				if (i + j < numWords) {
+					word = BigArrays.get(bits, i + j);
+					c += Long.bitCount(word);
+					if (word != 0) l = (i + j) * Long.SIZE + Fast.mostSignificantBit(word);
+				}
+			}
+			BigArrays.set(count, pos + 1, subcounts);
+		}
+
+		numOnes = c;
+		lastOne = l;
+		BigArrays.set(count, numCounts, c);
+	}
+
+	@Override
+	public long rank(final long pos) {
+		if (pos > lastOne) return numOnes;
+
+		final long word = pos / Long.SIZE;
+		final long block = word / 4 & ~1;
+		final int offset = (int)(word % 8) - 1;
+
+		return BigArrays.get(count, block) + (BigArrays.get(count, block + 1) >>> (offset + (offset >>> 32 - 4 & 0x8)) * 9 & 0x1FF) + Long.bitCount(BigArrays.get(bits, word) & ((1L << pos % Long.SIZE) - 1));
+	}
+
+	@Override
+	public long numBits() {
+		return BigArrays.length(count) * Long.SIZE;
+	}
+
+	@Override
+	public long count() {
+		return numOnes;
+	}
+
+	@Override
+	public long rank(final long from, final long to) {
+		return rank(to) - rank(from);
+	}
+
+	public long lastOne() {
+		return lastOne;
+	}
+
+	private void readObject(final ObjectInputStream s) throws IOException, ClassNotFoundException {
+		s.defaultReadObject();
+		bitVector = LongBigArrayBitVector.wrap(bits, length);
+	}
+
+	@Override
+	public BitVector bitVector() {
+		return bitVector;
+	}
+}
@@ -0,0 +1,271 @@
+package it.unimi.dsi.sux4j.bits;
+
+/*
+ * Sux4J: Succinct data structures for Java
+ *
+ * Copyright (C) 2020 Sebastiano Vigna
+ *
+ *  This library is free software; you can redistribute it and/or modify it
+ *  under the terms of the GNU Lesser General Public License as published by the Free
+ *  Software Foundation; either version 3 of the License, or (at your option)
+ *  any later version.
+ *
+ *  This library is distributed in the hope that it will be useful, but
+ *  WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ *  or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License
+ *  for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with this program; if not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+
+import it.unimi.dsi.bits.BitVector;
+import it.unimi.dsi.bits.Fast;
+import it.unimi.dsi.bits.LongBigArrayBitVector;
+import it.unimi.dsi.fastutil.BigArrays;
+import it.unimi.dsi.fastutil.longs.LongBigArrays;
+import it.unimi.dsi.sux4j.util.BigEliasFanoMonotoneLongBigList;
+
+/** A {@link SimpleSelect} working on a bit array stored in a {@linkplain BigArrays big array}.
+ *
+ * <p>{@link SimpleSelect} (as all selection structures based on {@link BitVector#bits()}) can handle bit vectors of at most
+ * about 2<sup>37</sup> bits. This class implements the same algorithm on a bit array specified by a big array of longs
+ * (the same you would {@linkplain LongBigArrayBitVector#wrap(long[][], long) wrap} into a {@link LongBigArrayBitVector}; in particular,
+ * bits beyond the specified length must be zero), so there is no practical limit on the size of the bit array;
+ * all auxiliary structures are stored in big arrays, too. Accesses are slightly slower than with a {@link SimpleSelect}.
+ *
+ * @see BigEliasFanoMonotoneLongBigList
+ * @author Sebastiano Vigna
+ * @since 5.1.0
+ */
+
+public class BigSimpleSelect implements Select {
+	private static final long serialVersionUID = 0L;
+
+	private static final int MAX_ONES_PER_INVENTORY = 8192;
+	private static final int MAX_LOG2_LONGWORDS_PER_SUBINVENTORY = 3;
+
+	/** The maximum size of span to qualify for a subinventory made of 16-bit offsets. */
+	private static final int MAX_SPAN = (1 << 16);
+
+	/** The underlying bit array. */
+	private final long[][] bits;
+	/** The number of bits in {@link #bits}. */
+	private final long length;
+	/** A bit vector wrapping {@link #bits}. */
+	private transient BitVector bitVector;
+	/** The number of ones in {@link #bits}. */
+	private final long numOnes;
+	/** The number of words in {@link #bits}. */
+	private final long numWords;
+	/** The first-level inventory, as in {@link SimpleSelect}. */
+	private final long[][] inventory;
+	/** The logarithm of the number of ones per {@link #inventory} entry. */
+	private final int log2OnesPerInventory;
+	/** The number of ones per {@link #inventory} entry. */
+	private final int onesPerInventory;
+	/** The mask associated to the number of ones per {@link #inventory} entry. */
+	private final int onesPerInventoryMask;
+	/** The second-level inventory, containing either 16-bit offsets (four per longword) or 64-bit positions. */
+	private final long[][] subinventory;
+	/** The logarithm of the number of longwords used in the part of the subinventory associated to an inventory entry. */
+	private final int log2LongwordsPerSubinventory;
+	/** The logarithm of the number of ones for each {@link #subinventory} longword. */
+	private final int log2OnesPerSub64;
+	/** The number of ones for each {@link #subinventory} longword. */
+	private final int onesPerSub64;
+	/** The logarithm of the number of ones for each {@link #subinventory} short. */
+	private final int log2OnesPerSub16;
+	/** The number of ones for each {@link #subinventory} short. */
+	private final int onesPerSub16;
+	/** The mask associated to number of ones for each {@link #subinventory} short. */
+	private final int onesPerSub16Mask;
+	/** The list of exact spills. */
+	private final long[][] exactSpill;
+
+	/** Creates a new selection structure using a bit array specified by a big array of longs and a number of bits.
+	 *
+	 * @param bits a big array of longs representing a bit array.
+	 * @param length the number of bits to use from <code>bits</code>.
+	 */
+	public BigSimpleSelect(final long[][] bits, final long length) {
+		this.bitVector = LongBigArrayBitVector.wrap(bits, length);
+		this.bits = bits;
+		this.length = length;
+
+		numWords = (length + Long.SIZE - 1) / Long.SIZE;
+
+		long d = 0;
+		for(long i = numWords; i-- != 0;) d += Long.bitCount(BigArrays.get(bits, i));
+		numOnes = d;
+
+		onesPerInventory = 1 << (log2OnesPerInventory = Fast.mostSignificantBit(Math.max(1, length == 0 ? 1 : (int)((d * MAX_ONES_PER_INVENTORY + length - 1) / length))));
+		onesPerInventoryMask = onesPerInventory - 1;
+		final long inventorySize = (d + onesPerInventory - 1) / onesPerInventory;
+
+		inventory = LongBigArrays.newBigArray(inventorySize + 1);
+
+		// First phase: we build an inventory for each one out of onesPerInventory.
+		d = 0;
+		for(long i = 0; i < numWords; i++)
+			for(long word = BigArrays.get(bits, i); word != 0; word &= word - 1) {
+				if ((d & onesPerInventoryMask) == 0) BigArrays.set(inventory, d >>> log2OnesPerInventory, i * Long.SIZE + Long.numberOfTrailingZeros(word));
+				d++;
+			}
+
+		BigArrays.set(inventory, inventorySize, length);
+
+		log2LongwordsPerSubinventory = Math.min(MAX_LOG2_LONGWORDS_PER_SUBINVENTORY, Math.max(0, log2OnesPerInventory - 2));
+		log2OnesPerSub64 = Math.max(0, log2OnesPerInventory - log2LongwordsPerSubinventory);
+		log2OnesPerSub16 = Math.max(0, log2OnesPerSub64 - 2);
+		onesPerSub64 = (1 << log2OnesPerSub64);
+		onesPerSub16 = (1 << log2OnesPerSub16);
+		onesPerSub16Mask = onesPerSub16 - 1;
+
+		if (onesPerInventory > 1) {
+			// We estimate the subinventory and exact spill size using just the inventory
+			long diff16 = 0, spilled = 0;
+			for(long k = 0; k < inventorySize; k++) {
+				final int ones = (int)Math.min(numOnes - (k << log2OnesPerInventory), onesPerInventory);
+				// We must always count (possibly unused) diff16's. And we cannot store less then 4 diff16.
+				diff16 += Math.max(4, (ones + onesPerSub16 - 1) >>> log2OnesPerSub16);
+				if (BigArrays.get(inventory, k + 1) - BigArrays.get(inventory, k) >= MAX_SPAN && onesPerSub64 > 1) spilled += ones;
+			}
+
+			subinventory = LongBigArrays.newBigArray((diff16 + 3) / 4);
+			exactSpill = LongBigArrays.newBigArray(spilled);
+
+			long inventoryIndex = 0, start = 0, span = 0, offset = 0;
+			spilled = 0;
+			d = 0;
+
+			for(long i = 0; i < numWords; i++)
+				for(long word = BigArrays.get(bits, i); word != 0; word &= word - 1) {
+					final long position = i * Long.SIZE + Long.numberOfTrailingZeros(word);
+					if ((d & onesPerInventoryMask) == 0) {
+						inventoryIndex = d >>> log2OnesPerInventory;
+						start = BigArrays.get(inventory, inventoryIndex);
+						span = BigArrays.get(inventory, inventoryIndex + 1) - start;
+						offset = 0;
+					}
+
+					if (span < MAX_SPAN) {
+						if ((d & onesPerSub16Mask) == 0) {
+							final long index16 = (inventoryIndex << log2LongwordsPerSubinventory + 2) + offset++;
+							BigArrays.set(subinventory, index16 >>> 2, BigArrays.get(subinventory, index16 >>> 2) | position - start << ((index16 & 3) << 4));
+						}
+					}
+					else {
+						if (onesPerSub64 == 1) BigArrays.set(subinventory, (inventoryIndex << log2LongwordsPerSubinventory) + offset++, position);
+						else {
+							if ((d & onesPerInventoryMask) == 0) {
+								BigArrays.set(inventory, inventoryIndex, start | 1L << 63);
+								BigArrays.set(subinventory, inventoryIndex << log2LongwordsPerSubinventory, spilled);
+							}
+							BigArrays.set(exactSpill, spilled++, position);
+						}
+					}
+
+					d++;
+				}
+		}
+		else subinventory = exactSpill = LongBigArrays.EMPTY_BIG_ARRAY;
+	}
+
+	@Override
+	public long select(final long rank) {
+		if (rank >= numOnes) return -1;
+
+		final long inventoryIndex = rank >>> log2OnesPerInventory;
+
+		final long inventoryRank = BigArrays.get(inventory, inventoryIndex);
+		final int subrank = (int)(rank & onesPerInventoryMask);
+
+		if (subrank == 0) return inventoryRank & ~(1L << 63);
+
+		long start;
+		int residual;
+
+		if (inventoryRank >= 0) {
+			final long index16 = (inventoryIndex << log2LongwordsPerSubinventory + 2) + (subrank >>> log2OnesPerSub16);
+			start = inventoryRank + (BigArrays.get(subinventory, index16 >>> 2) >>> ((index16 & 3) << 4) & 0xFFFF);
+			residual = subrank & onesPerSub16Mask;
+		}
+		else {
+			if (onesPerSub64 == 1) return BigArrays.get(subinventory, (inventoryIndex << log2LongwordsPerSubinventory) + subrank);
+			return BigArrays.get(exactSpill, BigArrays.get(subinventory, inventoryIndex << log2LongwordsPerSubinventory) + subrank);
+		}
+
+		if (residual == 0) return start;
+
+		final long[][] bits = this.bits;
+		long wordIndex = start / Long.SIZE;
+		long word = BigArrays.get(bits, wordIndex) & -1L << start;
+
+		for(;;) {
+			final int bitCount = Long.bitCount(word);
+			if (residual < bitCount) break;
+			word = BigArrays.get(bits, ++wordIndex);
+			residual -= bitCount;
+		}
+
+		return wordIndex * Long.SIZE + SelectInWord.select(word, residual);
+	}
+
+	/** Performs a bulk select of consecutive ranks into a given array fragment.
+	 *
+	 * @param rank the first rank to select.
+	 * @param dest the destination array; it will be filled with {@code length} positions of consecutive bits starting at position {@code offset}.
+	 * @param offset the first bit position written in {@code dest}.
+	 * @param length the number of bit positions in {@code dest} starting at {@code offset}.
+	 * @return {@code dest}
+	 * @see #select(long, long[])
+	 */
+	public long[] select(final long rank, final long[] dest, final int offset, final int length) {
+		if (length == 0) return dest;
+		final long s = select(rank);
+		dest[offset] = s;
+		long curr = s / Long.SIZE;
+
+		long window = BigArrays.get(bits, curr) & -1L << s;
+		window &= window - 1;
+
+		for(int i = 1; i < length; i++) {
+			while(window == 0) window = BigArrays.get(bits, ++curr);
+			dest[offset + i] = curr * Long.SIZE + Long.numberOfTrailingZeros(window);
+			window &= window - 1;
+		}
+
+		return dest;
+	}
+
+	/** Performs a bulk select of consecutive ranks into a given array.
+	 *
+	 * @param rank the first rank to select.
+	 * @param dest the destination array; it will be filled with position of consecutive bits.
+	 * @return {@code dest}
+	 * @see #select(long, long[], int, int)
+	 */
+	public long[] select(final long rank, final long[] dest) {
+		return select(rank, dest, 0, dest.length);
+	}
+
+	private void readObject(final ObjectInputStream s) throws IOException, ClassNotFoundException {
+		s.defaultReadObject();
+		bitVector = LongBigArrayBitVector.wrap(bits, length);
+	}
+
+	@Override
+	public long numBits() {
+		return (BigArrays.length(inventory) + BigArrays.length(subinventory) + BigArrays.length(exactSpill)) * Long.SIZE;
+	}
+
+	@Override
+	public BitVector bitVector() {
+		return bitVector;
+	}
+}
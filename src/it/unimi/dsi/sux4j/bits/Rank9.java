@@ -2,6 +2,7 @@ package it.unimi.dsi.sux4j.bits;
 
 import java.io.IOException;
 import java.io.ObjectInputStream;
+import java.util.stream.LongStream;
 
 /*
  * Sux4J: Succinct data structures for Java
@@ -30,11 +31,15 @@ import it.unimi.dsi.bits.LongArrayBitVector;
 /** A <code>rank9</code> implementation.
  *
  * <p><code>rank9</code> is a ranking structure using 25% additional space and providing exceptionally fast ranking.
+ *
+ * <p>Large bit vectors are scanned in parallel during construction.
  */
 
 public class Rank9 extends AbstractRank implements Rank {
 	private static final boolean ASSERTS = false;
 	private static final long serialVersionUID = 1L;
+	/** The number of words in a chunk (a multiple of eight); chunks are processed in parallel during construction. */
+	private static final int CHUNK_WORDS = 1 << 16;
 
 	protected transient long[] bits;
 	protected final BitVector bitVector;
@@ -49,33 +54,61 @@ public class Rank9 extends AbstractRank implements Rank {
 
 	public Rank9(final BitVector bitVector) {
 		this.bitVector = bitVector;
-		this.bits = bitVector.bits();
+		final long[] bits = this.bits = bitVector.bits();
 		final long length = bitVector.length();
 
-		numWords = (int)((length + Long.SIZE - 1) / Long.SIZE);
+		final int numWords = this.numWords = (int)((length + Long.SIZE - 1) / Long.SIZE);
 
 		final int numCounts = (int)((length + 8 * Long.SIZE - 1) / (8 * Long.SIZE)) * 2;
 		// Init rank/select structure
-		count = new long[numCounts + 1];
-
-		long c = 0, l = -1;
-		int pos = 0;
-		for(int i = 0; i < numWords; i += 8, pos += 2) {
-			count[pos] = c;
-			c += Long.bitCount(bits[i]);
-			if (bits[i] != 0) l = i * 64L + Fast.mostSignificantBit(bits[i]);
-			for(int j = 1;  j < 8; j++) {
-				count[pos + 1] |= (i + j <= numWords ? c - count[pos] : 0x1FFL) << 9 * (j - 1);
-				if (i + j < numWords) {
-					c += Long.bitCount(bits[i + j]);
-					if (bits[i + j] != 0) l = (i + j) * 64L + Fast.mostSignificantBit(bits[i + j]);
+		final long[] count = this.count = new long[numCounts + 1];
+
+		// We count the ones in each chunk, in parallel, and compute the number of ones before each chunk.
+		final int numChunks = (numWords + CHUNK_WORDS - 1) / CHUNK_WORDS;
+		final long[] onesBefore = new long[numChunks + 1];
+		chunks(numChunks).forEach(chunk -> {
+			long ones = 0;
+			for(int i = (int)chunk * CHUNK_WORDS, end = Math.min(numWords, i + CHUNK_WORDS); i < end; i++) ones += Long.bitCount(bits[i]);
+			onesBefore[(int)chunk + 1] = ones;
+		});
+		for(int chunk = 0; chunk < numChunks; chunk++) onesBefore[chunk + 1] += onesBefore[chunk];
+
+		// We fill the counts, in parallel on each chunk.
+		final long[] lastOneInChunk = new long[numChunks];
+		chunks(numChunks).forEach(chunk -> {
+			long c = onesBefore[(int)chunk], l = -1;
+			int pos = (int)chunk * (CHUNK_WORDS / 4);
+			for(int i = (int)chunk * CHUNK_WORDS, end = Math.min(numWords, i + CHUNK_WORDS); i < end; i += 8, pos += 2) {
+				count[pos] = c;
+				c += Long.bitCount(bits[i]);
+				if (bits[i] != 0) l = i * 64L + Fast.mostSignificantBit(bits[i]);
+				for(int j = 1;  j < 8; j++) {
+					count[pos + 1] |= (i + j <= numWords ? c - count[pos] : 0x1FFL) << 9 * (j - 1);
+					if (i + j < numWords) {
+						c += Long.bitCount(bits[i + j]);
+						if (bits[i + j] != 0) l = (i + j) * 64L + Fast.mostSignificantBit(bits[i + j]);
+					}
 				}
 			}
-		}
+			lastOneInChunk[(int)chunk] = l;
+		});
+
+		long l = -1;
+		for(int chunk = 0; chunk < numChunks; chunk++) if (lastOneInChunk[chunk] != -1) l = lastOneInChunk[chunk];
 
-		numOnes = c;
+		numOnes = onesBefore[numChunks];
 		lastOne = l;
-		count[numCounts] = c;
+		count[numCounts] = numOnes;
+	}
+
+	/** Returns a stream of chunk indices, which is parallel if there is more than one chunk.
+	 *
+	 * @param numChunks the number of chunks.
+	 * @return a stream of chunk indices.
+	 */
+	private static LongStream chunks(final int numChunks) {
+		final LongStream chunks = LongStream.range(0, numChunks);
+		return numChunks > 1 ? chunks.parallel() : chunks;
 	}
 
 
@@ -2,6 +2,7 @@ package it.unimi.dsi.sux4j.bits;
 
 import java.io.IOException;
 import java.io.ObjectInputStream;
+import java.util.stream.LongStream;
 
 /*
  * Sux4J: Succinct data structures for Java
@@ -25,7 +26,6 @@ import java.io.ObjectInputStream;
 
 
 import it.unimi.dsi.bits.BitVector;
-import it.unimi.dsi.bits.Fast;
 import it.unimi.dsi.bits.LongArrayBitVector;
 import it.unimi.dsi.fastutil.longs.LongBigList;
 
@@ -34,6 +34,8 @@ import it.unimi.dsi.fastutil.longs.LongBigList;
  *  <p><code>select9</code> is based on an underlying <code>{@linkplain Rank9 rank9}</code> instance
  *  and uses 25%-37.5% additional space (beside the 25% due to <code>rank9</code>), depending on density. It guarantees practical
  *  constant time evaluation.
+ *
+ *  <p>Large bit vectors are scanned in parallel during construction.
  */
 
 public class Select9 implements Select {
@@ -49,6 +51,8 @@ public class Select9 implements Select {
 	private final static int LOG2_ONES_PER_INVENTORY = 9;
 	private final static int ONES_PER_INVENTORY = 1 << LOG2_ONES_PER_INVENTORY;
 	private final static int INVENTORY_MASK = ONES_PER_INVENTORY - 1;
+	/** The number of words in a chunk (a multiple of eight); chunks are processed in parallel during construction. */
+	private final static int CHUNK_WORDS = 1 << 16;
 
 	private final long[] inventory;
 	private final long[] subinventory;
@@ -62,120 +66,144 @@ public class Select9 implements Select {
 
 	public Select9(final Rank9 rank9) {
 		this.rank9 = rank9;
-		numOnes = rank9.numOnes;
-		numWords = rank9.numWords;
-		bits = rank9.bits;
-		count = rank9.count;
+		final long numOnes = this.numOnes = rank9.numOnes;
+		final int numWords = this.numWords = rank9.numWords;
+		final long[] bits = this.bits = rank9.bits;
+		final long[] count = this.count = rank9.count;
 
 		final int inventorySize = (int)((numOnes + ONES_PER_INVENTORY - 1) / ONES_PER_INVENTORY);
 
-		inventory = new long[inventorySize + 1];
-		subinventory = new long[(numWords + 3) / 4];
-
-		long d = 0;
-		for (int i = 0; i < numWords; i++)
-			for (int j = 0; j < 64; j++)
-				if ((bits[i] & 1L << j) != 0) {
-					if ((d & INVENTORY_MASK) == 0) inventory[(int)(d >> LOG2_ONES_PER_INVENTORY)] = i * 64L + j;
+		final long[] inventory = this.inventory = new long[inventorySize + 1];
+		final long[] subinventory = this.subinventory = new long[(numWords + 3) / 4];
+
+		// We fill the inventory, in parallel on each chunk (the number of ones before a chunk is known from the counts of rank9).
+		final int numChunks = (numWords + CHUNK_WORDS - 1) / CHUNK_WORDS;
+		chunks(numChunks).forEach(chunk -> {
+			final int from = (int)chunk * CHUNK_WORDS;
+			long d = count[from / 4];
+			for (int i = from, end = Math.min(numWords, from + CHUNK_WORDS); i < end; i++)
+				for (long word = bits[i]; word != 0; word &= word - 1) {
+					if ((d & INVENTORY_MASK) == 0) inventory[(int)(d >> LOG2_ONES_PER_INVENTORY)] = i * 64L + Long.numberOfTrailingZeros(word);
 					d++;
 				}
-
+		});
 
 		inventory[inventorySize] = ((numWords + 3) & ~3L) * Long.SIZE;
 
-		d = 0;
-		int state = 0;
-		long firstBit = 0;
-		int index, span, subinventoryPosition = 0;
-		int blockSpan, blockLeft;
-		long countsAtStart;
 		final BitVector v = LongArrayBitVector.wrap(subinventory);
-		subinventoryAsShorts = v.asLongBigList(Short.SIZE);
-		subinventoryasInts = v.asLongBigList(Integer.SIZE);
-		LongBigList s;
-
-		for(int i = 0; i < numWords; i++)
-			for(int j = 0; j < 64; j++)
-				if ((bits[i] & 1L << j) != 0) {
-					if ((d & INVENTORY_MASK) == 0) {
-						firstBit = i * 64L + j;
-						index = (int)(d >> LOG2_ONES_PER_INVENTORY);
-						if (ASSERTS) assert inventory[index] == firstBit;
-
-						subinventoryPosition = (int)((inventory[index] / 64) / 4);
-
-						span = (int)((inventory[index + 1] / 64) / 4 - (inventory[index] / 64) / 4);
-						state = -1;
-						countsAtStart = count[(int)(((inventory[index] / 64) / 8) * 2)];
-						blockSpan = (int)((inventory[index + 1] / 64) / 8 - (inventory[index] / 64) / 8);
-						blockLeft = (int)((inventory[index] / 64) / 8);
-
-						if (span >= 512) state = 0;
-						else if (span >= 256) state = 1;
-						else if (span >= 128) state = 2;
-						else if (span >= 16) {
-							if (ASSERTS) assert (blockSpan + 8 & -8L) + 8 <= span * 4;
-							s = subinventoryAsShorts.subList(subinventoryPosition * 4, subinventoryAsShorts.size64());
-
-							int k;
-							for(k = 0; k < blockSpan; k++) {
-								if (ASSERTS) assert s.getLong(k + 8) == 0;
-								s.set(k + 8, count[(blockLeft + k + 1) * 2] - countsAtStart);
-							}
-
-							for(; k < (blockSpan + 8 & -8L); k++) {
-								if (ASSERTS) assert s.getLong(k + 8) == 0;
-								s.set(k + 8, 0xFFFF);
-							}
-
-							if (ASSERTS) assert blockSpan / 8 <= 8;
-
-							for(k = 0; k < blockSpan / 8; k++) {
-								if (ASSERTS) assert s.getLong(k) == 0;
-								s.set(k , count[(blockLeft + (k + 1) * 8) * 2] - countsAtStart);
-							}
-
-							for(; k < 8; k++) {
-								if (ASSERTS) assert s.getLong(k) == 0;
-								s.set(k, 0xFFFF);
-							}
+		final LongBigList subinventoryAsShorts = this.subinventoryAsShorts = v.asLongBigList(Short.SIZE);
+		final LongBigList subinventoryasInts = this.subinventoryasInts = v.asLongBigList(Integer.SIZE);
+
+		// We fill the subinventory, in parallel on disjoint ranges of inventory entries (which use disjoint parts of the subinventory).
+		final int entriesPerChunk = Math.max(1, (inventorySize + numChunks - 1) / Math.max(1, numChunks));
+		chunks((inventorySize + entriesPerChunk - 1) / entriesPerChunk).forEach(chunk -> {
+			long d = chunk * entriesPerChunk << LOG2_ONES_PER_INVENTORY;
+			final long end = Math.min(numOnes, (chunk + 1) * entriesPerChunk << LOG2_ONES_PER_INVENTORY);
+			int state = 0;
+			long firstBit = 0;
+			int index, span, subinventoryPosition = 0;
+			int blockSpan, blockLeft;
+			long countsAtStart;
+			LongBigList s;
+
+			int i = (int)(inventory[(int)(d >> LOG2_ONES_PER_INVENTORY)] / 64);
+			long word = bits[i] & -1L << inventory[(int)(d >> LOG2_ONES_PER_INVENTORY)];
+
+			while (d < end) {
+				while (word == 0) word = bits[++i];
+				final long position = i * 64L + Long.numberOfTrailingZeros(word);
+				word &= word - 1;
+
+				if ((d & INVENTORY_MASK) == 0) {
+					firstBit = position;
+					index = (int)(d >> LOG2_ONES_PER_INVENTORY);
+					if (ASSERTS) assert inventory[index] == firstBit;
+
+					subinventoryPosition = (int)((inventory[index] / 64) / 4);
+
+					span = (int)((inventory[index + 1] / 64) / 4 - (inventory[index] / 64) / 4);
+					state = -1;
+					countsAtStart = count[(int)(((inventory[index] / 64) / 8) * 2)];
+					blockSpan = (int)((inventory[index + 1] / 64) / 8 - (inventory[index] / 64) / 8);
+					blockLeft = (int)((inventory[index] / 64) / 8);
+
+					if (span >= 512) state = 0;
+					else if (span >= 256) state = 1;
+					else if (span >= 128) state = 2;
+					else if (span >= 16) {
+						if (ASSERTS) assert (blockSpan + 8 & -8L) + 8 <= span * 4;
+						s = subinventoryAsShorts.subList(subinventoryPosition * 4, subinventoryAsShorts.size64());
+
+						int k;
+						for(k = 0; k < blockSpan; k++) {
+							if (ASSERTS) assert s.getLong(k + 8) == 0;
+							s.set(k + 8, count[(blockLeft + k + 1) * 2] - countsAtStart);
+						}
+
+						for(; k < (blockSpan + 8 & -8L); k++) {
+							if (ASSERTS) assert s.getLong(k + 8) == 0;
+							s.set(k + 8, 0xFFFF);
+						}
+
+						if (ASSERTS) assert blockSpan / 8 <= 8;
+
+						for(k = 0; k < blockSpan / 8; k++) {
+							if (ASSERTS) assert s.getLong(k) == 0;
+							s.set(k , count[(blockLeft + (k + 1) * 8) * 2] - countsAtStart);
 						}
-						else if (span >= 2) {
-							if (ASSERTS) assert (blockSpan + 8 & -8L) <= span * 4;
-							s = subinventoryAsShorts.subList(subinventoryPosition * 4, subinventoryAsShorts.size64());
-
-							int k;
-							for(k = 0; k < blockSpan; k++) {
-								if (ASSERTS) assert s.getLong(k) == 0;
-								s.set(k, count[(blockLeft + k + 1) * 2] - countsAtStart);
-							}
-
-							for(; k < (blockSpan + 8 & -8L); k++) {
-								if (ASSERTS) assert s.getLong(k) == 0;
-								s.set(k, 0xFFFF);
-							}
+
+						for(; k < 8; k++) {
+							if (ASSERTS) assert s.getLong(k) == 0;
+							s.set(k, 0xFFFF);
 						}
 					}
+					else if (span >= 2) {
+						if (ASSERTS) assert (blockSpan + 8 & -8L) <= span * 4;
+						s = subinventoryAsShorts.subList(subinventoryPosition * 4, subinventoryAsShorts.size64());
+
+						int k;
+						for(k = 0; k < blockSpan; k++) {
+							if (ASSERTS) assert s.getLong(k) == 0;
+							s.set(k, count[(blockLeft + k + 1) * 2] - countsAtStart);
+						}
 
-					switch(state) {
-					case 0:
-						if (ASSERTS) assert subinventory[subinventoryPosition + (int)(d & INVENTORY_MASK)] == 0;
-						subinventory[subinventoryPosition + (int)(d & INVENTORY_MASK)] = i * 64L + j;
-						break;
-					case 1:
-						if (ASSERTS) assert subinventoryasInts.getLong(subinventoryPosition * 2 + (d & INVENTORY_MASK)) == 0;
-						if (ASSERTS) assert i * 64L + j - firstBit < (1L << 32);
-						subinventoryasInts.set(subinventoryPosition * 2 + (d & INVENTORY_MASK), i * 64L + j - firstBit);
-						break;
-					case 2:
-						if (ASSERTS) assert subinventoryAsShorts.getLong(subinventoryPosition * 4 + (d & INVENTORY_MASK)) == 0;
-						if (ASSERTS) assert i * 64L + j - firstBit < (1 << 16);
-						subinventoryAsShorts.set(subinventoryPosition * 4 + (d & INVENTORY_MASK), i * 64L + j - firstBit);
-						break;
+						for(; k < (blockSpan + 8 & -8L); k++) {
+							if (ASSERTS) assert s.getLong(k) == 0;
+							s.set(k, 0xFFFF);
+						}
 					}
+				}
 
-					d++;
+				switch(state) {
+				case 0:
+					if (ASSERTS) assert subinventory[subinventoryPosition + (int)(d & INVENTORY_MASK)] == 0;
+					subinventory[subinventoryPosition + (int)(d & INVENTORY_MASK)] = position;
+					break;
+				case 1:
+					if (ASSERTS) assert subinventoryasInts.getLong(subinventoryPosition * 2 + (d & INVENTORY_MASK)) == 0;
+					if (ASSERTS) assert position - firstBit < (1L << 32);
+					subinventoryasInts.set(subinventoryPosition * 2 + (d & INVENTORY_MASK), position - firstBit);
+					break;
+				case 2:
+					if (ASSERTS) assert subinventoryAsShorts.getLong(subinventoryPosition * 4 + (d & INVENTORY_MASK)) == 0;
+					if (ASSERTS) assert position - firstBit < (1 << 16);
+					subinventoryAsShorts.set(subinventoryPosition * 4 + (d & INVENTORY_MASK), position - firstBit);
+					break;
 				}
+
+				d++;
+			}
+		});
+	}
+
+	/** Returns a stream of chunk indices, which is parallel if there is more than one chunk.
+	 *
+	 * @param numChunks the number of chunks.
+	 * @return a stream of chunk indices.
+	 */
+	private static LongStream chunks(final int numChunks) {
+		final LongStream chunks = LongStream.range(0, numChunks);
+		return numChunks > 1 ? chunks.parallel() : chunks;
 	}
 
 	@Override
@@ -269,7 +297,7 @@ public class Select9 implements Select {
 		if (ASSERTS) assert rankInWord < 64;
 		if (ASSERTS) assert rankInWord >= 0;
 
-		return word * 64L + Fast.select(bits[word], rankInWord);
+		return word * 64L + SelectInWord.select(bits[word], rankInWord);
 	}
 
 	@Override
@@ -0,0 +1,58 @@
+package it.unimi.dsi.sux4j.bits;
+
+/*
+ * Sux4J: Succinct data structures for Java
+ *
+ * Copyright (C) 2020 Sebastiano Vigna
+ *
+ *  This library is free software; you can redistribute it and/or modify it
+ *  under the terms of the GNU Lesser General Public License as published by the Free
+ *  Software Foundation; either version 3 of the License, or (at your option)
+ *  any later version.
+ *
+ *  This library is distributed in the hope that it will be useful, but
+ *  WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ *  or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License
+ *  for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with this program; if not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+import it.unimi.dsi.bits.Fast;
+
+/** Selection of a bit of given rank inside a word.
+ *
+ * <p>All selection structures of this package end a query by selecting a bit of given rank inside a word, and
+ * they do so using this class. The Sux4J jar is a multi-release jar: this version of the class, which is used up to Java 18,
+ * delegates to the broadword algorithm of {@link Fast#select(long, int)}. On Java 19 or later, a version of this class
+ * using {@code Long.expand()} is used instead: the bit of given rank is the only one set in
+ * {@code Long.expand(1L << rank, word)}. On x86-64 processors supporting BMI2, {@code Long.expand()} is intrinsified
+ * to a <code>PDEP</code> instruction, so selection in a word requires just two instructions.
+ *
+ * <p>Since some processors (e.g., AMD processors before Zen 3) implement <code>PDEP</code> in microcode, and on other
+ * architectures {@code Long.expand()} might not be intrinsified at all, on Java 19 or later you can set
+ * the system property {@value #EXPAND_PROPERTY} to {@code true} or {@code false} to force or disable the usage of
+ * {@code Long.expand()}, which by default is used on x86-64 architectures only. The property is ignored up to Java 18.
+ *
+ * @author Sebastiano Vigna
+ * @since 5.1.0
+ */
+
+public final class SelectInWord {
+	/** The system property that forces or disables the usage of {@code Long.expand()} on Java 19 or later. */
+	public static final String EXPAND_PROPERTY = "it.unimi.dsi.sux4j.bits.SelectInWord.expand";
+
+	private SelectInWord() {}
+
+	/** Returns the position of the bit of given rank in a word.
+	 *
+	 * @param word a word.
+	 * @param rank a rank, smaller than the number of ones in {@code word}.
+	 * @return the position of the one of rank {@code rank} in {@code word}.
+	 */
+	public static int select(final long word, final int rank) {
+		return Fast.select(word, rank);
+	}
+}
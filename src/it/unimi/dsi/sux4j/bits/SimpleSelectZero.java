@@ -22,6 +22,7 @@ package it.unimi.dsi.sux4j.bits;
 
 import java.io.IOException;
 import java.io.ObjectInputStream;
+import java.util.stream.LongStream;
 
 import it.unimi.dsi.bits.BitVector;
 import it.unimi.dsi.bits.Fast;
@@ -39,6 +40,8 @@ import it.unimi.dsi.sux4j.util.EliasFanoMonotoneLongBigList;
  * <p>An additional {@linkplain #selectZero(long, long[], int, int) bulk method} makes it possible
  * to select several consecutive bits at high speed, if the array is reasonably uniform. This is
  * the typical case when this structure is backing an {@link EliasFanoMonotoneLongBigList}.
+ *
+ * <p>Large bit vectors are scanned in parallel during construction.
  */
 
 public class SimpleSelectZero implements SelectZero {
@@ -49,6 +52,9 @@ public class SimpleSelectZero implements SelectZero {
 	private static final int MAX_ONES_PER_INVENTORY = 8192;
 	private static final int MAX_LOG2_LONGWORDS_PER_SUBINVENTORY = 3;
 
+	/** The number of words in a chunk; chunks are processed in parallel during construction. */
+	private static final int CHUNK_WORDS = 1 << 16;
+
 	/** The maximum size of span to qualify for a subinventory made of 16-bit offsets. */
 	private static final int MAX_SPAN = (1 << 16);
 
@@ -107,33 +113,39 @@ public class SimpleSelectZero implements SelectZero {
 	 */
 	public SimpleSelectZero(final BitVector bitVector) {
 		this.bitVector = bitVector;
-		this.bits = bitVector.bits();
+		final long[] bits = this.bits = bitVector.bits();
 		final long length = bitVector.length();
 
 		numWords = (int)((length + 63) / 64);
 
-		// We compute quickly the number of ones (possibly counting spurious bits in the last word).
-		long d = 0;
-		for(int i = numWords; i-- != 0;) d += Long.bitCount(~bits[i]);
+		// We count the zeroes in each chunk, in parallel, and compute the number of zeroes before each chunk.
+		final int numChunks = (numWords + CHUNK_WORDS - 1) / CHUNK_WORDS;
+		final long[] onesBefore = new long[numChunks + 1];
+		chunks(numChunks).forEach(c -> {
+			long ones = 0;
+			for(int i = (int)c * CHUNK_WORDS, end = Math.min(numWords, i + CHUNK_WORDS); i < end; i++) ones += Long.bitCount(word(bits, i, length));
+			onesBefore[(int)c + 1] = ones;
+		});
+		for(int c = 0; c < numChunks; c++) onesBefore[c + 1] += onesBefore[c];
+
+		final long d = numOnes = onesBefore[numChunks];
 
 		onesPerInventory = 1 << (log2OnesPerInventory = Fast.mostSignificantBit(length == 0 ? 1 : (int)((d * MAX_ONES_PER_INVENTORY + length - 1) / length)));
 		onesPerInventoryMask = onesPerInventory - 1;
 		final int inventorySize = (int)((d + onesPerInventory - 1) / onesPerInventory);
 
-		inventory = new long[inventorySize + 1];
+		final long[] inventory = this.inventory = new long[inventorySize + 1];
 
-		// First phase: we build an inventory for each one out of onesPerInventory.
-		d = 0;
-		for(int i = 0; i < numWords; i++)
-			for(int j = 0; j < 64; j++) {
-				if (i * 64L + j >= length) break;
-				if ((~bits[i] & 1L << j) != 0) {
-					if ((d & onesPerInventoryMask) == 0) inventory[(int)(d >>> log2OnesPerInventory)] = i * 64L + j;
-					d++;
+		// First phase: we build an inventory for each one out of onesPerInventory, in parallel on each chunk.
+		final int log2OnesPerInventory = this.log2OnesPerInventory, onesPerInventoryMask = this.onesPerInventoryMask;
+		chunks(numChunks).forEach(c -> {
+			long rank = onesBefore[(int)c];
+			for(int i = (int)c * CHUNK_WORDS, end = Math.min(numWords, i + CHUNK_WORDS); i < end; i++)
+				for(long word = word(bits, i, length); word != 0; word &= word - 1) {
+					if ((rank & onesPerInventoryMask) == 0) inventory[(int)(rank >>> log2OnesPerInventory)] = i * 64L + Long.numberOfTrailingZeros(word);
+					rank++;
 				}
-			}
-
-		numOnes = d;
+		});
 
 		inventory[inventorySize] = length;
 
@@ -145,73 +157,66 @@ public class SimpleSelectZero implements SelectZero {
 		onesPerSub16Mask = onesPerSub16 - 1;
 
 		if (onesPerInventory > 1) {
-			d = 0;
-			int ones;
-			long diff16 = 0, start = 0, span = 0;
-			int spilled = 0, inventoryIndex = 0;
-
-			for(int i = 0; i < numWords; i++)
-				// We estimate the subinventory and exact spill size
-				for(int j = 0; j < 64; j++) {
-					if (i * 64L + j >= length) break;
-					if ((~bits[i] & 1L << j) != 0) {
-						if ((d & onesPerInventoryMask) == 0) {
-							inventoryIndex = (int)(d >>> log2OnesPerInventory);
-							start = inventory[inventoryIndex];
-							span = inventory[inventoryIndex + 1] - start;
-							ones = (int)Math.min(numOnes - d, onesPerInventory);
-
-							// We must always count (possibly unused) diff16's. And we cannot store less then 4 diff16.
-							diff16 += Math.max(4, (ones + onesPerSub16 - 1) >>> log2OnesPerSub16);
-							if (span >= MAX_SPAN && onesPerSub64 > 1) spilled += ones;
-						}
-						d++;
-					}
-				}
+			// We compute the subinventory and exact spill size using the inventory.
+			long diff16 = 0;
+			int spilled = 0;
+			for(int k = 0; k < inventorySize; k++) {
+				final int ones = (int)Math.min(numOnes - ((long)k << log2OnesPerInventory), onesPerInventory);
+				// We must always count (possibly unused) diff16's. And we cannot store less then 4 diff16.
+				diff16 += Math.max(4, (ones + onesPerSub16 - 1) >>> log2OnesPerSub16);
+				if (inventory[k + 1] - inventory[k] >= MAX_SPAN && onesPerSub64 > 1) spilled += ones;
+			}
 
 			final int subinventorySize = (int)((diff16 + 3) / 4);
 			final int exactSpillSize = spilled;
-			subinventory = new long[subinventorySize];
-			exactSpill = new long[exactSpillSize];
-			subinventory16 = LongArrayBitVector.wrap(subinventory).asLongBigList(Short.SIZE);
+			final long[] subinventory = this.subinventory = new long[subinventorySize];
+			final long[] exactSpill = this.exactSpill = new long[exactSpillSize];
+			final LongBigList subinventory16 = this.subinventory16 = LongArrayBitVector.wrap(subinventory).asLongBigList(Short.SIZE);
 
-			int offset = 0;
+			// We mark inventory entries with spilled ones, and record where their exact spill starts.
 			spilled = 0;
-			d = 0;
-
-			for(int i = 0; i < numWords; i++)
-				for(int j = 0; j < 64; j++) {
-					if (i * 64L + j >= length) break;
-					if ((~bits[i] & 1L << j) != 0) {
-						if ((d & onesPerInventoryMask) == 0) {
-							inventoryIndex = (int)(d >>> log2OnesPerInventory);
-							start = inventory[inventoryIndex];
-							span = inventory[inventoryIndex + 1] - start;
-							offset = 0;
-						}
-
-						if (span < MAX_SPAN) {
-							if (ASSERTS) assert i * 64L + j - start <= MAX_SPAN;
-							if ((d & onesPerSub16Mask) == 0) {
-								subinventory16.set((inventoryIndex << log2LongwordsPerSubinventory + 2) +  offset++, i * 64L + j - start);
-							}
-						}
-						else {
-							if (onesPerSub64 == 1) {
-								subinventory[(inventoryIndex << log2LongwordsPerSubinventory) + offset++] = i * 64L + j;
-							}
-							else {
-								if ((d & onesPerInventoryMask) == 0) {
-									inventory[inventoryIndex] |= 1L << 63;
-									subinventory[inventoryIndex << log2LongwordsPerSubinventory] = spilled;
-								}
-								exactSpill[spilled++] = i * 64L + j;
-							}
-						}
-
-						d++;
+			for(int k = 0; k < inventorySize; k++) {
+				if (inventory[k + 1] - inventory[k] >= MAX_SPAN && onesPerSub64 > 1) {
+					subinventory[k << log2LongwordsPerSubinventory] = spilled;
+					spilled += (int)Math.min(numOnes - ((long)k << log2OnesPerInventory), onesPerInventory);
+				}
+			}
+			for(int k = 0; k < inventorySize; k++) if (inventory[k + 1] - inventory[k] >= MAX_SPAN && onesPerSub64 > 1) inventory[k] |= 1L << 63;
+
+			// Second phase: we fill the subinventory, in parallel on disjoint ranges of inventory entries.
+			final int log2LongwordsPerSubinventory = this.log2LongwordsPerSubinventory, log2OnesPerSub16 = this.log2OnesPerSub16, onesPerSub16Mask = this.onesPerSub16Mask, onesPerSub64 = this.onesPerSub64;
+			final int entriesPerChunk = Math.max(1, (inventorySize + numChunks - 1) / numChunks);
+			chunks((inventorySize + entriesPerChunk - 1) / entriesPerChunk).forEach(c -> {
+				long rank = c * entriesPerChunk << log2OnesPerInventory;
+				final long end = Math.min(numOnes, (c + 1) * entriesPerChunk << log2OnesPerInventory);
+				int inventoryIndex = 0;
+				long start = 0, span = 0;
+				int i = (int)((inventory[(int)c * entriesPerChunk] & ~(1L << 63)) / 64);
+				long word = word(bits, i, length) & -1L << inventory[(int)c * entriesPerChunk];
+
+				while(rank < end) {
+					while(word == 0) word = word(bits, ++i, length);
+					final long position = i * 64L + Long.numberOfTrailingZeros(word);
+					word &= word - 1;
+					final int subrank = (int)(rank & onesPerInventoryMask);
+					if (subrank == 0) {
+						inventoryIndex = (int)(rank >>> log2OnesPerInventory);
+						start = inventory[inventoryIndex] & ~(1L << 63);
+						span = (inventory[inventoryIndex + 1] & ~(1L << 63)) - start;
+					}
+
+					if (span < MAX_SPAN) {
+						if (ASSERTS) assert position - start <= MAX_SPAN;
+						if ((rank & onesPerSub16Mask) == 0) subinventory16.set((inventoryIndex << log2LongwordsPerSubinventory + 2) + (subrank >>> log2OnesPerSub16), position - start);
+					}
+					else {
+						if (onesPerSub64 == 1) subinventory[(inventoryIndex << log2LongwordsPerSubinventory) + subrank] = position;
+						else exactSpill[(int)(subinventory[inventoryIndex << log2LongwordsPerSubinventory] + subrank)] = position;
 					}
+
+					rank++;
 				}
+			});
 		}
 		else {
 			subinventory = exactSpill = LongArrays.EMPTY_ARRAY;
@@ -220,6 +225,27 @@ public class SimpleSelectZero implements SelectZero {
 
 	}
 
+	/** Returns a stream of chunk indices, which is parallel if there is more than one chunk.
+	 *
+	 * @param numChunks the number of chunks.
+	 * @return a stream of chunk indices.
+	 */
+	private static LongStream chunks(final int numChunks) {
+		final LongStream chunks = LongStream.range(0, numChunks);
+		return numChunks > 1 ? chunks.parallel() : chunks;
+	}
+
+	/** Returns a complemented word of a bit array, with the bits beyond a given length cleared.
+	 *
+	 * @param bits a bit array.
+	 * @param index the index of a word.
+	 * @param length the length of the bit array.
+	 * @return the complemented word of given index, with the bits at or beyond {@code length} cleared.
+	 */
+	private static long word(final long[] bits, final int index, final long length) {
+		return index < length / 64 ? ~bits[index] : ~bits[index] & (1L << length % 64) - 1;
+	}
+
 	@Override
 	public long selectZero(final long rank) {
 		if (rank >= numOnes) return -1;
@@ -256,7 +282,7 @@ public class SimpleSelectZero implements SelectZero {
 			residual -= bitCount;
 		}
 
-		return wordIndex * (long)Long.SIZE + Fast.select(word, residual);
+		return wordIndex * (long)Long.SIZE + SelectInWord.select(word, residual);
 	}
 
 	/** Performs a bulk select of consecutive ranks into a given array fragment.
@@ -20,19 +20,35 @@ package it.unimi.dsi.sux4j.io;
  *
  */
 
+import java.io.Closeable;
 import java.io.EOFException;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
 import java.io.Serializable;
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
+import java.nio.channels.Channels;
 import java.nio.channels.ReadableByteChannel;
 import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Iterator;
+import java.util.List;
 import java.util.NoSuchElementException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.IntToLongFunction;
 
 import org.apache.commons.collections.Predicate;
 import org.apache.commons.math3.random.RandomGenerator;
@@ -40,9 +56,14 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import it.unimi.dsi.bits.LongArrayBitVector;
+import it.unimi.dsi.bits.TransformationStrategies;
 import it.unimi.dsi.bits.TransformationStrategy;
+import it.unimi.dsi.fastutil.ints.IntArrays;
+import it.unimi.dsi.fastutil.io.FastBufferedInputStream;
+import it.unimi.dsi.fastutil.io.FastBufferedOutputStream;
 import it.unimi.dsi.fastutil.longs.AbstractLongBigList;
 import it.unimi.dsi.fastutil.longs.Long2LongOpenHashMap;
+import it.unimi.dsi.fastutil.longs.LongArrays;
 import it.unimi.dsi.fastutil.longs.LongBigList;
 import it.unimi.dsi.fastutil.longs.LongBigLists;
 import it.unimi.dsi.fastutil.longs.LongIterable;
@@ -51,6 +72,7 @@ import it.unimi.dsi.fastutil.longs.LongList;
 import it.unimi.dsi.fastutil.objects.ObjectIterator;
 import it.unimi.dsi.io.SafelyCloseable;
 import it.unimi.dsi.logging.ProgressLogger;
+import it.unimi.dsi.sux4j.mph.ConstructionListener;
 import it.unimi.dsi.sux4j.mph.GOV3Function;
 import it.unimi.dsi.sux4j.mph.Hashes;
 import it.unimi.dsi.util.XoRoShiRo128PlusRandomGenerator;
@@ -61,7 +83,9 @@ import it.unimi.dsi.util.XoRoShiRo128PlusRandomGenerator;
  * by turning them into bit vectors (using a provided {@link TransformationStrategy})
  * and then hashing such vectors into a signature (a pair of longs, i.e., overall we get a hash of 128 bits).
  * Elements can be added {@linkplain #add(Object, long) one by one}
- * or {@linkplain #addAll(Iterator, LongIterator) in batches}.
+ * or {@linkplain #addAll(Iterator, LongIterator) in batches}; in the latter case, transformation and hashing can be
+ * {@linkplain #parallelAddAll(Iterator, LongIterator, int) performed in parallel}. If the elements have been hashed elsewhere,
+ * their signatures can be {@linkplain #addSignatures(LongIterator, LongIterator, LongIterator) added directly}.
  * Elements must be distinct, or, more precisely, they must be transformed into distinct bit vectors.
  *
  * <p>Besides the hashes, we store some data associated with each element:
@@ -96,6 +120,13 @@ import it.unimi.dsi.util.XoRoShiRo128PlusRandomGenerator;
  * <p>When you have finished using a bucketed hash store, you should {@link #close()} it. This class implements
  * {@link SafelyCloseable}, and thus provides a safety-net finalizer.
  *
+ * <h2>Saving and loading</h2>
+ *
+ * <p>A store can be {@linkplain #save(File) saved} in a directory and {@linkplain #load(File) loaded} later, possibly by
+ * a different JVM, without recomputing the signatures; in this way, several structures can be built on the same keys
+ * hashing them just once. A loaded store reads its disk segments directly from the directory, and it is read-only
+ * until it is {@linkplain #reset(long) reset}.
+ *
  * <h2>Filtering</h2>
  *
  * <p>You can at any time {@linkplain #filter(Predicate) set a predicate} that will filter the signatures returned by the store.
@@ -126,6 +157,23 @@ import it.unimi.dsi.util.XoRoShiRo128PlusRandomGenerator;
  * The assignment is monotone nondecreasing, which makes it possible
  * to emit the buckets one at a time scanning the keys in sorted order.
  *
+ * <h2>Memory budget</h2>
+ *
+ * <p>If you set a {@linkplain #memoryBudget(long) memory budget}, signatures are kept in memory, segment by segment,
+ * and no temporary file is created until the overall space used exceeds the budget; at that point, all segments
+ * are <em>spilled</em> to disk, and the store behaves from then on as if no budget had been set (until the next
+ * {@linkplain #reset(long) reset}). The default budget is zero (i.e., signatures are always saved on disk), unless
+ * you set the system property {@value #MEMORY_BUDGET_PROPERTY}: in this way, you can choose a budget even for stores
+ * created internally by other classes.
+ *
+ * <h2>Compressed segments</h2>
+ *
+ * <p>If you {@linkplain #compressed(boolean) enable compression}, disk segments are written as sorted runs in which
+ * the first hash of each signature is gap-encoded, and values are written in &delta; code; this reduces the disk
+ * footprint and the I/O of large constructions at the price of some CPU time. During iteration, the runs of a segment
+ * are merged rather than sorted again (at the price of a temporary copy of the segment), and segments written as a single run
+ * are used as they are. The default can be set with the system property {@value #COMPRESSED_PROPERTY}.
+ *
  * <p>Signatures have to be loaded into memory only segment by segment, so to be sorted and tested for uniqueness. As long as
  * {@link #DISK_SEGMENTS} is larger than eight, the store will need less than 0.75 bits per element of main
  * memory. {@link #DISK_SEGMENTS} can be increased arbitrarily at compile time, but each store
@@ -172,6 +220,16 @@ public class BucketedHashStore<T> implements Serializable, SafelyCloseable, Iter
 	public final static int DISK_SEGMENTS = 1 << LOG2_DISK_SEGMENTS;
 	/** The shift for disk segments. */
 	public final static int DISK_SEGMENTS_SHIFT = Long.SIZE - LOG2_DISK_SEGMENTS;
+	/** The system property used to set the default {@linkplain #memoryBudget(long) memory budget}, in bytes. */
+	public final static String MEMORY_BUDGET_PROPERTY = "it.unimi.dsi.sux4j.io.memorybudget";
+	/** The system property used to set the default for {@linkplain #compressed(boolean) compressed segments}. */
+	public final static String COMPRESSED_PROPERTY = "it.unimi.dsi.sux4j.io.compressed";
+	/** The name of the file containing the metadata of a {@linkplain #save(File) saved} store. */
+	private final static String METADATA_FILENAME = "store";
+	/** The prefix of the names of the files containing the disk segments of a {@linkplain #save(File) saved} store. */
+	private final static String SEGMENT_FILENAME_PREFIX = "segment-";
+	/** The number of elements read at a time by {@link #parallelAddAll(Iterator, LongIterator, int)}. */
+	public final static int PARALLEL_BATCH_SIZE = 64 * 1024;
 	/** The expected bucket size. */
 	private int bucketSize;
 	/** The number of buckets: 1 + {@link #size()} / {@link #bucketSize()}. */
@@ -186,10 +244,26 @@ public class BucketedHashStore<T> implements Serializable, SafelyCloseable, Iter
 	protected long seed;
 	/** The number of signatures in each disk segment. */
 	private int[] count;
-	/** The files containing disk segments. */
+	/** The files containing disk segments, or {@code null} if they have not been created yet. */
 	private File file[];
+	/** The in-memory segments, if {@link #spilled} is false: each segment contains, for each signature, two or three longs. */
+	private long[][] memory;
+	/** The number of bytes allocated in {@link #memory}. */
+	private long memoryUsage;
+	/** The maximum number of bytes that can be allocated in {@link #memory} before spilling segments to disk. */
+	private long memoryBudget;
+	/** Whether segments are on disk. */
+	private boolean spilled;
+	/** Whether disk segments are compressed. */
+	private boolean compressed;
+	/** The writers for compressed disk segments, if {@link #compressed} is true and the files have been created. */
+	private CompressedSegment.Writer[] writer;
 	/** If true, this store has been checked for duplicates. */
 	private boolean checkedForDuplicates;
+	/** Whether the disk segments are the files of a {@linkplain #load(File) loaded} store, which must not be modified or deleted. */
+	private boolean loaded;
+	/** The number of runs of each compressed disk segment of a {@linkplain #load(File) loaded} store. */
+	private int[] runs;
 	/** The transformation strategy provided at construction time. */
 	private final TransformationStrategy<? super T> transform;
 	/** A progress logger. */
@@ -210,6 +284,10 @@ public class BucketedHashStore<T> implements Serializable, SafelyCloseable, Iter
 	private boolean closed;
 	/** The optional map from values to count. */
 	private Long2LongOpenHashMap value2FrequencyMap;
+	/** A listener for construction events, or {@code null}. */
+	private transient ConstructionListener listener;
+	/** The time spent by the threads of the last parallel enumeration waiting for the signatures carried from the previous segment. */
+	private transient long waitNanos;
 
 	/** Creates a bucketed hash store with given transformation strategy.
 	 *
@@ -271,6 +349,19 @@ public class BucketedHashStore<T> implements Serializable, SafelyCloseable, Iter
 		this.hashMask = hashWidthOrCountValues <= 0 ? 0 : -1L >>> Long.SIZE - hashWidthOrCountValues;
 		if (hashWidthOrCountValues < 0) value2FrequencyMap = new Long2LongOpenHashMap();
 
+		this.memoryBudget = Long.parseLong(System.getProperty(MEMORY_BUDGET_PROPERTY, "0"));
+		if (memoryBudget < 0) throw new IllegalArgumentException("Negative memory budget: " + memoryBudget);
+		memory = new long[DISK_SEGMENTS][];
+		Arrays.fill(memory, LongArrays.EMPTY_ARRAY);
+		spilled = memoryBudget == 0;
+		compressed = Boolean.getBoolean(COMPRESSED_PROPERTY);
+
+		count = new int[DISK_SEGMENTS];
+	}
+
+	/** Creates the disk segments, if necessary. */
+	private void openFiles() throws IOException {
+		if (file != null) return;
 		file = new File[DISK_SEGMENTS];
 		writableByteChannel = new WritableByteChannel[DISK_SEGMENTS];
 		byteBuffer = new ByteBuffer[DISK_SEGMENTS];
@@ -280,8 +371,108 @@ public class BucketedHashStore<T> implements Serializable, SafelyCloseable, Iter
 			writableByteChannel[i] = new FileOutputStream(file[i] = File.createTempFile(BucketedHashStore.class.getSimpleName(), String.valueOf(i), tempDir)).getChannel();
 			file[i].deleteOnExit();
 		}
+		if (compressed) createWriters();
+	}
 
-		count = new int[DISK_SEGMENTS];
+	/** Creates the writers for compressed disk segments on top of the current channels. */
+	private void createWriters() {
+		writer = new CompressedSegment.Writer[DISK_SEGMENTS];
+		for (int i = 0; i < DISK_SEGMENTS; i++) writer[i] = new CompressedSegment.Writer(Channels.newOutputStream(writableByteChannel[i]), 2, hashMask == 0);
+	}
+
+	/** Closes and deletes the disk segments, if they exist. */
+	private void deleteFiles() throws IOException {
+		if (file == null) return;
+		if (loaded) {
+			// The segments belong to a saved store: we just forget them
+			file = null;
+			runs = null;
+			loaded = false;
+			return;
+		}
+		for(final WritableByteChannel channel: writableByteChannel) channel.close();
+		for(final File f: file) f.delete();
+		file = null;
+		writer = null;
+		writableByteChannel = null;
+		byteBuffer = null;
+	}
+
+	/** Moves all in-memory segments to disk. */
+	private void spill() throws IOException {
+		LOGGER.info("Memory budget exceeded (" + memoryUsage + " > " + memoryBudget + " bytes): spilling segments to disk");
+		openFiles();
+		final int longsPerSignature = hashMask == 0 ? 3 : 2;
+		final long[] signature = new long[2];
+		for (int i = 0; i < DISK_SEGMENTS; i++) {
+			final long[] a = memory[i];
+			if (compressed) for (int j = 0; j < count[i] * longsPerSignature; j += longsPerSignature) {
+				signature[0] = a[j];
+				signature[1] = a[j + 1];
+				writer[i].add(signature, hashMask == 0 ? a[j + 2] : 0);
+			}
+			else for (int j = 0; j < count[i] * longsPerSignature; j++) writeLong(a[j], byteBuffer[i], writableByteChannel[i]);
+			memory[i] = LongArrays.EMPTY_ARRAY;
+		}
+		memoryUsage = 0;
+		spilled = true;
+	}
+
+	/** Returns the memory budget of this store.
+	 *
+	 * @return the maximum number of bytes used to keep segments in memory; zero means that segments are always on disk.
+	 */
+	public long memoryBudget() {
+		return memoryBudget;
+	}
+
+	/** Sets the memory budget of this store.
+	 *
+	 * <p>Each signature uses 16 bytes (24 bytes if values are stored), plus the slack due to array growth.
+	 * This method can be called only when the store is empty (e.g., just after creation or after a {@link #reset(long)}).
+	 *
+	 * @param memoryBudget the maximum number of bytes used to keep segments in memory before spilling them to disk;
+	 * zero means that segments are always on disk.
+	 * @throws IllegalStateException if this store is not empty.
+	 */
+	public void memoryBudget(final long memoryBudget) {
+		if (memoryBudget < 0) throw new IllegalArgumentException("Negative memory budget: " + memoryBudget);
+		if (size != 0) throw new IllegalStateException("The memory budget can be changed only when the store is empty");
+		this.memoryBudget = memoryBudget;
+		spilled = memoryBudget == 0;
+	}
+
+	/** Returns whether the segments of this store are on disk.
+	 *
+	 * @return true if the segments of this store are on disk; false if they are in memory.
+	 */
+	public boolean spilled() {
+		return spilled;
+	}
+
+	/** Returns whether disk segments are compressed.
+	 *
+	 * @return true if disk segments are compressed.
+	 */
+	public boolean compressed() {
+		return compressed;
+	}
+
+	/** Sets whether disk segments are compressed.
+	 *
+	 * <p>Compressed segments trade some CPU time for a smaller footprint on disk (see the class documentation).
+	 * This method can be called only when the store is empty (e.g., just after creation or after a {@link #reset(long)}).
+	 *
+	 * @param compressed whether disk segments should be compressed.
+	 * @throws IllegalStateException if this store is not empty.
+	 */
+	public void compressed(final boolean compressed) {
+		if (size != 0) throw new IllegalStateException("Compression can be changed only when the store is empty");
+		if (this.compressed == compressed) return;
+		this.compressed = compressed;
+		if (file == null || loaded) return;
+		if (compressed) createWriters();
+		else writer = null;
 	}
 
 	/** Returns the expected bucket size.
@@ -297,6 +488,34 @@ public class BucketedHashStore<T> implements Serializable, SafelyCloseable, Iter
 		this.bucketSize = bucketSize;
 	}
 
+	/** Returns the construction listener of this bucketed hash store.
+	 *
+	 * @return the construction listener of this bucketed hash store, or {@code null}.
+	 */
+	public ConstructionListener listener() {
+		return listener;
+	}
+
+	/** Sets a construction listener that will be notified of ingestion, disk-segment reading and sorting,
+	 * and signature generation.
+	 *
+	 * @param listener a construction listener, or {@code null}.
+	 */
+	public void listener(final ConstructionListener listener) {
+		this.listener = listener;
+	}
+
+	/** Notifies the listener, if any, that keys have been ingested.
+	 *
+	 * @param startSize the size of this store before ingestion.
+	 * @param startTime the value of {@link System#nanoTime()} before ingestion.
+	 */
+	private void ingested(final long startSize, final long startTime) {
+		if (listener == null) return;
+		final long added = size - startSize;
+		listener.ingested(added, added * (hashMask == 0 ? 3 : 2) * Long.BYTES, System.nanoTime() - startTime);
+	}
+
 	/** Return the current seed of this bucketed hash store. After calling this method, no {@link #reset(long)} will be allowed (unless the store
 	 * is {@linkplain #clear() cleared}).
 	 *
@@ -348,16 +567,36 @@ public class BucketedHashStore<T> implements Serializable, SafelyCloseable, Iter
 	 * @param value the associated value.
 	 */
 	private void add(final long[] signature, final long value) throws IOException {
+		if (loaded) throw new IllegalStateException("A loaded store cannot be modified until it is reset or cleared");
 		final int segment = (int)(signature[0] >>> DISK_SEGMENTS_SHIFT);
-		count[segment]++;
 		checkedForDuplicates = false;
 		if (DEBUG) System.err.println("Adding " + Arrays.toString(signature));
-		writeLong(signature[0], byteBuffer[segment], writableByteChannel[segment]);
-		writeLong(signature[1], byteBuffer[segment], writableByteChannel[segment]);
-		if (hashMask == 0) writeLong(value, byteBuffer[segment], writableByteChannel[segment]);
+		if (spilled) {
+			openFiles();
+			if (compressed) writer[segment].add(signature, value);
+			else {
+				writeLong(signature[0], byteBuffer[segment], writableByteChannel[segment]);
+				writeLong(signature[1], byteBuffer[segment], writableByteChannel[segment]);
+				if (hashMask == 0) writeLong(value, byteBuffer[segment], writableByteChannel[segment]);
+			}
+		} else {
+			final int longsPerSignature = hashMask == 0 ? 3 : 2;
+			final int pos = count[segment] * longsPerSignature;
+			long[] a = memory[segment];
+			if (pos + longsPerSignature > a.length) {
+				memoryUsage -= (long)a.length * Long.BYTES;
+				a = memory[segment] = LongArrays.grow(a, pos + longsPerSignature);
+				memoryUsage += (long)a.length * Long.BYTES;
+			}
+			a[pos] = signature[0];
+			a[pos + 1] = signature[1];
+			if (hashMask == 0) a[pos + 2] = value;
+		}
+		count[segment]++;
 		if (filteredSize != -1 && (filter == null || filter.evaluate(signature))) filteredSize++;
 		if (value2FrequencyMap != null) value2FrequencyMap.addTo(value, 1);
 		size++;
+		if (!spilled && memoryUsage > memoryBudget) spill();
 	}
 
 	/** Adds the elements returned by an iterator to this store, associating them with specified values,
@@ -372,6 +611,7 @@ public class BucketedHashStore<T> implements Serializable, SafelyCloseable, Iter
 			pl.expectedUpdates = -1;
 			pl.start("Adding elements...");
 		}
+		final long startSize = size, startTime = System.nanoTime();
 		final long[] signature = new long[2];
 		while(elements.hasNext()) {
 			Hashes.spooky4(transform.toBitVector(elements.next()), seed, signature);
@@ -379,6 +619,7 @@ public class BucketedHashStore<T> implements Serializable, SafelyCloseable, Iter
 			if (pl != null) pl.lightUpdate();
 		}
 		if (values != null && values.hasNext()) throw new IllegalStateException("The iterator on values contains more entries than the iterator on keys");
+		ingested(startSize, startTime);
 		if (pl != null) pl.done();
 	}
 
@@ -399,8 +640,298 @@ public class BucketedHashStore<T> implements Serializable, SafelyCloseable, Iter
 		addAll(elements, null);
 	}
 
+	/** Adds the keys returned by an iterator on longs to this store, associating them with specified values.
+	 *
+	 * <p>If the transformation strategy of this store is {@link TransformationStrategies#rawFixedLong()} or
+	 * {@link TransformationStrategies#fixedLong()}, keys are hashed directly using {@link Hashes#spooky4(long, long, long[])},
+	 * with no boxing and no bit-vector creation; otherwise, each key is boxed and passed to the transformation strategy.
+	 * In both cases, the resulting store is the same as the one built by {@link #addAll(Iterator, LongIterator)}
+	 * on the boxed keys.
+	 *
+	 * @param keys an iterator returning keys.
+	 * @param values an iterator on values parallel to {@code keys}, or {@code null} to associate with each key its ordinal position.
+	 */
+	@SuppressWarnings("unchecked")
+	public void addAll(final LongIterator keys, final LongIterator values) throws IOException {
+		if (pl != null) {
+			pl.expectedUpdates = -1;
+			pl.start("Adding elements...");
+		}
+		final long startSize = size, startTime = System.nanoTime();
+		final boolean raw = transform == TransformationStrategies.rawFixedLong();
+		final boolean fixed = transform == TransformationStrategies.fixedLong();
+		final long[] signature = new long[2];
+		while(keys.hasNext()) {
+			final long key = keys.nextLong();
+			if (raw) Hashes.spooky4(key, seed, signature);
+			else if (fixed) Hashes.spooky4(Long.reverse(key), seed, signature);
+			else Hashes.spooky4(transform.toBitVector((T)Long.valueOf(key)), seed, signature);
+			add(signature, values != null ? values.nextLong() : filteredSize);
+			if (pl != null) pl.lightUpdate();
+		}
+		if (values != null && values.hasNext()) throw new IllegalStateException("The iterator on values contains more entries than the iterator on keys");
+		ingested(startSize, startTime);
+		if (pl != null) pl.done();
+	}
+
+	/** Adds the keys returned by an iterator on longs to this store, associating them with their ordinal position.
+	 *
+	 * @param keys an iterator returning keys.
+	 * @see #addAll(LongIterator, LongIterator)
+	 */
+	public void addAll(final LongIterator keys) throws IOException {
+		addAll(keys, null);
+	}
+
+	/** Adds to this store signatures computed externally, associating them with specified values.
+	 *
+	 * <p>This method makes it possible to build a store, and thus a function, without having access to the
+	 * keys, provided that their signatures have been computed elsewhere using {@link Hashes#spooky4(it.unimi.dsi.bits.BitVector, long, long[])}
+	 * on the keys {@linkplain TransformationStrategy#toBitVector(Object) transformed} by the {@linkplain #transform() transformation strategy of this store},
+	 * with the same seed that has been passed to the last call to {@link #reset(long)}. The two iterators {@code hi} and {@code lo} return the
+	 * first and the second element, respectively, of each signature (i.e., the values stored in the first and the second element of the array passed to
+	 * {@link Hashes#spooky4(it.unimi.dsi.bits.BitVector, long, long[])}); the resulting store is the same as the one built by
+	 * {@link #addAll(Iterator, LongIterator)} on the keys.
+	 *
+	 * <p>Since the keys are not available, a {@link DuplicateException} cannot be recovered by rehashing them with a different seed:
+	 * you should {@linkplain #check() check} the store, and in case of failure recompute the signatures with a different seed.
+	 *
+	 * @param hi an iterator returning the first element of each signature.
+	 * @param lo an iterator returning the second element of each signature, parallel to {@code hi}.
+	 * @param values an iterator on values parallel to {@code hi}, or {@code null} to associate with each signature its ordinal position.
+	 */
+	public void addSignatures(final LongIterator hi, final LongIterator lo, final LongIterator values) throws IOException {
+		if (pl != null) {
+			pl.expectedUpdates = -1;
+			pl.start("Adding signatures...");
+		}
+		final long startSize = size, startTime = System.nanoTime();
+		final long[] signature = new long[2];
+		while(hi.hasNext()) {
+			if (! lo.hasNext()) throw new IllegalStateException("The iterator on the second element of signatures contains fewer entries than the iterator on the first element");
+			signature[0] = hi.nextLong();
+			signature[1] = lo.nextLong();
+			add(signature, values != null ? values.nextLong() : filteredSize);
+			if (pl != null) pl.lightUpdate();
+		}
+		if (lo.hasNext()) throw new IllegalStateException("The iterator on the second element of signatures contains more entries than the iterator on the first element");
+		if (values != null && values.hasNext()) throw new IllegalStateException("The iterator on values contains more entries than the iterators on signatures");
+		ingested(startSize, startTime);
+		if (pl != null) pl.done();
+	}
+
+	/** Adds to this store signatures computed externally, associating them with their ordinal position.
+	 *
+	 * @param hi an iterator returning the first element of each signature.
+	 * @param lo an iterator returning the second element of each signature, parallel to {@code hi}.
+	 * @see #addSignatures(LongIterator, LongIterator, LongIterator)
+	 */
+	public void addSignatures(final LongIterator hi, final LongIterator lo) throws IOException {
+		addSignatures(hi, lo, null);
+	}
+
+	/** Adds the elements returned by an iterator to this store, associating them with specified values,
+	 * transforming and hashing elements in parallel.
+	 *
+	 * <p>Elements are read from {@code elements} in batches of {@link #PARALLEL_BATCH_SIZE} elements on the caller's thread;
+	 * each batch is then {@linkplain TransformationStrategy#toBitVector(Object) transformed} and hashed by
+	 * {@code numberOfThreads} threads, each using its own {@linkplain TransformationStrategy#copy() copy}
+	 * of the transformation strategy, while the next batch is being read. Signatures are finally added to the
+	 * store in iteration order, so the resulting store is exactly the same as the one built by
+	 * {@link #addAll(Iterator, LongIterator)}.
+	 *
+	 * <p><strong>Warning</strong>: since elements are transformed after the iterator has moved past them,
+	 * the iterator must not reuse the objects it returns (as, for instance, the iterator of a {@link it.unimi.dsi.io.FileLinesCollection} does).
+	 *
+	 * @param elements an iterator returning elements; the returned objects must not be reused by the iterator.
+	 * @param values an iterator on values parallel to {@code elements}, or {@code null} to associate with each element its ordinal position.
+	 * @param numberOfThreads the number of threads used for transformation and hashing.
+	 */
+	public void parallelAddAll(final Iterator<? extends T> elements, final LongIterator values, final int numberOfThreads) throws IOException {
+		if (numberOfThreads <= 0) throw new IllegalArgumentException("The number of threads must be positive: " + numberOfThreads);
+		if (pl != null) {
+			pl.expectedUpdates = -1;
+			pl.start("Adding elements...");
+		}
+		final long startSize = size, startTime = System.nanoTime();
+
+		final ExecutorService executorService = Executors.newFixedThreadPool(numberOfThreads);
+		@SuppressWarnings({ "unchecked", "rawtypes" })
+		final TransformationStrategy<? super T>[] transforms = new TransformationStrategy[numberOfThreads];
+		for (int i = 0; i < numberOfThreads; i++) transforms[i] = transform.copy();
+
+		// Double buffering: a batch is hashed while the next one is read
+		Object[] batch = new Object[PARALLEL_BATCH_SIZE], nextBatch = new Object[PARALLEL_BATCH_SIZE];
+		long[] signatures = new long[2 * PARALLEL_BATCH_SIZE], nextSignatures = new long[2 * PARALLEL_BATCH_SIZE];
+		final List<Future<?>> futures = new ArrayList<>(numberOfThreads);
+		final long[] signature = new long[2];
+
+		try {
+			int batchSize = fill(elements, batch);
+			hash(batch, batchSize, signatures, transforms, executorService, futures);
+
+			while (batchSize != 0) {
+				final int nextBatchSize = fill(elements, nextBatch);
+				for (final Future<?> future : futures) future.get();
+				futures.clear();
+
+				for (int i = 0; i < batchSize; i++) {
+					signature[0] = signatures[2 * i];
+					signature[1] = signatures[2 * i + 1];
+					add(signature, values != null ? values.nextLong() : filteredSize);
+					if (pl != null) pl.lightUpdate();
+				}
+
+				final Object[] t = batch;
+				batch = nextBatch;
+				nextBatch = t;
+				Arrays.fill(nextBatch, 0, batchSize, null);
+				final long[] u = signatures;
+				signatures = nextSignatures;
+				nextSignatures = u;
+				batchSize = nextBatchSize;
+
+				hash(batch, batchSize, signatures, transforms, executorService, futures);
+			}
+		} catch (final InterruptedException e) {
+			throw new RuntimeException(e);
+		} catch (final ExecutionException e) {
+			final Throwable cause = e.getCause();
+			if (cause instanceof RuntimeException) throw (RuntimeException)cause;
+			if (cause instanceof Error) throw (Error)cause;
+			throw new RuntimeException(cause);
+		} finally {
+			executorService.shutdownNow();
+		}
+
+		if (values != null && values.hasNext()) throw new IllegalStateException("The iterator on values contains more entries than the iterator on keys");
+		ingested(startSize, startTime);
+		if (pl != null) pl.done();
+	}
+
+	/** Adds the elements returned by an iterator to this store, associating them with their ordinal position,
+	 * transforming and hashing elements in parallel.
+	 *
+	 * @param elements an iterator returning elements; the returned objects must not be reused by the iterator.
+	 * @param numberOfThreads the number of threads used for transformation and hashing.
+	 * @see #parallelAddAll(Iterator, LongIterator, int)
+	 */
+	public void parallelAddAll(final Iterator<? extends T> elements, final int numberOfThreads) throws IOException {
+		parallelAddAll(elements, null, numberOfThreads);
+	}
+
+	/** Fills a batch with elements, returning the number of elements read. */
+	private static int fill(final Iterator<?> elements, final Object[] batch) {
+		int size = 0;
+		while (size < batch.length && elements.hasNext()) batch[size++] = elements.next();
+		return size;
+	}
+
+	/** Submits tasks hashing a batch into an array of signatures, splitting it into contiguous slices. */
+	private void hash(final Object[] batch, final int batchSize, final long[] signatures, final TransformationStrategy<? super T>[] transforms, final ExecutorService executorService, final List<Future<?>> futures) {
+		final long seed = this.seed;
+		final int numberOfThreads = transforms.length;
+		for (int t = 0; t < numberOfThreads; t++) {
+			final int from = (int)((long)batchSize * t / numberOfThreads);
+			final int to = (int)((long)batchSize * (t + 1) / numberOfThreads);
+			if (from == to) continue;
+			final TransformationStrategy<? super T> transform = transforms[t];
+			futures.add(executorService.submit(() -> {
+				final long[] h = new long[2];
+				for (int i = from; i < to; i++) {
+					@SuppressWarnings("unchecked")
+					final T element = (T)batch[i];
+					Hashes.spooky4(transform.toBitVector(element), seed, h);
+					signatures[2 * i] = h[0];
+					signatures[2 * i + 1] = h[1];
+				}
+			}));
+		}
+	}
+
 	private void flushAll() throws IOException {
-		for(int i = 0; i < DISK_SEGMENTS; i++) flush(byteBuffer[i], writableByteChannel[i]);
+		if (file == null || loaded) return;
+		if (compressed) for(int i = 0; i < DISK_SEGMENTS; i++) writer[i].flush();
+		else for(int i = 0; i < DISK_SEGMENTS; i++) flush(byteBuffer[i], writableByteChannel[i]);
+	}
+
+	/** A sequential reader of the longs of a segment, either in memory or on disk, possibly compressed. */
+	private final class SegmentReader implements Closeable {
+		/** The in-memory segment, or {@code null}. */
+		private final long[] a;
+		/** The next position to be read in {@link #a} or in {@link #tuple}. */
+		private int pos;
+		/** The channel of the disk segment, or {@code null}. */
+		private final ReadableByteChannel channel;
+		/** The buffer used to read from {@link #channel}. */
+		private final ByteBuffer buffer;
+		/** The reader of the compressed disk segment, or {@code null}. */
+		private final CompressedSegment.Reader reader;
+		/** The last tuple read by {@link #reader} (two hashes followed by the datum, if present). */
+		private final long[] tuple;
+		/** The number of sorted runs of which the segment is made, or -1 if the segment is not made of sorted runs. */
+		private final int runs;
+
+		/** Creates a reader for a segment.
+		 *
+		 * @param segment a segment.
+		 * @param buffer a buffer that will be used to read the segment, if it is on disk.
+		 */
+		@SuppressWarnings("resource")
+		public SegmentReader(final int segment, final ByteBuffer buffer) throws IOException {
+			this.buffer = buffer;
+			// If no file has been created yet, all segments are empty
+			if (spilled && file != null && compressed) {
+				a = null;
+				channel = null;
+				reader = new CompressedSegment.Reader(new FileInputStream(file[segment]), 2, hashMask == 0);
+				tuple = new long[hashMask == 0 ? 3 : 2];
+				pos = tuple.length;
+				runs = loaded ? BucketedHashStore.this.runs[segment] : writer[segment].runs();
+			} else if (spilled && file != null) {
+				a = null;
+				channel = new FileInputStream(file[segment]).getChannel();
+				buffer.clear().flip();
+				reader = null;
+				tuple = null;
+				runs = -1;
+			} else {
+				a = memory[segment];
+				channel = null;
+				reader = null;
+				tuple = null;
+				runs = -1;
+			}
+		}
+
+		/** Returns the next long of the segment.
+		 *
+		 * @return the next long of the segment.
+		 */
+		public long nextLong() throws IOException {
+			if (a != null) return a[pos++];
+			if (reader == null) return readLong(buffer, channel);
+			if (pos == tuple.length) {
+				final long datum = reader.next(tuple);
+				if (hashMask == 0) tuple[2] = datum;
+				pos = 0;
+			}
+			return tuple[pos++];
+		}
+
+		/** Returns the number of sorted runs of which the segment is made.
+		 *
+		 * @return the number of sorted runs of the segment, if it is compressed on disk, or -1.
+		 */
+		public int runs() {
+			return runs;
+		}
+
+		@Override
+		public void close() throws IOException {
+			if (channel != null) channel.close();
+			if (reader != null) reader.close();
+		}
 	}
 
 	/** Returns the size of this store. Note that if you set up
@@ -420,16 +951,14 @@ public class BucketedHashStore<T> implements Serializable, SafelyCloseable, Iter
 				if (filter == null) c += count[i];
 				else {
 					flushAll();
-					@SuppressWarnings("resource")
-					final ReadableByteChannel channel = new FileInputStream(file[i]).getChannel();
-					iteratorByteBuffer.clear().flip();
-					for(int j = 0; j < count[i]; j++) {
-						signature[0] = readLong(iteratorByteBuffer, channel);
-						signature[1] = readLong(iteratorByteBuffer, channel);
-						if (hashMask == 0) readLong(iteratorByteBuffer, channel);
-						if (filter.evaluate(signature)) c++;
+					try (SegmentReader reader = new SegmentReader(i, iteratorByteBuffer)) {
+						for(int j = 0; j < count[i]; j++) {
+							signature[0] = reader.nextLong();
+							signature[1] = reader.nextLong();
+							if (hashMask == 0) reader.nextLong();
+							if (filter.evaluate(signature)) c++;
+						}
 					}
-					channel.close();
 				}
 			}
 
@@ -496,8 +1025,9 @@ public class BucketedHashStore<T> implements Serializable, SafelyCloseable, Iter
 	public void close() throws IOException {
 		if (! closed) {
 			closed = true;
-			for(final WritableByteChannel channel: writableByteChannel) channel.close();
-			for(final File f: file) f.delete();
+			deleteFiles();
+			Arrays.fill(memory, LongArrays.EMPTY_ARRAY);
+			memoryUsage = 0;
 		}
 	}
 
@@ -514,10 +1044,138 @@ public class BucketedHashStore<T> implements Serializable, SafelyCloseable, Iter
 		this.seed = seed;
 		checkedForDuplicates = false;
 		Arrays.fill(count, 0);
-		for (int i = 0; i < DISK_SEGMENTS; i++) {
-			writableByteChannel[i].close();
-			byteBuffer[i].clear();
-			writableByteChannel[i] = new FileOutputStream(file[i]).getChannel();
+		size = 0;
+		Arrays.fill(memory, LongArrays.EMPTY_ARRAY);
+		memoryUsage = 0;
+		if (loaded) deleteFiles();
+		if (memoryBudget != 0) {
+			// Back to memory
+			deleteFiles();
+			spilled = false;
+		} else if (file != null) {
+			for (int i = 0; i < DISK_SEGMENTS; i++) {
+				writableByteChannel[i].close();
+				byteBuffer[i].clear();
+				writableByteChannel[i] = new FileOutputStream(file[i]).getChannel();
+			}
+			if (compressed) createWriters();
+		}
+	}
+
+	/** Returns the file containing a disk segment of a saved store.
+	 *
+	 * @param directory the directory of the saved store.
+	 * @param segment a disk segment.
+	 * @return the file containing the disk segment.
+	 */
+	private static File segmentFile(final File directory, final int segment) {
+		return new File(directory, SEGMENT_FILENAME_PREFIX + segment);
+	}
+
+	/** Saves this store in a directory, so that it can be {@linkplain #load(File) loaded} later, possibly by another JVM.
+	 *
+	 * <p>The directory will contain a copy of the disk segments (in-memory segments are written in uncompressed form)
+	 * and a file with the seed, the size, the transformation strategy, the value frequency map (if any) and the other data
+	 * needed to rebuild the store. The {@linkplain #filter(Predicate) filter}, the {@linkplain #memoryBudget() memory budget}
+	 * and the {@linkplain #listener() listener} are not saved. Note that this method does not {@linkplain #seed() lock} the store.
+	 *
+	 * <p>Disk segments are saved in the native byte order, so the store can be loaded only on a platform with the same byte order.
+	 *
+	 * @param directory a directory, which will be created if it does not exist; files with the same name of those of the
+	 * saved store will be overwritten.
+	 */
+	public void save(final File directory) throws IOException {
+		if (! directory.isDirectory() && ! directory.mkdirs()) throw new IOException("Cannot create directory " + directory);
+		final boolean compressedSegments = spilled && file != null && compressed;
+		final int[] runs = new int[DISK_SEGMENTS];
+		if (spilled && file != null) {
+			flushAll();
+			for (int i = 0; i < DISK_SEGMENTS; i++) {
+				Files.copy(file[i].toPath(), segmentFile(directory, i).toPath(), StandardCopyOption.REPLACE_EXISTING);
+				if (compressed) runs[i] = loaded ? this.runs[i] : writer[i].runs();
+			}
+		} else {
+			final int longsPerSignature = hashMask == 0 ? 3 : 2;
+			final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE).order(ByteOrder.nativeOrder());
+			for (int i = 0; i < DISK_SEGMENTS; i++) {
+				try (final WritableByteChannel channel = new FileOutputStream(segmentFile(directory, i)).getChannel()) {
+					final long[] a = memory[i];
+					for (int j = 0; j < count[i] * longsPerSignature; j++) writeLong(a[j], buffer, channel);
+					flush(buffer, channel);
+				}
+			}
+		}
+
+		try (final ObjectOutputStream oos = new ObjectOutputStream(new FastBufferedOutputStream(new FileOutputStream(new File(directory, METADATA_FILENAME))))) {
+			oos.writeUTF(ByteOrder.nativeOrder().toString());
+			oos.writeObject(transform);
+			oos.writeLong(seed);
+			oos.writeLong(size);
+			oos.writeLong(hashMask);
+			oos.writeInt(bucketSize);
+			oos.writeBoolean(checkedForDuplicates);
+			oos.writeBoolean(compressedSegments);
+			oos.writeObject(count);
+			oos.writeObject(runs);
+			oos.writeObject(value2FrequencyMap);
+		}
+	}
+
+	/** Loads a store {@linkplain #save(File) saved} in a directory.
+	 *
+	 * @param directory the directory containing the saved store.
+	 * @return the loaded store.
+	 * @see #load(File, File, ProgressLogger)
+	 */
+	public static <T> BucketedHashStore<T> load(final File directory) throws IOException, ClassNotFoundException {
+		return load(directory, null, null);
+	}
+
+	/** Loads a store {@linkplain #save(File) saved} in a directory.
+	 *
+	 * <p>The loaded store reads its disk segments directly from the directory, so no signature is copied or recomputed:
+	 * it can be passed immediately, for example, to {@link GOV3Function.Builder#store(BucketedHashStore)}.
+	 * Several stores can be loaded from the same directory at the same time. The loaded store will never modify or delete the files
+	 * in the directory: for this reason, it is read-only, and any attempt to add elements will cause an {@link IllegalStateException},
+	 * until the store is {@linkplain #reset(long) reset} or {@linkplain #clear() cleared}. At that point, the store will behave as a
+	 * newly created store using the given temporary directory.
+	 *
+	 * @param directory the directory containing the saved store.
+	 * @param tempDir a temporary directory for the store files created after a {@linkplain #reset(long) reset}, or {@code null} for the current directory.
+	 * @param pl a progress logger, or {@code null}.
+	 * @return the loaded store.
+	 * @throws IOException if the store was saved on a platform with a different byte order.
+	 */
+	@SuppressWarnings("unchecked")
+	public static <T> BucketedHashStore<T> load(final File directory, final File tempDir, final ProgressLogger pl) throws IOException, ClassNotFoundException {
+		try (final ObjectInputStream ois = new ObjectInputStream(new FastBufferedInputStream(new FileInputStream(new File(directory, METADATA_FILENAME))))) {
+			final String byteOrder = ois.readUTF();
+			if (! ByteOrder.nativeOrder().toString().equals(byteOrder)) throw new IOException("The store has been saved with byte order " + byteOrder + ", but the native byte order is " + ByteOrder.nativeOrder());
+			final TransformationStrategy<? super T> transform = (TransformationStrategy<? super T>)ois.readObject();
+			final long seed = ois.readLong();
+			final long size = ois.readLong();
+			final long hashMask = ois.readLong();
+			final int bucketSize = ois.readInt();
+			final boolean checkedForDuplicates = ois.readBoolean();
+			final boolean compressed = ois.readBoolean();
+			final int[] count = (int[])ois.readObject();
+			final int[] runs = (int[])ois.readObject();
+			final Long2LongOpenHashMap value2FrequencyMap = (Long2LongOpenHashMap)ois.readObject();
+
+			final BucketedHashStore<T> bucketedHashStore = new BucketedHashStore<>(transform, tempDir, hashMask != 0 ? Long.bitCount(hashMask) : value2FrequencyMap != null ? -1 : 0, pl);
+			bucketedHashStore.seed = seed;
+			bucketedHashStore.size = bucketedHashStore.filteredSize = size;
+			bucketedHashStore.bucketSize = bucketSize;
+			bucketedHashStore.checkedForDuplicates = checkedForDuplicates;
+			bucketedHashStore.compressed = compressed;
+			bucketedHashStore.count = count;
+			bucketedHashStore.runs = runs;
+			if (value2FrequencyMap != null) bucketedHashStore.value2FrequencyMap = value2FrequencyMap;
+			bucketedHashStore.spilled = true;
+			bucketedHashStore.file = new File[DISK_SEGMENTS];
+			for (int i = 0; i < DISK_SEGMENTS; i++) bucketedHashStore.file[i] = segmentFile(directory, i);
+			bucketedHashStore.loaded = true;
+			return bucketedHashStore;
 		}
 	}
 
@@ -583,6 +1241,7 @@ public class BucketedHashStore<T> implements Serializable, SafelyCloseable, Iter
 		pl.expectedUpdates = size();
 		pl.itemsName = "signatures";
 		pl.start("Signing...");
+		final long startTime = System.nanoTime();
 		for (final Bucket bucket: this) {
 			final Iterator<long[]> bucketIterator = bucket.iterator();
 			for(int i = bucket.size(); i-- != 0;) {
@@ -591,6 +1250,7 @@ public class BucketedHashStore<T> implements Serializable, SafelyCloseable, Iter
 				pl.lightUpdate();
 			}
 		}
+		if (listener != null) listener.signaturesBuilt(signatures.size64(), signatures.size64() * signatureWidth, System.nanoTime() - startTime);
 		pl.done();
 		return signatures;
 	}
@@ -600,6 +1260,8 @@ public class BucketedHashStore<T> implements Serializable, SafelyCloseable, Iter
 	public final static class Bucket implements Iterable<long[]> {
 		/** The index of this bucket (the ordinal position in the bucket enumeration). */
 		private final int index;
+		/** The offset of this bucket (see {@link #offset()}). */
+		private final long offset;
 		/** The start position of this bucket in the parallel arrays {@link #buffer0}, {@link #buffer1}, and {@link #data}. */
 		private final int start;
 		/** The final position (excluded) of this bucket in the parallel arrays {@link #buffer0}, {@link #buffer1}, and {@link #data}. */
@@ -609,8 +1271,9 @@ public class BucketedHashStore<T> implements Serializable, SafelyCloseable, Iter
 		private final long[] data;
 		private final long hashMask;
 
-		private Bucket(final int index, final long[] buffer0, final long[] buffer1, final long[] data, final long hashMask, final int start, final int end) {
+		private Bucket(final int index, final long offset, final long[] buffer0, final long[] buffer1, final long[] data, final long hashMask, final int start, final int end) {
 			this.index = index;
+			this.offset = offset;
 			this.start = start;
 			this.end = end;
 			this.data = data;
@@ -625,6 +1288,7 @@ public class BucketedHashStore<T> implements Serializable, SafelyCloseable, Iter
 		 */
 		public Bucket(final Bucket bucket) {
 			index = bucket.index;
+			offset = bucket.offset;
 			hashMask = bucket.hashMask;
 			start = 0;
 			end = bucket.end - bucket.start;
@@ -636,6 +1300,7 @@ public class BucketedHashStore<T> implements Serializable, SafelyCloseable, Iter
 		/** Creates a bucket with all field set to zero or null. Mainly useful to create marker objects. */
 		public Bucket() {
 			this.index = 0;
+			this.offset = 0;
 			this.start = 0;
 			this.end = 0;
 			this.data = null;
@@ -660,6 +1325,18 @@ public class BucketedHashStore<T> implements Serializable, SafelyCloseable, Iter
 			return index;
 		}
 
+		/** The offset of this bucket.
+		 *
+		 * <p>The offset is the sum of the space assigned to the preceding buckets by the function passed to
+		 * {@link BucketedHashStore#parallelForEach(BucketConsumer, int, IntToLongFunction)}; in all other cases, it is the number of
+		 * signatures in the preceding buckets.
+		 *
+		 * @return the offset of this bucket.
+		 */
+		public long offset() {
+			return offset;
+		}
+
 		/** Returns the data of the <code>k</code>-th signature returned by this bucket.
 		 *
 		 * <p>This method provides an alternative random access to data (w.r.t. indexing the fourth element of the
@@ -738,6 +1415,272 @@ public class BucketedHashStore<T> implements Serializable, SafelyCloseable, Iter
 		filteredSize = -1;
 	}
 
+	/** A consumer of the buckets enumerated by {@link BucketedHashStore#parallelForEach(BucketConsumer, int)}. */
+	@FunctionalInterface
+	public interface BucketConsumer {
+		/** Processes a bucket.
+		 *
+		 * <p>The bucket is valid only during the call: use the {@linkplain Bucket#Bucket(Bucket) copy constructor}
+		 * if you need to keep it. This method will be called concurrently by several threads.
+		 *
+		 * @param bucket a bucket.
+		 */
+		void accept(Bucket bucket) throws IOException, InterruptedException;
+	}
+
+	/** Returns the index of the bucket containing a given first hash.
+	 *
+	 * @param hash the first hash of a signature.
+	 * @return the index of the bucket containing signatures with first hash {@code hash}.
+	 */
+	private int bucket(final long hash) {
+		return (int)Math.multiplyHigh(hash >>> 1, multiplier);
+	}
+
+	/** Reads a segment into the given parallel arrays, starting from position 0 and applying the current filter.
+	 *
+	 * @param segment a segment.
+	 * @param reader a reader for the segment.
+	 * @param buffer0 the array for the first hashes.
+	 * @param buffer1 the array for the second hashes.
+	 * @param data the array for data, or {@code null} if this store contains no data.
+	 * @return the number of signatures read.
+	 */
+	private int readSegment(final int segment, final SegmentReader reader, final long[] buffer0, final long[] buffer1, final long[] data) throws IOException {
+		int pos = 0;
+		final long signature[] = new long[2];
+		for (int j = count[segment]; j-- != 0;) {
+			signature[0] = reader.nextLong();
+			signature[1] = reader.nextLong();
+			if (filter == null || filter.evaluate(signature)) {
+				buffer0[pos] = signature[0];
+				buffer1[pos] = signature[1];
+				if (hashMask == 0) data[pos] = reader.nextLong();
+				pos++;
+			}
+			else if (hashMask == 0) reader.nextLong(); // Discard data
+		}
+		return pos;
+	}
+
+	/** Sorts the signatures read from a segment (or from a disk chunk of a {@link ChunkedHashStore}).
+	 *
+	 * <p>A compressed segment is made of sorted runs, which are just merged; in particular, a segment
+	 * written as a single run is already sorted.
+	 *
+	 * @param a the parallel arrays containing the signatures (and possibly data).
+	 * @param from the index of the first signature (inclusive) of the segment.
+	 * @param to the index of the last signature (exclusive) of the segment.
+	 * @param runs the number of sorted runs of the segment, or -1 if the segment is not made of sorted runs.
+	 * @param parallel whether to sort in parallel.
+	 */
+	static void sortSegment(final long[][] a, final int from, final int to, final int runs, final boolean parallel) {
+		if (runs > 1) SignatureSort.mergeRuns(a, from, to);
+		else if (runs < 0) {
+			if (parallel) SignatureSort.parallelSort(a, from, to);
+			else SignatureSort.sort(a, from, to);
+		}
+	}
+
+	/** Enumerates in parallel all buckets of this bucketed hash store.
+	 *
+	 * <p>Differently from {@link #iterator()}, in which a single thread reads, sorts and splits into buckets
+	 * the disk segments, in this method each thread reads, sorts and splits its own disk segments, passing the buckets it finds
+	 * to the provided consumer. A bucket crossing the boundary between two segments is
+	 * handled by the thread processing the second segment, which receives from the thread
+	 * processing the first segment the signatures of the bucket contained therein.
+	 *
+	 * <p>All {@linkplain #bucketSize(int) buckets}, including empty ones, will be passed to the consumer exactly once,
+	 * but in no specified order: the {@linkplain Bucket#index() index} of each bucket can be used to
+	 * reorder them. Segments, however, are assigned to threads in increasing order, so buckets with similar
+	 * indices will be enumerated at approximately the same time.
+	 *
+	 * @param consumer a consumer for the buckets of this store.
+	 * @param numberOfThreads the number of threads.
+	 * @throws DuplicateException if this store contains duplicate signatures.
+	 */
+	public void parallelForEach(final BucketConsumer consumer, final int numberOfThreads) throws IOException {
+		parallelForEach(consumer, numberOfThreads, size -> size);
+	}
+
+	/** The signatures passed by a segment to the following one in {@link BucketedHashStore#parallelForEach(BucketConsumer, int, IntToLongFunction)}. */
+	private static final class Carry {
+		/** Two or three parallel arrays containing signatures and, possibly, data. */
+		private final long[][] signatures;
+		/** The overall space of the buckets preceding the segment receiving the signatures. */
+		private final long offset;
+
+		private Carry(final long[][] signatures, final long offset) {
+			this.signatures = signatures;
+			this.offset = offset;
+		}
+	}
+
+	/** Enumerates in parallel all buckets of this bucketed hash store, assigning to each bucket an offset.
+	 *
+	 * <p>This method works like {@link #parallelForEach(BucketConsumer, int)}, but before passing a bucket to
+	 * the consumer it computes its {@linkplain Bucket#offset() offset}, that is, the sum of the space
+	 * assigned by a given function to the preceding buckets.
+	 * In this way, consumers can store data about each bucket at the right place without waiting
+	 * for all buckets to be enumerated (e.g., solvers can write the solution of the system associated with a bucket directly
+	 * into the final data array). The
+	 * computation of offsets is part of the hand-over of signatures between consecutive segments, so
+	 * the function will be called from several threads.
+	 *
+	 * @param consumer a consumer for the buckets of this store.
+	 * @param numberOfThreads the number of threads.
+	 * @param space a function assigning to each bucket size a space; it must be stateless.
+	 * @return the overall space of all buckets.
+	 * @throws DuplicateException if this store contains duplicate signatures.
+	 */
+	public long parallelForEach(final BucketConsumer consumer, final int numberOfThreads, final IntToLongFunction space) throws IOException {
+		if (closed) throw new IllegalStateException("This " + getClass().getSimpleName() + " has been closed ");
+		if (numberOfThreads <= 0) throw new IllegalArgumentException("The number of threads must be positive: " + numberOfThreads);
+		flushAll();
+		numBuckets = 1 + size() / bucketSize;
+		multiplier = numBuckets * 2;
+
+		// The first bucket handled by each segment (the last entry is a sentinel)
+		final int[] firstBucket = new int[DISK_SEGMENTS + 1];
+		for (int s = 1; s < DISK_SEGMENTS; s++) firstBucket[s] = bucket((long)s << DISK_SEGMENTS_SHIFT);
+		firstBucket[DISK_SEGMENTS] = (int)numBuckets;
+
+		// The signatures passed by each segment to the following one
+		@SuppressWarnings({ "unchecked", "rawtypes" })
+		final CompletableFuture<Carry>[] carry = new CompletableFuture[DISK_SEGMENTS + 1];
+		for (int s = 0; s <= DISK_SEGMENTS; s++) carry[s] = new CompletableFuture<>();
+		carry[0].complete(new Carry(new long[hashMask == 0 ? 3 : 2][0], 0));
+
+		final AtomicInteger nextSegment = new AtomicInteger();
+		final boolean checkDuplicates = !checkedForDuplicates;
+		final LongAdder waitNanos = new LongAdder();
+		final ExecutorService executorService = Executors.newFixedThreadPool(numberOfThreads);
+		final List<Future<?>> futures = new ArrayList<>(numberOfThreads);
+
+		for (int t = numberOfThreads; t-- != 0;) futures.add(executorService.submit(() -> {
+			final ByteBuffer byteBuffer = ByteBuffer.allocateDirect(BUFFER_SIZE).order(ByteOrder.nativeOrder());
+			long[] buffer0 = LongArrays.EMPTY_ARRAY, buffer1 = LongArrays.EMPTY_ARRAY, data = hashMask == 0 ? LongArrays.EMPTY_ARRAY : null;
+			int[] bucketEnd = IntArrays.EMPTY_ARRAY;
+
+			for (int segment; (segment = nextSegment.getAndIncrement()) < DISK_SEGMENTS;) {
+				try {
+					buffer0 = LongArrays.ensureCapacity(buffer0, count[segment]);
+					buffer1 = LongArrays.ensureCapacity(buffer1, count[segment]);
+					if (data != null) data = LongArrays.ensureCapacity(data, count[segment]);
+
+					final long readStart = System.nanoTime();
+					int size;
+					final int runs;
+					try (SegmentReader reader = new SegmentReader(segment, byteBuffer)) {
+						size = readSegment(segment, reader, buffer0, buffer1, data);
+						runs = reader.runs();
+					}
+					final long sortStart = System.nanoTime();
+					if (listener != null) listener.segmentRead(segment, count[segment], (long)count[segment] * (hashMask == 0 ? 3 : 2) * Long.BYTES, sortStart - readStart);
+					sortSegment(data == null ? new long[][] { buffer0, buffer1 } : new long[][] { buffer0, buffer1, data }, 0, size, runs, false);
+					if (listener != null) listener.segmentSorted(segment, size, System.nanoTime() - sortStart);
+
+					// Prepend the signatures carried from the previous segment, which are smaller than ours
+					final long waitStart = System.nanoTime();
+					final Carry carried = carry[segment].get();
+					waitNanos.add(System.nanoTime() - waitStart);
+					final int c = carried.signatures[0].length;
+					if (c != 0) {
+						buffer0 = prepend(carried.signatures[0], buffer0, size);
+						buffer1 = prepend(carried.signatures[1], buffer1, size);
+						if (data != null) data = prepend(carried.signatures[2], data, size);
+						size += c;
+					}
+
+					// Signatures of buckets starting in the next segments are carried over
+					int end = size;
+					while (end > 0 && bucket(buffer0[end - 1]) >= firstBucket[segment + 1]) end--;
+					final long[][] next = new long[hashMask == 0 ? 3 : 2][];
+					next[0] = Arrays.copyOfRange(buffer0, end, size);
+					next[1] = Arrays.copyOfRange(buffer1, end, size);
+					if (data != null) next[2] = Arrays.copyOfRange(data, end, size);
+
+					// Split into buckets, computing the space of this segment
+					final int first = firstBucket[segment], buckets = firstBucket[segment + 1] - first;
+					bucketEnd = IntArrays.ensureCapacity(bucketEnd, buckets);
+					long offset = carried.offset;
+					for (int b = 0, last = 0; b < buckets; b++) {
+						final int start = last;
+						while (last < end && bucket(buffer0[last]) == first + b) last++;
+						bucketEnd[b] = last;
+						offset += space.applyAsLong(last - start);
+					}
+					carry[segment + 1].complete(new Carry(next, offset));
+
+					offset = carried.offset;
+					for (int b = 0, start = 0; b < buckets; b++) {
+						final int last = bucketEnd[b];
+						if (checkDuplicates)
+							for (int i = start + 1; i < last; i++)
+								if (buffer0[i - 1] == buffer0[i] && buffer1[i - 1] == buffer1[i])
+									throw new DuplicateException();
+						consumer.accept(new Bucket(first + b, offset, buffer0, buffer1, data, hashMask, start, last));
+						offset += space.applyAsLong(last - start);
+						start = last;
+					}
+				} catch (final Throwable e) {
+					// Make the following segment fail, too, and stop processing
+					carry[segment + 1].completeExceptionally(e);
+					nextSegment.set(DISK_SEGMENTS);
+					throw e;
+				}
+			}
+			return null;
+		}));
+
+		try {
+			for (final Future<?> future : futures) future.get();
+		} catch (final InterruptedException e) {
+			throw new RuntimeException(e);
+		} catch (final ExecutionException e) {
+			Throwable cause = e.getCause();
+			// Failures propagated through carried signatures are reported by their original cause
+			while (cause instanceof ExecutionException && cause.getCause() != null) cause = cause.getCause();
+			if (cause instanceof IOException) throw (IOException)cause;
+			if (cause instanceof RuntimeException) throw (RuntimeException)cause;
+			if (cause instanceof Error) throw (Error)cause;
+			throw new RuntimeException(cause);
+		} finally {
+			executorService.shutdownNow();
+		}
+
+		checkedForDuplicates = true;
+		this.waitNanos = waitNanos.sum();
+		return carry[DISK_SEGMENTS].join().offset;
+	}
+
+	/** Returns the time spent by the threads of the last parallel enumeration waiting for buckets.
+	 *
+	 * <p>In {@link #parallelForEach(BucketConsumer, int, IntToLongFunction)}, a thread cannot
+	 * enumerate the buckets of a segment until the thread processing the previous segment has handed over
+	 * the signatures of the bucket crossing the segment boundary, and the offset of the segment.
+	 *
+	 * @return the overall time, in nanoseconds, spent by the threads of the last call to
+	 * {@link #parallelForEach(BucketConsumer, int, IntToLongFunction)} waiting for the previous segment.
+	 */
+	public long waitNanos() {
+		return waitNanos;
+	}
+
+	/** Moves the first elements of an array after those of another array, growing the array if necessary.
+	 *
+	 * @param prefix the elements to be prepended.
+	 * @param a an array.
+	 * @param size the number of valid elements in {@code a}.
+	 * @return {@code a}, or a larger array, whose first elements are those of {@code prefix}, followed by the first {@code size} elements of {@code a}.
+	 */
+	private static long[] prepend(final long[] prefix, long[] a, final int size) {
+		a = LongArrays.ensureCapacity(a, prefix.length + size, size);
+		System.arraycopy(a, 0, a, prefix.length, size);
+		System.arraycopy(prefix, 0, a, 0, prefix.length);
+		return a;
+	}
+
 	/** Returns an iterator over the buckets of this bucketed hash store.
 	 *
 	 * <p>Note that at each iteration part of the state of this bucketed hash store
@@ -772,7 +1715,7 @@ public class BucketedHashStore<T> implements Serializable, SafelyCloseable, Iter
 
 		return new ObjectIterator<Bucket>() {
 			private int bucket;
-			private ReadableByteChannel channel;
+			private long offset;
 			private final ByteBuffer iteratorByteBuffer = ByteBuffer.allocateDirect(BUFFER_SIZE).order(ByteOrder.nativeOrder());
 			private int last;
 			private int diskSegmentSize;
@@ -807,52 +1750,40 @@ public class BucketedHashStore<T> implements Serializable, SafelyCloseable, Iter
 					System.arraycopy(buffer1, start, buffer1, 0, residual);
 					if (data != null) System.arraycopy(data, start, data, 0, residual);
 
-					try {
-						channel = new FileInputStream(file[nextDiskSegment]).getChannel();
+					final long readStart = System.nanoTime();
+					int runs = -1;
+					try (SegmentReader reader = new SegmentReader(nextDiskSegment, iteratorByteBuffer)) {
 						int pos = residual;
 
-						iteratorByteBuffer.clear().flip();
 						final long signature[] = new long[2];
 						final int nextSegmentSize = count[nextDiskSegment];
 						for(int j = 0; j < nextSegmentSize; j++) {
-							signature[0] = readLong(iteratorByteBuffer, channel);
-							signature[1] = readLong(iteratorByteBuffer, channel);
+							signature[0] = reader.nextLong();
+							signature[1] = reader.nextLong();
 
 							if (DEBUG) System.err.println("From disk: " + Arrays.toString(signature));
 
 							if (filter == null || filter.evaluate(signature)) {
 								buffer0[pos] = signature[0];
 								buffer1[pos] = signature[1];
-								if (hashMask == 0) data[pos] = readLong(iteratorByteBuffer, channel);
+								if (hashMask == 0) data[pos] = reader.nextLong();
 								pos++;
 							}
-							else if (hashMask == 0) readLong(iteratorByteBuffer, channel); // Discard data
+							else if (hashMask == 0) reader.nextLong(); // Discard data
 						}
 
 						diskSegmentSize = pos;
-						channel.close();
+						runs = reader.runs();
 					}
 					catch (final IOException e) {
 						throw new RuntimeException(e);
 					}
 
-					it.unimi.dsi.fastutil.Arrays.parallelQuickSort(residual, diskSegmentSize, (x, y) -> {
-						final int t = Long.compareUnsigned(buffer0[x], buffer0[y]);
-						if (t != 0) return t;
-						return Long.compareUnsigned(buffer1[x], buffer1[y]);
-					},
-					(x, y) -> {
-						final long e0 = buffer0[x], e1 = buffer1[x];
-						buffer0[x] = buffer0[y];
-						buffer1[x] = buffer1[y];
-						buffer0[y] = e0;
-						buffer1[y] = e1;
-						if (hashMask == 0) {
-							final long v = data[x];
-							data[x] = data[y];
-							data[y] = v;
-						}
-					});
+					final long sortStart = System.nanoTime();
+					if (listener != null) listener.segmentRead(nextDiskSegment, count[nextDiskSegment], (long)count[nextDiskSegment] * (hashMask == 0 ? 3 : 2) * Long.BYTES, sortStart - readStart);
+
+					sortSegment(data == null ? new long[][] { buffer0, buffer1 } : new long[][] { buffer0, buffer1, data }, residual, diskSegmentSize, runs, true);
+					if (listener != null) listener.segmentSorted(nextDiskSegment, diskSegmentSize - residual, System.nanoTime() - sortStart);
 
 					last = 0;
 					nextDiskSegment++;
@@ -872,7 +1803,8 @@ public class BucketedHashStore<T> implements Serializable, SafelyCloseable, Iter
 							throw new DuplicateException();
 				if (bucket == numBuckets - 1 && last == diskSegmentSize) checkedForDuplicates = true;
 
-				return new Bucket(bucket++, buffer0, buffer1, data, hashMask, start, last);
+				offset += last - start;
+				return new Bucket(bucket++, offset - (last - start), buffer0, buffer1, data, hashMask, start, last);
 			}
 		};
 	}
@@ -25,13 +25,19 @@ import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
 import java.io.Serializable;
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
+import java.nio.channels.Channels;
 import java.nio.channels.ReadableByteChannel;
 import java.nio.channels.WritableByteChannel;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.Iterator;
+import java.util.List;
 import java.util.NoSuchElementException;
 
 import org.apache.commons.collections.Predicate;
@@ -192,6 +198,10 @@ public class ChunkedHashStore<T> implements Serializable, SafelyCloseable, Itera
 	private WritableByteChannel[] writableByteChannel;
 	/** The file channels for the disk chunks. */
 	private ByteBuffer[] byteBuffer;
+	/** Whether disk chunks are compressed. */
+	private boolean compressed;
+	/** The writers for compressed disk chunks, if {@link #compressed} is true. */
+	private CompressedSegment.Writer[] writer;
 	/** The number of disk chunks divided by {@link #diskChunkStep}. */
 	private int virtualDiskChunks;
 	/** If not {@code null}, a filter that will be used to select triples. */
@@ -200,8 +210,8 @@ public class ChunkedHashStore<T> implements Serializable, SafelyCloseable, Itera
 	private boolean locked;
 	/** Whether this store has already been closed. */
 	private boolean closed;
-	/** The wall time spent during quicksort. */
-	private long quickSortWallTime;
+	/** The wall time spent sorting. */
+	private long sortWallTime;
 	/** The optional map from values to count. */
 	private Long2LongOpenHashMap value2FrequencyMap;
 
@@ -270,10 +280,40 @@ public class ChunkedHashStore<T> implements Serializable, SafelyCloseable, Itera
 			writableByteChannel[i] = new FileOutputStream(file[i] = File.createTempFile(ChunkedHashStore.class.getSimpleName(), String.valueOf(i), tempDir)).getChannel();
 			file[i].deleteOnExit();
 		}
+		if (Boolean.getBoolean(BucketedHashStore.COMPRESSED_PROPERTY)) compressed(true);
 
 		count = new int[DISK_CHUNKS];
 	}
 
+	/** Returns whether disk chunks are compressed.
+	 *
+	 * @return true if disk chunks are compressed.
+	 */
+	public boolean compressed() {
+		return compressed;
+	}
+
+	/** Sets whether disk chunks are compressed, as in a {@linkplain BucketedHashStore#compressed(boolean) bucketed hash store}.
+	 *
+	 * <p>This method can be called only when the store is empty (e.g., just after creation or after a {@link #reset(long)}).
+	 * The default can be set with the system property {@value BucketedHashStore#COMPRESSED_PROPERTY}.
+	 *
+	 * @param compressed whether disk chunks should be compressed.
+	 * @throws IllegalStateException if this store is not empty.
+	 */
+	public void compressed(final boolean compressed) {
+		if (size != 0) throw new IllegalStateException("Compression can be changed only when the store is empty");
+		this.compressed = compressed;
+		if (compressed) createWriters();
+		else writer = null;
+	}
+
+	/** Creates the writers for compressed disk chunks on top of the current channels. */
+	private void createWriters() {
+		writer = new CompressedSegment.Writer[DISK_CHUNKS];
+		for (int i = 0; i < DISK_CHUNKS; i++) writer[i] = new CompressedSegment.Writer(Channels.newOutputStream(writableByteChannel[i]), 3, hashMask == 0);
+	}
+
 	/** Return the current seed of this chunked hash store. After calling this method, no {@link #reset(long)} will be allowed (unless the store
 	 * is {@linkplain #clear() cleared}).
 	 *
@@ -328,10 +368,13 @@ public class ChunkedHashStore<T> implements Serializable, SafelyCloseable, Itera
 		count[chunk]++;
 		checkedForDuplicates = false;
 		if (DEBUG) System.err.println("Adding " + Arrays.toString(triple));
-		writeLong(triple[0], byteBuffer[chunk], writableByteChannel[chunk]);
-		writeLong(triple[1], byteBuffer[chunk], writableByteChannel[chunk]);
-		writeLong(triple[2], byteBuffer[chunk], writableByteChannel[chunk]);
-		if (hashMask == 0) writeLong(value, byteBuffer[chunk], writableByteChannel[chunk]);
+		if (compressed) writer[chunk].add(triple, value);
+		else {
+			writeLong(triple[0], byteBuffer[chunk], writableByteChannel[chunk]);
+			writeLong(triple[1], byteBuffer[chunk], writableByteChannel[chunk]);
+			writeLong(triple[2], byteBuffer[chunk], writableByteChannel[chunk]);
+			if (hashMask == 0) writeLong(value, byteBuffer[chunk], writableByteChannel[chunk]);
+		}
 		if (filteredSize != -1 && (filter == null || filter.evaluate(triple))) filteredSize++;
 		if (value2FrequencyMap != null) value2FrequencyMap.addTo(value, 1);
 		size++;
@@ -377,7 +420,8 @@ public class ChunkedHashStore<T> implements Serializable, SafelyCloseable, Itera
 	}
 
 	private void flushAll() throws IOException {
-		for(int i = 0; i < DISK_CHUNKS; i++) flush(byteBuffer[i], writableByteChannel[i]);
+		if (compressed) for(int i = 0; i < DISK_CHUNKS; i++) writer[i].flush();
+		else for(int i = 0; i < DISK_CHUNKS; i++) flush(byteBuffer[i], writableByteChannel[i]);
 	}
 
 	/** Returns the size of this store. Note that if you set up
@@ -397,6 +441,15 @@ public class ChunkedHashStore<T> implements Serializable, SafelyCloseable, Itera
 				if (filter == null) c += count[i];
 				else {
 					flushAll();
+					if (compressed) {
+						try (CompressedSegment.Reader reader = new CompressedSegment.Reader(new FileInputStream(file[i]), 3, hashMask == 0)) {
+							for(int j = 0; j < count[i]; j++) {
+								reader.next(triple);
+								if (filter.evaluate(triple)) c++;
+							}
+						}
+						continue;
+					}
 					@SuppressWarnings("resource")
 					final ReadableByteChannel channel = new FileInputStream(file[i]).getChannel();
 					iteratorByteBuffer.clear().flip();
@@ -502,7 +555,7 @@ public class ChunkedHashStore<T> implements Serializable, SafelyCloseable, Itera
 	@Override
 	public void close() throws IOException {
 		if (! closed) {
-			LOGGER.debug("Wall clock for quicksort: " + Util.format(quickSortWallTime / 1E9) + "s");
+			LOGGER.debug("Wall clock for sorting: " + Util.format(sortWallTime / 1E9) + "s");
 			closed = true;
 			for(final WritableByteChannel channel: writableByteChannel) channel.close();
 			for(final File f: file) f.delete();
@@ -527,6 +580,7 @@ public class ChunkedHashStore<T> implements Serializable, SafelyCloseable, Itera
 			byteBuffer[i].clear();
 			writableByteChannel[i] = new FileOutputStream(file[i]).getChannel();
 		}
+		if (compressed) createWriters();
 	}
 
 	/** Checks that this store has no duplicate triples, throwing an exception if this fails to happen.
@@ -819,6 +873,7 @@ public class ChunkedHashStore<T> implements Serializable, SafelyCloseable, Itera
 		return new ObjectIterator<Chunk>() {
 			private int chunk;
 			private ReadableByteChannel channel;
+			private CompressedSegment.Reader reader;
 			private final ByteBuffer iteratorByteBuffer = ByteBuffer.allocateDirect(BUFFER_SIZE).order(ByteOrder.nativeOrder());
 			private int last;
 			private int chunkSize;
@@ -842,8 +897,20 @@ public class ChunkedHashStore<T> implements Serializable, SafelyCloseable, Itera
 					final long[] buffer1 = this.buffer1, buffer2 = this.buffer2;
 
 					chunkSize = 0;
+					// Compressed disk chunks are made of sorted runs, which need just to be merged
+					int runs = compressed ? 0 : -1;
+					if (compressed) for(int i = 0; i < diskChunkStep; i++) runs += writer[diskChunk * diskChunkStep + i].runs();
 					try {
-						if (diskChunkStep == 1) {
+						if (compressed) {
+							final List<InputStream> subStream = new ArrayList<>();
+							for(int i = 0; i < diskChunkStep; i++) {
+								subStream.add(new FileInputStream(file[diskChunk * diskChunkStep + i]));
+								chunkSize += count[diskChunk * diskChunkStep + i];
+							}
+							// Runs are byte aligned, so compressed disk chunks can be simply concatenated
+							reader = new CompressedSegment.Reader(new SequenceInputStream(Collections.enumeration(subStream)), 3, hashMask == 0);
+						}
+						else if (diskChunkStep == 1) {
 							channel = new FileInputStream(file[diskChunk]).getChannel();
 							chunkSize = count[diskChunk];
 						}
@@ -860,9 +927,14 @@ public class ChunkedHashStore<T> implements Serializable, SafelyCloseable, Itera
 						final long triple[] = new long[3];
 						int count = 0;
 						for(int j = 0; j < chunkSize; j++) {
-							triple[0] = readLong(iteratorByteBuffer, channel);
-							triple[1] = readLong(iteratorByteBuffer, channel);
-							triple[2] = readLong(iteratorByteBuffer, channel);
+							final long value;
+							if (compressed) value = reader.next(triple);
+							else {
+								triple[0] = readLong(iteratorByteBuffer, channel);
+								triple[1] = readLong(iteratorByteBuffer, channel);
+								triple[2] = readLong(iteratorByteBuffer, channel);
+								value = hashMask == 0 ? readLong(iteratorByteBuffer, channel) : 0;
+							}
 
 							if (DEBUG) System.err.println("From disk: " + Arrays.toString(triple));
 
@@ -870,42 +942,22 @@ public class ChunkedHashStore<T> implements Serializable, SafelyCloseable, Itera
 								buffer0[count] = triple[0];
 								buffer1[count] = triple[1];
 								buffer2[count] = triple[2];
-								if (hashMask == 0) data[count] = readLong(iteratorByteBuffer, channel);
+								if (hashMask == 0) data[count] = value;
 								count++;
 							}
-							else if (hashMask == 0) readLong(iteratorByteBuffer, channel); // Discard data
 						}
 
 						chunkSize = count;
-						channel.close();
+						if (compressed) reader.close();
+						else channel.close();
 					}
 					catch (final IOException e) {
 						throw new RuntimeException(e);
 					}
 
 					final long start = System.nanoTime();
-					it.unimi.dsi.fastutil.Arrays.parallelQuickSort(0, chunkSize, (x, y) -> {
-						int t = Long.compareUnsigned(buffer0[x], buffer0[y]);
-						if (t != 0) return t;
-						t = Long.compareUnsigned(buffer1[x], buffer1[y]);
-						if (t != 0) return t;
-						return Long.compareUnsigned(buffer2[x], buffer2[y]);
-					},
-					(x, y) -> {
-						final long e0 = buffer0[x], e1 = buffer1[x], e2 = buffer2[x];
-						buffer0[x] = buffer0[y];
-						buffer1[x] = buffer1[y];
-						buffer2[x] = buffer2[y];
-						buffer0[y] = e0;
-						buffer1[y] = e1;
-						buffer2[y] = e2;
-						if (hashMask == 0) {
-							final long v = data[x];
-							data[x] = data[y];
-							data[y] = v;
-						}
-					});
-					quickSortWallTime += System.nanoTime() - start;
+					BucketedHashStore.sortSegment(hashMask != 0 ? new long[][] { buffer0, buffer1, buffer2 } : new long[][] { buffer0, buffer1, buffer2, data }, 0, chunkSize, runs, true);
+					sortWallTime += System.nanoTime() - start;
 
 					if (DEBUG) {
 						for(int i = 0; i < chunkSize; i++) System.err.println(buffer0[i] + ", " + buffer1[i] + ", " + buffer2[i]);
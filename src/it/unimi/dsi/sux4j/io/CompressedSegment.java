@@ -0,0 +1,229 @@
+package it.unimi.dsi.sux4j.io;
+
+/*
+ * Sux4J: Succinct data structures for Java
+ *
+ * Copyright (C) 2020 Sebastiano Vigna
+ *
+ *  This library is free software; you can redistribute it and/or modify it
+ *  under the terms of the GNU Lesser General Public License as published by the Free
+ *  Software Foundation; either version 3 of the License, or (at your option)
+ *  any later version.
+ *
+ *  This library is distributed in the hope that it will be useful, but
+ *  WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ *  or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License
+ *  for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with this program; if not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Arrays;
+
+import it.unimi.dsi.bits.Fast;
+import it.unimi.dsi.fastutil.longs.LongArrays;
+import it.unimi.dsi.io.InputBitStream;
+import it.unimi.dsi.io.OutputBitStream;
+
+/** Compressed storage for the disk segments of {@linkplain BucketedHashStore bucketed} and {@linkplain ChunkedHashStore chunked}
+ * hash stores.
+ *
+ * <p>A segment contains tuples formed by a fixed number of hashes and, optionally, by an associated datum.
+ * Tuples are accumulated in a buffer of {@link #RUN_SIZE} elements and written as <em>sorted runs</em>: each run
+ * is sorted lexicographically (comparing hashes as unsigned values) and written using an {@link OutputBitStream}.
+ * A run starts with its length (in &delta; code) and with the parameter <var>&#x2113;</var> (in &gamma; code) of
+ * the Rice code used for the first hash of each tuple, that is, the base-2 logarithm of the average gap between
+ * consecutive first hashes. The first hash of the first tuple is written in full; the following ones are
+ * written as gaps, with the lowest <var>&#x2113;</var> bits written explicitly and the remaining ones in unary
+ * code. The other hashes are written in full, as they have no redundancy, whereas data are
+ * {@linkplain Fast#int2nat(long) mapped to natural numbers} and written, incremented by one, in &delta; code
+ * (the few data whose mapping is too large are written in full after a zero).
+ * Runs are byte aligned, so a writer can be {@linkplain Writer#flush() flushed} at any time and then
+ * written again.
+ *
+ * <p>Since the first hashes of the tuples of a segment share their highest bits, and in a run of
+ * {@link #RUN_SIZE} elements the average gap is about {@link #RUN_SIZE} times smaller than the range of
+ * the segment, this representation saves about two bytes per tuple on the first hash, and
+ * represents small data (e.g., ranks) in a few bytes.
+ *
+ * @author Sebastiano Vigna
+ * @since 5.1.0
+ */
+
+final class CompressedSegment {
+	/** The number of tuples in a run. */
+	public static final int RUN_SIZE = 4096;
+	/** The size of the buffers of bit streams. */
+	private static final int BUFFER_SIZE = 16 * 1024;
+
+	private CompressedSegment() {}
+
+	/** A writer of compressed segments. */
+	public static final class Writer implements Closeable {
+		/** The underlying bit stream. */
+		private final OutputBitStream obs;
+		/** The number of hashes in a tuple. */
+		private final int hashes;
+		/** Whether tuples contain a datum. */
+		private final boolean hasData;
+		/** The tuples of the current run, by column; the last column contains data, if {@link #hasData} is true.
+		 * Columns are grown on demand, so that idle writers use little memory. */
+		private final long[][] column;
+		/** The number of tuples in the current run. */
+		private int size;
+		/** The number of runs written so far. */
+		private int runs;
+
+		/** Creates a new writer.
+		 *
+		 * @param os the output stream for the segment.
+		 * @param hashes the number of hashes in a tuple.
+		 * @param hasData whether tuples contain a datum.
+		 */
+		public Writer(final OutputStream os, final int hashes, final boolean hasData) {
+			this.obs = new OutputBitStream(os, BUFFER_SIZE);
+			this.hashes = hashes;
+			this.hasData = hasData;
+			this.column = new long[hashes + (hasData ? 1 : 0)][];
+			Arrays.fill(column, LongArrays.EMPTY_ARRAY);
+		}
+
+		/** Adds a tuple.
+		 *
+		 * @param hash an array whose first elements contain the hashes of the tuple.
+		 * @param datum the associated datum (ignored if tuples contain no datum).
+		 */
+		public void add(final long[] hash, final long datum) throws IOException {
+			final long[][] column = this.column;
+			if (size == column[0].length) for (int i = column.length; i-- != 0;) column[i] = LongArrays.grow(column[i], size + 1, size);
+			for (int i = hashes; i-- != 0;) column[i][size] = hash[i];
+			if (hasData) column[hashes][size] = datum;
+			if (++size == RUN_SIZE) writeRun();
+		}
+
+		/** Returns the number of runs written so far.
+		 *
+		 * @return the number of runs written so far.
+		 */
+		public int runs() {
+			return runs;
+		}
+
+		/** Sorts and writes the current run. */
+		private void writeRun() throws IOException {
+			if (size == 0) return;
+			final long[][] column = this.column;
+			SignatureSort.sort(column, 0, size);
+
+			final long[] first = column[0];
+			final long averageGap = Long.divideUnsigned(first[size - 1] - first[0], size);
+			final int l = averageGap == 0 ? 0 : Fast.mostSignificantBit(averageGap);
+			final long mask = (1L << l) - 1;
+			obs.writeLongDelta(size);
+			obs.writeGamma(l);
+			long prev = first[0];
+			for (int j = 0; j < size; j++) {
+				if (j == 0) obs.writeLong(prev, Long.SIZE);
+				else {
+					final long gap = first[j] - prev;
+					obs.writeUnary((int)(gap >>> l));
+					obs.writeLong(gap & mask, l);
+					prev = first[j];
+				}
+				for (int i = 1; i < hashes; i++) obs.writeLong(column[i][j], Long.SIZE);
+				if (hasData) {
+					final long datum = column[hashes][j], nat = Fast.int2nat(datum);
+					// Zero escapes data whose natural mapping does not fit a nonnegative long
+					if (nat < 0 || nat == Long.MAX_VALUE) {
+						obs.writeLongDelta(0);
+						obs.writeLong(datum, Long.SIZE);
+					} else obs.writeLongDelta(nat + 1);
+				}
+			}
+			obs.align();
+			size = 0;
+			runs++;
+		}
+
+		/** Writes the current run, if nonempty, and flushes the underlying bit stream. */
+		public void flush() throws IOException {
+			writeRun();
+			obs.flush();
+		}
+
+		@Override
+		public void close() throws IOException {
+			flush();
+			obs.close();
+		}
+	}
+
+	/** A reader of compressed segments. */
+	public static final class Reader implements Closeable {
+		/** The underlying bit stream. */
+		private final InputBitStream ibs;
+		/** The number of hashes in a tuple. */
+		private final int hashes;
+		/** Whether tuples contain a datum. */
+		private final boolean hasData;
+		/** The number of tuples still to be read in the current run. */
+		private long remaining;
+		/** The Rice parameter of the current run. */
+		private int l;
+		/** The first hash of the last tuple returned. */
+		private long prev;
+		/** Whether we are at the start of a run. */
+		private boolean start;
+
+		/** Creates a new reader.
+		 *
+		 * @param is the input stream of the segment.
+		 * @param hashes the number of hashes in a tuple.
+		 * @param hasData whether tuples contain a datum.
+		 */
+		public Reader(final InputStream is, final int hashes, final boolean hasData) {
+			this.ibs = new InputBitStream(is, BUFFER_SIZE);
+			this.hashes = hashes;
+			this.hasData = hasData;
+		}
+
+		/** Reads the next tuple.
+		 *
+		 * <p>The caller is responsible for not reading more tuples than those written.
+		 *
+		 * @param hash an array whose first elements will be filled with the hashes of the tuple.
+		 * @return the datum of the tuple, or zero if tuples contain no datum.
+		 */
+		public long next(final long[] hash) throws IOException {
+			if (remaining == 0) {
+				remaining = ibs.readLongDelta();
+				l = ibs.readGamma();
+				start = true;
+			}
+			if (start) {
+				prev = ibs.readLong(Long.SIZE);
+				start = false;
+			} else prev += (long)ibs.readUnary() << l | ibs.readLong(l);
+			hash[0] = prev;
+			for (int i = 1; i < hashes; i++) hash[i] = ibs.readLong(Long.SIZE);
+			long datum = 0;
+			if (hasData) {
+				final long nat = ibs.readLongDelta();
+				datum = nat == 0 ? ibs.readLong(Long.SIZE) : Fast.nat2int(nat - 1);
+			}
+			if (--remaining == 0) ibs.align();
+			return datum;
+		}
+
+		@Override
+		public void close() throws IOException {
+			ibs.close();
+		}
+	}
+}
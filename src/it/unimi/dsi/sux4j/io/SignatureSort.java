@@ -0,0 +1,288 @@
+package it.unimi.dsi.sux4j.io;
+
+/*
+ * Sux4J: Succinct data structures for Java
+ *
+ * Copyright (C) 2020 Sebastiano Vigna
+ *
+ *  This library is free software; you can redistribute it and/or modify it
+ *  under the terms of the GNU Lesser General Public License as published by the Free
+ *  Software Foundation; either version 3 of the License, or (at your option)
+ *  any later version.
+ *
+ *  This library is distributed in the hope that it will be useful, but
+ *  WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ *  or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License
+ *  for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with this program; if not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+import it.unimi.dsi.bits.Fast;
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import it.unimi.dsi.fastutil.ints.IntComparator;
+import it.unimi.dsi.fastutil.ints.IntHeaps;
+
+/** Radix sort of signatures stored in parallel arrays.
+ *
+ * <p>The methods of this class sort lexicographically tuples of longs stored in parallel arrays, comparing
+ * longs as unsigned values. Since the first array contains (the first part of) a uniformly random signature,
+ * the sort is a most-significant-digit in-place radix sort (American flag sort) on the bytes of the
+ * first array, starting from the first byte that is not common to all elements (e.g., in a disk segment
+ * the highest byte is fixed, and it is skipped). After a couple of passes the bins are so small that
+ * they are finished by insertion sort, which compares the other arrays, too.
+ *
+ * <p>Ties on all arrays but the last one can happen only if there are duplicate signatures: in that case,
+ * it does not matter whether the last array contains data or a further part of a signature.
+ *
+ * @author Sebastiano Vigna
+ * @since 5.1.0
+ */
+
+final class SignatureSort {
+	/** The number of bits in a digit. */
+	private static final int DIGIT_BITS = 8;
+	/** The number of distinct digits. */
+	private static final int DIGITS = 1 << DIGIT_BITS;
+	/** The mask for a digit. */
+	private static final int DIGIT_MASK = DIGITS - 1;
+	/** Bins smaller than this threshold are sorted by insertion sort. */
+	private static final int INSERTION_SORT_THRESHOLD = 64;
+	/** Ranges smaller than this threshold are sorted sequentially by {@link #parallelSort(long[][], int, int)}. */
+	private static final int PARALLEL_SORT_THRESHOLD = 1 << 16;
+
+	private SignatureSort() {}
+
+	/** Sorts lexicographically a range of elements of parallel arrays.
+	 *
+	 * @param a an array of parallel arrays; the first one will be used for radix sorting.
+	 * @param from the index of the first element (inclusive) to be sorted.
+	 * @param to the index of the last element (exclusive) to be sorted.
+	 */
+	public static void sort(final long[][] a, final int from, final int to) {
+		final int shift = firstShift(a[0], from, to);
+		if (shift < 0) insertionSort(a, from, to);
+		else radixSort(a, from, to, shift, new int[Long.SIZE / DIGIT_BITS][DIGITS + 1]);
+	}
+
+	/** Sorts lexicographically and in parallel a range of elements of parallel arrays.
+	 *
+	 * <p>The first pass is sequential; the resulting bins are then sorted in parallel using the
+	 * {@linkplain ForkJoinPool#commonPool() common pool}.
+	 *
+	 * @param a an array of parallel arrays; the first one will be used for radix sorting.
+	 * @param from the index of the first element (inclusive) to be sorted.
+	 * @param to the index of the last element (exclusive) to be sorted.
+	 */
+	public static void parallelSort(final long[][] a, final int from, final int to) {
+		if (to - from < PARALLEL_SORT_THRESHOLD) {
+			sort(a, from, to);
+			return;
+		}
+		final int shift = firstShift(a[0], from, to);
+		if (shift < 0) {
+			insertionSort(a, from, to);
+			return;
+		}
+		final int[] start = new int[DIGITS + 1];
+		distribute(a, from, to, shift, start);
+		if (shift == 0) {
+			// Nothing left to do in parallel
+			for (int d = 0; d < DIGITS; d++) insertionSort(a, start[d], start[d + 1]);
+			return;
+		}
+
+		final List<Callable<Void>> tasks = new ArrayList<>();
+		for (int d = 0; d < DIGITS; d++) {
+			final int binFrom = start[d], binTo = start[d + 1];
+			if (binTo - binFrom > 1) tasks.add(() -> {
+				radixSort(a, binFrom, binTo, shift - DIGIT_BITS, new int[Long.SIZE / DIGIT_BITS][DIGITS + 1]);
+				return null;
+			});
+		}
+		try {
+			for (final Future<Void> future : ForkJoinPool.commonPool().invokeAll(tasks)) future.get();
+		} catch (final InterruptedException e) {
+			throw new RuntimeException(e);
+		} catch (final ExecutionException e) {
+			final Throwable cause = e.getCause();
+			if (cause instanceof RuntimeException) throw (RuntimeException)cause;
+			if (cause instanceof Error) throw (Error)cause;
+			throw new RuntimeException(cause);
+		}
+	}
+
+	/** Sorts lexicographically a range of elements of parallel arrays made of a sequence of sorted runs.
+	 *
+	 * <p>The maximal nondecreasing runs of the range are merged using a heap; thus, the method requires time
+	 * proportional to the length of the range multiplied by the logarithm of the number of runs, and
+	 * a temporary copy of the range. A range made of a single run is left untouched.
+	 *
+	 * @param a an array of parallel arrays.
+	 * @param from the index of the first element (inclusive) to be sorted.
+	 * @param to the index of the last element (exclusive) to be sorted.
+	 */
+	public static void mergeRuns(final long[][] a, final int from, final int to) {
+		final IntArrayList runStart = new IntArrayList();
+		runStart.add(from);
+		for (int i = from + 1; i < to; i++) if (compare(a, i - 1, i) > 0) runStart.add(i);
+		final int runs = runStart.size();
+		if (runs == 1) return;
+
+		// The current position and the end of each run
+		final int[] pos = runStart.toIntArray();
+		runStart.add(to);
+		final int[] end = runStart.subList(1, runs + 1).toIntArray();
+		final int[] heap = new int[runs];
+		for (int r = 0; r < runs; r++) heap[r] = r;
+		final IntComparator c = (x, y) -> compare(a, pos[x], pos[y]);
+		IntHeaps.makeHeap(heap, runs, c);
+
+		final int width = a.length, length = to - from;
+		final long[][] t = new long[width][length];
+		for (int i = 0, size = runs; i < length; i++) {
+			final int r = heap[0];
+			final int p = pos[r]++;
+			for (int j = width; j-- != 0;) t[j][i] = a[j][p];
+			if (pos[r] == end[r]) heap[0] = heap[--size];
+			if (size != 0) IntHeaps.downHeap(heap, size, 0, c);
+		}
+		for (int j = width; j-- != 0;) System.arraycopy(t[j], 0, a[j], from, length);
+	}
+
+	/** Returns the shift of the highest digit that is not common to all elements of a range, or -1 if all elements are equal. */
+	private static int firstShift(final long[] k, final int from, final int to) {
+		if (to - from < 2) return -1;
+		final long first = k[from];
+		long diff = 0;
+		for (int i = from + 1; i < to; i++) diff |= k[i] ^ first;
+		return diff == 0 ? -1 : Fast.mostSignificantBit(diff) / DIGIT_BITS * DIGIT_BITS;
+	}
+
+	/** Sorts recursively a range using the digit at the given shift and the following ones.
+	 *
+	 * @param a the parallel arrays.
+	 * @param from the index of the first element (inclusive) to be sorted.
+	 * @param to the index of the last element (exclusive) to be sorted.
+	 * @param shift the shift of the current digit.
+	 * @param start a workspace containing an array of {@link #DIGITS} + 1 integers for each digit of a long.
+	 */
+	private static void radixSort(final long[][] a, final int from, final int to, final int shift, final int[][] start) {
+		if (to - from < INSERTION_SORT_THRESHOLD) {
+			insertionSort(a, from, to);
+			return;
+		}
+		final int[] s = start[shift / DIGIT_BITS];
+		distribute(a, from, to, shift, s);
+		for (int d = 0; d < DIGITS; d++) {
+			final int binFrom = s[d], binTo = s[d + 1];
+			if (binTo - binFrom < 2) continue;
+			// When all digits have been used, the first array is constant in the bin
+			if (shift == 0) insertionSort(a, binFrom, binTo);
+			else radixSort(a, binFrom, binTo, shift - DIGIT_BITS, start);
+		}
+	}
+
+	/** Distributes the elements of a range into bins using the digit at the given shift (American flag sort).
+	 *
+	 * @param a the parallel arrays.
+	 * @param from the index of the first element (inclusive) to be distributed.
+	 * @param to the index of the last element (exclusive) to be distributed.
+	 * @param shift the shift of the digit.
+	 * @param start an array of {@link #DIGITS} + 1 integers that will be filled with the starting position of each bin
+	 * (the last entry will be equal to {@code to}).
+	 */
+	private static void distribute(final long[][] a, final int from, final int to, final int shift, final int[] start) {
+		final long[] k = a[0];
+		final int width = a.length;
+		final int[] next = new int[DIGITS];
+		for (int i = from; i < to; i++) next[(int)(k[i] >>> shift) & DIGIT_MASK]++;
+		for (int d = 0, p = from; d < DIGITS; d++) {
+			start[d] = p;
+			p += next[d];
+			next[d] = start[d];
+		}
+		start[DIGITS] = to;
+
+		final long[] t = new long[width];
+		for (int d = 0; d < DIGITS; d++) {
+			final int end = start[d + 1];
+			while (next[d] < end) {
+				int p = next[d];
+				int digit = (int)(k[p] >>> shift) & DIGIT_MASK;
+				if (digit == d) {
+					next[d]++;
+					continue;
+				}
+				// Follow the cycle starting at p
+				for (int i = width; i-- != 0;) t[i] = a[i][p];
+				do {
+					final int q = next[digit]++;
+					for (int i = width; i-- != 0;) {
+						final long[] c = a[i];
+						final long u = c[q];
+						c[q] = t[i];
+						t[i] = u;
+					}
+					digit = (int)(t[0] >>> shift) & DIGIT_MASK;
+				} while (digit != d);
+				for (int i = width; i-- != 0;) a[i][p] = t[i];
+				next[d]++;
+			}
+		}
+	}
+
+	/** Compares lexicographically (and unsigned) two elements of parallel arrays. */
+	private static int compare(final long[][] a, final int x, final int y) {
+		for (final long[] c : a) {
+			final int t = Long.compareUnsigned(c[x], c[y]);
+			if (t != 0) return t;
+		}
+		return 0;
+	}
+
+	/** Sorts a range by insertion sort, or by quicksort if the range is large (i.e., in degenerate cases). */
+	private static void insertionSort(final long[][] a, final int from, final int to) {
+		if (to - from > INSERTION_SORT_THRESHOLD) {
+			it.unimi.dsi.fastutil.Arrays.quickSort(from, to, (x, y) -> compare(a, x, y), (x, y) -> {
+				for (final long[] c : a) {
+					final long t = c[x];
+					c[x] = c[y];
+					c[y] = t;
+				}
+			});
+			return;
+		}
+		final int width = a.length;
+		final long[] t = new long[width];
+		for (int i = from + 1; i < to; i++) {
+			int j = i;
+			// Fast path: compare on the first array only
+			if (Long.compareUnsigned(a[0][j - 1], a[0][i]) < 0) continue;
+			for (int c = width; c-- != 0;) t[c] = a[c][i];
+			while (j > from && compareTo(a, j - 1, t) > 0) {
+				for (int c = width; c-- != 0;) a[c][j] = a[c][j - 1];
+				j--;
+			}
+			for (int c = width; c-- != 0;) a[c][j] = t[c];
+		}
+	}
+
+	/** Compares lexicographically (and unsigned) an element of parallel arrays with a tuple. */
+	private static int compareTo(final long[][] a, final int x, final long[] t) {
+		for (int i = 0; i < t.length; i++) {
+			final int c = Long.compareUnsigned(a[i][x], t[i]);
+			if (c != 0) return c;
+		}
+		return 0;
+	}
+}
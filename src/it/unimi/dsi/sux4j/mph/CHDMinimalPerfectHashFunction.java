@@ -27,12 +27,19 @@ import java.io.IOException;
 import java.io.InputStreamReader;
 import java.io.ObjectInputStream;
 import java.io.Serializable;
+import java.nio.ByteBuffer;
 import java.nio.charset.Charset;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Iterator;
 import java.util.LinkedList;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.zip.GZIPInputStream;
 
 import org.apache.commons.lang.mutable.MutableLong;
@@ -77,6 +84,7 @@ import it.unimi.dsi.sux4j.bits.SparseRank;
 import it.unimi.dsi.sux4j.io.ChunkedHashStore;
 import it.unimi.dsi.sux4j.util.EliasFanoLongBigList;
 import it.unimi.dsi.util.XoRoShiRo128PlusRandomGenerator;
+import it.unimi.dsi.util.concurrent.ReorderingBlockingQueue;
 
 /**
  * A minimal perfect hash function implemented using the &ldquo;hash, displace and compress&rdquo; technique.
@@ -123,12 +131,21 @@ import it.unimi.dsi.util.XoRoShiRo128PlusRandomGenerator;
  * to split the generation of large key sets into generation of smaller functions for each chunk (of size
  * approximately 2<sup>{@value #LOG2_CHUNK_SIZE}</sup>).
  *
+ * <h3>Multithreading</h3>
+ *
+ * <p>This implementation is multithreaded: each chunk returned by the {@link ChunkedHashStore} is
+ * processed independently. By default, this class uses {@link Runtime#availableProcessors()}
+ * parallel threads, but by default no more than 4. If you wish to set a specific number of threads,
+ * you can do so through the system property {@value #NUMBER_OF_THREADS_PROPERTY}.
+ *
  * @author Sebastiano Vigna
  * @since 3.2.0
  */
 
 @SuppressWarnings("deprecation")
 public class CHDMinimalPerfectHashFunction<T> extends AbstractHashFunction<T> implements Serializable {
+	private static final ChunkSolution END_OF_SOLUTION_QUEUE = new ChunkSolution(null, null);
+	private static final ChunkedHashStore.Chunk END_OF_CHUNK_QUEUE = new ChunkedHashStore.Chunk();
 	private static final Logger LOGGER = LoggerFactory.getLogger(CHDMinimalPerfectHashFunction.class);
 	private static final boolean ASSERTS = true;
 
@@ -237,6 +254,20 @@ public class CHDMinimalPerfectHashFunction<T> extends AbstractHashFunction<T> im
 	/** The logarithm of the desired chunk size. */
 	public final static int LOG2_CHUNK_SIZE = 16;
 
+	/** The system property used to set the number of parallel threads. */
+	public static final String NUMBER_OF_THREADS_PROPERTY = "it.unimi.dsi.sux4j.mph.threads";
+
+	/** The displacement coefficients and the unused entries computed for a chunk. */
+	private static final class ChunkSolution {
+		private final long[] coefficients;
+		private final LongArrayList holes;
+
+		private ChunkSolution(final long[] coefficients, final LongArrayList holes) {
+			this.coefficients = coefficients;
+			this.holes = holes;
+		}
+	}
+
 	/** The number of keys. */
 	protected final long n;
 
@@ -376,127 +407,187 @@ public class CHDMinimalPerfectHashFunction<T> extends AbstractHashFunction<T> im
 			pl.start("Analysing chunks... ");
 
 			try {
-				int chunkNumber = 0;
-
-				for (final ChunkedHashStore.Chunk chunk : chunkedHashStore) {
-					/* We treat a chunk as a single hash function. The number of bins is thus
-					 * the first prime larger than the chunk size divided by the load factor. */
-					final int p = Primes.nextPrime((int)Math.ceil(chunk.size() / loadFactor) + 1);
-					final boolean used[] = new boolean[p];
-
-					final int numBuckets = (chunk.size() + lambda - 1) / lambda;
-					numBuckets(chunkNumber + 1, numBuckets(chunkNumber) + numBuckets);
-					final int[] cc0 = new int[numBuckets];
-					final int[] cc1 = new int[numBuckets];
-					@SuppressWarnings({ "unchecked" })
-					final ArrayList<long[]>[] bucket = new ArrayList[numBuckets];
-					for(int i = bucket.length; i-- != 0;) bucket[i] = new ArrayList<>();
-
-					tryChunk: for(;;) {
-						for(final ArrayList<long[]> b : bucket) b.clear();
-						Arrays.fill(used,  false);
-
-						/* At each try, the allocation to keys to bucket is randomized differently. */
-						final long seed = r.nextLong();
-						// System.err.println("Number of keys: " + chunk.size()  + " Number of bins: " + p + " seed: " + seed);
-						/* We distribute the keys in this chunks in the buckets. */
-						for(final Iterator<long[]> iterator = chunk.iterator(); iterator.hasNext();) {
-							final long[] triple = iterator.next();
-							final long[] h = new long[3];
-							Hashes.spooky4(triple, seed, h);
-							final ArrayList<long[]> b = bucket[(int) spread(h[0], numBuckets)];
-							h[1] = spread(h[1], p);
-							h[2] = spread(h[2], p - 1) + 1;
-
-							// All elements in a bucket must have either different h[1] or different h[2]
-							for(final long[] t: b) if (t[1] == h[1] && t[2] == h[2]) {
-								LOGGER.info("Duplicate index" + Arrays.toString(t));
-								continue tryChunk;
-							}
-							b.add(h);
+				final int numberOfThreads = Integer.parseInt(System.getProperty(NUMBER_OF_THREADS_PROPERTY, Integer.toString(Math.min(4, Runtime.getRuntime().availableProcessors()))));
+				final ArrayBlockingQueue<ChunkedHashStore.Chunk> chunkQueue = new ArrayBlockingQueue<>(numberOfThreads * 8);
+				final ReorderingBlockingQueue<ChunkSolution> queue = new ReorderingBlockingQueue<>(numberOfThreads * 128);
+				final ExecutorService executorService = Executors.newFixedThreadPool(numberOfThreads + 2);
+				final ExecutorCompletionService<Void> executorCompletionService = new ExecutorCompletionService<>(executorService);
+				// Each chunk gets its own generator, so the result does not depend on thread scheduling
+				final long baseSeed = r.nextLong();
+
+				executorCompletionService.submit(() -> {
+					final MutableLong l = new MutableLong();
+					for (;;) {
+						final ChunkSolution solution = queue.take();
+						if (solution == END_OF_SOLUTION_QUEUE) return null;
+						for (final long c : solution.coefficients) {
+							l.setValue(c);
+							coefficients.add(l);
+						}
+						holes.addAll(solution.holes);
+					}
+				});
+
+				final ChunkedHashStore<T> chs = chunkedHashStore;
+				executorCompletionService.submit(() -> {
+					try {
+						final Iterator<ChunkedHashStore.Chunk> iterator = chs.iterator();
+						for (int chunkNumber = 0; iterator.hasNext(); chunkNumber++) {
+							final ChunkedHashStore.Chunk chunk = new ChunkedHashStore.Chunk(iterator.next());
+							assert chunkNumber == chunk.index();
+							/* We treat a chunk as a single hash function. The number of bins is thus
+							 * the first prime larger than the chunk size divided by the load factor. */
+							final int p = Primes.nextPrime((int)Math.ceil(chunk.size() / loadFactor) + 1);
+							numBuckets(chunkNumber + 1, numBuckets(chunkNumber) + (chunk.size() + lambda - 1) / lambda);
+							offset(chunkNumber + 1, offset(chunkNumber) + p);
+							chunkQueue.put(chunk);
+						}
+					} finally {
+						for (int i = numberOfThreads; i-- != 0;) chunkQueue.put(END_OF_CHUNK_QUEUE);
+					}
+					return null;
+				});
+
+				final AtomicInteger activeThreads = new AtomicInteger(numberOfThreads);
+				for (int thread = numberOfThreads; thread-- != 0;) executorCompletionService.submit(() -> {
+					Thread.currentThread().setPriority(Thread.MIN_PRIORITY);
+					for (;;) {
+						final ChunkedHashStore.Chunk chunk = chunkQueue.take();
+						if (chunk == END_OF_CHUNK_QUEUE) {
+							if (activeThreads.decrementAndGet() == 0) queue.put(END_OF_SOLUTION_QUEUE, numChunks);
+							return null;
 						}
 
-						final int[] perm = Util.identity(bucket.length);
-						IntArrays.quickSort(perm, (a0, a1) -> Integer.compare(bucket[a1].size(), bucket[a0].size()));
-
-						for(int i = 0; i < perm.length;) {
-							final LinkedList<Integer> bucketsToDo = new LinkedList<>();
-							final int size = bucket[perm[i]].size();
-							//System.err.println("Bucket size: " + size);
-							int j;
-							// Gather indices of all buckets with the same size
-							for(j = i; j < perm.length && bucket[perm[j]].size() == size; j++) bucketsToDo.add(Integer.valueOf(perm[j]));
-
-							// Examine for each pair (c0,c1) the buckets still to do
-							ext: for(int c1 = 0; c1 < p; c1++)
-								for(int c0 = 0; c0 < p; c0++)  {
-									//System.err.println("Testing " + c0 + ", " + c1 + " (to do: " + bucketsToDo.size() + ")");
-									for(final Iterator<Integer> iterator = bucketsToDo.iterator(); iterator.hasNext();) {
-										final int k = iterator.next().intValue();
-										final ArrayList<long[]> b = bucket[k];
-										boolean completed = true;
-										final IntArrayList done = new IntArrayList();
-										// Try to see whether the necessary entries are not used
-										for(final long[] h: b) {
-											//assert k == h[0];
-
-											final int pos = (int)((h[1] + c0 * h[2] + c1) % p);
-											//System.err.println("Testing pos " + pos + " for " + Arrays.toString(e));
-											if (used[pos]) {
-												completed = false;
-												break;
-											}
-											else {
-												used[pos] = true;
-												done.add(pos);
+						final int chunkNumber = chunk.index();
+						final RandomGenerator chunkRandom = new XoRoShiRo128PlusRandomGenerator(baseSeed + chunkNumber);
+						final int p = (int)(offset(chunkNumber + 1) - offset(chunkNumber));
+						final boolean used[] = new boolean[p];
+
+						final int numBuckets = (int)(numBuckets(chunkNumber + 1) - numBuckets(chunkNumber));
+						final int[] cc0 = new int[numBuckets];
+						final int[] cc1 = new int[numBuckets];
+						@SuppressWarnings({ "unchecked" })
+						final ArrayList<long[]>[] bucket = new ArrayList[numBuckets];
+						for(int i = bucket.length; i-- != 0;) bucket[i] = new ArrayList<>();
+
+						tryChunk: for(;;) {
+							for(final ArrayList<long[]> b : bucket) b.clear();
+							Arrays.fill(used,  false);
+
+							/* At each try, the allocation to keys to bucket is randomized differently. */
+							final long seed = chunkRandom.nextLong();
+							// System.err.println("Number of keys: " + chunk.size()  + " Number of bins: " + p + " seed: " + seed);
+							/* We distribute the keys in this chunks in the buckets. */
+							for(final Iterator<long[]> iterator = chunk.iterator(); iterator.hasNext();) {
+								final long[] triple = iterator.next();
+								final long[] h = new long[3];
+								Hashes.spooky4(triple, seed, h);
+								final ArrayList<long[]> b = bucket[(int) spread(h[0], numBuckets)];
+								h[1] = spread(h[1], p);
+								h[2] = spread(h[2], p - 1) + 1;
+
+								// All elements in a bucket must have either different h[1] or different h[2]
+								for(final long[] t: b) if (t[1] == h[1] && t[2] == h[2]) {
+									LOGGER.info("Duplicate index" + Arrays.toString(t));
+									continue tryChunk;
+								}
+								b.add(h);
+							}
+
+							final int[] perm = Util.identity(bucket.length);
+							IntArrays.quickSort(perm, (a0, a1) -> Integer.compare(bucket[a1].size(), bucket[a0].size()));
+
+							for(int i = 0; i < perm.length;) {
+								final LinkedList<Integer> bucketsToDo = new LinkedList<>();
+								final int size = bucket[perm[i]].size();
+								//System.err.println("Bucket size: " + size);
+								int j;
+								// Gather indices of all buckets with the same size
+								for(j = i; j < perm.length && bucket[perm[j]].size() == size; j++) bucketsToDo.add(Integer.valueOf(perm[j]));
+
+								// Examine for each pair (c0,c1) the buckets still to do
+								ext: for(int c1 = 0; c1 < p; c1++)
+									for(int c0 = 0; c0 < p; c0++)  {
+										//System.err.println("Testing " + c0 + ", " + c1 + " (to do: " + bucketsToDo.size() + ")");
+										for(final Iterator<Integer> iterator = bucketsToDo.iterator(); iterator.hasNext();) {
+											final int k = iterator.next().intValue();
+											final ArrayList<long[]> b = bucket[k];
+											boolean completed = true;
+											final IntArrayList done = new IntArrayList();
+											// Try to see whether the necessary entries are not used
+											for(final long[] h: b) {
+												//assert k == h[0];
+
+												final int pos = (int)((h[1] + c0 * h[2] + c1) % p);
+												//System.err.println("Testing pos " + pos + " for " + Arrays.toString(e));
+												if (used[pos]) {
+													completed = false;
+													break;
+												}
+												else {
+													used[pos] = true;
+													done.add(pos);
+												}
 											}
-										}
 
-										if (completed) {
-											// All positions were free
-											cc0[k] = c0;
-											cc1[k] = c1;
-											iterator.remove();
+											if (completed) {
+												// All positions were free
+												cc0[k] = c0;
+												cc1[k] = c1;
+												iterator.remove();
+											}
+											else for(final int d: done) used[d] = false;
 										}
-										else for(final int d: done) used[d] = false;
+										if (bucketsToDo.isEmpty()) break ext;
 									}
-									if (bucketsToDo.isEmpty()) break ext;
-								}
-							if (! bucketsToDo.isEmpty()) continue tryChunk;
+								if (! bucketsToDo.isEmpty()) continue tryChunk;
 
-							seed(chunkNumber, seed);
-							i = j;
+								seed(chunkNumber, seed);
+								i = j;
+							}
+							break;
 						}
-						break;
-					}
 
-					// System.err.println("DONE!");
-
-					if (ASSERTS) {
-						final IntOpenHashSet pos = new IntOpenHashSet();
-						final long h[] = new long[3];
-						for(final Iterator<long[]> iterator = chunk.iterator(); iterator.hasNext();) {
-							final long[] triple = iterator.next();
-							Hashes.spooky4(triple, seed(chunkNumber), h);
-							h[0] = spread(h[0], numBuckets);
-							h[1] = spread(h[1], p);
-							h[2] = spread(h[2], p - 1) + 1;
-							//System.err.println(Arrays.toString(e));
-							assert pos.add((int)((h[1] + cc0[(int)(h[0])] * h[2] + cc1[(int)(h[0])]) % p));
+						// System.err.println("DONE!");
+
+						if (ASSERTS) {
+							final IntOpenHashSet pos = new IntOpenHashSet();
+							final long h[] = new long[3];
+							for(final Iterator<long[]> iterator = chunk.iterator(); iterator.hasNext();) {
+								final long[] triple = iterator.next();
+								Hashes.spooky4(triple, seed(chunkNumber), h);
+								h[0] = spread(h[0], numBuckets);
+								h[1] = spread(h[1], p);
+								h[2] = spread(h[2], p - 1) + 1;
+								//System.err.println(Arrays.toString(e));
+								assert pos.add((int)((h[1] + cc0[(int)(h[0])] * h[2] + cc1[(int)(h[0])]) % p));
+							}
 						}
-					}
 
-					final MutableLong l = new MutableLong();
-					for(int i = 0; i < numBuckets; i++) {
-						l.setValue(cc0[i] + cc1[i] * p);
-						coefficients.add(l);
-					}
+						final long[] chunkCoefficients = new long[numBuckets];
+						for(int i = 0; i < numBuckets; i++) chunkCoefficients[i] = cc0[i] + (long)cc1[i] * p;
 
-					for(int i = 0; i < p; i++) if (! used[i]) holes.add(offset(chunkNumber) + i);
+						final LongArrayList chunkHoles = new LongArrayList();
+						for(int i = 0; i < p; i++) if (! used[i]) chunkHoles.add(offset(chunkNumber) + i);
 
-					offset(chunkNumber + 1, offset(chunkNumber) + p);
-					chunkNumber++;
-					pl.update();
+						queue.put(new ChunkSolution(chunkCoefficients, chunkHoles), chunkNumber);
+						synchronized (pl) {
+							pl.update();
+						}
+					}
+				});
+
+				try {
+					for (int i = numberOfThreads + 2; i-- != 0;) executorCompletionService.take().get();
+				} catch (final InterruptedException e) {
+					throw new RuntimeException(e);
+				} catch (final ExecutionException e) {
+					final Throwable cause = e.getCause();
+					if (cause instanceof ChunkedHashStore.DuplicateException) throw (ChunkedHashStore.DuplicateException)cause;
+					if (cause instanceof IOException) throw (IOException)cause;
+					throw new RuntimeException(cause);
+				} finally {
+					executorService.shutdown();
 				}
 
 				pl.done();
@@ -508,6 +599,7 @@ public class CHDMinimalPerfectHashFunction<T> extends AbstractHashFunction<T> im
 				LOGGER.warn("Found duplicate. Recomputing triples...");
 				chunkedHashStore.reset(r.nextLong());
 				chunkedHashStore.addAll(keys.iterator());
+				Arrays.fill(offsetNumBucketsSeed, 0);
 			}
 		}
 
@@ -574,6 +666,57 @@ public class CHDMinimalPerfectHashFunction<T> extends AbstractHashFunction<T> im
 		if (n == 0) return defRetValue;
 		final long[] triple = new long[3];
 		Hashes.spooky4(transform.toBitVector((T)key), globalSeed, triple);
+		return getLongByTriple(triple);
+	}
+
+	/**
+	 * Returns the output of this minimal perfect hash function on a slice of a byte array.
+	 *
+	 * <p>
+	 * This method returns the same value as {@link #getLong(Object)} on a copy of the slice, provided
+	 * that this minimal perfect hash function has been built using
+	 * {@link TransformationStrategies#rawByteArray()} or {@link TransformationStrategies#byteArray()},
+	 * but it hashes the bytes in place, avoiding the creation of an array and of a bit vector.
+	 *
+	 * @param a a byte array.
+	 * @param offset the offset of the first byte of the key.
+	 * @param length the length of the key in bytes.
+	 * @return the output of this minimal perfect hash function on the given key.
+	 * @throws UnsupportedOperationException if this minimal perfect hash function has not been built
+	 *             using one of the strategies above.
+	 */
+	public long getLong(final byte[] a, final int offset, final int length) {
+		final boolean lexicographic = Hashes.lexicographic(transform);
+		if (n == 0) return defRetValue;
+		final long[] triple = new long[3];
+		Hashes.spooky4(a, offset, length, lexicographic, globalSeed, triple);
+		return getLongByTriple(triple);
+	}
+
+	/**
+	 * Returns the output of this minimal perfect hash function on a slice of a byte buffer.
+	 *
+	 * <p>
+	 * This method behaves like {@link #getLong(byte[], int, int)}, but reads the key from a (possibly
+	 * direct or memory-mapped) byte buffer using absolute positioning.
+	 *
+	 * @param buffer a byte buffer.
+	 * @param offset the index of the first byte of the key.
+	 * @param length the length of the key in bytes.
+	 * @return the output of this minimal perfect hash function on the given key.
+	 * @throws UnsupportedOperationException if this minimal perfect hash function has not been built
+	 *             using {@link TransformationStrategies#rawByteArray()} or
+	 *             {@link TransformationStrategies#byteArray()}.
+	 */
+	public long getLong(final ByteBuffer buffer, final int offset, final int length) {
+		final boolean lexicographic = Hashes.lexicographic(transform);
+		if (n == 0) return defRetValue;
+		final long[] triple = new long[3];
+		Hashes.spooky4(buffer, offset, length, lexicographic, globalSeed, triple);
+		return getLongByTriple(triple);
+	}
+
+	private long getLongByTriple(final long[] triple) {
 		final int chunk = chunkShift == Long.SIZE ? 0 : (int)(triple[0] >>> chunkShift);
 		final int index = chunk * 3;
 		final long[] offsetNumBucketsSeed = this.offsetNumBucketsSeed;
@@ -0,0 +1,137 @@
+package it.unimi.dsi.sux4j.mph;
+
+/*
+ * Sux4J: Succinct data structures for Java
+ *
+ * Copyright (C) 2020 Sebastiano Vigna
+ *
+ *  This library is free software; you can redistribute it and/or modify it
+ *  under the terms of the GNU Lesser General Public License as published by the Free
+ *  Software Foundation; either version 3 of the License, or (at your option)
+ *  any later version.
+ *
+ *  This library is distributed in the hope that it will be useful, but
+ *  WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ *  or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License
+ *  for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with this program; if not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+import it.unimi.dsi.sux4j.io.BucketedHashStore;
+
+/**
+ * A listener receiving timing and size information about the phases of the construction of a
+ * function.
+ *
+ * <p>
+ * The construction of a function based on a {@link BucketedHashStore} goes through several
+ * phases: keys are transformed, hashed and written to disk segments ({@linkplain #ingested
+ * ingestion}); each segment is read back ({@linkplain #segmentRead reading}) and sorted
+ * ({@linkplain #segmentSorted sorting}) by one of several solver threads, which then
+ * {@linkplain #bucketSolved solves} the linear system associated with each bucket of the segment,
+ * possibly after some retries. Since the offset of each bucket in the data of the function is
+ * known, solutions are written directly in place; solver threads might however
+ * {@linkplain #solverCompleted wait} for the thread processing the previous segment to hand over
+ * the bucket crossing the segment boundary, and for other threads writing in the words shared
+ * with neighbouring buckets. Finally, the data of the function is {@linkplain #dataBuilt built}
+ * (possibly by compaction) and {@linkplain #signaturesBuilt signatures} are generated. Durations
+ * are expressed in nanoseconds.
+ *
+ * <p>
+ * Listeners can be set using the {@code listener()} method of the builder of
+ * {@link GOV3Function}, {@link GOV4Function} and {@link GOVMinimalPerfectHashFunction}, or directly
+ * on a {@linkplain BucketedHashStore#listener(ConstructionListener) bucketed hash store}.
+ *
+ * <p>
+ * <strong>Warning</strong>: since buckets are solved in parallel, {@link #bucketSolved(int, int,
+ * int, long)} might be called concurrently by several threads; the same is true of
+ * {@link #segmentRead(int, long, long, long)} and {@link #segmentSorted(int, long, long)} when
+ * segments are
+ * {@linkplain BucketedHashStore#parallelForEach(BucketedHashStore.BucketConsumer, int) processed in parallel}.
+ * Implementations must be thread safe.
+ *
+ * <p>
+ * All methods have an empty default implementation.
+ *
+ * @see ConstructionStatistics
+ * @since 5.1.0
+ */
+public interface ConstructionListener {
+	/**
+	 * Called when a batch of keys has been added to a bucketed hash store.
+	 *
+	 * @param keys the number of keys added.
+	 * @param bytes the number of bytes written to disk segments.
+	 * @param nanos the time spent transforming, hashing and writing the keys.
+	 */
+	default void ingested(final long keys, final long bytes, final long nanos) {}
+
+	/**
+	 * Called when a disk segment has been read back from disk.
+	 *
+	 * @param segment the index of the segment.
+	 * @param signatures the number of signatures in the segment.
+	 * @param bytes the number of bytes read.
+	 * @param nanos the time spent reading the segment.
+	 */
+	default void segmentRead(final int segment, final long signatures, final long bytes, final long nanos) {}
+
+	/**
+	 * Called when a disk segment has been sorted.
+	 *
+	 * @param segment the index of the segment.
+	 * @param signatures the number of signatures sorted.
+	 * @param nanos the time spent sorting the segment.
+	 */
+	default void segmentSorted(final int segment, final long signatures, final long nanos) {}
+
+	/**
+	 * Called when the system associated with a bucket has been solved.
+	 *
+	 * @param bucket the index of the bucket.
+	 * @param keys the number of keys in the bucket.
+	 * @param attempts the number of local seeds tried (one if the first system was solvable).
+	 * @param nanos the time spent generating and solving systems.
+	 */
+	default void bucketSolved(final int bucket, final int keys, final int attempts, final long nanos) {}
+
+	/**
+	 * Called when all solver threads have completed their work.
+	 *
+	 * @param queueWaitNanos the time spent by solver threads waiting for buckets to solve, that is,
+	 *            waiting for the thread processing the previous segment to hand over the bucket
+	 *            crossing the segment boundary (see {@link BucketedHashStore#waitNanos()}), summed
+	 *            over all threads.
+	 * @param outputWaitNanos the time spent by solver threads waiting to write solutions, that is,
+	 *            waiting for other threads writing in the words shared with neighbouring buckets,
+	 *            summed over all threads.
+	 */
+	default void solverCompleted(final long queueWaitNanos, final long outputWaitNanos) {}
+
+	/**
+	 * Called when a duplicate signature has been found, and the construction restarts with a
+	 * different seed.
+	 */
+	default void duplicateFound() {}
+
+	/**
+	 * Called when the data of the function has been built from the solutions.
+	 *
+	 * @param compacted whether the data has been compacted.
+	 * @param bits the number of bits of the data.
+	 * @param nanos the time spent building the data.
+	 */
+	default void dataBuilt(final boolean compacted, final long bits, final long nanos) {}
+
+	/**
+	 * Called when the signatures of the function have been built.
+	 *
+	 * @param signatures the number of signatures.
+	 * @param bits the number of bits of the signatures.
+	 * @param nanos the time spent building the signatures.
+	 */
+	default void signaturesBuilt(final long signatures, final long bits, final long nanos) {}
+}
@@ -0,0 +1,129 @@
+package it.unimi.dsi.sux4j.mph;
+
+/*
+ * Sux4J: Succinct data structures for Java
+ *
+ * Copyright (C) 2020 Sebastiano Vigna
+ *
+ *  This library is free software; you can redistribute it and/or modify it
+ *  under the terms of the GNU Lesser General Public License as published by the Free
+ *  Software Foundation; either version 3 of the License, or (at your option)
+ *  any later version.
+ *
+ *  This library is distributed in the hope that it will be useful, but
+ *  WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ *  or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License
+ *  for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with this program; if not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+import java.util.concurrent.atomic.LongAdder;
+
+import it.unimi.dsi.Util;
+
+/**
+ * A {@linkplain ConstructionListener construction listener} accumulating totals for each phase.
+ *
+ * <p>
+ * An instance of this class can be passed to several constructions; totals will be accumulated.
+ * The {@linkplain #toString() string representation} of an instance is a one-line summary suitable
+ * for logging, and the totals are available through public fields.
+ *
+ * @since 5.1.0
+ */
+public class ConstructionStatistics implements ConstructionListener {
+	/** The number of keys ingested. */
+	public final LongAdder ingestedKeys = new LongAdder();
+	/** The number of bytes written to disk segments. */
+	public final LongAdder ingestedBytes = new LongAdder();
+	/** The time spent ingesting keys. */
+	public final LongAdder ingestNanos = new LongAdder();
+	/** The number of bytes read from disk segments. */
+	public final LongAdder readBytes = new LongAdder();
+	/** The time spent reading disk segments. */
+	public final LongAdder readNanos = new LongAdder();
+	/** The number of signatures sorted. */
+	public final LongAdder sortedSignatures = new LongAdder();
+	/** The time spent sorting disk segments. */
+	public final LongAdder sortNanos = new LongAdder();
+	/** The number of buckets solved. */
+	public final LongAdder buckets = new LongAdder();
+	/** The number of failed attempts at solving buckets. */
+	public final LongAdder retries = new LongAdder();
+	/** The time spent solving buckets, summed over all threads. */
+	public final LongAdder solveNanos = new LongAdder();
+	/** The time spent by solvers waiting for buckets handed over from the previous segment, summed over all threads. */
+	public final LongAdder queueWaitNanos = new LongAdder();
+	/** The time spent by solvers waiting to write solutions, summed over all threads. */
+	public final LongAdder outputWaitNanos = new LongAdder();
+	/** The number of duplicates found. */
+	public final LongAdder duplicates = new LongAdder();
+	/** The time spent building data. */
+	public final LongAdder dataNanos = new LongAdder();
+	/** The time spent building signatures. */
+	public final LongAdder signatureNanos = new LongAdder();
+
+	@Override
+	public void ingested(final long keys, final long bytes, final long nanos) {
+		ingestedKeys.add(keys);
+		ingestedBytes.add(bytes);
+		ingestNanos.add(nanos);
+	}
+
+	@Override
+	public void segmentRead(final int segment, final long signatures, final long bytes, final long nanos) {
+		readBytes.add(bytes);
+		readNanos.add(nanos);
+	}
+
+	@Override
+	public void segmentSorted(final int segment, final long signatures, final long nanos) {
+		sortedSignatures.add(signatures);
+		sortNanos.add(nanos);
+	}
+
+	@Override
+	public void bucketSolved(final int bucket, final int keys, final int attempts, final long nanos) {
+		buckets.increment();
+		retries.add(attempts - 1);
+		solveNanos.add(nanos);
+	}
+
+	@Override
+	public void solverCompleted(final long queueWaitNanos, final long outputWaitNanos) {
+		this.queueWaitNanos.add(queueWaitNanos);
+		this.outputWaitNanos.add(outputWaitNanos);
+	}
+
+	@Override
+	public void duplicateFound() {
+		duplicates.increment();
+	}
+
+	@Override
+	public void dataBuilt(final boolean compacted, final long bits, final long nanos) {
+		dataNanos.add(nanos);
+	}
+
+	@Override
+	public void signaturesBuilt(final long signatures, final long bits, final long nanos) {
+		signatureNanos.add(nanos);
+	}
+
+	private static String seconds(final LongAdder nanos) {
+		return Util.format(nanos.sum() / 1E9) + "s";
+	}
+
+	@Override
+	public String toString() {
+		return "ingest: " + ingestedKeys.sum() + " keys, " + ingestedBytes.sum() + " bytes, " + seconds(ingestNanos) +
+				"; read: " + readBytes.sum() + " bytes, " + seconds(readNanos) +
+				"; sort: " + sortedSignatures.sum() + " signatures, " + seconds(sortNanos) +
+				"; solve: " + buckets.sum() + " buckets, " + retries.sum() + " retries, " + seconds(solveNanos) +
+				"; queue wait: " + seconds(queueWaitNanos) + "; output wait: " + seconds(outputWaitNanos) +
+				"; duplicates: " + duplicates.sum() + "; data: " + seconds(dataNanos) + "; signatures: " + seconds(signatureNanos);
+	}
+}
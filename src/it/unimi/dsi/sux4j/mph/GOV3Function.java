@@ -24,6 +24,7 @@ import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStreamReader;
+import java.io.RandomAccessFile;
 import java.io.Serializable;
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
@@ -31,13 +32,7 @@ import java.nio.channels.FileChannel;
 import java.nio.charset.Charset;
 import java.util.Arrays;
 import java.util.Collection;
-import java.util.Iterator;
-import java.util.concurrent.ArrayBlockingQueue;
-import java.util.concurrent.ExecutionException;
-import java.util.concurrent.ExecutorCompletionService;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
-import java.util.concurrent.atomic.AtomicInteger;
+import java.util.List;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.zip.GZIPInputStream;
 
@@ -59,7 +54,6 @@ import com.martiansoftware.jsap.stringparsers.ForNameStringParser;
 import it.unimi.dsi.Util;
 import it.unimi.dsi.big.io.FileLinesByteArrayCollection;
 import it.unimi.dsi.bits.BitVector;
-import it.unimi.dsi.bits.BitVectors;
 import it.unimi.dsi.bits.Fast;
 import it.unimi.dsi.bits.LongArrayBitVector;
 import it.unimi.dsi.bits.LongBigArrayBitVector;
@@ -67,6 +61,7 @@ import it.unimi.dsi.bits.TransformationStrategies;
 import it.unimi.dsi.bits.TransformationStrategy;
 import it.unimi.dsi.fastutil.Size64;
 import it.unimi.dsi.fastutil.io.BinIO;
+import it.unimi.dsi.fastutil.longs.AbstractLongBigList;
 import it.unimi.dsi.fastutil.longs.LongBigList;
 import it.unimi.dsi.fastutil.longs.LongIterable;
 import it.unimi.dsi.fastutil.longs.LongIterator;
@@ -75,18 +70,16 @@ import it.unimi.dsi.fastutil.objects.AbstractObject2LongFunction;
 import it.unimi.dsi.io.FastBufferedReader;
 import it.unimi.dsi.io.FileLinesCollection;
 import it.unimi.dsi.io.LineIterator;
-import it.unimi.dsi.io.OfflineIterable;
-import it.unimi.dsi.io.OfflineIterable.OfflineIterator;
 import it.unimi.dsi.lang.MutableString;
 import it.unimi.dsi.logging.ProgressLogger;
 import it.unimi.dsi.sux4j.bits.Rank;
 import it.unimi.dsi.sux4j.bits.Rank16;
 import it.unimi.dsi.sux4j.io.BucketedHashStore;
-import it.unimi.dsi.sux4j.io.BucketedHashStore.Bucket;
 import it.unimi.dsi.sux4j.io.BucketedHashStore.DuplicateException;
 import it.unimi.dsi.sux4j.mph.solve.Linear3SystemSolver;
+import it.unimi.dsi.sux4j.util.LongWordStorage;
+import it.unimi.dsi.util.ByteBufferLongBigList;
 import it.unimi.dsi.util.XoRoShiRo128PlusRandomGenerator;
-import it.unimi.dsi.util.concurrent.ReorderingBlockingQueue;
 
 /**
  * An immutable function stored quasi-succinctly using the {@linkplain Linear3SystemSolver
@@ -161,8 +154,10 @@ import it.unimi.dsi.util.concurrent.ReorderingBlockingQueue;
  * <h2>Multithreading</h2>
  *
  * <p>
- * This implementation is multithreaded: each bucket returned by the {@link BucketedHashStore} is
- * processed independently. By default, this class uses {@link Runtime#availableProcessors()}
+ * This implementation is multithreaded: each thread reads, sorts and solves its own disk segments
+ * of the {@link BucketedHashStore} (see {@link BucketedHashStore#parallelForEach(BucketedHashStore.BucketConsumer, int, java.util.function.IntToLongFunction)}),
+ * and buckets are processed independently. Since the offset of each bucket is known in advance, solutions are written
+ * directly into the final data array. By default, this class uses {@link Runtime#availableProcessors()}
  * parallel threads, but by default no more than 4. If you wish to set a specific number of threads,
  * you can do so through the system property {@value #NUMBER_OF_THREADS_PROPERTY}.
  *
@@ -186,6 +181,21 @@ import it.unimi.dsi.util.concurrent.ReorderingBlockingQueue;
  * ranking structure}; the current implementation uses {@link Rank16}), but has slightly slower
  * lookups.
  *
+ * <h2>Memory mapping</h2>
+ *
+ * <p>
+ * A non-compacted function without signatures can be {@linkplain #dump(String) dumped} in a flat
+ * format that is readable by the C code distributed with Sux4J. The same format can be
+ * {@linkplain #map(String, TransformationStrategy) memory-mapped} back into a {@link GOV3Function}:
+ * in this case, the data will not be loaded into core memory, but rather accessed directly from the
+ * mapping, so loading is almost instantaneous and several processes can share the same mapped
+ * file.
+ *
+ * <p>
+ * Alternatively, you can specify a {@linkplain Builder#storage(LongWordStorage) storage strategy}
+ * to keep the data of a function outside of the Java heap, for instance
+ * {@linkplain LongWordStorage#offHeap() in direct memory}.
+ *
  * @see GOV4Function
  * @author Sebastiano Vigna
  * @since 4.0.0
@@ -193,8 +203,6 @@ import it.unimi.dsi.util.concurrent.ReorderingBlockingQueue;
 
 public class GOV3Function<T> extends AbstractObject2LongFunction<T> implements Serializable, Size64 {
 	private static final long serialVersionUID = 2L;
-	private static final LongArrayBitVector END_OF_SOLUTION_QUEUE = LongArrayBitVector.getInstance();
-	private static final Bucket END_OF_BUCKET_QUEUE = new Bucket();
 	private static final Logger LOGGER = LoggerFactory.getLogger(GOV3Function.class);
 	private static final boolean ASSERTS = false;
 	private static final boolean DEBUG = false;
@@ -218,6 +226,25 @@ public class GOV3Function<T> extends AbstractObject2LongFunction<T> implements S
 	/** The system property used to set the number of parallel threads. */
 	public static final String NUMBER_OF_THREADS_PROPERTY = "it.unimi.dsi.sux4j.mph.threads";
 
+	/**
+	 * Returns the number of variables of the system associated with a bucket.
+	 *
+	 * @param size the number of keys in the bucket.
+	 * @return the number of variables of the system of the bucket.
+	 */
+	static long bucketDataSize(final long size) {
+		return Math.max(C_TIMES_256 * size >>> 8, size + 1);
+	}
+
+	/**
+	 * Returns the number of solver threads, as set by {@link #NUMBER_OF_THREADS_PROPERTY}.
+	 *
+	 * @return the number of solver threads.
+	 */
+	static int numberOfThreads() {
+		return Integer.parseInt(System.getProperty(NUMBER_OF_THREADS_PROPERTY, Integer.toString(Math.min(4, Runtime.getRuntime().availableProcessors()))));
+	}
+
 	/** A builder class for {@link GOV3Function}. */
 	public static class Builder<T> {
 		protected Iterable<? extends T> keys;
@@ -229,6 +256,8 @@ public class GOV3Function<T> extends AbstractObject2LongFunction<T> implements S
 		protected int outputWidth = -1;
 		protected boolean indirect;
 		protected boolean compacted;
+		protected LongWordStorage storage;
+		protected ConstructionListener listener;
 		/** Whether {@link #build()} has already been called. */
 		protected boolean built;
 
@@ -408,6 +437,39 @@ public class GOV3Function<T> extends AbstractObject2LongFunction<T> implements S
 			return this;
 		}
 
+		/**
+		 * Specifies a storage strategy for the data of the function.
+		 *
+		 * <p>
+		 * By default, data is stored in a bit vector on the heap. If you specify a storage strategy,
+		 * solutions will be written during the construction directly into words allocated by the
+		 * strategy (and so will compacted data), which makes it possible, for example, to build and
+		 * keep large functions {@linkplain LongWordStorage#offHeap() off-heap}.
+		 *
+		 * @param storage a storage strategy for the data of the function.
+		 * @return this builder.
+		 */
+		public Builder<T> storage(final LongWordStorage storage) {
+			this.storage = storage;
+			return this;
+		}
+
+		/**
+		 * Specifies a listener that will receive timing and size information about the phases of
+		 * the construction.
+		 *
+		 * <p>
+		 * The listener will be set also on the {@linkplain #store(BucketedHashStore) bucketed hash
+		 * store}, if you specified one.
+		 *
+		 * @param listener a construction listener.
+		 * @return this builder.
+		 */
+		public Builder<T> listener(final ConstructionListener listener) {
+			this.listener = listener;
+			return this;
+		}
+
 		/**
 		 * Builds a new function.
 		 *
@@ -419,12 +481,14 @@ public class GOV3Function<T> extends AbstractObject2LongFunction<T> implements S
 			built = true;
 			if (transform == null) if (bucketedHashStore != null) transform = bucketedHashStore.transform();
 			else throw new IllegalArgumentException("You must specify a TransformationStrategy, either explicitly or via a given BucketedHashStore");
-			return new GOV3Function<>(keys, transform, signatureWidth, values, outputWidth, compacted, tempDir, bucketedHashStore, indirect);
+			return new GOV3Function<>(keys, transform, signatureWidth, values, outputWidth, compacted, tempDir, bucketedHashStore, indirect, storage, listener);
 		}
 	}
 
 	/** The expected bucket size. */
 	public final static int BUCKET_SIZE = 1500;
+	/** The number of signatures processed in each phase of {@link #getLongsBySignature(long[][], long[])}. */
+	final static int BATCH_SIZE = 256;
 	/** The multiplier for buckets. */
 	private final long multiplier;
 	/** The number of keys. */
@@ -485,8 +549,40 @@ public class GOV3Function<T> extends AbstractObject2LongFunction<T> implements S
 	 *            <code>values</code> is a {@link LongIterable} that must be accessed to retrieve the
 	 *            actual values.
 	 */
+	protected GOV3Function(final Iterable<? extends T> keys, final TransformationStrategy<? super T> transform, final int signatureWidth, final LongIterable values, final int dataWidth, final boolean compacted, final File tempDir, final BucketedHashStore<T> bucketedHashStore, final boolean indirect) throws IOException {
+		this(keys, transform, signatureWidth, values, dataWidth, compacted, tempDir, bucketedHashStore, indirect, null, null);
+	}
+
+	/**
+	 * Creates a new function for the given keys and values, storing its data using a given
+	 * strategy and notifying a listener of the phases of the construction.
+	 *
+	 * @param keys the keys in the domain of the function, or {@code null}.
+	 * @param transform a transformation strategy for the keys.
+	 * @param signatureWidth a positive number for a signature width, 0 for no signature, a negative
+	 *            value for a self-signed function; if nonzero, {@code values} must be {@code null} and
+	 *            {@code width} must be -1.
+	 * @param values values to be assigned to each element, in the same order of the iterator returned
+	 *            by <code>keys</code>; if {@code null}, the assigned value will the ordinal number of
+	 *            each element.
+	 * @param dataWidth the bit width of the <code>values</code>, or -1 if <code>values</code> is
+	 *            {@code null}.
+	 * @param compacted if true, the coefficients will be compacted.
+	 * @param tempDir a temporary directory for the store files, or {@code null} for the standard
+	 *            temporary directory.
+	 * @param bucketedHashStore a bucketed hash store containing the keys associated with their ranks
+	 *            (if there are no values, or {@code indirect} is true) or values, or {@code null}; the
+	 *            store can be unchecked, but in this case <code>keys</code> and <code>transform</code>
+	 *            must be non-{@code null}.
+	 * @param indirect if true, <code>bucketedHashStore</code> contains ordinal positions, and
+	 *            <code>values</code> is a {@link LongIterable} that must be accessed to retrieve the
+	 *            actual values.
+	 * @param storage a storage strategy for the data, or {@code null} to store data in a bit vector on
+	 *            the heap.
+	 * @param listener a construction listener, or {@code null}.
+	 */
 	@SuppressWarnings("resource")
-	protected GOV3Function(final Iterable<? extends T> keys, final TransformationStrategy<? super T> transform, final int signatureWidth, final LongIterable values, final int dataWidth, final boolean compacted, final File tempDir, BucketedHashStore<T> bucketedHashStore, final boolean indirect) throws IOException {
+	protected GOV3Function(final Iterable<? extends T> keys, final TransformationStrategy<? super T> transform, final int signatureWidth, final LongIterable values, final int dataWidth, final boolean compacted, final File tempDir, BucketedHashStore<T> bucketedHashStore, final boolean indirect, final LongWordStorage storage, final ConstructionListener listener) throws IOException {
 		this.transform = transform;
 
 		final boolean givenBucketedHashStore = bucketedHashStore != null;
@@ -504,10 +600,11 @@ public class GOV3Function<T> extends AbstractObject2LongFunction<T> implements S
 		if (bucketedHashStore == null) {
 			if (keys == null) throw new IllegalArgumentException("If you do not provide a bucketed hash store, you must provide the keys");
 			bucketedHashStore = new BucketedHashStore<>(transform, tempDir, -Math.min(signatureWidth, 0), pl);
+			bucketedHashStore.listener(listener);
 			bucketedHashStore.reset(r.nextLong());
 			if (values == null || indirect) bucketedHashStore.addAll(keys.iterator());
 			else bucketedHashStore.addAll(keys.iterator(), values.iterator());
-		}
+		} else if (listener != null) bucketedHashStore.listener(listener);
 		n = bucketedHashStore.size();
 		defRetValue = signatureWidth < 0 ? 0 : -1; // Self-signed maps get zero as default return value.
 
@@ -521,8 +618,13 @@ public class GOV3Function<T> extends AbstractObject2LongFunction<T> implements S
 
 		width = signatureWidth < 0 ? -signatureWidth : dataWidth == -1 ? Math.max(0, Fast.ceilLog2(n)) : dataWidth;
 
-		// Candidate data; might be discarded for compaction.
-		final OfflineIterable<BitVector, LongArrayBitVector> offlineData = new OfflineIterable<>(BitVectors.OFFLINE_SERIALIZER, LongArrayBitVector.getInstance());
+		// Each bucket needs at most C_TIMES_256 * size >>> 8 + 1 variables, plus one for the final zero
+		final long maxM = (C_TIMES_256 * n >>> 8) + numBuckets + 1;
+		final boolean big = maxM * width >= (Integer.MAX_VALUE - 8L) * Long.SIZE;
+		// Candidate data, directly written by the solvers; might be discarded for compaction.
+		BitVector rawData = null;
+		// The words of the candidate data, if they have been allocated by the storage strategy.
+		LongBigList rawWords = null;
 
 		int duplicates = 0;
 
@@ -535,95 +637,49 @@ public class GOV3Function<T> extends AbstractObject2LongFunction<T> implements S
 			final AtomicLong unsolvable = new AtomicLong();
 
 			try {
-				final int numberOfThreads = Integer.parseInt(System.getProperty(NUMBER_OF_THREADS_PROPERTY, Integer.toString(Math.min(4, Runtime.getRuntime().availableProcessors()))));
-				final ArrayBlockingQueue<Bucket> bucketQueue = new ArrayBlockingQueue<>(numberOfThreads * 8);
-				final ReorderingBlockingQueue<LongArrayBitVector> queue = new ReorderingBlockingQueue<>(numberOfThreads * 128);
-				final ExecutorService executorService = Executors.newFixedThreadPool(numberOfThreads + 2);
-				final ExecutorCompletionService<Void> executorCompletionService = new ExecutorCompletionService<>(executorService);
+				final int numberOfThreads = numberOfThreads();
+				final SolutionWriter solutionWriter;
+				if (storage != null) {
+					rawWords = storage.allocate((maxM * width + Long.SIZE - 1) / Long.SIZE);
+					solutionWriter = new SolutionWriter(rawWords, width);
+				} else {
+					rawData = big ? LongBigArrayBitVector.ofLength(maxM * width + Long.SIZE - 1 & -Long.SIZE) : LongArrayBitVector.ofLength(maxM * width);
+					solutionWriter = big ? new SolutionWriter((LongBigArrayBitVector)rawData, width) : new SolutionWriter((LongArrayBitVector)rawData, width);
+				}
+
+				// Threads read, sort and solve their own segments, writing solutions at the offset of their bucket
+				final long totalDataSize = bucketedHashStore.parallelForEach(bucket -> {
+					final long bucketDataSize = bucketDataSize(bucket.size());
+					assert bucketDataSize <= Integer.MAX_VALUE;
+					long seed = 0;
+					int attempts = 1;
+					final long solveStart = System.nanoTime();
+					final Linear3SystemSolver solver = new Linear3SystemSolver((int)bucketDataSize, bucket.size());
 
-				executorCompletionService.submit(() -> {
 					for (;;) {
-						final LongArrayBitVector data = queue.take();
-						if (data == END_OF_SOLUTION_QUEUE) return null;
-						offlineData.add(data);
+						final boolean solved = solver.generateAndSolve(bucket, seed, bucket.valueList(indirect ? values : null));
+						unsolvable.addAndGet(solver.unsolvable);
+						if (solved) break;
+						seed += SEED_STEP;
+						attempts++;
+						if (seed == 0) throw new AssertionError("Exhausted local seeds");
 					}
-				});
-
-				final BucketedHashStore<T> chs = bucketedHashStore;
-				executorCompletionService.submit(() -> {
-					try {
-						final Iterator<Bucket> iterator = chs.iterator();
-						for (int i1 = 0; iterator.hasNext(); i1++) {
-							final Bucket bucket = new Bucket(iterator.next());
-							assert i1 == bucket.index();
-							final long bucketDataSize = Math.max(C_TIMES_256 * bucket.size() >>> 8, bucket.size() + 1);
-							assert bucketDataSize <= Integer.MAX_VALUE;
-							synchronized (offsetAndSeed) {
-								offsetAndSeed[i1 + 1] = offsetAndSeed[i1] + bucketDataSize;
-								assert offsetAndSeed[i1 + 1] <= OFFSET_MASK + 1;
-							}
-							bucketQueue.put(bucket);
-						}
-					} finally {
-						for (int i2 = numberOfThreads; i2-- != 0;) bucketQueue.put(END_OF_BUCKET_QUEUE);
-					}
-					return null;
-				});
+					if (listener != null) listener.bucketSolved(bucket.index(), bucket.size(), attempts, System.nanoTime() - solveStart);
 
-				final AtomicInteger activeThreads = new AtomicInteger(numberOfThreads);
-				for (int i = numberOfThreads; i-- != 0;) executorCompletionService.submit(() -> {
-					Thread.currentThread().setPriority(Thread.MIN_PRIORITY);
-					long bucketTime = 0, outputTime = 0;
-					for (;;) {
-						long start = System.nanoTime();
-						final Bucket bucket = bucketQueue.take();
-						bucketTime += System.nanoTime() - start;
-						if (bucket == END_OF_BUCKET_QUEUE) {
-							if (activeThreads.decrementAndGet() == 0) queue.put(END_OF_SOLUTION_QUEUE, numBuckets);
-							LOGGER.debug("Queue waiting time: " + Util.format(bucketTime / 1E9) + "s");
-							LOGGER.debug("Output waiting time: " + Util.format(outputTime / 1E9) + "s");
-							return null;
-						}
-						long seed = 0;
-						final Linear3SystemSolver solver = new Linear3SystemSolver((int)(offsetAndSeed[bucket.index() + 1] - offsetAndSeed[bucket.index()] & OFFSET_MASK), bucket.size());
-
-						for (;;) {
-							final boolean solved = solver.generateAndSolve(bucket, seed, bucket.valueList(indirect ? values : null));
-							unsolvable.addAndGet(solver.unsolvable);
-							if (solved) break;
-							seed += SEED_STEP;
-							if (seed == 0) throw new AssertionError("Exhausted local seeds");
-						}
-
-						synchronized (offsetAndSeed) {
-							offsetAndSeed[bucket.index()] |= seed;
-						}
-
-						final LongArrayBitVector dataBitVector = LongArrayBitVector.getInstance();
-						final LongBigList data = dataBitVector.asLongBigList(width);
-						for (final long l : solver.solution) data.add(l);
-
-						start = System.nanoTime();
-						queue.put(dataBitVector, bucket.index());
-						outputTime += System.nanoTime() - start;
-						synchronized (pl) {
-							pl.update();
-						}
+					assert bucket.offset() <= OFFSET_MASK;
+					offsetAndSeed[bucket.index()] = bucket.offset() | seed;
+
+					solutionWriter.write(solver.solution, bucket.offset());
+					synchronized (pl) {
+						pl.update();
 					}
-				});
-
-				try {
-					for (int i = numberOfThreads + 2; i-- != 0;) executorCompletionService.take().get();
-				} catch (final InterruptedException e) {
-					throw new RuntimeException(e);
-				} catch (final ExecutionException e) {
-					final Throwable cause = e.getCause();
-					if (cause instanceof DuplicateException) throw (DuplicateException)cause;
-					if (cause instanceof IOException) throw (IOException)cause;
-					throw new RuntimeException(cause);
-				} finally {
-					executorService.shutdown();
-				}
+				}, numberOfThreads, GOV3Function::bucketDataSize);
+
+				assert totalDataSize <= OFFSET_MASK;
+				offsetAndSeed[numBuckets] = totalDataSize;
+				if (listener != null) listener.solverCompleted(bucketedHashStore.waitNanos(), solutionWriter.waitNanos());
+				LOGGER.debug("Bucket wait time: " + Util.format(bucketedHashStore.waitNanos() / 1E9) + "s; output wait time: " + Util.format(solutionWriter.waitNanos() / 1E9) + "s");
+
 				LOGGER.info("Unsolvable systems: " + unsolvable.get() + "/" + (unsolvable.get() + numBuckets) + " (" + Util.format(100.0 * unsolvable.get() / (unsolvable.get() + numBuckets)) + "%)");
 
 				pl.done();
@@ -632,11 +688,13 @@ public class GOV3Function<T> extends AbstractObject2LongFunction<T> implements S
 				if (keys == null) throw new IllegalStateException("You provided no keys, but the bucketed hash store was not checked");
 				if (duplicates++ > 3) throw new IllegalArgumentException("The input list contains duplicates");
 				LOGGER.warn("Found duplicate. Recomputing signatures...");
+				if (listener != null) listener.duplicateFound();
 				bucketedHashStore.reset(r.nextLong());
 				pl.itemsName = "keys";
 				if (values == null || indirect) bucketedHashStore.addAll(keys.iterator());
 				else bucketedHashStore.addAll(keys.iterator(), values.iterator());
-				offlineData.clear();
+				rawData = null;
+				rawWords = null;
 				Arrays.fill(offsetAndSeed, 0);
 			}
 		}
@@ -645,76 +703,54 @@ public class GOV3Function<T> extends AbstractObject2LongFunction<T> implements S
 
 		globalSeed = bucketedHashStore.seed();
 
-		// Check for compaction
-		long nonZero = 0;
-		m = offsetAndSeed[offsetAndSeed.length - 1];
-		OfflineIterator<BitVector, LongArrayBitVector> iterator;
+		final long dataStart = System.nanoTime();
+		m = offsetAndSeed[numBuckets];
+		final LongBigList rawList;
+		if (rawWords == null) {
+			rawData.length(m * width);
+			rawList = rawData.asLongBigList(width);
+			rawList.add(0);
+		} else rawList = new WordLongBigList(rawWords, 0, width, m + 1); // The words after the solutions are zero
 
 		if (compacted) {
 			LOGGER.info("Compacting...");
-			for (iterator = offlineData.iterator(); iterator.hasNext();) {
-				final LongBigList data = iterator.next().asLongBigList(width);
-				for (long i = 0; i < data.size64(); i++) if (data.getLong(i) != 0) nonZero++;
-			}
-			iterator.close();
+			// Check for compaction
+			long nonZero = 0;
+			for (long i = 0; i < m; i++) if (rawList.getLong(i) != 0) nonZero++;
 
 			marker = LongArrayBitVector.ofLength(m);
 
+			// The compacted data is written in place, and it ends with a zero
 			final LongBigList newData;
-			if ((nonZero + 1) * width < (Integer.MAX_VALUE - 8L) * Long.SIZE) {
-				final LongArrayBitVector dataBitVector = LongArrayBitVector.getInstance((nonZero + 1) * width);
-				newData = dataBitVector.asLongBigList(width);
-			} else {
-				final LongBigArrayBitVector dataBitVector = LongBigArrayBitVector.getInstance((nonZero + 1) * width);
-				newData = dataBitVector.asLongBigList(width);
-			}
-
-			long j = 0;
-
-			for (iterator = offlineData.iterator(); iterator.hasNext();) {
-				final LongBigList data = iterator.next().asLongBigList(width);
-				for (long i = 0; i < data.size64(); i++, j++) {
-					final long value = data.getLong(i);
-					if (value != 0) {
-						marker.set(j);
-						newData.add(value);
-					}
+			if (storage != null) newData = new WordLongBigList(storage.allocate(((nonZero + 1) * width + Long.SIZE - 1) / Long.SIZE), 0, width, nonZero + 1);
+			else if ((nonZero + 1) * width < (Integer.MAX_VALUE - 8L) * Long.SIZE) newData = LongArrayBitVector.ofLength((nonZero + 1) * width).asLongBigList(width);
+			else newData = LongBigArrayBitVector.ofLength((nonZero + 1) * width).asLongBigList(width);
+
+			for (long i = 0, j = 0; i < m; i++) {
+				final long value = rawList.getLong(i);
+				if (value != 0) {
+					marker.set(i);
+					newData.set(j++, value);
 				}
 			}
-			iterator.close();
 
 			rank = new Rank16(marker);
 
 			if (ASSERTS) {
-				long k = 0;
-				for (iterator = offlineData.iterator(); iterator.hasNext();) {
-					final LongBigList data = iterator.next().asLongBigList(width);
-					for (long i = 0; i < data.size64(); i++, k++) {
-						final long value = data.getLong(i);
-						assert (value != 0) == marker.getBoolean(k);
-						if (value != 0) assert value == newData.getLong(rank.rank(k)) : value + " != " + newData.getLong(rank.rank(k));
-					}
+				for (long i = 0; i < m; i++) {
+					final long value = rawList.getLong(i);
+					assert (value != 0) == marker.getBoolean(i);
+					if (value != 0) assert value == newData.getLong(rank.rank(i)) : value + " != " + newData.getLong(rank.rank(i));
 				}
-				iterator.close();
 			}
-			this.data = newData;
+			data = newData;
 		} else {
-			if ((m + 1) * width < (Integer.MAX_VALUE - 8L) * Long.SIZE) {
-				final LongArrayBitVector dataBitVector = LongArrayBitVector.getInstance((m + 1) * width);
-				this.data = dataBitVector.asLongBigList(this.width);
-				for (iterator = offlineData.iterator(); iterator.hasNext();) dataBitVector.append(iterator.next());
-			} else {
-				final LongBigArrayBitVector dataBitVector = LongBigArrayBitVector.getInstance((m + 1) * width);
-				this.data = dataBitVector.asLongBigList(this.width);
-				for (iterator = offlineData.iterator(); iterator.hasNext();) dataBitVector.append(iterator.next());
-			}
-
+			data = rawList;
 			marker = null;
 			rank = null;
 		}
 
-		offlineData.close();
-		data.add(0);
+		if (listener != null) listener.dataBuilt(compacted, data.size64() * width, System.nanoTime() - dataStart);
 
 		LOGGER.info("Completed.");
 		LOGGER.debug("Forecast bit cost per element: " + (marker == null ? C * width : C + width + 0.126));
@@ -734,6 +770,132 @@ public class GOV3Function<T> extends AbstractObject2LongFunction<T> implements S
 		if (!givenBucketedHashStore) bucketedHashStore.close();
 	}
 
+	/**
+	 * Creates a new function with given data; used by {@link #map(String, TransformationStrategy)}.
+	 *
+	 * @param n the number of keys.
+	 * @param width the data width.
+	 * @param multiplier the multiplier for buckets.
+	 * @param globalSeed the seed used to generate the initial signature.
+	 * @param offsetAndSeed the offsets and local seeds of the buckets.
+	 * @param data the list of values that define the output of the function.
+	 * @param transform the transformation strategy for the keys.
+	 */
+	protected GOV3Function(final long n, final int width, final long multiplier, final long globalSeed, final long[] offsetAndSeed, final LongBigList data, final TransformationStrategy<? super T> transform) {
+		this.n = n;
+		this.width = width;
+		this.multiplier = multiplier;
+		this.globalSeed = globalSeed;
+		this.offsetAndSeed = offsetAndSeed;
+		this.m = offsetAndSeed[offsetAndSeed.length - 1];
+		this.data = data;
+		this.transform = transform;
+		marker = null;
+		rank = null;
+		signatureMask = 0;
+		signatures = null;
+		defRetValue = -1;
+	}
+
+	/**
+	 * A fixed-size list of fixed-width values backed by a {@link LongBigList} of 64-bit words.
+	 *
+	 * <p>
+	 * This class is used to access the data of a {@linkplain GOV3Function#map(String,
+	 * TransformationStrategy) memory-mapped function}, and of functions whose data has been written
+	 * into words allocated by a {@linkplain Builder#storage(LongWordStorage) storage strategy}. Values
+	 * can be {@linkplain #set(long, long) set} only if the underlying words can.
+	 */
+	protected static final class WordLongBigList extends AbstractLongBigList implements Serializable {
+		private static final long serialVersionUID = 0L;
+		/** The underlying list of words. */
+		private final LongBigList words;
+		/** The index in {@link #words} of the first word of data. */
+		private final long base;
+		/** The width of each value. */
+		private final int width;
+		/** A mask of {@link #width} bits. */
+		private final long mask;
+		/** The number of values. */
+		private final long size;
+
+		/**
+		 * Creates a new list of fixed-width values.
+		 *
+		 * @param words a list of words.
+		 * @param base the index in {@code words} of the first word of data.
+		 * @param width the width of each value.
+		 * @param size the number of values.
+		 */
+		public WordLongBigList(final LongBigList words, final long base, final int width, final long size) {
+			this.words = words;
+			this.base = base;
+			this.width = width;
+			this.mask = width == 0 ? 0 : -1L >>> Long.SIZE - width;
+			this.size = size;
+		}
+
+		@Override
+		public long getLong(final long index) {
+			if (width == 0) return 0;
+			final long start = index * width;
+			final long startWord = base + (start >>> 6);
+			final int startBit = (int)(start & 63);
+			if (startBit + width <= Long.SIZE) return words.getLong(startWord) >>> startBit & mask;
+			return (words.getLong(startWord) >>> startBit | words.getLong(startWord + 1) << -startBit) & mask;
+		}
+
+		@Override
+		public long set(final long index, final long value) {
+			if (width == 0) return 0;
+			final long old = getLong(index);
+			final long start = index * width;
+			final long startWord = base + (start >>> 6);
+			final int startBit = (int)(start & 63);
+			words.set(startWord, words.getLong(startWord) & ~(mask << startBit) | (value & mask) << startBit);
+			if (startBit + width > Long.SIZE) words.set(startWord + 1, words.getLong(startWord + 1) & ~(mask >>> -startBit) | (value & mask) >>> -startBit);
+			return old;
+		}
+
+		@Override
+		public long size64() {
+			return size;
+		}
+	}
+
+	/**
+	 * Memory-maps a function {@linkplain #dump(String) dumped} in a file.
+	 *
+	 * <p>
+	 * The data of the function is accessed directly from the mapping, so this method returns almost
+	 * instantaneously and the mapped pages are shared by all processes mapping the same file. Note
+	 * that since the dump format does not contain the transformation strategy, the latter must be
+	 * provided explicitly.
+	 *
+	 * <p>
+	 * The returned function cannot be serialized.
+	 *
+	 * @param file a file written by {@link #dump(String)}.
+	 * @param transform the transformation strategy used to build the dumped function.
+	 * @return a function reading its data from a mapping of {@code file}.
+	 */
+	public static <T> GOV3Function<T> map(final String file, final TransformationStrategy<? super T> transform) throws IOException {
+		try (final RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+			final LongBigList words = ByteBufferLongBigList.map(raf.getChannel(), ByteOrder.nativeOrder());
+			final long n = words.getLong(0);
+			final int width = (int)words.getLong(1);
+			final long multiplier = words.getLong(2);
+			final long globalSeed = words.getLong(3);
+			final long[] offsetAndSeed = new long[(int)words.getLong(4)];
+			for (int i = 0; i < offsetAndSeed.length; i++) offsetAndSeed[i] = words.getLong(5 + i);
+			final long base = 5 + offsetAndSeed.length;
+			final long numWords = words.getLong(base);
+			if (base + 1 + numWords != words.size64()) throw new IOException("File " + file + " has length " + words.size64() * Long.BYTES + ", but its header implies length " + (base + 1 + numWords) * Long.BYTES);
+			final long m = offsetAndSeed[offsetAndSeed.length - 1];
+			return new GOV3Function<>(n, width, multiplier, globalSeed, offsetAndSeed, new WordLongBigList(words, base + 1, width, m + 1), transform);
+		}
+	}
+
 	@Override
 	@SuppressWarnings("unchecked")
 	public long getLong(final Object o) {
@@ -742,6 +904,49 @@ public class GOV3Function<T> extends AbstractObject2LongFunction<T> implements S
 		return getLongBySignature(signature);
 	}
 
+	/**
+	 * Returns the output of this function on a slice of a byte array.
+	 *
+	 * <p>
+	 * This method returns the same value as {@link #getLong(Object)} on a copy of the slice, provided
+	 * that this function has been built using {@link TransformationStrategies#rawByteArray()} or
+	 * {@link TransformationStrategies#byteArray()}, but it hashes the bytes in place, avoiding the
+	 * creation of an array and of a bit vector.
+	 *
+	 * @param a a byte array.
+	 * @param offset the offset of the first byte of the key.
+	 * @param length the length of the key in bytes.
+	 * @return the output of this function on the given key.
+	 * @throws UnsupportedOperationException if this function has not been built using one of the
+	 *             strategies above.
+	 */
+	public long getLong(final byte[] a, final int offset, final int length) {
+		final long[] signature = new long[2];
+		Hashes.spooky4(a, offset, length, Hashes.lexicographic(transform), globalSeed, signature);
+		return getLongBySignature(signature);
+	}
+
+	/**
+	 * Returns the output of this function on a slice of a byte buffer.
+	 *
+	 * <p>
+	 * This method behaves like {@link #getLong(byte[], int, int)}, but reads the key from a (possibly
+	 * direct or memory-mapped) byte buffer using absolute positioning.
+	 *
+	 * @param buffer a byte buffer.
+	 * @param offset the index of the first byte of the key.
+	 * @param length the length of the key in bytes.
+	 * @return the output of this function on the given key.
+	 * @throws UnsupportedOperationException if this function has not been built using
+	 *             {@link TransformationStrategies#rawByteArray()} or
+	 *             {@link TransformationStrategies#byteArray()}.
+	 */
+	public long getLong(final ByteBuffer buffer, final int offset, final int length) {
+		final long[] signature = new long[2];
+		Hashes.spooky4(buffer, offset, length, Hashes.lexicographic(transform), globalSeed, signature);
+		return getLongBySignature(signature);
+	}
+
 	/**
 	 * Low-level access to the output of this function.
 	 *
@@ -755,17 +960,174 @@ public class GOV3Function<T> extends AbstractObject2LongFunction<T> implements S
 	 * @return the output of the function.
 	 */
 	public long getLongBySignature(final long[] signature) {
-		final int[] e = new int[3];
-		final int bucket = (int)Math.multiplyHigh(signature[0] >>> 1, multiplier);
-		final long bucketOffset = offsetAndSeed[bucket] & OFFSET_MASK;
+		return getLongBySignature(signature[0], signature[1]);
+	}
+
+	/**
+	 * Low-level access to the output of this function on a signature given by its two longs.
+	 *
+	 * <p>
+	 * This method returns the same value as {@link #getLongBySignature(long[])}, but it computes the
+	 * equation of the signature in local variables, so it does not allocate any object.
+	 *
+	 * @param signature0 the first long of a signature generated as documented in
+	 *            {@link BucketedHashStore}.
+	 * @param signature1 the second long of the signature.
+	 * @return the output of the function.
+	 */
+	protected long getLongBySignature(final long signature0, final long signature1) {
+		final int bucket = (int)Math.multiplyHigh(signature0 >>> 1, multiplier);
+		final long offsetSeed = offsetAndSeed[bucket];
+		final long bucketOffset = offsetSeed & OFFSET_MASK;
 		final int numVariables = (int)((offsetAndSeed[bucket + 1] & OFFSET_MASK) - bucketOffset);
-		Linear3SystemSolver.signatureToEquation(signature, offsetAndSeed[bucket] & ~OFFSET_MASK, numVariables, e);
-		final long e0 = e[0] + bucketOffset, e1 = e[1] + bucketOffset, e2 = e[2] + bucketOffset;
+
+		// Inlined Linear3SystemSolver.signatureToEquation()
+		long h0, h1, h2, h3;
+		h0 = offsetSeed & ~OFFSET_MASK;
+		h1 = Hashes.ARBITRARY_BITS + signature0;
+		h2 = Hashes.ARBITRARY_BITS + signature1;
+		h3 = Hashes.ARBITRARY_BITS;
+
+		h2 = Long.rotateLeft(h2, 50);
+		h2 += h3;
+		h0 ^= h2;
+		h3 = Long.rotateLeft(h3, 52);
+		h3 += h0;
+		h1 ^= h3;
+		h0 = Long.rotateLeft(h0, 30);
+		h0 += h1;
+		h2 ^= h0;
+		h1 = Long.rotateLeft(h1, 41);
+		h1 += h2;
+		h3 ^= h1;
+		h2 = Long.rotateLeft(h2, 54);
+		h2 += h3;
+		h0 ^= h2;
+		h3 = Long.rotateLeft(h3, 48);
+		h3 += h0;
+		h1 ^= h3;
+		h0 = Long.rotateLeft(h0, 38);
+		h0 += h1;
+		h2 ^= h0;
+		h1 = Long.rotateLeft(h1, 37);
+		h1 += h2;
+		h3 ^= h1;
+		h2 = Long.rotateLeft(h2, 62);
+		h2 += h3;
+		h0 ^= h2;
+		h3 = Long.rotateLeft(h3, 34);
+		h3 += h0;
+		h1 ^= h3;
+		h0 = Long.rotateLeft(h0, 5);
+		h0 += h1;
+		h2 ^= h0;
+		h1 = Long.rotateLeft(h1, 36);
+		h1 += h2;
+		h3 ^= h1;
+
+		final int shift = Long.numberOfLeadingZeros(numVariables);
+		final long mask = (1L << shift) - 1;
+		final long e0 = (((h0 & mask) * numVariables) >>> shift) + bucketOffset;
+		final long e1 = (((h1 & mask) * numVariables) >>> shift) + bucketOffset;
+		final long e2 = (((h2 & mask) * numVariables) >>> shift) + bucketOffset;
 
 		final long result = rank == null ? data.getLong(e0) ^ data.getLong(e1) ^ data.getLong(e2) : (marker.getBoolean(e0) ? data.getLong(rank.rank(e0)) : 0) ^ (marker.getBoolean(e1) ? data.getLong(rank.rank(e1)) : 0) ^ (marker.getBoolean(e2) ? data.getLong(rank.rank(e2)) : 0);
 		if (signatureMask == 0) return result;
-		if (signatures != null) return result >= n || signatures.getLong(result) != (signature[0] & signatureMask) ? defRetValue : result;
-		else return ((result ^ signature[0]) & signatureMask) != 0 ? defRetValue : 1;
+		if (signatures != null) return result >= n || signatures.getLong(result) != (signature0 & signatureMask) ? defRetValue : result;
+		else return ((result ^ signature0) & signatureMask) != 0 ? defRetValue : 1;
+	}
+
+	/**
+	 * Returns the output of this function on a batch of keys.
+	 *
+	 * <p>
+	 * This method is equivalent to calling {@link #getLong(Object)} on each key, but it hashes all keys
+	 * first and then uses {@link #getLongsBySignature(long[][], long[])}.
+	 *
+	 * @param keys a list of keys.
+	 * @param out an array that will be filled with the output of this function on {@code keys}; it
+	 *            must be at least as long as {@code keys}.
+	 */
+	public void getLongs(final List<? extends T> keys, final long[] out) {
+		final long[][] signature = new long[keys.size()][2];
+		for (int i = 0; i < signature.length; i++) Hashes.spooky4(transform.toBitVector(keys.get(i)), globalSeed, signature[i]);
+		getLongsBySignature(signature, out);
+	}
+
+	/**
+	 * Low-level access to the output of this function on a batch of signatures.
+	 *
+	 * <p>
+	 * This method is equivalent to calling {@link #getLongBySignature(long[])} on each signature, but
+	 * signatures are processed in blocks, and each block is scanned several times: first to locate the
+	 * buckets, then to compute the equations, and finally to read the data. In this way, the memory
+	 * accesses of different signatures are independent and can be carried out in parallel by the
+	 * processor, hiding most of the memory latency.
+	 *
+	 * @param signature an array of signatures generated as documented in {@link BucketedHashStore}.
+	 * @param out an array that will be filled with the output of this function on {@code signature};
+	 *            it must be at least as long as {@code signature}.
+	 */
+	public void getLongsBySignature(final long[][] signature, final long[] out) {
+		if (out.length < signature.length) throw new IllegalArgumentException("The output array has length " + out.length + ", but there are " + signature.length + " signatures");
+		final Batch batch = new Batch(Math.min(signature.length, BATCH_SIZE));
+		for (int from = 0; from < signature.length; from += BATCH_SIZE) getLongsBySignature(signature, from, Math.min(signature.length - from, BATCH_SIZE), out, from, batch);
+	}
+
+	/** Scratch space for batched lookups, allocated once and reused for all batches. */
+	static final class Batch {
+		final long[] offsetSeed, nextOffset, e0, e1, e2;
+		final long[] hash = new long[3];
+		final int[] e = new int[3];
+
+		Batch(final int size) {
+			offsetSeed = new long[size];
+			nextOffset = new long[size];
+			e0 = new long[size];
+			e1 = new long[size];
+			e2 = new long[size];
+		}
+	}
+
+	/**
+	 * Computes the output of this function on a batch of at most {@link #BATCH_SIZE} signatures.
+	 *
+	 * @param signature an array of signatures.
+	 * @param from the index in {@code signature} of the first signature of the batch.
+	 * @param length the number of signatures in the batch.
+	 * @param out the array where the output on {@code signature[from + i]} will be stored at index
+	 *            {@code offset + i}.
+	 * @param offset the index in {@code out} of the output on the first signature of the batch.
+	 * @param batch scratch space of size at least {@code length}.
+	 */
+	void getLongsBySignature(final long[][] signature, final int from, final int length, final long[] out, final int offset, final Batch batch) {
+		final long[] offsetSeed = batch.offsetSeed, nextOffset = batch.nextOffset;
+		final long[] e0 = batch.e0, e1 = batch.e1, e2 = batch.e2;
+		final int[] e = batch.e;
+
+		for (int i = 0; i < length; i++) {
+			final int bucket = (int)Math.multiplyHigh(signature[from + i][0] >>> 1, multiplier);
+			offsetSeed[i] = offsetAndSeed[bucket];
+			nextOffset[i] = offsetAndSeed[bucket + 1];
+		}
+
+		for (int i = 0; i < length; i++) {
+			final long bucketOffset = offsetSeed[i] & OFFSET_MASK;
+			Linear3SystemSolver.signatureToEquation(signature[from + i], offsetSeed[i] & ~OFFSET_MASK, (int)((nextOffset[i] & OFFSET_MASK) - bucketOffset), batch.hash, e);
+			e0[i] = e[0] + bucketOffset;
+			e1[i] = e[1] + bucketOffset;
+			e2[i] = e[2] + bucketOffset;
+		}
+
+		if (rank == null) for (int i = 0; i < length; i++) out[offset + i] = data.getLong(e0[i]) ^ data.getLong(e1[i]) ^ data.getLong(e2[i]);
+		else for (int i = 0; i < length; i++) out[offset + i] = (marker.getBoolean(e0[i]) ? data.getLong(rank.rank(e0[i])) : 0) ^ (marker.getBoolean(e1[i]) ? data.getLong(rank.rank(e1[i])) : 0) ^ (marker.getBoolean(e2[i]) ? data.getLong(rank.rank(e2[i])) : 0);
+
+		if (signatureMask == 0) return;
+		for (int i = 0; i < length; i++) {
+			final long result = out[offset + i];
+			if (signatures != null) out[offset + i] = result >= n || signatures.getLong(result) != (signature[from + i][0] & signatureMask) ? defRetValue : result;
+			else out[offset + i] = ((result ^ signature[from + i][0]) & signatureMask) != 0 ? defRetValue : 1;
+		}
 	}
 
 	/**
@@ -799,7 +1161,25 @@ public class GOV3Function<T> extends AbstractObject2LongFunction<T> implements S
 		return true;
 	}
 
+	/**
+	 * Dumps this function in a flat format using native byte order.
+	 *
+	 * <p>
+	 * The file contains, as 64-bit integers, the number of keys, the data width, the multiplier for
+	 * buckets, the global seed, the length of the offset/seed array followed by its content, and the
+	 * number of data words followed by the packed data.
+	 *
+	 * <p>
+	 * The resulting file can be read by the C code distributed with Sux4J or
+	 * {@linkplain #map(String, TransformationStrategy) memory-mapped}.
+	 *
+	 * @param file the name of the dump file.
+	 * @throws IllegalStateException if this function is compacted or has signatures (e.g., it is a
+	 *             dictionary), as the flat format cannot represent markers or signatures.
+	 */
 	public void dump(final String file) throws IOException {
+		if (marker != null) throw new IllegalStateException("Compacted functions cannot be dumped");
+		if (signatureMask != 0) throw new IllegalStateException("Functions with signatures cannot be dumped");
 		final ByteBuffer buffer = ByteBuffer.allocateDirect(1024 * 1024).order(ByteOrder.nativeOrder());
 		final FileOutputStream fos = new FileOutputStream(file);
 		final FileChannel channel = fos.getChannel();
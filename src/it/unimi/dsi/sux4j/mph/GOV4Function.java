@@ -31,13 +31,7 @@ import java.nio.channels.FileChannel;
 import java.nio.charset.Charset;
 import java.util.Arrays;
 import java.util.Collection;
-import java.util.Iterator;
-import java.util.concurrent.ArrayBlockingQueue;
-import java.util.concurrent.ExecutionException;
-import java.util.concurrent.ExecutorCompletionService;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
-import java.util.concurrent.atomic.AtomicInteger;
+import java.util.List;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.zip.GZIPInputStream;
 
@@ -59,7 +53,6 @@ import com.martiansoftware.jsap.stringparsers.ForNameStringParser;
 import it.unimi.dsi.Util;
 import it.unimi.dsi.big.io.FileLinesByteArrayCollection;
 import it.unimi.dsi.bits.BitVector;
-import it.unimi.dsi.bits.BitVectors;
 import it.unimi.dsi.bits.Fast;
 import it.unimi.dsi.bits.LongArrayBitVector;
 import it.unimi.dsi.bits.LongBigArrayBitVector;
@@ -75,16 +68,12 @@ import it.unimi.dsi.fastutil.objects.AbstractObject2LongFunction;
 import it.unimi.dsi.io.FastBufferedReader;
 import it.unimi.dsi.io.FileLinesCollection;
 import it.unimi.dsi.io.LineIterator;
-import it.unimi.dsi.io.OfflineIterable;
-import it.unimi.dsi.io.OfflineIterable.OfflineIterator;
 import it.unimi.dsi.lang.MutableString;
 import it.unimi.dsi.logging.ProgressLogger;
 import it.unimi.dsi.sux4j.io.BucketedHashStore;
-import it.unimi.dsi.sux4j.io.BucketedHashStore.Bucket;
 import it.unimi.dsi.sux4j.io.BucketedHashStore.DuplicateException;
 import it.unimi.dsi.sux4j.mph.solve.Linear4SystemSolver;
 import it.unimi.dsi.util.XoRoShiRo128PlusRandomGenerator;
-import it.unimi.dsi.util.concurrent.ReorderingBlockingQueue;
 
 /**
  * An immutable function stored quasi-succinctly using the {@linkplain Linear4SystemSolver
@@ -161,8 +150,9 @@ import it.unimi.dsi.util.concurrent.ReorderingBlockingQueue;
  * <h2>Multithreading</h2>
  *
  * <p>
- * This implementation is multithreaded: each bucket returned by the {@link BucketedHashStore} is
- * processed independently. By default, this class uses {@link Runtime#availableProcessors()}
+ * This implementation is multithreaded: each thread reads, sorts and solves its own disk segments
+ * of the {@link BucketedHashStore}, and buckets are processed independently. Solutions are written
+ * directly into the final data array at the offset of their bucket. By default, this class uses {@link Runtime#availableProcessors()}
  * parallel threads, but by default no more than 4. If you wish to set a specific number of threads,
  * you can do so through the system property {@value #NUMBER_OF_THREADS_PROPERTY}.
  *
@@ -185,8 +175,6 @@ import it.unimi.dsi.util.concurrent.ReorderingBlockingQueue;
 
 public class GOV4Function<T> extends AbstractObject2LongFunction<T> implements Serializable, Size64 {
 	private static final long serialVersionUID = 6L;
-	private static final LongArrayBitVector END_OF_SOLUTION_QUEUE = LongArrayBitVector.getInstance();
-	private static final Bucket END_OF_BUCKET_QUEUE = new Bucket();
 	private static final Logger LOGGER = LoggerFactory.getLogger(GOV4Function.class);
 	private static final boolean DEBUG = false;
 
@@ -219,6 +207,7 @@ public class GOV4Function<T> extends AbstractObject2LongFunction<T> implements S
 		protected LongIterable values;
 		protected int outputWidth = -1;
 		protected boolean indirect;
+		protected ConstructionListener listener;
 		/** Whether {@link #build()} has already been called. */
 		protected boolean built;
 
@@ -387,6 +376,22 @@ public class GOV4Function<T> extends AbstractObject2LongFunction<T> implements S
 			return this;
 		}
 
+		/**
+		 * Specifies a listener that will receive timing and size information about the phases of
+		 * the construction.
+		 *
+		 * <p>
+		 * The listener will be set also on the {@linkplain #store(BucketedHashStore) bucketed hash
+		 * store}, if you specified one.
+		 *
+		 * @param listener a construction listener.
+		 * @return this builder.
+		 */
+		public Builder<T> listener(final ConstructionListener listener) {
+			this.listener = listener;
+			return this;
+		}
+
 		/**
 		 * Builds a new function.
 		 *
@@ -398,12 +403,14 @@ public class GOV4Function<T> extends AbstractObject2LongFunction<T> implements S
 			built = true;
 			if (transform == null) if (bucketedHashStore != null) transform = bucketedHashStore.transform();
 			else throw new IllegalArgumentException("You must specify a TransformationStrategy, either explicitly or via a given BucketedHashStore");
-			return new GOV4Function<>(keys, transform, signatureWidth, values, outputWidth, tempDir, bucketedHashStore, indirect);
+			return new GOV4Function<>(keys, transform, signatureWidth, values, outputWidth, tempDir, bucketedHashStore, indirect, listener);
 		}
 	}
 
 	/** The expected bucket size. */
 	public final static int BUCKET_SIZE = 1500;
+	/** The number of signatures processed in each phase of {@link #getLongsBySignature(long[][], long[])}. */
+	private final static int BATCH_SIZE = 256;
 	/** The multiplier for buckets. */
 	private final long multiplier;
 	/** The number of keys. */
@@ -455,7 +462,36 @@ public class GOV4Function<T> extends AbstractObject2LongFunction<T> implements S
 	 *            <code>values</code> is a {@link LongIterable} that must be accessed to retrieve the
 	 *            actual values.
 	 */
-	protected GOV4Function(final Iterable<? extends T> keys, final TransformationStrategy<? super T> transform, final int signatureWidth, final LongIterable values, final int dataWidth, final File tempDir, BucketedHashStore<T> bucketedHashStore, final boolean indirect) throws IOException {
+	protected GOV4Function(final Iterable<? extends T> keys, final TransformationStrategy<? super T> transform, final int signatureWidth, final LongIterable values, final int dataWidth, final File tempDir, final BucketedHashStore<T> bucketedHashStore, final boolean indirect) throws IOException {
+		this(keys, transform, signatureWidth, values, dataWidth, tempDir, bucketedHashStore, indirect, null);
+	}
+
+	/**
+	 * Creates a new function for the given keys and values, notifying a listener of the phases of
+	 * the construction.
+	 *
+	 * @param keys the keys in the domain of the function, or {@code null}.
+	 * @param transform a transformation strategy for the keys.
+	 * @param signatureWidth a positive number for a signature width, 0 for no signature, a negative
+	 *            value for a self-signed function; if nonzero, {@code values} must be {@code null} and
+	 *            {@code width} must be -1.
+	 * @param values values to be assigned to each element, in the same order of the iterator returned
+	 *            by <code>keys</code>; if {@code null}, the assigned value will the ordinal number of
+	 *            each element.
+	 * @param dataWidth the bit width of the <code>values</code>, or -1 if <code>values</code> is
+	 *            {@code null}.
+	 * @param tempDir a temporary directory for the store files, or {@code null} for the standard
+	 *            temporary directory.
+	 * @param bucketedHashStore a bucketed hash store containing the keys associated with their ranks
+	 *            (if there are no values, or {@code indirect} is true) or values, or {@code null}; the
+	 *            store can be unchecked, but in this case <code>keys</code> and <code>transform</code>
+	 *            must be non-{@code null}.
+	 * @param indirect if true, <code>bucketedHashStore</code> contains ordinal positions, and
+	 *            <code>values</code> is a {@link LongIterable} that must be accessed to retrieve the
+	 *            actual values.
+	 * @param listener a construction listener, or {@code null}.
+	 */
+	protected GOV4Function(final Iterable<? extends T> keys, final TransformationStrategy<? super T> transform, final int signatureWidth, final LongIterable values, final int dataWidth, final File tempDir, BucketedHashStore<T> bucketedHashStore, final boolean indirect, final ConstructionListener listener) throws IOException {
 		this.transform = transform;
 
 		final boolean givenBucketedHashStore = bucketedHashStore != null;
@@ -473,10 +509,11 @@ public class GOV4Function<T> extends AbstractObject2LongFunction<T> implements S
 		if (bucketedHashStore == null) {
 			if (keys == null) throw new IllegalArgumentException("If you do not provide a bucketed hash store, you must provide the keys");
 			bucketedHashStore = new BucketedHashStore<>(transform, tempDir, -Math.min(signatureWidth, 0), pl);
+			bucketedHashStore.listener(listener);
 			bucketedHashStore.reset(r.nextLong());
 			if (values == null || indirect) bucketedHashStore.addAll(keys.iterator());
 			else bucketedHashStore.addAll(keys.iterator(), values.iterator());
-		}
+		} else if (listener != null) bucketedHashStore.listener(listener);
 		n = bucketedHashStore.size();
 		defRetValue = signatureWidth < 0 ? 0 : -1; // Self-signed maps get zero as default return value.
 
@@ -490,9 +527,11 @@ public class GOV4Function<T> extends AbstractObject2LongFunction<T> implements S
 
 		width = signatureWidth < 0 ? -signatureWidth : dataWidth == -1 ? Math.max(0, Fast.ceilLog2(n)) : dataWidth;
 
-		// Candidate data; might be discarded for compaction.
-		@SuppressWarnings("resource")
-		final OfflineIterable<BitVector, LongArrayBitVector> offlineData = new OfflineIterable<>(BitVectors.OFFLINE_SERIALIZER, LongArrayBitVector.getInstance());
+		// Each bucket needs at most C_TIMES_256 * size >>> 8 + 1 variables, plus one for the final zero
+		final long maxM = (C_TIMES_256 * n >>> 8) + numBuckets + 1;
+		final boolean big = maxM * width >= (Integer.MAX_VALUE - 8L) * Long.SIZE;
+		// Data, directly written by the solvers
+		BitVector rawData = null;
 
 		int duplicates = 0;
 
@@ -506,94 +545,41 @@ public class GOV4Function<T> extends AbstractObject2LongFunction<T> implements S
 
 			try {
 				final int numberOfThreads = Integer.parseInt(System.getProperty(NUMBER_OF_THREADS_PROPERTY, Integer.toString(Math.min(4, Runtime.getRuntime().availableProcessors()))));
-				final ArrayBlockingQueue<Bucket> bucketQueue = new ArrayBlockingQueue<>(numberOfThreads * 8);
-				final ReorderingBlockingQueue<LongArrayBitVector> queue = new ReorderingBlockingQueue<>(numberOfThreads * 128);
-				final ExecutorService executorService = Executors.newFixedThreadPool(numberOfThreads + 2);
-				final ExecutorCompletionService<Void> executorCompletionService = new ExecutorCompletionService<>(executorService);
+				rawData = big ? LongBigArrayBitVector.ofLength(maxM * width + Long.SIZE - 1 & -Long.SIZE) : LongArrayBitVector.ofLength(maxM * width);
+				final SolutionWriter solutionWriter = big ? new SolutionWriter((LongBigArrayBitVector)rawData, width) : new SolutionWriter((LongArrayBitVector)rawData, width);
+
+				// Threads read, sort and solve their own segments, writing solutions at the offset of their bucket
+				final long totalDataSize = bucketedHashStore.parallelForEach(bucket -> {
+					final long bucketDataSize = Math.max(C_TIMES_256 * bucket.size() >>> 8, bucket.size() + 1);
+					assert bucketDataSize <= Integer.MAX_VALUE;
+					long seed = 0;
+					int attempts = 1;
+					final long solveStart = System.nanoTime();
+					final Linear4SystemSolver solver = new Linear4SystemSolver((int)bucketDataSize, bucket.size());
 
-				executorCompletionService.submit(() -> {
 					for (;;) {
-						final LongArrayBitVector data = queue.take();
-						if (data == END_OF_SOLUTION_QUEUE) return null;
-						offlineData.add(data);
-					}
-				});
-
-				final BucketedHashStore<T> chs = bucketedHashStore;
-				executorCompletionService.submit(() -> {
-					try {
-						final Iterator<Bucket> iterator = chs.iterator();
-						for (int i1 = 0; iterator.hasNext(); i1++) {
-							final Bucket bucket = new Bucket(iterator.next());
-							assert i1 == bucket.index();
-							final long bucketDataSize = Math.max(C_TIMES_256 * bucket.size() >>> 8, bucket.size() + 1);
-							assert bucketDataSize <= Integer.MAX_VALUE;
-							synchronized (offsetAndSeed) {
-								offsetAndSeed[i1 + 1] = offsetAndSeed[i1] + bucketDataSize;
-								assert offsetAndSeed[i1 + 1] <= OFFSET_MASK + 1 : offsetAndSeed[i1 + 1] + " > " + (OFFSET_MASK + 1);
-							}
-							bucketQueue.put(bucket);
-						}
-					} finally {
-						for (int i2 = numberOfThreads; i2-- != 0;) bucketQueue.put(END_OF_BUCKET_QUEUE);
+						final boolean solved = solver.generateAndSolve(bucket, seed, bucket.valueList(indirect ? values : null));
+						unsolvable.addAndGet(solver.unsolvable);
+						if (solved) break;
+						seed += SEED_STEP;
+						attempts++;
+						if (seed == 0) throw new AssertionError("Exhausted local seeds");
 					}
-					return null;
-				});
+					if (listener != null) listener.bucketSolved(bucket.index(), bucket.size(), attempts, System.nanoTime() - solveStart);
 
-				final AtomicInteger activeThreads = new AtomicInteger(numberOfThreads);
-				for (int i = numberOfThreads; i-- != 0;) executorCompletionService.submit(() -> {
-					Thread.currentThread().setPriority(Thread.MIN_PRIORITY);
-					long bucketTime = 0, outputTime = 0;
-					for (;;) {
-						long start = System.nanoTime();
-						final Bucket bucket = bucketQueue.take();
-						bucketTime += System.nanoTime() - start;
-						if (bucket == END_OF_BUCKET_QUEUE) {
-							if (activeThreads.decrementAndGet() == 0) queue.put(END_OF_SOLUTION_QUEUE, numBuckets);
-							LOGGER.debug("Queue waiting time: " + Util.format(bucketTime / 1E9) + "s");
-							LOGGER.debug("Output waiting time: " + Util.format(outputTime / 1E9) + "s");
-							return null;
-						}
-						long seed = 0;
-						final Linear4SystemSolver solver = new Linear4SystemSolver((int)(offsetAndSeed[bucket.index() + 1] - offsetAndSeed[bucket.index()] & OFFSET_MASK), bucket.size());
-
-						for (;;) {
-							final boolean solved = solver.generateAndSolve(bucket, seed, bucket.valueList(indirect ? values : null));
-							unsolvable.addAndGet(solver.unsolvable);
-							if (solved) break;
-							seed += SEED_STEP;
-							if (seed == 0) throw new AssertionError("Exhausted local seeds");
-						}
-
-						synchronized (offsetAndSeed) {
-							offsetAndSeed[bucket.index()] |= seed;
-						}
-
-						final LongArrayBitVector dataBitVector = LongArrayBitVector.getInstance();
-						final LongBigList data = dataBitVector.asLongBigList(width);
-						for (final long l : solver.solution) data.add(l);
-
-						start = System.nanoTime();
-						queue.put(dataBitVector, bucket.index());
-						outputTime += System.nanoTime() - start;
-						synchronized (pl) {
-							pl.update();
-						}
+					assert bucket.offset() + bucketDataSize <= OFFSET_MASK + 1 : bucket.offset() + bucketDataSize + " > " + (OFFSET_MASK + 1);
+					offsetAndSeed[bucket.index()] = bucket.offset() | seed;
+
+					solutionWriter.write(solver.solution, bucket.offset());
+					synchronized (pl) {
+						pl.update();
 					}
-				});
-
-				try {
-					for (int i = numberOfThreads + 2; i-- != 0;) executorCompletionService.take().get();
-				} catch (final InterruptedException e) {
-					throw new RuntimeException(e);
-				} catch (final ExecutionException e) {
-					final Throwable cause = e.getCause();
-					if (cause instanceof DuplicateException) throw (DuplicateException)cause;
-					if (cause instanceof IOException) throw (IOException)cause;
-					throw new RuntimeException(cause);
-				} finally {
-					executorService.shutdown();
-				}
+				}, numberOfThreads, size -> Math.max(C_TIMES_256 * size >>> 8, size + 1));
+
+				offsetAndSeed[numBuckets] = totalDataSize;
+				if (listener != null) listener.solverCompleted(bucketedHashStore.waitNanos(), solutionWriter.waitNanos());
+				LOGGER.debug("Bucket wait time: " + Util.format(bucketedHashStore.waitNanos() / 1E9) + "s; output wait time: " + Util.format(solutionWriter.waitNanos() / 1E9) + "s");
+
 				LOGGER.info("Unsolvable systems: " + unsolvable.get() + "/" + (unsolvable.get() + numBuckets) + " (" + Util.format(100.0 * unsolvable.get() / (unsolvable.get() + numBuckets)) + "%)");
 
 				pl.done();
@@ -602,11 +588,12 @@ public class GOV4Function<T> extends AbstractObject2LongFunction<T> implements S
 				if (keys == null) throw new IllegalStateException("You provided no keys, but the bucketed hash store was not checked");
 				if (duplicates++ > 3) throw new IllegalArgumentException("The input list contains duplicates");
 				LOGGER.warn("Found duplicate. Recomputing signatures...");
+				if (listener != null) listener.duplicateFound();
 				bucketedHashStore.reset(r.nextLong());
 				pl.itemsName = "keys";
 				if (values == null || indirect) bucketedHashStore.addAll(keys.iterator());
 				else bucketedHashStore.addAll(keys.iterator(), values.iterator());
-				offlineData.clear();
+				rawData = null;
 				Arrays.fill(offsetAndSeed, 0);
 			}
 		}
@@ -615,21 +602,11 @@ public class GOV4Function<T> extends AbstractObject2LongFunction<T> implements S
 
 		globalSeed = bucketedHashStore.seed();
 		m = offsetAndSeed[offsetAndSeed.length - 1];
-		final OfflineIterator<BitVector, LongArrayBitVector> iterator = offlineData.iterator();
-		if ((m + 1) * width < (Integer.MAX_VALUE - 8L) * Long.SIZE) {
-			final LongArrayBitVector dataBitVector = LongArrayBitVector.getInstance((m + 1) * width);
-			this.data = dataBitVector.asLongBigList(this.width);
-			while (iterator.hasNext()) dataBitVector.append(iterator.next());
-		} else {
-			final LongBigArrayBitVector dataBitVector = LongBigArrayBitVector.getInstance((m + 1) * width);
-			this.data = dataBitVector.asLongBigList(this.width);
-			while (iterator.hasNext()) dataBitVector.append(iterator.next());
-		}
-
-		iterator.close();
-
-		offlineData.close();
+		final long dataStart = System.nanoTime();
+		rawData.length(m * width);
+		this.data = rawData.asLongBigList(this.width);
 		data.add(0);
+		if (listener != null) listener.dataBuilt(false, data.size64() * width, System.nanoTime() - dataStart);
 
 		LOGGER.info("Completed.");
 		LOGGER.info("Forecast bit cost per element: " + C * this.width);
@@ -657,6 +634,49 @@ public class GOV4Function<T> extends AbstractObject2LongFunction<T> implements S
 		return getLongBySignature(signature);
 	}
 
+	/**
+	 * Returns the output of this function on a slice of a byte array.
+	 *
+	 * <p>
+	 * This method returns the same value as {@link #getLong(Object)} on a copy of the slice, provided
+	 * that this function has been built using {@link TransformationStrategies#rawByteArray()} or
+	 * {@link TransformationStrategies#byteArray()}, but it hashes the bytes in place, avoiding the
+	 * creation of an array and of a bit vector.
+	 *
+	 * @param a a byte array.
+	 * @param offset the offset of the first byte of the key.
+	 * @param length the length of the key in bytes.
+	 * @return the output of this function on the given key.
+	 * @throws UnsupportedOperationException if this function has not been built using one of the
+	 *             strategies above.
+	 */
+	public long getLong(final byte[] a, final int offset, final int length) {
+		final long[] signature = new long[2];
+		Hashes.spooky4(a, offset, length, Hashes.lexicographic(transform), globalSeed, signature);
+		return getLongBySignature(signature);
+	}
+
+	/**
+	 * Returns the output of this function on a slice of a byte buffer.
+	 *
+	 * <p>
+	 * This method behaves like {@link #getLong(byte[], int, int)}, but reads the key from a (possibly
+	 * direct or memory-mapped) byte buffer using absolute positioning.
+	 *
+	 * @param buffer a byte buffer.
+	 * @param offset the index of the first byte of the key.
+	 * @param length the length of the key in bytes.
+	 * @return the output of this function on the given key.
+	 * @throws UnsupportedOperationException if this function has not been built using
+	 *             {@link TransformationStrategies#rawByteArray()} or
+	 *             {@link TransformationStrategies#byteArray()}.
+	 */
+	public long getLong(final ByteBuffer buffer, final int offset, final int length) {
+		final long[] signature = new long[2];
+		Hashes.spooky4(buffer, offset, length, Hashes.lexicographic(transform), globalSeed, signature);
+		return getLongBySignature(signature);
+	}
+
 	/**
 	 * Low-level access to the output of this function.
 	 *
@@ -683,6 +703,72 @@ public class GOV4Function<T> extends AbstractObject2LongFunction<T> implements S
 		else return ((result ^ signature[0]) & signatureMask) != 0 ? defRetValue : 1;
 	}
 
+	/**
+	 * Returns the output of this function on a batch of keys.
+	 *
+	 * <p>
+	 * This method is equivalent to calling {@link #getLong(Object)} on each key, but it hashes all keys
+	 * first and then uses {@link #getLongsBySignature(long[][], long[])}.
+	 *
+	 * @param keys a list of keys.
+	 * @param out an array that will be filled with the output of this function on {@code keys}; it
+	 *            must be at least as long as {@code keys}.
+	 */
+	public void getLongs(final List<? extends T> keys, final long[] out) {
+		final long[][] signature = new long[keys.size()][2];
+		for (int i = 0; i < signature.length; i++) Hashes.spooky4(transform.toBitVector(keys.get(i)), globalSeed, signature[i]);
+		getLongsBySignature(signature, out);
+	}
+
+	/**
+	 * Low-level access to the output of this function on a batch of signatures.
+	 *
+	 * <p>
+	 * This method is equivalent to calling {@link #getLongBySignature(long[])} on each signature, but
+	 * it works in blocks, scanning each block once to read the bucket offsets, once to compute the
+	 * equations and once to read the data, so that the memory accesses of different signatures can
+	 * overlap.
+	 *
+	 * @param signature an array of signatures generated as documented in {@link BucketedHashStore}.
+	 * @param out an array that will be filled with the output of this function on {@code signature};
+	 *            it must be at least as long as {@code signature}.
+	 */
+	public void getLongsBySignature(final long[][] signature, final long[] out) {
+		if (out.length < signature.length) throw new IllegalArgumentException("The output array has length " + out.length + ", but there are " + signature.length + " signatures");
+		final int[] e = new int[4];
+		final int batchSize = Math.min(signature.length, BATCH_SIZE);
+		final long[] offsetSeed = new long[batchSize], nextOffset = new long[batchSize];
+		final long[] e0 = new long[batchSize], e1 = new long[batchSize], e2 = new long[batchSize], e3 = new long[batchSize];
+
+		for (int from = 0; from < signature.length; from += BATCH_SIZE) {
+			final int length = Math.min(signature.length - from, BATCH_SIZE);
+
+			for (int i = 0; i < length; i++) {
+				final int bucket = (int)Math.multiplyHigh(signature[from + i][0] >>> 1, multiplier);
+				offsetSeed[i] = offsetAndSeed[bucket];
+				nextOffset[i] = offsetAndSeed[bucket + 1];
+			}
+
+			for (int i = 0; i < length; i++) {
+				final long bucketOffset = offsetSeed[i] & OFFSET_MASK;
+				Linear4SystemSolver.signatureToEquation(signature[from + i], offsetSeed[i] & ~OFFSET_MASK, (int)((nextOffset[i] & OFFSET_MASK) - bucketOffset), e);
+				e0[i] = e[0] + bucketOffset;
+				e1[i] = e[1] + bucketOffset;
+				e2[i] = e[2] + bucketOffset;
+				e3[i] = e[3] + bucketOffset;
+			}
+
+			for (int i = 0; i < length; i++) out[from + i] = data.getLong(e0[i]) ^ data.getLong(e1[i]) ^ data.getLong(e2[i]) ^ data.getLong(e3[i]);
+
+			if (signatureMask == 0) continue;
+			for (int i = 0; i < length; i++) {
+				final long result = out[from + i];
+				if (signatures != null) out[from + i] = result >= n || ((signatures.getLong(result) ^ signature[from + i][0]) & signatureMask) != 0 ? defRetValue : result;
+				else out[from + i] = ((result ^ signature[from + i][0]) & signatureMask) != 0 ? defRetValue : 1;
+			}
+		}
+	}
+
 	/**
 	 * Returns the number of keys in the function domain.
 	 *
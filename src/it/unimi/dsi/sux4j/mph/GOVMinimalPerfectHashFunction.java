@@ -33,12 +33,7 @@ import java.nio.charset.Charset;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Iterator;
-import java.util.concurrent.ArrayBlockingQueue;
-import java.util.concurrent.ExecutionException;
-import java.util.concurrent.ExecutorCompletionService;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
-import java.util.concurrent.atomic.AtomicInteger;
+import java.util.List;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.zip.GZIPInputStream;
 
@@ -63,19 +58,20 @@ import it.unimi.dsi.bits.LongArrayBitVector;
 import it.unimi.dsi.bits.TransformationStrategies;
 import it.unimi.dsi.bits.TransformationStrategy;
 import it.unimi.dsi.fastutil.io.BinIO;
+import it.unimi.dsi.fastutil.longs.LongArrayList;
 import it.unimi.dsi.fastutil.longs.LongBigList;
+import it.unimi.dsi.fastutil.longs.LongBigLists;
 import it.unimi.dsi.io.FastBufferedReader;
 import it.unimi.dsi.io.FileLinesCollection;
 import it.unimi.dsi.io.LineIterator;
 import it.unimi.dsi.lang.MutableString;
 import it.unimi.dsi.logging.ProgressLogger;
 import it.unimi.dsi.sux4j.io.BucketedHashStore;
-import it.unimi.dsi.sux4j.io.BucketedHashStore.Bucket;
 import it.unimi.dsi.sux4j.io.BucketedHashStore.DuplicateException;
 import it.unimi.dsi.sux4j.mph.solve.Linear3SystemSolver;
 import it.unimi.dsi.sux4j.mph.solve.Orient3Hypergraph;
+import it.unimi.dsi.sux4j.util.LongWordStorage;
 import it.unimi.dsi.util.XoRoShiRo128PlusRandomGenerator;
-import it.unimi.dsi.util.concurrent.ReorderingBlockingQueue;
 
 /**
  * A minimal perfect hash function stored using the
@@ -108,7 +104,8 @@ import it.unimi.dsi.util.concurrent.ReorderingBlockingQueue;
  *
  * <h2>Multithreading</h2>
  *
- * <p>This implementation is multithreaded: each bucket returned by the {@link BucketedHashStore} is processed independently. By
+ * <p>This implementation is multithreaded: each thread reads, sorts and solves its own disk segments of the {@link BucketedHashStore},
+ * and buckets are processed independently. Solutions are written directly into the final bit vector at the offset of their bucket. By
  * default, this class uses {@link Runtime#availableProcessors()} parallel threads, but by default no more than 4. If you wish to
  * set a specific number of threads, you can do so through the system property {@value #NUMBER_OF_THREADS_PROPERTY}.
  *
@@ -142,8 +139,6 @@ import it.unimi.dsi.util.concurrent.ReorderingBlockingQueue;
 public class GOVMinimalPerfectHashFunction<T> extends AbstractHashFunction<T> implements Serializable {
 	public static final long serialVersionUID = 6L;
 	private static final Logger LOGGER = LoggerFactory.getLogger(GOVMinimalPerfectHashFunction.class);
-	private static final LongArrayBitVector END_OF_SOLUTION_QUEUE = LongArrayBitVector.getInstance();
-	private static final Bucket END_OF_BUCKET_QUEUE = new Bucket();
 
 	/** The local seed is generated using this step, so to be easily embeddable in {@link #edgeOffsetAndSeed}. */
 	private static final long SEED_STEP = 1L << 56;
@@ -190,6 +185,30 @@ public class GOVMinimalPerfectHashFunction<T> extends AbstractHashFunction<T> im
 		return pairs;
 	}
 
+	/** Counts the number of nonzero pairs between two positions in the given list of words,
+	 * which represents a sequence of two-bit values.
+	 *
+	 * @param start start position (inclusive).
+	 * @param end end position (exclusive).
+	 * @param words a list of longs containing 2-bit values.
+	 * @return the number of nonzero 2-bit values between {@code start} and {@code end}.
+	 */
+	private final static long countNonzeroPairs(final long start, final long end, final LongBigList words) {
+		long block = start / 32;
+		final long endBlock = end / 32;
+		final int startOffset = (int)(start % 32);
+		final int endOffset = (int)(end % 32);
+
+		if (block == endBlock) return countNonzeroPairs((words.getLong(block) & (1L << endOffset * 2) - 1) >>> startOffset * 2);
+
+		long pairs = 0;
+		if (startOffset != 0) pairs += countNonzeroPairs(words.getLong(block++) >>> startOffset * 2);
+		while(block < endBlock) pairs += countNonzeroPairs(words.getLong(block++));
+		if (endOffset != 0) pairs += countNonzeroPairs(words.getLong(block) & (1L << endOffset * 2) - 1);
+
+		return pairs;
+	}
+
 	/** The system property used to set the number of parallel threads. */
 	public static final String NUMBER_OF_THREADS_PROPERTY = "it.unimi.dsi.sux4j.mph.threads";
 
@@ -200,6 +219,8 @@ public class GOVMinimalPerfectHashFunction<T> extends AbstractHashFunction<T> im
 		protected int signatureWidth;
 		protected File tempDir;
 		protected BucketedHashStore<T> bucketedHashStore;
+		protected LongWordStorage storage;
+		protected ConstructionListener listener;
 		/** Whether {@link #build()} has already been called. */
 		protected boolean built;
 
@@ -255,6 +276,39 @@ public class GOVMinimalPerfectHashFunction<T> extends AbstractHashFunction<T> im
 			return this;
 		}
 
+		/**
+		 * Specifies a storage strategy for the values of the function.
+		 *
+		 * <p>
+		 * By default, values are stored in a bit vector on the heap. If you specify a storage
+		 * strategy, solutions will be written during the construction directly into words allocated
+		 * by the strategy, which makes it possible, for example, to build and keep large functions
+		 * {@linkplain LongWordStorage#offHeap() off-heap}.
+		 *
+		 * @param storage a storage strategy for the values of the function.
+		 * @return this builder.
+		 */
+		public Builder<T> storage(final LongWordStorage storage) {
+			this.storage = storage;
+			return this;
+		}
+
+		/**
+		 * Specifies a listener that will receive timing and size information about the phases of
+		 * the construction.
+		 *
+		 * <p>
+		 * The listener will be set also on the {@linkplain #store(BucketedHashStore) bucketed hash
+		 * store}, if you specified one.
+		 *
+		 * @param listener a construction listener.
+		 * @return this builder.
+		 */
+		public Builder<T> listener(final ConstructionListener listener) {
+			this.listener = listener;
+			return this;
+		}
+
 		/** Builds a minimal perfect hash function.
 		 *
 		 * @return a {@link GOVMinimalPerfectHashFunction} instance with the specified parameters.
@@ -267,12 +321,14 @@ public class GOVMinimalPerfectHashFunction<T> extends AbstractHashFunction<T> im
 				if (bucketedHashStore != null) transform = bucketedHashStore.transform();
 				else throw new IllegalArgumentException("You must specify a TransformationStrategy, either explicitly or via a given BucketedHashStore");
 			}
-			return new GOVMinimalPerfectHashFunction<>(keys, transform, signatureWidth, tempDir, bucketedHashStore);
+			return new GOVMinimalPerfectHashFunction<>(keys, transform, signatureWidth, tempDir, bucketedHashStore, storage, listener);
 		}
 	}
 
 	/** The expected bucket size. */
 	public final static int BUCKET_SIZE = 1500;
+	/** The number of signatures processed in each phase of {@link #getLongsBySignature(long[][], long[])}. */
+	final static int BATCH_SIZE = 256;
 
 	/** The multiplier for buckets. */
 	private final long multiplier;
@@ -291,12 +347,15 @@ public class GOVMinimalPerfectHashFunction<T> extends AbstractHashFunction<T> im
 	/** The final magick&mdash;the list of modulo-3 values that define the output of the minimal perfect hash function. */
 	protected final LongBigList values;
 
-	/** The bit vector underlying {@link #values}. */
+	/** The bit vector underlying {@link #values}, or {@code null} if {@link #words} is not {@code null}. */
 	protected final LongArrayBitVector bitVector;
 
-	/** The bit array supporting {@link #bitVector}. */
+	/** The bit array supporting {@link #bitVector}, or {@code null} if {@link #words} is not {@code null}. */
 	protected transient long[] array;
 
+	/** The words underlying {@link #values}, if they have been allocated by a {@link LongWordStorage}; {@code null} otherwise. */
+	protected final LongBigList words;
+
 	/** The transformation strategy. */
 	protected final TransformationStrategy<? super T> transform;
 
@@ -320,7 +379,24 @@ public class GOVMinimalPerfectHashFunction<T> extends AbstractHashFunction<T> im
 	 * @param bucketedHashStore a bucketed hash store containing the keys, or {@code null}; the store
 	 * can be unchecked, but in this case <code>keys</code> and <code>transform</code> must be non-{@code null}.
 	 */
-	protected GOVMinimalPerfectHashFunction(final Iterable<? extends T> keys, final TransformationStrategy<? super T> transform, final int signatureWidth, final File tempDir, BucketedHashStore<T> bucketedHashStore) throws IOException {
+	protected GOVMinimalPerfectHashFunction(final Iterable<? extends T> keys, final TransformationStrategy<? super T> transform, final int signatureWidth, final File tempDir, final BucketedHashStore<T> bucketedHashStore) throws IOException {
+		this(keys, transform, signatureWidth, tempDir, bucketedHashStore, null, null);
+	}
+
+	/**
+	 * Creates a new minimal perfect hash function for the given keys, storing its values using a given strategy
+	 * and notifying a listener of the phases of the construction.
+	 *
+	 * @param keys the keys to hash, or {@code null}.
+	 * @param transform a transformation strategy for the keys.
+	 * @param signatureWidth a signature width, or 0 for no signature.
+	 * @param tempDir a temporary directory for the store files, or {@code null} for the standard temporary directory.
+	 * @param bucketedHashStore a bucketed hash store containing the keys, or {@code null}; the store
+	 * can be unchecked, but in this case <code>keys</code> and <code>transform</code> must be non-{@code null}.
+	 * @param storage a storage strategy for the values, or {@code null} to store values in a bit vector on the heap.
+	 * @param listener a construction listener, or {@code null}.
+	 */
+	protected GOVMinimalPerfectHashFunction(final Iterable<? extends T> keys, final TransformationStrategy<? super T> transform, final int signatureWidth, final File tempDir, BucketedHashStore<T> bucketedHashStore, final LongWordStorage storage, final ConstructionListener listener) throws IOException {
 		this.transform = transform;
 
 		final ProgressLogger pl = new ProgressLogger(LOGGER);
@@ -332,9 +408,10 @@ public class GOVMinimalPerfectHashFunction<T> extends AbstractHashFunction<T> im
 		final boolean givenBucketedHashStore = bucketedHashStore != null;
 		if (bucketedHashStore == null) {
 			bucketedHashStore = new BucketedHashStore<>(transform, tempDir, pl);
+			bucketedHashStore.listener(listener);
 			bucketedHashStore.reset(r.nextLong());
 			bucketedHashStore.addAll(keys.iterator());
-		}
+		} else if (listener != null) bucketedHashStore.listener(listener);
 		n = bucketedHashStore.size();
 
 		defRetValue = -1; // For the very few cases in which we can decide
@@ -347,7 +424,9 @@ public class GOVMinimalPerfectHashFunction<T> extends AbstractHashFunction<T> im
 
 		edgeOffsetAndSeed = new long[numBuckets + 1];
 
-		bitVector = LongArrayBitVector.getInstance(2 * (1 + (n * C_TIMES_256 >> 8)));
+		// Solutions are written directly at their final place, in a bit vector or in words allocated by the storage strategy; we leave room for the final zero
+		final LongArrayBitVector bitVector = storage == null ? LongArrayBitVector.getInstance(2 * (1 + vertexOffset(n))).length(2 * vertexOffset(n)) : null;
+		final LongBigList storageWords = storage == null ? null : storage.allocate((2 * (1 + vertexOffset(n)) + Long.SIZE - 1) / Long.SIZE);
 
 		int duplicates = 0;
 
@@ -361,99 +440,43 @@ public class GOVMinimalPerfectHashFunction<T> extends AbstractHashFunction<T> im
 
 			try {
 				final int numberOfThreads = Integer.parseInt(System.getProperty(NUMBER_OF_THREADS_PROPERTY, Integer.toString(Math.min(4, Runtime.getRuntime().availableProcessors()))));
-				final ArrayBlockingQueue<Bucket> bucketQueue = new ArrayBlockingQueue<>(numberOfThreads * 8);
-				final ReorderingBlockingQueue<LongArrayBitVector> queue = new ReorderingBlockingQueue<>(numberOfThreads * 128);
-				final ExecutorService executorService = Executors.newFixedThreadPool(numberOfThreads + 2);
-				final ExecutorCompletionService<Void> executorCompletionService = new ExecutorCompletionService<>(executorService);
+				final SolutionWriter solutionWriter = storage == null ? new SolutionWriter(bitVector, 2) : new SolutionWriter(storageWords, 2);
+
+				// Threads read, sort and solve their own segments, writing solutions at the vertex offset of their bucket
+				bucketedHashStore.parallelForEach(bucket -> {
+					long seed = 0;
+					int attempts = 1;
+					final long solveStart = System.nanoTime();
+
+					final long off = vertexOffset(bucket.offset());
+					final Linear3SystemSolver solver =
+							new Linear3SystemSolver((int)(vertexOffset(bucket.offset() + bucket.size()) - off), bucket.size());
 
-				executorCompletionService.submit(() -> {
 					for(;;) {
-						final LongArrayBitVector data = queue.take();
-						if (data == END_OF_SOLUTION_QUEUE) return null;
-						bitVector.append(data);
-					}
-				});
-
-				final BucketedHashStore<T> chs = bucketedHashStore;
-				executorCompletionService.submit(() -> {
-					try {
-						final Iterator<Bucket> iterator = chs.iterator();
-						for(int i1 = 0; iterator.hasNext(); i1++) {
-							final Bucket bucket = new Bucket(iterator.next());
-							assert i1 == bucket.index();
-							synchronized(edgeOffsetAndSeed) {
-								edgeOffsetAndSeed[i1 + 1] = edgeOffsetAndSeed[i1] + bucket.size();
-								assert edgeOffsetAndSeed[i1 + 1] <= OFFSET_MASK + 1;
-							}
-							bucketQueue.put(bucket);
-						}
-					}
-					finally {
-						for(int i2 = numberOfThreads; i2-- != 0;) bucketQueue.put(END_OF_BUCKET_QUEUE);
+						final boolean solved = solver.generateAndSolve(bucket, seed, null);
+						unorientable.addAndGet(solver.unorientable);
+						unsolvable.addAndGet(solver.unsolvable);
+						if (solved) break;
+						seed += SEED_STEP;
+						attempts++;
+						if (seed == 0) throw new AssertionError("Exhausted local seeds");
 					}
-					return null;
-				});
-
-				final AtomicInteger activeThreads = new AtomicInteger(numberOfThreads);
-				for(int i = numberOfThreads; i-- != 0;) executorCompletionService.submit(() -> {
-					Thread.currentThread().setPriority(Thread.MIN_PRIORITY);
-					long bucketTime = 0;
-					final long outputTime = 0;
-					for(;;) {
-						final long start = System.nanoTime();
-						final Bucket bucket = bucketQueue.take();
-						bucketTime += System.nanoTime() - start;
-						if (bucket == END_OF_BUCKET_QUEUE) {
-							if (activeThreads.decrementAndGet() == 0) queue.put(END_OF_SOLUTION_QUEUE, numBuckets);
-							LOGGER.debug("Queue waiting time: " + Util.format(bucketTime / 1E9) + "s");
-							LOGGER.debug("Output waiting time: " + Util.format(outputTime / 1E9) + "s");
-							return null;
-						}
-						long seed = 0;
-
-						final long off = vertexOffset(edgeOffsetAndSeed[bucket.index()]);
-						final Linear3SystemSolver solver =
-								new Linear3SystemSolver((int)(vertexOffset(edgeOffsetAndSeed[bucket.index() + 1]) - off), bucket.size());
-
-						for(;;) {
-							final boolean solved = solver.generateAndSolve(bucket, seed, null);
-							unorientable.addAndGet(solver.unorientable);
-							unsolvable.addAndGet(solver.unsolvable);
-							if (solved) break;
-							seed += SEED_STEP;
-							if (seed == 0) throw new AssertionError("Exhausted local seeds");
-						}
-
-						synchronized (edgeOffsetAndSeed) {
-							edgeOffsetAndSeed[bucket.index()] |= seed;
-						}
-
-						final long[] solution = solver.solution;
-						final LongArrayBitVector dataBitVector = LongArrayBitVector.ofLength(solution.length * 2);
-						final LongBigList dataList = dataBitVector.asLongBigList(2);
-						for(int j = 0; j < solution.length; j++) dataList.set(j, solution[j]);
-						queue.put(dataBitVector, bucket.index());
-
-						synchronized(pl) {
-							pl.update();
-						}
+					if (listener != null) listener.bucketSolved(bucket.index(), bucket.size(), attempts, System.nanoTime() - solveStart);
+
+					assert bucket.offset() + bucket.size() <= OFFSET_MASK + 1;
+					edgeOffsetAndSeed[bucket.index()] = bucket.offset() | seed;
+
+					solutionWriter.write(solver.solution, off);
+
+					synchronized(pl) {
+						pl.update();
 					}
-				});
-
-				try {
-					for(int i = numberOfThreads + 2; i-- != 0;)
-						executorCompletionService.take().get();
-				} catch (final InterruptedException e) {
-					throw new RuntimeException(e);
-				} catch (final ExecutionException e) {
-					final Throwable cause = e.getCause();
-					if (cause instanceof DuplicateException) throw (DuplicateException)cause;
-					if (cause instanceof IOException) throw (IOException)cause;
-					throw new RuntimeException(cause);
-				}
-				finally {
-					executorService.shutdown();
-				}
+				}, numberOfThreads, size -> size);
+
+				edgeOffsetAndSeed[numBuckets] = n;
+				if (listener != null) listener.solverCompleted(bucketedHashStore.waitNanos(), solutionWriter.waitNanos());
+				LOGGER.debug("Bucket wait time: " + Util.format(bucketedHashStore.waitNanos() / 1E9) + "s; output wait time: " + Util.format(solutionWriter.waitNanos() / 1E9) + "s");
+
 				final long orientable = unsolvable.get() + numBuckets;
 				LOGGER.info("Unsolvable systems: " + unsolvable.get() + "/" + orientable + " (" + Util.format(100.0 * unsolvable.get() / orientable) + "%)");
 				LOGGER.info("Unorientable systems: " + unorientable.get() + "/" + (orientable + unorientable.get()) + " (" + Util.format(100.0 * unorientable.get() / (orientable + unorientable.get())) + "%)");
@@ -465,17 +488,30 @@ public class GOVMinimalPerfectHashFunction<T> extends AbstractHashFunction<T> im
 				if (keys == null) throw new IllegalStateException("You provided no keys, but the bucketed hash store was not checked");
 				if (duplicates++ > 3) throw new IllegalArgumentException("The input list contains duplicates");
 				LOGGER.warn("Found duplicate. Recomputing signatures...");
+				if (listener != null) listener.duplicateFound();
 				bucketedHashStore.reset(r.nextLong());
 				pl.itemsName = "keys";
 				bucketedHashStore.addAll(keys.iterator());
 				Arrays.fill(edgeOffsetAndSeed, 0);
+				if (storage == null) bitVector.fill(false);
+				else for (long i = storageWords.size64(); i-- != 0;) storageWords.set(i, 0);
 			}
 		}
 
 		globalSeed = bucketedHashStore.seed();
-		values = bitVector.asLongBigList(2);
-		values.add(0);
-		array = bitVector.bits();
+		final long dataStart = System.nanoTime();
+		if (storage == null) {
+			values = bitVector.asLongBigList(2);
+			values.add(0);
+			this.bitVector = bitVector;
+			array = bitVector.bits();
+			words = null;
+		} else {
+			words = storageWords;
+			this.bitVector = null;
+			values = new GOV3Function.WordLongBigList(words, 0, 2, vertexOffset(n) + 1);
+		}
+		if (listener != null) listener.dataBuilt(false, values.size64() * 2, System.nanoTime() - dataStart);
 
 		LOGGER.info("Completed.");
 		LOGGER.debug("Forecast bit cost per key: " + 2 * C + 64. / BUCKET_SIZE);
@@ -488,6 +524,7 @@ public class GOVMinimalPerfectHashFunction<T> extends AbstractHashFunction<T> im
 			pl.expectedUpdates = n;
 			pl.itemsName = "signatures";
 			pl.start("Signing...");
+			final long signatureStart = System.nanoTime();
 			for (final BucketedHashStore.Bucket bucket : bucketedHashStore) {
 				final Iterator<long[]> iterator = bucket.iterator();
 				for(int i = bucket.size(); i-- != 0;) {
@@ -497,6 +534,7 @@ public class GOVMinimalPerfectHashFunction<T> extends AbstractHashFunction<T> im
 					pl.lightUpdate();
 				}
 			}
+			if (listener != null) listener.signaturesBuilt(n, n * signatureWidth, System.nanoTime() - signatureStart);
 			pl.done();
 		}
 		else {
@@ -524,6 +562,49 @@ public class GOVMinimalPerfectHashFunction<T> extends AbstractHashFunction<T> im
 		return getLongBySignature(signature);
 	}
 
+	/**
+	 * Returns the output of this minimal perfect hash function on a slice of a byte array.
+	 *
+	 * <p>
+	 * This method returns the same value as {@link #getLong(Object)} on a copy of the slice, provided
+	 * that this minimal perfect hash function has been built using {@link TransformationStrategies#rawByteArray()} or
+	 * {@link TransformationStrategies#byteArray()}, but it hashes the bytes in place, avoiding the
+	 * creation of an array and of a bit vector.
+	 *
+	 * @param a a byte array.
+	 * @param offset the offset of the first byte of the key.
+	 * @param length the length of the key in bytes.
+	 * @return the output of this minimal perfect hash function on the given key.
+	 * @throws UnsupportedOperationException if this minimal perfect hash function has not been built using one of the
+	 *             strategies above.
+	 */
+	public long getLong(final byte[] a, final int offset, final int length) {
+		final long[] signature = new long[2];
+		Hashes.spooky4(a, offset, length, Hashes.lexicographic(transform), globalSeed, signature);
+		return getLongBySignature(signature);
+	}
+
+	/**
+	 * Returns the output of this minimal perfect hash function on a slice of a byte buffer.
+	 *
+	 * <p>
+	 * This method behaves like {@link #getLong(byte[], int, int)}, but reads the key from a (possibly
+	 * direct or memory-mapped) byte buffer using absolute positioning.
+	 *
+	 * @param buffer a byte buffer.
+	 * @param offset the index of the first byte of the key.
+	 * @param length the length of the key in bytes.
+	 * @return the output of this minimal perfect hash function on the given key.
+	 * @throws UnsupportedOperationException if this minimal perfect hash function has not been built using
+	 *             {@link TransformationStrategies#rawByteArray()} or
+	 *             {@link TransformationStrategies#byteArray()}.
+	 */
+	public long getLong(final ByteBuffer buffer, final int offset, final int length) {
+		final long[] signature = new long[2];
+		Hashes.spooky4(buffer, offset, length, Hashes.lexicographic(transform), globalSeed, signature);
+		return getLongBySignature(signature);
+	}
+
 	/** Low-level access to the output of this minimal perfect hash function.
 	 *
 	 * <p>This method makes it possible to build several kind of functions on the same {@link BucketedHashStore} and
@@ -534,19 +615,199 @@ public class GOVMinimalPerfectHashFunction<T> extends AbstractHashFunction<T> im
 	 * @return the output of the function.
 	 */
 	public long getLongBySignature(final long[] signature) {
-		final int[] e = new int[3];
-		final int bucket = (int)Math.multiplyHigh(signature[0] >>> 1, multiplier);
+		return getLongBySignature(signature[0], signature[1]);
+	}
+
+	/**
+	 * Low-level access to the output of this minimal perfect hash function on a signature given by
+	 * its two longs.
+	 *
+	 * <p>
+	 * This method returns the same value as {@link #getLongBySignature(long[])}, but it computes the
+	 * equation of the signature in local variables, so it does not allocate any object.
+	 *
+	 * @param signature0 the first long of a signature generated as documented in
+	 *            {@link BucketedHashStore}.
+	 * @param signature1 the second long of the signature.
+	 * @return the output of the function.
+	 */
+	protected long getLongBySignature(final long signature0, final long signature1) {
+		final int bucket = (int)Math.multiplyHigh(signature0 >>> 1, multiplier);
 		final long edgeOffsetSeed = edgeOffsetAndSeed[bucket];
 		final long bucketOffset = vertexOffset(edgeOffsetSeed);
 		final int numVariables = (int)(vertexOffset(edgeOffsetAndSeed[bucket + 1]) - bucketOffset);
-		//if (numVariables == 0) return defRetValue;
-		Linear3SystemSolver.signatureToEquation(signature, edgeOffsetSeed & ~OFFSET_MASK, numVariables, e);
 
-		final long result = (edgeOffsetSeed & OFFSET_MASK) + countNonzeroPairs(bucketOffset, bucketOffset + e[(int)(values.getLong(e[0] + bucketOffset) + values.getLong(e[1] + bucketOffset) + values.getLong(e[2] + bucketOffset)) % 3], array);
-		if (signatureMask != 0) return result >= n || signatures.getLong(result) != (signature[0] & signatureMask) ? defRetValue : result;
+		// Inlined Linear3SystemSolver.signatureToEquation()
+		long h0, h1, h2, h3;
+		h0 = edgeOffsetSeed & ~OFFSET_MASK;
+		h1 = Hashes.ARBITRARY_BITS + signature0;
+		h2 = Hashes.ARBITRARY_BITS + signature1;
+		h3 = Hashes.ARBITRARY_BITS;
+
+		h2 = Long.rotateLeft(h2, 50);
+		h2 += h3;
+		h0 ^= h2;
+		h3 = Long.rotateLeft(h3, 52);
+		h3 += h0;
+		h1 ^= h3;
+		h0 = Long.rotateLeft(h0, 30);
+		h0 += h1;
+		h2 ^= h0;
+		h1 = Long.rotateLeft(h1, 41);
+		h1 += h2;
+		h3 ^= h1;
+		h2 = Long.rotateLeft(h2, 54);
+		h2 += h3;
+		h0 ^= h2;
+		h3 = Long.rotateLeft(h3, 48);
+		h3 += h0;
+		h1 ^= h3;
+		h0 = Long.rotateLeft(h0, 38);
+		h0 += h1;
+		h2 ^= h0;
+		h1 = Long.rotateLeft(h1, 37);
+		h1 += h2;
+		h3 ^= h1;
+		h2 = Long.rotateLeft(h2, 62);
+		h2 += h3;
+		h0 ^= h2;
+		h3 = Long.rotateLeft(h3, 34);
+		h3 += h0;
+		h1 ^= h3;
+		h0 = Long.rotateLeft(h0, 5);
+		h0 += h1;
+		h2 ^= h0;
+		h1 = Long.rotateLeft(h1, 36);
+		h1 += h2;
+		h3 ^= h1;
+
+		final int shift = Long.numberOfLeadingZeros(numVariables);
+		final long mask = (1L << shift) - 1;
+		final long e0 = (((h0 & mask) * numVariables) >>> shift) + bucketOffset;
+		final long e1 = (((h1 & mask) * numVariables) >>> shift) + bucketOffset;
+		final long e2 = (((h2 & mask) * numVariables) >>> shift) + bucketOffset;
+
+		final long vertex;
+		switch ((int)(values.getLong(e0) + values.getLong(e1) + values.getLong(e2)) % 3) {
+		case 1:
+			vertex = e1;
+			break;
+		case 2:
+			vertex = e2;
+			break;
+		default:
+			vertex = e0;
+		}
+
+		final long result = (edgeOffsetSeed & OFFSET_MASK) + nonzeroPairs(bucketOffset, vertex);
+		if (signatureMask != 0) return result >= n || signatures.getLong(result) != (signature0 & signatureMask) ? defRetValue : result;
 		return result < n ? result : defRetValue;
 	}
 
+	/**
+	 * Returns the output of this minimal perfect hash function on a batch of keys.
+	 *
+	 * <p>
+	 * This method is equivalent to calling {@link #getLong(Object)} on each key, but it hashes all keys
+	 * first and then uses {@link #getLongsBySignature(long[][], long[])}.
+	 *
+	 * @param keys a list of keys.
+	 * @param out an array that will be filled with the output of this function on {@code keys}; it
+	 *            must be at least as long as {@code keys}.
+	 */
+	public void getLongs(final List<? extends T> keys, final long[] out) {
+		final long[][] signature = new long[keys.size()][2];
+		for (int i = 0; i < signature.length; i++) Hashes.spooky4(transform.toBitVector(keys.get(i)), globalSeed, signature[i]);
+		getLongsBySignature(signature, out);
+	}
+
+	/**
+	 * Low-level access to the output of this minimal perfect hash function on a batch of signatures.
+	 *
+	 * <p>
+	 * This method is equivalent to calling {@link #getLongBySignature(long[])} on each signature, but
+	 * it works in blocks: the bucket offsets, the equations, the values and the final counts of each
+	 * block are computed in separate passes, so that the memory accesses of different signatures can
+	 * overlap.
+	 *
+	 * @param signature an array of signatures generated as documented in {@link BucketedHashStore}.
+	 * @param out an array that will be filled with the output of this function on {@code signature};
+	 *            it must be at least as long as {@code signature}.
+	 */
+	public void getLongsBySignature(final long[][] signature, final long[] out) {
+		if (out.length < signature.length) throw new IllegalArgumentException("The output array has length " + out.length + ", but there are " + signature.length + " signatures");
+		final Batch batch = new Batch(Math.min(signature.length, BATCH_SIZE));
+		for (int from = 0; from < signature.length; from += BATCH_SIZE) getLongsBySignature(signature, from, Math.min(signature.length - from, BATCH_SIZE), out, from, batch);
+	}
+
+	/** Scratch space for batched lookups, allocated once and reused for all batches. */
+	static final class Batch {
+		final long[] edgeOffsetSeed, nextEdgeOffsetSeed, e0, e1, e2;
+		final long[] hash = new long[3];
+		final int[] e = new int[3];
+
+		Batch(final int size) {
+			edgeOffsetSeed = new long[size];
+			nextEdgeOffsetSeed = new long[size];
+			e0 = new long[size];
+			e1 = new long[size];
+			e2 = new long[size];
+		}
+	}
+
+	/**
+	 * Computes the output of this minimal perfect hash function on a batch of at most
+	 * {@link #BATCH_SIZE} signatures.
+	 *
+	 * @param signature an array of signatures.
+	 * @param from the index in {@code signature} of the first signature of the batch.
+	 * @param length the number of signatures in the batch.
+	 * @param out the array where the output on {@code signature[from + i]} will be stored at index
+	 *            {@code offset + i}.
+	 * @param offset the index in {@code out} of the output on the first signature of the batch.
+	 * @param batch scratch space of size at least {@code length}.
+	 */
+	void getLongsBySignature(final long[][] signature, final int from, final int length, final long[] out, final int offset, final Batch batch) {
+		final long[] edgeOffsetSeed = batch.edgeOffsetSeed, nextEdgeOffsetSeed = batch.nextEdgeOffsetSeed;
+		final long[] e0 = batch.e0, e1 = batch.e1, e2 = batch.e2;
+		final int[] e = batch.e;
+
+		for (int i = 0; i < length; i++) {
+			final int bucket = (int)Math.multiplyHigh(signature[from + i][0] >>> 1, multiplier);
+			edgeOffsetSeed[i] = edgeOffsetAndSeed[bucket];
+			nextEdgeOffsetSeed[i] = edgeOffsetAndSeed[bucket + 1];
+		}
+
+		for (int i = 0; i < length; i++) {
+			final long bucketOffset = vertexOffset(edgeOffsetSeed[i]);
+			Linear3SystemSolver.signatureToEquation(signature[from + i], edgeOffsetSeed[i] & ~OFFSET_MASK, (int)(vertexOffset(nextEdgeOffsetSeed[i]) - bucketOffset), batch.hash, e);
+			e0[i] = e[0] + bucketOffset;
+			e1[i] = e[1] + bucketOffset;
+			e2[i] = e[2] + bucketOffset;
+		}
+
+		// We store in e0 the chosen vertex
+		for (int i = 0; i < length; i++) {
+			switch ((int)(values.getLong(e0[i]) + values.getLong(e1[i]) + values.getLong(e2[i])) % 3) {
+			case 1:
+				e0[i] = e1[i];
+				break;
+			case 2:
+				e0[i] = e2[i];
+				break;
+			default:
+			}
+		}
+
+		for (int i = 0; i < length; i++) out[offset + i] = (edgeOffsetSeed[i] & OFFSET_MASK) + nonzeroPairs(vertexOffset(edgeOffsetSeed[i]), e0[i]);
+
+		for (int i = 0; i < length; i++) {
+			final long result = out[offset + i];
+			if (signatureMask != 0) out[offset + i] = result >= n || signatures.getLong(result) != (signature[from + i][0] & signatureMask) ? defRetValue : result;
+			else out[offset + i] = result < n ? result : defRetValue;
+		}
+	}
+
 	/** A dirty function replicating the behaviour of {@link #getLongBySignature(long[])} but skipping the
 	 * signature test. Used in the constructor. <strong>Must</strong> be kept in sync with {@link #getLongByTriple(long[])}. */
 	private long getLongBySignatureNoCheck(final long[] signature, final int[] e) {
@@ -554,7 +815,7 @@ public class GOVMinimalPerfectHashFunction<T> extends AbstractHashFunction<T> im
 		final long edgeOffsetSeed = edgeOffsetAndSeed[bucket];
 		final long bucketOffset = vertexOffset(edgeOffsetSeed);
 		Linear3SystemSolver.signatureToEquation(signature, edgeOffsetSeed & ~OFFSET_MASK, (int)(vertexOffset(edgeOffsetAndSeed[bucket + 1]) - bucketOffset), e);
-		return (edgeOffsetSeed & OFFSET_MASK) + countNonzeroPairs(bucketOffset, bucketOffset + e[(int)(values.getLong(e[0] + bucketOffset) + values.getLong(e[1] + bucketOffset) + values.getLong(e[2] + bucketOffset)) % 3], array);
+		return (edgeOffsetSeed & OFFSET_MASK) + nonzeroPairs(bucketOffset, bucketOffset + e[(int)(values.getLong(e[0] + bucketOffset) + values.getLong(e[1] + bucketOffset) + values.getLong(e[2] + bucketOffset)) % 3]);
 	}
 
 	@Override
@@ -562,9 +823,19 @@ public class GOVMinimalPerfectHashFunction<T> extends AbstractHashFunction<T> im
 		return n;
 	}
 
+	/** Counts the number of nonzero pairs between two positions in the values of this function.
+	 *
+	 * @param start start position (inclusive).
+	 * @param end end position (exclusive).
+	 * @return the number of nonzero values between {@code start} and {@code end}.
+	 */
+	private long nonzeroPairs(final long start, final long end) {
+		return array != null ? countNonzeroPairs(start, end, array) : countNonzeroPairs(start, end, words);
+	}
+
 	private void readObject(final ObjectInputStream s) throws IOException, ClassNotFoundException {
 		s.defaultReadObject();
-		array = bitVector.bits();
+		if (bitVector != null) array = bitVector.bits();
 	}
 
 	public void dump(final String file) throws IOException {
@@ -582,8 +853,9 @@ public class GOVMinimalPerfectHashFunction<T> extends AbstractHashFunction<T> im
 		channel.write(buffer);
 		buffer.clear();
 
-		buffer.putLong(array.length);
-		for(final long l: array) {
+		final LongBigList list = array != null ? LongBigLists.asBigList(LongArrayList.wrap(array)) : words;
+		buffer.putLong(list.size64());
+		for(final long l: list) {
 			if (!buffer.hasRemaining()) {
 				buffer.flip();
 				channel.write(buffer);
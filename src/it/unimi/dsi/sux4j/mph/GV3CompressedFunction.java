@@ -32,6 +32,7 @@ import java.nio.charset.Charset;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Objects;
 import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.ExecutionException;
@@ -307,6 +308,10 @@ public class GV3CompressedFunction<T> extends AbstractObject2LongFunction<T> imp
 		 * Specifies a {@linkplain Codec codec} that will be used to encode the function output values. The
 		 * default is a {@linkplain Huffman} codec with default parameters.
 		 *
+		 * <p>
+		 * Use a {@link Codec.Auto} codec to choose automatically the best codec for the distribution of
+		 * the values.
+		 *
 		 * @param codec a codec that will be used to encode the function output values
 		 * @return this builder.
 		 */
@@ -346,6 +351,8 @@ public class GV3CompressedFunction<T> extends AbstractObject2LongFunction<T> imp
 	public static final double DELTA_GAUSSIAN = 1.10;
 	/** The expected bucket size. */
 	public final static int BUCKET_SIZE = 1000; // This should be larger when peeling and using large pages
+	/** The number of signatures processed in each phase of {@link #getLongsBySignature(long[][], long[])}. */
+	private final static int BATCH_SIZE = 256;
 
 	private final int deltaTimes256;
 	/** The multiplier for buckets. */
@@ -605,9 +612,19 @@ public class GV3CompressedFunction<T> extends AbstractObject2LongFunction<T> imp
 	@Override
 	@SuppressWarnings("unchecked")
 	public long getLong(final Object o) {
-		final int[] e = new int[3];
 		final long[] signature = new long[2];
 		Hashes.spooky4(transform.toBitVector((T)o), globalSeed, signature);
+		return getLongBySignature(signature);
+	}
+
+	/**
+	 * Low-level access to the output of this function.
+	 *
+	 * @param signature a signature generated as documented in {@link BucketedHashStore}.
+	 * @return the output of the function.
+	 */
+	public long getLongBySignature(final long[] signature) {
+		final int[] e = new int[3];
 		final int bucket = (int)Math.multiplyHigh(signature[0] >>> 1, multiplier);
 		final long olc = offsetAndSeed[bucket];
 		final long bucketOffset = olc & OFFSET_MASK;
@@ -624,6 +641,72 @@ public class GV3CompressedFunction<T> extends AbstractObject2LongFunction<T> imp
 		return data.getLong(e0 + start, e0 + end) ^ data.getLong(e1 + start, e1 + end) ^ data.getLong(e2 + start, e2 + end);
 	}
 
+	/**
+	 * Returns the output of this function on a batch of keys.
+	 *
+	 * <p>
+	 * This method is equivalent to calling {@link #getLong(Object)} on each key, but it hashes all keys
+	 * first and then uses {@link #getLongsBySignature(long[][], long[])}.
+	 *
+	 * @param keys a list of keys.
+	 * @param out an array that will be filled with the output of this function on {@code keys}; it
+	 *            must be at least as long as {@code keys}.
+	 */
+	public void getLongs(final List<? extends T> keys, final long[] out) {
+		final long[][] signature = new long[keys.size()][2];
+		for (int i = 0; i < signature.length; i++) Hashes.spooky4(transform.toBitVector(keys.get(i)), globalSeed, signature[i]);
+		getLongsBySignature(signature, out);
+	}
+
+	/**
+	 * Low-level access to the output of this function on a batch of signatures.
+	 *
+	 * <p>
+	 * This method is equivalent to calling {@link #getLongBySignature(long[])} on each signature, but
+	 * it works in blocks: the bucket offsets, the equations and the codewords of each block are
+	 * computed in separate passes, so that the memory accesses of different signatures can overlap.
+	 * Decoding and escaped symbols are handled in a final pass.
+	 *
+	 * @param signature an array of signatures generated as documented in {@link BucketedHashStore}.
+	 * @param out an array that will be filled with the output of this function on {@code signature};
+	 *            it must be at least as long as {@code signature}.
+	 */
+	public void getLongsBySignature(final long[][] signature, final long[] out) {
+		if (out.length < signature.length) throw new IllegalArgumentException("The output array has length " + out.length + ", but there are " + signature.length + " signatures");
+		final int[] e = new int[3];
+		final int w = globalMaxCodewordLength;
+		final int end = w - escapeLength;
+		final int start = end - escapedSymbolLength;
+		final int batchSize = Math.min(signature.length, BATCH_SIZE);
+		final long[] offsetSeed = new long[batchSize], nextOffset = new long[batchSize];
+		final long[] e0 = new long[batchSize], e1 = new long[batchSize], e2 = new long[batchSize];
+
+		for (int from = 0; from < signature.length; from += BATCH_SIZE) {
+			final int length = Math.min(signature.length - from, BATCH_SIZE);
+
+			for (int i = 0; i < length; i++) {
+				final int bucket = (int)Math.multiplyHigh(signature[from + i][0] >>> 1, multiplier);
+				offsetSeed[i] = offsetAndSeed[bucket];
+				nextOffset[i] = offsetAndSeed[bucket + 1];
+			}
+
+			for (int i = 0; i < length; i++) {
+				final long bucketOffset = offsetSeed[i] & OFFSET_MASK;
+				Linear3SystemSolver.signatureToEquation(signature[from + i], offsetSeed[i] & SEED_MASK, (int)((nextOffset[i] & OFFSET_MASK) - bucketOffset - w), e);
+				e0[i] = e[0] + bucketOffset;
+				e1[i] = e[1] + bucketOffset;
+				e2[i] = e[2] + bucketOffset;
+			}
+
+			for (int i = 0; i < length; i++) out[from + i] = data.getLong(e0[i], e0[i] + w) ^ data.getLong(e1[i], e1[i] + w) ^ data.getLong(e2[i], e2[i] + w);
+
+			for (int i = 0; i < length; i++) {
+				final long t = decoder.decode(out[from + i]);
+				out[from + i] = t != -1 ? t : data.getLong(e0[i] + start, e0[i] + end) ^ data.getLong(e1[i] + start, e1[i] + end) ^ data.getLong(e2[i] + start, e2[i] + end);
+			}
+		}
+	}
+
 	/**
 	 * Returns the number of keys in the function domain.
 	 *
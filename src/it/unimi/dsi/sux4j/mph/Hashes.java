@@ -20,8 +20,16 @@ package it.unimi.dsi.sux4j.mph;
  *
  */
 
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Objects;
+
 import it.unimi.dsi.bits.BitVector;
 import it.unimi.dsi.bits.LongArrayBitVector;
+import it.unimi.dsi.bits.TransformationStrategies;
+import it.unimi.dsi.bits.TransformationStrategy;
 import it.unimi.dsi.logging.ProgressLogger;
 
 /**
@@ -63,7 +71,7 @@ public class Hashes {
 	private Hashes() {
 	}
 
-	private final static long ARBITRARY_BITS = 0x9e3779b97f4a7c13L; /*
+	final static long ARBITRARY_BITS = 0x9e3779b97f4a7c13L; /*
 																	 * the
 																	 * golden
 																	 * ratio; an
@@ -1765,6 +1773,389 @@ public class Hashes {
 			tuple[0] = h0;
 		}
 	}
+	/** A little-endian view of byte arrays as arrays of longs. */
+	private static final VarHandle BYTE_ARRAY_LE_LONGS = MethodHandles.byteArrayViewVarHandle(long[].class, ByteOrder.LITTLE_ENDIAN);
+	/** A little-endian view of byte buffers as arrays of longs. */
+	private static final VarHandle BYTE_BUFFER_LE_LONGS = MethodHandles.byteBufferViewVarHandle(long[].class, ByteOrder.LITTLE_ENDIAN);
+
+	/**
+	 * Reads little-endian words from a kind of byte container.
+	 *
+	 * <p>
+	 * There are just two instances, {@link #BYTE_ARRAY_READER} and {@link #BYTE_BUFFER_READER}: the
+	 * kind of container is thus chosen once per hash, rather than once per word.
+	 *
+	 * @param <S> the type of byte container.
+	 */
+	abstract static class ByteSliceReader<S> {
+		/**
+		 * Returns the given number of bytes starting at a given index, in little-endian order.
+		 *
+		 * @param slice a byte container.
+		 * @param index the index of the first byte.
+		 * @param bytes the number of bytes to read (between one and eight).
+		 * @return the bytes, the first one in the lowest bits.
+		 */
+		abstract long word(S slice, int index, int bytes);
+	}
+
+	/** A reader for byte arrays. */
+	static final ByteSliceReader<byte[]> BYTE_ARRAY_READER = new ByteSliceReader<byte[]>() {
+		@Override
+		long word(final byte[] a, final int index, final int bytes) {
+			if (bytes == Long.BYTES) return (long)BYTE_ARRAY_LE_LONGS.get(a, index);
+			long word = 0;
+			for (int i = 0; i < bytes; i++) word |= (a[index + i] & 0xFFL) << i * Byte.SIZE;
+			return word;
+		}
+	};
+
+	/** A reader for byte buffers, using absolute positioning and ignoring their byte order. */
+	static final ByteSliceReader<ByteBuffer> BYTE_BUFFER_READER = new ByteSliceReader<ByteBuffer>() {
+		@Override
+		long word(final ByteBuffer b, final int index, final int bytes) {
+			if (bytes == Long.BYTES) return (long)BYTE_BUFFER_LE_LONGS.get(b, index);
+			long word = 0;
+			for (int i = 0; i < bytes; i++) word |= (b.get(index + i) & 0xFFL) << i * Byte.SIZE;
+			return word;
+		}
+	};
+
+	/**
+	 * Returns the word of bits in the given range of the bit vector associated with a byte slice by
+	 * {@link TransformationStrategies#rawByteArray()} or {@link TransformationStrategies#byteArray()}.
+	 *
+	 * @param reader a reader for the byte container of the slice.
+	 * @param slice the byte container of the slice.
+	 * @param offset the offset of the first byte of the slice.
+	 * @param from the starting bit (inclusive), a multiple of {@link Long#SIZE}.
+	 * @param to the ending bit (exclusive); at most {@link Long#SIZE} bits after {@code from}.
+	 * @param lexicographic whether bits should be returned in the order of
+	 *            {@link TransformationStrategies#byteArray()}, rather than in that of
+	 *            {@link TransformationStrategies#rawByteArray()}.
+	 * @return the bits in the given range, as returned by {@link BitVector#getLong(long, long)}.
+	 */
+	private static <S> long word(final ByteSliceReader<S> reader, final S slice, final int offset, final long from, final long to, final boolean lexicographic) {
+		final int bits = (int)(to - from);
+		long word = reader.word(slice, offset + (int)(from >>> 3), bits + 7 >>> 3);
+		if (lexicographic) word = Long.reverseBytes(Long.reverse(word));
+		return bits == Long.SIZE ? word : word & (1L << bits) - 1;
+	}
+
+	/**
+	 * SpookyHash 4-word-state (up to four values produced) for a prefix of the bit vector associated
+	 * with a byte slice.
+	 *
+	 * <p>
+	 * This method is the common implementation of {@link #spooky4(byte[], int, int, boolean, long, long[])}
+	 * and {@link #spooky4(ByteBuffer, int, int, boolean, long, long[])}; it accepts prefixes of any
+	 * bit length, which makes it possible to hash the longest common prefixes used by
+	 * {@link LcpMonotoneMinimalPerfectHashFunction}.
+	 *
+	 * @param reader a reader for the byte container of the slice, either {@link #BYTE_ARRAY_READER} or
+	 *            {@link #BYTE_BUFFER_READER}.
+	 * @param slice the byte container of the slice.
+	 * @param offset the offset of the first byte of the slice.
+	 * @param bitLength the number of bits to hash (at most eight times the length of the slice).
+	 * @param lexicographic whether the slice should be turned into a bit vector as in
+	 *            {@link TransformationStrategies#byteArray()}, rather than as in
+	 *            {@link TransformationStrategies#rawByteArray()}.
+	 * @param seed a seed for the hash.
+	 * @param tuple a tuple of longs in which up to four generated hashes will be saved.
+	 */
+	@SuppressWarnings({"fallthrough"})
+	static <S> void spooky4(final ByteSliceReader<S> reader, final S slice, final int offset, final long bitLength, final boolean lexicographic, final long seed, final long[] tuple) {
+		long h0, h1, h2, h3;
+		h0 = seed;
+		h1 = seed;
+		h2 = ARBITRARY_BITS;
+		h3 = ARBITRARY_BITS;
+
+		final long length = bitLength;
+		long remaining = length;
+		long pos = 0;
+
+		while (remaining >= Long.SIZE * 4) {
+			h2 += word(reader, slice, offset, pos + 0 * Long.SIZE, pos + 1 * Long.SIZE, lexicographic);
+			h3 += word(reader, slice, offset, pos + 1 * Long.SIZE, pos + 2 * Long.SIZE, lexicographic);
+
+			h2 = Long.rotateLeft(h2, 50);
+			h2 += h3;
+			h0 ^= h2;
+			h3 = Long.rotateLeft(h3, 52);
+			h3 += h0;
+			h1 ^= h3;
+			h0 = Long.rotateLeft(h0, 30);
+			h0 += h1;
+			h2 ^= h0;
+			h1 = Long.rotateLeft(h1, 41);
+			h1 += h2;
+			h3 ^= h1;
+			h2 = Long.rotateLeft(h2, 54);
+			h2 += h3;
+			h0 ^= h2;
+			h3 = Long.rotateLeft(h3, 48);
+			h3 += h0;
+			h1 ^= h3;
+			h0 = Long.rotateLeft(h0, 38);
+			h0 += h1;
+			h2 ^= h0;
+			h1 = Long.rotateLeft(h1, 37);
+			h1 += h2;
+			h3 ^= h1;
+			h2 = Long.rotateLeft(h2, 62);
+			h2 += h3;
+			h0 ^= h2;
+			h3 = Long.rotateLeft(h3, 34);
+			h3 += h0;
+			h1 ^= h3;
+			h0 = Long.rotateLeft(h0, 5);
+			h0 += h1;
+			h2 ^= h0;
+			h1 = Long.rotateLeft(h1, 36);
+			h1 += h2;
+			h3 ^= h1;
+
+			h0 += word(reader, slice, offset, pos + 2 * Long.SIZE, pos + 3 * Long.SIZE, lexicographic);
+			h1 += word(reader, slice, offset, pos + 3 * Long.SIZE, pos + 4 * Long.SIZE, lexicographic);
+			remaining -= 4 * Long.SIZE;
+			pos += 4 * Long.SIZE;
+		}
+
+		if (remaining >= Long.SIZE * 2) {
+			h2 += word(reader, slice, offset, pos + 0 * Long.SIZE, pos + 1 * Long.SIZE, lexicographic);
+			h3 += word(reader, slice, offset, pos + 1 * Long.SIZE, pos + 2 * Long.SIZE, lexicographic);
+			remaining -= 2 * Long.SIZE;
+			pos += 2 * Long.SIZE;
+
+			h2 = Long.rotateLeft(h2, 50);
+			h2 += h3;
+			h0 ^= h2;
+			h3 = Long.rotateLeft(h3, 52);
+			h3 += h0;
+			h1 ^= h3;
+			h0 = Long.rotateLeft(h0, 30);
+			h0 += h1;
+			h2 ^= h0;
+			h1 = Long.rotateLeft(h1, 41);
+			h1 += h2;
+			h3 ^= h1;
+			h2 = Long.rotateLeft(h2, 54);
+			h2 += h3;
+			h0 ^= h2;
+			h3 = Long.rotateLeft(h3, 48);
+			h3 += h0;
+			h1 ^= h3;
+			h0 = Long.rotateLeft(h0, 38);
+			h0 += h1;
+			h2 ^= h0;
+			h1 = Long.rotateLeft(h1, 37);
+			h1 += h2;
+			h3 ^= h1;
+			h2 = Long.rotateLeft(h2, 62);
+			h2 += h3;
+			h0 ^= h2;
+			h3 = Long.rotateLeft(h3, 34);
+			h3 += h0;
+			h1 ^= h3;
+			h0 = Long.rotateLeft(h0, 5);
+			h0 += h1;
+			h2 ^= h0;
+			h1 = Long.rotateLeft(h1, 36);
+			h1 += h2;
+			h3 ^= h1;
+		}
+
+		if (remaining > Long.SIZE) {
+			h2 += word(reader, slice, offset, pos + 0 * Long.SIZE, pos + 1 * Long.SIZE, lexicographic);
+			h3 += word(reader, slice, offset, pos + 1 * Long.SIZE, length, lexicographic);
+		} else if (remaining > 0) {
+			h2 += word(reader, slice, offset, pos, length, lexicographic);
+		} else {
+			h2 += ARBITRARY_BITS;
+			h3 += ARBITRARY_BITS;
+		}
+
+		h0 += length;
+
+		h3 ^= h2;
+		h2 = Long.rotateLeft(h2, 15);
+		h3 += h2;
+		h0 ^= h3;
+		h3 = Long.rotateLeft(h3, 52);
+		h0 += h3;
+		h1 ^= h0;
+		h0 = Long.rotateLeft(h0, 26);
+		h1 += h0;
+		h2 ^= h1;
+		h1 = Long.rotateLeft(h1, 51);
+		h2 += h1;
+		h3 ^= h2;
+		h2 = Long.rotateLeft(h2, 28);
+		h3 += h2;
+		h0 ^= h3;
+		h3 = Long.rotateLeft(h3, 9);
+		h0 += h3;
+		h1 ^= h0;
+		h0 = Long.rotateLeft(h0, 47);
+		h1 += h0;
+		h2 ^= h1;
+		h1 = Long.rotateLeft(h1, 54);
+		h2 += h1;
+		h3 ^= h2;
+		h2 = Long.rotateLeft(h2, 32);
+		h3 += h2;
+		h0 ^= h3;
+		h3 = Long.rotateLeft(h3, 25);
+		h0 += h3;
+		h1 ^= h0;
+		h0 = Long.rotateLeft(h0, 63);
+		h1 += h0;
+
+		switch (tuple.length) {
+		case 4:
+			tuple[3] = h3;
+		case 3:
+			tuple[2] = h2;
+		case 2:
+			tuple[1] = h1;
+		case 1:
+			tuple[0] = h0;
+		}
+	}
+
+	/**
+	 * SpookyHash 4-word-state (up to four values produced) for a slice of a byte array.
+	 *
+	 * <p>
+	 * This method produces the same hashes as {@link #spooky4(BitVector, long, long[])} on the bit
+	 * vector that {@link TransformationStrategies#rawByteArray()} (or
+	 * {@link TransformationStrategies#byteArray()}, if {@code lexicographic} is true) associates with a
+	 * copy of the slice, but it reads the bytes directly and does not allocate any object.
+	 *
+	 * @param a a byte array.
+	 * @param offset the offset of the first byte of the slice.
+	 * @param length the number of bytes in the slice.
+	 * @param lexicographic whether to follow {@link TransformationStrategies#byteArray()} rather than
+	 *            {@link TransformationStrategies#rawByteArray()}.
+	 * @param seed a seed for the hash.
+	 * @param tuple a tuple of longs in which up to four generated hashes will be saved.
+	 */
+	public static void spooky4(final byte[] a, final int offset, final int length, final boolean lexicographic, final long seed, final long[] tuple) {
+		Objects.checkFromIndexSize(offset, length, a.length);
+		spooky4(BYTE_ARRAY_READER, a, offset, (long)length * Byte.SIZE, lexicographic, seed, tuple);
+	}
+
+	/**
+	 * SpookyHash 4-word-state (up to four values produced) for a slice of a byte buffer.
+	 *
+	 * <p>
+	 * This method behaves like {@link #spooky4(byte[], int, int, boolean, long, long[])}, but reads
+	 * the bytes from a (possibly direct or memory-mapped) byte buffer using absolute positioning.
+	 * Neither the position nor the byte order of the buffer are used or modified.
+	 *
+	 * @param b a byte buffer.
+	 * @param offset the index of the first byte of the slice.
+	 * @param length the number of bytes in the slice.
+	 * @param lexicographic whether to follow {@link TransformationStrategies#byteArray()} rather than
+	 *            {@link TransformationStrategies#rawByteArray()}.
+	 * @param seed a seed for the hash.
+	 * @param tuple a tuple of longs in which up to four generated hashes will be saved.
+	 */
+	public static void spooky4(final ByteBuffer b, final int offset, final int length, final boolean lexicographic, final long seed, final long[] tuple) {
+		Objects.checkFromIndexSize(offset, length, b.limit());
+		spooky4(BYTE_BUFFER_READER, b, offset, (long)length * Byte.SIZE, lexicographic, seed, tuple);
+	}
+
+	/**
+	 * Returns whether a transformation strategy is {@link TransformationStrategies#byteArray()},
+	 * rather than {@link TransformationStrategies#rawByteArray()}.
+	 *
+	 * <p>
+	 * This method is used by functions providing queries on byte slices to check that the slices are
+	 * hashed as they would be by their transformation strategy.
+	 *
+	 * @param transform a transformation strategy.
+	 * @return true if {@code transform} is {@link TransformationStrategies#byteArray()}, false if it
+	 *         is {@link TransformationStrategies#rawByteArray()}.
+	 * @throws UnsupportedOperationException if {@code transform} is neither.
+	 */
+	static boolean lexicographic(final TransformationStrategy<?> transform) {
+		if (transform == TransformationStrategies.rawByteArray()) return false;
+		if (transform == TransformationStrategies.byteArray()) return true;
+		throw new UnsupportedOperationException("Byte slices can be queried only on functions built using TransformationStrategies.rawByteArray() or TransformationStrategies.byteArray()");
+	}
+
+	/**
+	 * SpookyHash 4-word-state (up to four values produced) for a 64-bit bit vector.
+	 *
+	 * <p>
+	 * This method produces the same hashes as {@link #spooky4(BitVector, long, long[])} on a bit
+	 * vector of length {@link Long#SIZE} whose bits are those of {@code x} (e.g., the bit vector
+	 * returned by {@link it.unimi.dsi.bits.TransformationStrategies#rawFixedLong()}), but it does not
+	 * require the creation of a bit vector.
+	 *
+	 * @param x
+	 *            the bits of a bit vector of length {@link Long#SIZE}.
+	 * @param seed
+	 *            a seed for the hash.
+	 * @param tuple
+	 *            a tuple of longs in which up to four generated hashes will be
+	 *            saved.
+	 */
+	public static void spooky4(final long x, final long seed, final long[] tuple) {
+		// The initial values of h1 (seed) and h3 (ARBITRARY_BITS) are folded into their first use
+		long h0, h1, h2, h3;
+		h0 = seed + Long.SIZE;
+		h2 = ARBITRARY_BITS + x;
+
+		h3 = ARBITRARY_BITS ^ h2;
+		h2 = Long.rotateLeft(h2, 15);
+		h3 += h2;
+		h0 ^= h3;
+		h3 = Long.rotateLeft(h3, 52);
+		h0 += h3;
+		h1 = seed ^ h0;
+		h0 = Long.rotateLeft(h0, 26);
+		h1 += h0;
+		h2 ^= h1;
+		h1 = Long.rotateLeft(h1, 51);
+		h2 += h1;
+		h3 ^= h2;
+		h2 = Long.rotateLeft(h2, 28);
+		h3 += h2;
+		h0 ^= h3;
+		h3 = Long.rotateLeft(h3, 9);
+		h0 += h3;
+		h1 ^= h0;
+		h0 = Long.rotateLeft(h0, 47);
+		h1 += h0;
+		h2 ^= h1;
+		h1 = Long.rotateLeft(h1, 54);
+		h2 += h1;
+		h3 ^= h2;
+		h2 = Long.rotateLeft(h2, 32);
+		h3 += h2;
+		h0 ^= h3;
+		h3 = Long.rotateLeft(h3, 25);
+		h0 += h3;
+		h1 ^= h0;
+		h0 = Long.rotateLeft(h0, 63);
+		h1 += h0;
+
+		// Nested tests instead of a switch keep this method small enough to be inlined
+		final int length = tuple.length;
+		if (length > 0) {
+			tuple[0] = h0;
+			if (length > 1) {
+				tuple[1] = h1;
+				if (length > 2) {
+					tuple[2] = h2;
+					if (length > 3) tuple[3] = h3;
+				}
+			}
+		}
+	}
 
 	/**
 	 * SpookyHash 4-word-state (up to four values produced).
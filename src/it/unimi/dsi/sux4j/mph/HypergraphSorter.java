@@ -157,10 +157,7 @@ public class HypergraphSorter<T> {
 	public HypergraphSorter(final int numEdges, final boolean computeEdges) {
 		this.numEdges = numEdges;
 		this.computeEdges = computeEdges;
-		// The theoretically sufficient number of vertices
-		final int m = numEdges == 0 ? 0 : (int)Math.ceil(GAMMA * numEdges) + 1;
-		// This guarantees that the number of vertices is a multiple of 3
-		numVertices = m + (3 - m % 3) % 3;
+		numVertices = numVertices(numEdges);
 		partSize = numVertices / 3;
 		vertex1 = new int[numVertices];
 		vertex2 = new int[numVertices];
@@ -178,6 +175,20 @@ public class HypergraphSorter<T> {
 		this(numEdges, true);
 	}
 
+	/** Returns the number of vertices of a hypergraph sorter with a given number of edges.
+	 *
+	 * <p>This method makes it possible to compute offsets in advance, without allocating a sorter.
+	 *
+	 * @param numEdges a number of edges.
+	 * @return the number of vertices of a hypergraph sorter with {@code numEdges} edges.
+	 */
+	public static int numVertices(final int numEdges) {
+		// The theoretically sufficient number of vertices
+		final int m = numEdges == 0 ? 0 : (int)Math.ceil(GAMMA * numEdges) + 1;
+		// This guarantees that the number of vertices is a multiple of 3
+		return m + (3 - m % 3) % 3;
+	}
+
 	/** Turns a bit vector into a 3-hyperedge.
 	 *
 	 * <p>The returned edge satisfies the property that the <var>i</var>-th vertex is in the interval
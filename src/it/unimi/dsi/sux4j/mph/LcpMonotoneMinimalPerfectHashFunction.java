@@ -27,9 +27,11 @@ import java.io.File;
 import java.io.IOException;
 import java.io.InputStreamReader;
 import java.io.Serializable;
+import java.nio.ByteBuffer;
 import java.nio.charset.Charset;
 import java.util.Collection;
 import java.util.Iterator;
+import java.util.Objects;
 import java.util.zip.GZIPInputStream;
 
 import org.slf4j.Logger;
@@ -361,6 +363,65 @@ public class LcpMonotoneMinimalPerfectHashFunction<T> extends AbstractHashFuncti
 		return result < 0 || result >= n ? defRetValue : result;
 	}
 
+	/**
+	 * Returns the output of this monotone minimal perfect hash function on a slice of a byte array.
+	 *
+	 * <p>
+	 * This method returns the same value as {@link #getLong(Object)} on a copy of the slice, provided
+	 * that this function has been built using {@link TransformationStrategies#rawByteArray()} or
+	 * {@link TransformationStrategies#byteArray()}, but it hashes the bytes (and the longest common
+	 * prefix) in place, avoiding the creation of an array and of bit vectors.
+	 *
+	 * @param a a byte array.
+	 * @param offset the offset of the first byte of the key.
+	 * @param length the length of the key in bytes.
+	 * @return the output of this function on the given key.
+	 * @throws UnsupportedOperationException if this function has not been built using one of the
+	 *             strategies above.
+	 */
+	public long getLong(final byte[] a, final int offset, final int length) {
+		final boolean lexicographic = Hashes.lexicographic(transform);
+		Objects.checkFromIndexSize(offset, length, a.length);
+		return getLong(Hashes.BYTE_ARRAY_READER, a, offset, length, lexicographic);
+	}
+
+	/**
+	 * Returns the output of this monotone minimal perfect hash function on a slice of a byte buffer.
+	 *
+	 * <p>
+	 * This method behaves like {@link #getLong(byte[], int, int)}, but reads the key from a (possibly
+	 * direct or memory-mapped) byte buffer using absolute positioning.
+	 *
+	 * @param buffer a byte buffer.
+	 * @param offset the index of the first byte of the key.
+	 * @param length the length of the key in bytes.
+	 * @return the output of this function on the given key.
+	 * @throws UnsupportedOperationException if this function has not been built using
+	 *             {@link TransformationStrategies#rawByteArray()} or
+	 *             {@link TransformationStrategies#byteArray()}.
+	 */
+	public long getLong(final ByteBuffer buffer, final int offset, final int length) {
+		final boolean lexicographic = Hashes.lexicographic(transform);
+		Objects.checkFromIndexSize(offset, length, buffer.limit());
+		return getLong(Hashes.BYTE_BUFFER_READER, buffer, offset, length, lexicographic);
+	}
+
+	private <S> long getLong(final Hashes.ByteSliceReader<S> reader, final S slice, final int offset, final int length, final boolean lexicographic) {
+		if (n == 0) return defRetValue;
+		final long[] signature = new long[2];
+		Hashes.spooky4(reader, slice, offset, (long)length * Byte.SIZE, lexicographic, seed, signature);
+		final long value = offsetLcpLength.getLongBySignature(signature);
+		final long prefix = value >>> log2BucketSize;
+		if (prefix > (long)length * Byte.SIZE) return defRetValue;
+		// The longest common prefixes are hashed by lcp2Bucket using the identity strategy.
+		final long[] lcpSignature = new long[2];
+		Hashes.spooky4(reader, slice, offset, prefix, lexicographic, lcp2Bucket.globalSeed, lcpSignature);
+		final long result = (lcp2Bucket.getLongBySignature(lcpSignature) << log2BucketSize) + (value & bucketSizeMask);
+		if (signatureMask != 0) return result < 0 || result >= n || signatures.getLong(result) != (signature[0] & signatureMask) ? defRetValue : result;
+		// Out-of-set strings can generate bizarre 3-hyperedges.
+		return result < 0 || result >= n ? defRetValue : result;
+	}
+
 	@Override
 	public long size64() {
 		return n;
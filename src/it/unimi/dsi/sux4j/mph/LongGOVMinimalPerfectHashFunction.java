@@ -0,0 +1,168 @@
+package it.unimi.dsi.sux4j.mph;
+
+/*
+ * Sux4J: Succinct data structures for Java
+ *
+ * Copyright (C) 2020 Sebastiano Vigna
+ *
+ *  This library is free software; you can redistribute it and/or modify it
+ *  under the terms of the GNU Lesser General Public License as published by the Free
+ *  Software Foundation; either version 3 of the License, or (at your option)
+ *  any later version.
+ *
+ *  This library is distributed in the hope that it will be useful, but
+ *  WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ *  or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License
+ *  for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with this program; if not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Serializable;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import it.unimi.dsi.bits.TransformationStrategies;
+import it.unimi.dsi.fastutil.longs.LongIterable;
+import it.unimi.dsi.fastutil.longs.LongIterator;
+import it.unimi.dsi.logging.ProgressLogger;
+import it.unimi.dsi.sux4j.io.BucketedHashStore;
+import it.unimi.dsi.util.XoRoShiRo128PlusRandomGenerator;
+
+/**
+ * A {@link GOVMinimalPerfectHashFunction} specialized for keys of type {@code long}.
+ *
+ * <p>
+ * Instances of this class are {@link GOVMinimalPerfectHashFunction GOVMinimalPerfectHashFunctions}
+ * on {@link Long} keys using {@link TransformationStrategies#fixedLong()} as transformation
+ * strategy, but they are built from a {@link LongIterable} using
+ * {@link BucketedHashStore#addAll(LongIterator)}, and they can be queried on a primitive
+ * {@code long} using {@link #getLong(long)}: in both cases, the bit-reversed keys are hashed
+ * directly by {@link Hashes#spooky4(long, long, long[])}, with no boxing and no bit-vector
+ * creation. Querying using {@link #getLong(Object)} on a {@link Long} returns the same result.
+ *
+ * <p>
+ * {@link #getLong(long)} stores the hashes in an array that does not escape the method, so the
+ * array is removed by escape analysis once the method is compiled, whereas
+ * {@link #getLongs(long[], long[])} uses scratch space whose size does not depend on the number of
+ * keys.
+ *
+ * @author Sebastiano Vigna
+ * @since 5.1.0
+ */
+
+public class LongGOVMinimalPerfectHashFunction extends GOVMinimalPerfectHashFunction<Long> implements Serializable {
+	private static final long serialVersionUID = 0L;
+	private static final Logger LOGGER = LoggerFactory.getLogger(LongGOVMinimalPerfectHashFunction.class);
+
+	/** A builder class for {@link LongGOVMinimalPerfectHashFunction}. */
+	public static class Builder {
+		protected LongIterable keys;
+		protected int signatureWidth;
+		protected File tempDir;
+		/** Whether {@link #build()} has already been called. */
+		protected boolean built;
+
+		/** Specifies the keys to hash.
+		 *
+		 * @param keys the keys to hash.
+		 * @return this builder.
+		 */
+		public Builder keys(final LongIterable keys) {
+			this.keys = keys;
+			return this;
+		}
+
+		/** Specifies that the resulting {@link LongGOVMinimalPerfectHashFunction} should be signed using a given number of bits per key.
+		 *
+		 * @param signatureWidth a signature width, or 0 for no signature.
+		 * @return this builder.
+		 */
+		public Builder signed(final int signatureWidth) {
+			this.signatureWidth = signatureWidth;
+			return this;
+		}
+
+		/** Specifies a temporary directory for the {@link BucketedHashStore}.
+		 *
+		 * @param tempDir a temporary directory for the {@link BucketedHashStore} files, or {@code null} for the standard temporary directory.
+		 * @return this builder.
+		 */
+		public Builder tempDir(final File tempDir) {
+			this.tempDir = tempDir;
+			return this;
+		}
+
+		/** Builds a minimal perfect hash function.
+		 *
+		 * @return a {@link LongGOVMinimalPerfectHashFunction} instance with the specified parameters.
+		 * @throws IllegalStateException if called more than once.
+		 */
+		public LongGOVMinimalPerfectHashFunction build() throws IOException {
+			if (built) throw new IllegalStateException("This builder has been already used");
+			built = true;
+			if (keys == null) throw new IllegalArgumentException("You must specify the keys");
+
+			final ProgressLogger pl = new ProgressLogger(LOGGER);
+			pl.itemsName = "keys";
+			final BucketedHashStore<Long> bucketedHashStore = new BucketedHashStore<>(TransformationStrategies.fixedLong(), tempDir, pl);
+			try {
+				bucketedHashStore.reset(new XoRoShiRo128PlusRandomGenerator().nextLong());
+				bucketedHashStore.addAll(keys.iterator());
+				return new LongGOVMinimalPerfectHashFunction(keys, signatureWidth, tempDir, bucketedHashStore);
+			} finally {
+				bucketedHashStore.close();
+			}
+		}
+	}
+
+	/**
+	 * Creates a new minimal perfect hash function for the given keys.
+	 *
+	 * @param keys the keys to hash.
+	 * @param signatureWidth a signature width, or 0 for no signature.
+	 * @param tempDir a temporary directory for the store files, or {@code null} for the standard temporary directory.
+	 * @param bucketedHashStore a bucketed hash store containing the keys, built using {@link TransformationStrategies#fixedLong()}.
+	 */
+	protected LongGOVMinimalPerfectHashFunction(final LongIterable keys, final int signatureWidth, final File tempDir, final BucketedHashStore<Long> bucketedHashStore) throws IOException {
+		super(keys, TransformationStrategies.fixedLong(), signatureWidth, tempDir, bucketedHashStore);
+	}
+
+	/**
+	 * Returns the output of this minimal perfect hash function on a key of type {@code long}.
+	 *
+	 * @param key a key.
+	 * @return the output of this minimal perfect hash function on {@code key}.
+	 * @see #getLong(Object)
+	 */
+	public long getLong(final long key) {
+		final long[] signature = new long[2];
+		Hashes.spooky4(Long.reverse(key), globalSeed, signature);
+		return getLongBySignature(signature[0], signature[1]);
+	}
+
+	/**
+	 * Returns the output of this minimal perfect hash function on a batch of keys of type {@code long}.
+	 *
+	 * @param keys an array of keys.
+	 * @param out an array that will be filled with the output of this function on {@code keys}; it
+	 *            must be at least as long as {@code keys}.
+	 * @see #getLongs(java.util.List, long[])
+	 */
+	public void getLongs(final long[] keys, final long[] out) {
+		if (out.length < keys.length) throw new IllegalArgumentException("The output array has length " + out.length + ", but there are " + keys.length + " keys");
+		final int batchSize = Math.min(keys.length, BATCH_SIZE);
+		final long[][] signature = new long[batchSize][2];
+		final Batch batch = new Batch(batchSize);
+		for (int from = 0; from < keys.length; from += BATCH_SIZE) {
+			final int length = Math.min(keys.length - from, BATCH_SIZE);
+			for (int i = 0; i < length; i++) Hashes.spooky4(Long.reverse(keys[from + i]), globalSeed, signature[i]);
+			getLongsBySignature(signature, 0, length, out, from, batch);
+		}
+	}
+}
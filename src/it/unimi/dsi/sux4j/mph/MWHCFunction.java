@@ -7,6 +7,13 @@ import java.io.Serializable;
 import java.nio.charset.Charset;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.Iterator;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.zip.GZIPInputStream;
 
 import org.apache.commons.math3.random.RandomGenerator;
@@ -71,6 +78,7 @@ import it.unimi.dsi.sux4j.bits.Rank;
 import it.unimi.dsi.sux4j.bits.Rank16;
 import it.unimi.dsi.sux4j.io.ChunkedHashStore;
 import it.unimi.dsi.util.XoRoShiRo128PlusRandomGenerator;
+import it.unimi.dsi.util.concurrent.ReorderingBlockingQueue;
 
 /** An immutable function stored quasi-succinctly using the Majewski-Wormald-Havas-Czech {@linkplain HypergraphSorter 3-hypergraph technique}.
  *
@@ -120,6 +128,13 @@ import it.unimi.dsi.util.XoRoShiRo128PlusRandomGenerator;
  * thrown, the constructor will try to rebuild the store, but this requires, of course, that the keys, and possibly the values, are available.
  * Note that it is your responsibility to pass a correct store.
  *
+ * <h2>Multithreading</h2>
+ *
+ * <p>This implementation is multithreaded: each chunk returned by the {@link ChunkedHashStore} is
+ * processed independently. By default, this class uses {@link Runtime#availableProcessors()}
+ * parallel threads, but by default no more than 4. If you wish to set a specific number of threads,
+ * you can do so through the system property {@value #NUMBER_OF_THREADS_PROPERTY}.
+ *
  * <h2>Implementation Details</h2>
  *
  * After generating a random 3-hypergraph, we {@linkplain HypergraphSorter sort} its 3-hyperedges
@@ -144,6 +159,8 @@ import it.unimi.dsi.util.XoRoShiRo128PlusRandomGenerator;
 @Deprecated
 public class MWHCFunction<T> extends AbstractObject2LongFunction<T> implements Serializable, Size64 {
 	private static final long serialVersionUID = 5L;
+	private static final LongArrayBitVector END_OF_SOLUTION_QUEUE = LongArrayBitVector.getInstance();
+	private static final ChunkedHashStore.Chunk END_OF_CHUNK_QUEUE = new ChunkedHashStore.Chunk();
 	private static final Logger LOGGER = LoggerFactory.getLogger(MWHCFunction.class);
 	private static final boolean ASSERTS = false;
 	private static final boolean DEBUG = false;
@@ -294,6 +311,8 @@ public class MWHCFunction<T> extends AbstractObject2LongFunction<T> implements S
 
 	/** The logarithm of the desired chunk size. */
 	public final static int LOG2_CHUNK_SIZE = 10;
+	/** The system property used to set the number of parallel threads. */
+	public static final String NUMBER_OF_THREADS_PROPERTY = "it.unimi.dsi.sux4j.mph.threads";
 	/** The shift for chunks. */
 	private final int chunkShift;
 	/** The number of keys. */
@@ -397,48 +416,106 @@ public class MWHCFunction<T> extends AbstractObject2LongFunction<T> implements S
 		for(;;) {
 			LOGGER.debug("Generating MWHC function with " + this.width + " output bits...");
 
-			long seed = 0;
 			pl.expectedUpdates = numChunks;
 			pl.itemsName = "chunks";
 			pl.start("Analysing chunks... ");
 
 			try {
-				int q = 0;
-				final LongArrayBitVector dataBitVector = LongArrayBitVector.getInstance();
-				final LongBigList data = dataBitVector.asLongBigList(this.width);
-				for(final ChunkedHashStore.Chunk chunk: chunkedHashStore) {
-					final HypergraphSorter<BitVector> sorter = new HypergraphSorter<>(chunk.size());
-					do
-						seed = r.nextLong();
-					while (! sorter.generateAndSort(chunk.iterator(), seed));
-
-					this.seed[q] = seed;
-					dataBitVector.fill(false);
-					data.size(sorter.numVertices);
-					offset[q + 1] = offset[q] + sorter.numVertices;
-
-					/* We assign values. */
-
-					int top = chunk.size(), x, k;
-					final int[] stack = sorter.stack;
-					final int[] vertex1 = sorter.vertex1;
-					final int[] vertex2 = sorter.vertex2;
-					final int[] edge = sorter.edge;
-
-					while(top > 0) {
-						x = stack[--top];
-						k = edge[x];
-						final long s = data.getLong(vertex1[x]) ^ data.getLong(vertex2[x]);
-						final long value = indirect ? valueList.getLong(chunk.data(k)) : chunk.data(k);
-						data.set(x, value ^ s);
-
-						if (ASSERTS) assert (value == (data.getLong(x) ^ data.getLong(vertex1[x]) ^ data.getLong(vertex2[x]))) :
-							"<" + x + "," + vertex1[x] + "," + vertex2[x] + ">: " + value + " != " + (data.getLong(x) ^ data.getLong(vertex1[x]) ^ data.getLong(vertex2[x]));
+				final int numberOfThreads = Integer.parseInt(System.getProperty(NUMBER_OF_THREADS_PROPERTY, Integer.toString(Math.min(4, Runtime.getRuntime().availableProcessors()))));
+				final ArrayBlockingQueue<ChunkedHashStore.Chunk> chunkQueue = new ArrayBlockingQueue<>(numberOfThreads * 8);
+				final ReorderingBlockingQueue<LongArrayBitVector> queue = new ReorderingBlockingQueue<>(numberOfThreads * 128);
+				final ExecutorService executorService = Executors.newFixedThreadPool(numberOfThreads + 2);
+				final ExecutorCompletionService<Void> executorCompletionService = new ExecutorCompletionService<>(executorService);
+				// Each chunk gets its own generator, so the result does not depend on thread scheduling
+				final long baseSeed = r.nextLong();
+
+				executorCompletionService.submit(() -> {
+					for(;;) {
+						final LongArrayBitVector data = queue.take();
+						if (data == END_OF_SOLUTION_QUEUE) return null;
+						offlineData.add(data);
+					}
+				});
+
+				final ChunkedHashStore<T> chs = chunkedHashStore;
+				executorCompletionService.submit(() -> {
+					try {
+						final Iterator<ChunkedHashStore.Chunk> iterator = chs.iterator();
+						for(int q = 0; iterator.hasNext(); q++) {
+							final ChunkedHashStore.Chunk chunk = new ChunkedHashStore.Chunk(iterator.next());
+							assert q == chunk.index();
+							offset[q + 1] = offset[q] + HypergraphSorter.numVertices(chunk.size());
+							chunkQueue.put(chunk);
+						}
+					}
+					finally {
+						for(int i = numberOfThreads; i-- != 0;) chunkQueue.put(END_OF_CHUNK_QUEUE);
 					}
+					return null;
+				});
+
+				final AtomicInteger activeThreads = new AtomicInteger(numberOfThreads);
+				for(int i = numberOfThreads; i-- != 0;) executorCompletionService.submit(() -> {
+					Thread.currentThread().setPriority(Thread.MIN_PRIORITY);
+					for(;;) {
+						final ChunkedHashStore.Chunk chunk = chunkQueue.take();
+						if (chunk == END_OF_CHUNK_QUEUE) {
+							if (activeThreads.decrementAndGet() == 0) queue.put(END_OF_SOLUTION_QUEUE, numChunks);
+							return null;
+						}
+
+						final RandomGenerator chunkRandom = new XoRoShiRo128PlusRandomGenerator(baseSeed + chunk.index());
+						final HypergraphSorter<BitVector> sorter = new HypergraphSorter<>(chunk.size());
+						long chunkSeed;
+						do
+							chunkSeed = chunkRandom.nextLong();
+						while (! sorter.generateAndSort(chunk.iterator(), chunkSeed));
+
+						seed[chunk.index()] = chunkSeed;
+						final LongArrayBitVector dataBitVector = LongArrayBitVector.getInstance();
+						final LongBigList data = dataBitVector.asLongBigList(this.width);
+						data.size(sorter.numVertices);
+
+						/* We assign values. */
+
+						int top = chunk.size(), x, k;
+						final int[] stack = sorter.stack;
+						final int[] vertex1 = sorter.vertex1;
+						final int[] vertex2 = sorter.vertex2;
+						final int[] edge = sorter.edge;
+
+						while(top > 0) {
+							x = stack[--top];
+							k = edge[x];
+							final long s = data.getLong(vertex1[x]) ^ data.getLong(vertex2[x]);
+							final long value = indirect ? valueList.getLong(chunk.data(k)) : chunk.data(k);
+							data.set(x, value ^ s);
+
+							if (ASSERTS) assert (value == (data.getLong(x) ^ data.getLong(vertex1[x]) ^ data.getLong(vertex2[x]))) :
+								"<" + x + "," + vertex1[x] + "," + vertex2[x] + ">: " + value + " != " + (data.getLong(x) ^ data.getLong(vertex1[x]) ^ data.getLong(vertex2[x]));
+						}
+
+						queue.put(dataBitVector, chunk.index());
+						synchronized(pl) {
+							pl.update();
+						}
+					}
+				});
 
-					q++;
-					offlineData.add(dataBitVector);
-					pl.update();
+				try {
+					for(int i = numberOfThreads + 2; i-- != 0;) executorCompletionService.take().get();
+				}
+				catch(final InterruptedException e) {
+					throw new RuntimeException(e);
+				}
+				catch(final ExecutionException e) {
+					final Throwable cause = e.getCause();
+					if (cause instanceof ChunkedHashStore.DuplicateException) throw (ChunkedHashStore.DuplicateException)cause;
+					if (cause instanceof IOException) throw (IOException)cause;
+					throw new RuntimeException(cause);
+				}
+				finally {
+					executorService.shutdown();
 				}
 
 				pl.done();
@@ -452,6 +529,8 @@ public class MWHCFunction<T> extends AbstractObject2LongFunction<T> implements S
 				pl.itemsName = "keys";
 				if (values == null || indirect) chunkedHashStore.addAll(keys.iterator());
 				else chunkedHashStore.addAll(keys.iterator(), values.iterator());
+				offlineData.clear();
+				Arrays.fill(offset, 0);
 			}
 		}
 
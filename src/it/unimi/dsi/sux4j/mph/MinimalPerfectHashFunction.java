@@ -6,8 +6,15 @@ import java.io.InputStreamReader;
 import java.io.ObjectInputStream;
 import java.io.Serializable;
 import java.nio.charset.Charset;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Iterator;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.zip.GZIPInputStream;
 
 import org.apache.commons.math3.random.RandomGenerator;
@@ -64,6 +71,7 @@ import it.unimi.dsi.logging.ProgressLogger;
 import it.unimi.dsi.sux4j.bits.Rank11;
 import it.unimi.dsi.sux4j.io.ChunkedHashStore;
 import it.unimi.dsi.util.XoRoShiRo128PlusRandomGenerator;
+import it.unimi.dsi.util.concurrent.ReorderingBlockingQueue;
 
 /**
  * A minimal perfect hash function.
@@ -126,6 +134,13 @@ import it.unimi.dsi.util.XoRoShiRo128PlusRandomGenerator;
  * {@link #BITS_PER_BLOCK} bits and using {@link Long#bitCount(long)} to
  * {@linkplain #countNonzeroPairs(long) count the number of nonzero pairs of bits in a word}.
  *
+ * <h3>Multithreading</h3>
+ *
+ * <p>This implementation is multithreaded: each chunk returned by the {@link ChunkedHashStore} is
+ * processed independently. By default, this class uses {@link Runtime#availableProcessors()}
+ * parallel threads, but by default no more than 4. If you wish to set a specific number of threads,
+ * you can do so through the system property {@value #NUMBER_OF_THREADS_PROPERTY}.
+ *
  * @author Sebastiano Vigna
  * @since 0.1
  * @deprecated Use a {@link GOVMinimalPerfectHashFunction}.
@@ -134,6 +149,8 @@ import it.unimi.dsi.util.XoRoShiRo128PlusRandomGenerator;
 @Deprecated
 public class MinimalPerfectHashFunction<T> extends AbstractHashFunction<T> implements Serializable {
 	public static final long serialVersionUID = 6L;
+	private static final LongArrayBitVector END_OF_SOLUTION_QUEUE = LongArrayBitVector.getInstance();
+	private static final ChunkedHashStore.Chunk END_OF_CHUNK_QUEUE = new ChunkedHashStore.Chunk();
 	private static final Logger LOGGER = LoggerFactory.getLogger(MinimalPerfectHashFunction.class);
 	private static final boolean ASSERTS = false;
 
@@ -235,6 +252,9 @@ public class MinimalPerfectHashFunction<T> extends AbstractHashFunction<T> imple
 	/** The logarithm of the desired chunk size. */
 	public final static int LOG2_CHUNK_SIZE = 10;
 
+	/** The system property used to set the number of parallel threads. */
+	public static final String NUMBER_OF_THREADS_PROPERTY = "it.unimi.dsi.sux4j.mph.threads";
+
 	/** The number of keys. */
 	protected final long n;
 
@@ -344,51 +364,112 @@ public class MinimalPerfectHashFunction<T> extends AbstractHashFunction<T> imple
 		for (;;) {
 			LOGGER.debug("Generating minimal perfect hash function...");
 
-			long seed = 0;
 			pl.expectedUpdates = numChunks;
 			pl.itemsName = "chunks";
 			pl.start("Analysing chunks... ");
 
 			try {
-				int q = 0;
-				for (final ChunkedHashStore.Chunk chunk : chunkedHashStore) {
-					final HypergraphSorter<BitVector> sorter = new HypergraphSorter<>(chunk.size(), false);
-					do {
-						seed = r.nextLong();
-					} while (!sorter.generateAndSort(chunk.iterator(), seed));
-
-					this.seed[q] = seed;
-					offset[q + 1] = offset[q] + sorter.numVertices;
-
-					/* We assign values. */
-					int top = chunk.size(), k, v = 0;
-					final int[] stack = sorter.stack;
-					final int[] vertex1 = sorter.vertex1;
-					final int[] vertex2 = sorter.vertex2;
-					final long off = offset[q];
-
-					while (top > 0) {
-						v = stack[--top];
-						k = (v > vertex1[v] ? 1 : 0) + (v > vertex2[v] ? 1 : 0);
-						assert k >= 0 && k < 3 : Integer.toString(k);
-						//System.err.println("<" + v + ", " + vertex1[v] + ", " + vertex2[v]+ "> (" + k + ")");
-						final long s = values.getLong(off + vertex1[v]) + values.getLong(off + vertex2[v]);
-						final long value = (k - s + 9) % 3;
-						assert values.getLong(off + v) == 0;
-						values.set(off + v, value == 0 ? 3 : value);
+				final int numberOfThreads = Integer.parseInt(System.getProperty(NUMBER_OF_THREADS_PROPERTY, Integer.toString(Math.min(4, Runtime.getRuntime().availableProcessors()))));
+				final ArrayBlockingQueue<ChunkedHashStore.Chunk> chunkQueue = new ArrayBlockingQueue<>(numberOfThreads * 8);
+				final ReorderingBlockingQueue<LongArrayBitVector> queue = new ReorderingBlockingQueue<>(numberOfThreads * 128);
+				final ExecutorService executorService = Executors.newFixedThreadPool(numberOfThreads + 2);
+				final ExecutorCompletionService<Void> executorCompletionService = new ExecutorCompletionService<>(executorService);
+				// Each chunk gets its own generator, so the result does not depend on thread scheduling
+				final long baseSeed = r.nextLong();
+
+				executorCompletionService.submit(() -> {
+					// Solutions are copied sequentially, so solvers never write to shared words
+					for (int q = 0;; q++) {
+						final LongArrayBitVector data = queue.take();
+						if (data == END_OF_SOLUTION_QUEUE) return null;
+						final LongBigList chunkValues = data.asLongBigList(2);
+						final long off = offset[q];
+						for (long i = chunkValues.size64(); i-- != 0;) values.set(off + i, chunkValues.getLong(i));
+					}
+				});
+
+				final ChunkedHashStore<T> chs = chunkedHashStore;
+				executorCompletionService.submit(() -> {
+					try {
+						final Iterator<ChunkedHashStore.Chunk> iterator = chs.iterator();
+						for (int q = 0; iterator.hasNext(); q++) {
+							final ChunkedHashStore.Chunk chunk = new ChunkedHashStore.Chunk(iterator.next());
+							assert q == chunk.index();
+							offset[q + 1] = offset[q] + HypergraphSorter.numVertices(chunk.size());
+							chunkQueue.put(chunk);
+						}
+					} finally {
+						for (int i = numberOfThreads; i-- != 0;) chunkQueue.put(END_OF_CHUNK_QUEUE);
 					}
+					return null;
+				});
+
+				final AtomicInteger activeThreads = new AtomicInteger(numberOfThreads);
+				for (int i = numberOfThreads; i-- != 0;) executorCompletionService.submit(() -> {
+					Thread.currentThread().setPriority(Thread.MIN_PRIORITY);
+					for (;;) {
+						final ChunkedHashStore.Chunk chunk = chunkQueue.take();
+						if (chunk == END_OF_CHUNK_QUEUE) {
+							if (activeThreads.decrementAndGet() == 0) queue.put(END_OF_SOLUTION_QUEUE, numChunks);
+							return null;
+						}
+
+						final RandomGenerator chunkRandom = new XoRoShiRo128PlusRandomGenerator(baseSeed + chunk.index());
+						final HypergraphSorter<BitVector> sorter = new HypergraphSorter<>(chunk.size(), false);
+						long chunkSeed;
+						do {
+							chunkSeed = chunkRandom.nextLong();
+						} while (!sorter.generateAndSort(chunk.iterator(), chunkSeed));
+
+						seed[chunk.index()] = chunkSeed;
+						final LongArrayBitVector dataBitVector = LongArrayBitVector.getInstance();
+						final LongBigList chunkValues = dataBitVector.asLongBigList(2);
+						chunkValues.size(sorter.numVertices);
+
+						/* We assign values. */
+						int top = chunk.size(), k, v = 0;
+						final int[] stack = sorter.stack;
+						final int[] vertex1 = sorter.vertex1;
+						final int[] vertex2 = sorter.vertex2;
+
+						while (top > 0) {
+							v = stack[--top];
+							k = (v > vertex1[v] ? 1 : 0) + (v > vertex2[v] ? 1 : 0);
+							assert k >= 0 && k < 3 : Integer.toString(k);
+							//System.err.println("<" + v + ", " + vertex1[v] + ", " + vertex2[v]+ "> (" + k + ")");
+							final long s = chunkValues.getLong(vertex1[v]) + chunkValues.getLong(vertex2[v]);
+							final long value = (k - s + 9) % 3;
+							assert chunkValues.getLong(v) == 0;
+							chunkValues.set(v, value == 0 ? 3 : value);
+						}
 
-					q++;
-					pl.update();
+						if (ASSERTS) {
+							final IntOpenHashSet pos = new IntOpenHashSet();
+							final int[] e = new int[3];
+							for (final long[] triple : chunk) {
+								HypergraphSorter.tripleToEdge(triple, chunkSeed, sorter.numVertices, sorter.partSize, e);
+								assert pos.add(e[(int)(chunkValues.getLong(e[0]) + chunkValues.getLong(e[1]) + chunkValues.getLong(e[2])) % 3]);
+							}
+						}
 
-					if (ASSERTS) {
-						final IntOpenHashSet pos = new IntOpenHashSet();
-						final int[] e = new int[3];
-						for (final long[] triple : chunk) {
-							HypergraphSorter.tripleToEdge(triple, seed, sorter.numVertices, sorter.partSize, e);
-							assert pos.add(e[(int)(values.getLong(off + e[0]) + values.getLong(off + e[1]) + values.getLong(off + e[2])) % 3]);
+						queue.put(dataBitVector, chunk.index());
+						synchronized (pl) {
+							pl.update();
 						}
 					}
+				});
+
+				try {
+					for (int i = numberOfThreads + 2; i-- != 0;) executorCompletionService.take().get();
+				} catch (final InterruptedException e) {
+					throw new RuntimeException(e);
+				} catch (final ExecutionException e) {
+					final Throwable cause = e.getCause();
+					if (cause instanceof ChunkedHashStore.DuplicateException) throw (ChunkedHashStore.DuplicateException)cause;
+					if (cause instanceof IOException) throw (IOException)cause;
+					throw new RuntimeException(cause);
+				} finally {
+					executorService.shutdown();
 				}
 
 				pl.done();
@@ -400,6 +481,8 @@ public class MinimalPerfectHashFunction<T> extends AbstractHashFunction<T> imple
 				LOGGER.warn("Found duplicate. Recomputing triples...");
 				chunkedHashStore.reset(r.nextLong());
 				chunkedHashStore.addAll(keys.iterator());
+				bitVector.fill(false);
+				Arrays.fill(offset, 0);
 			}
 		}
 
@@ -0,0 +1,572 @@
+package it.unimi.dsi.sux4j.mph;
+
+/*
+ * Sux4J: Succinct data structures for Java
+ *
+ * Copyright (C) 2020 Sebastiano Vigna
+ *
+ *  This library is free software; you can redistribute it and/or modify it
+ *  under the terms of the GNU Lesser General Public License as published by the Free
+ *  Software Foundation; either version 3 of the License, or (at your option)
+ *  any later version.
+ *
+ *  This library is distributed in the hope that it will be useful, but
+ *  WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ *  or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License
+ *  for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with this program; if not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.commons.math3.random.RandomGenerator;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import it.unimi.dsi.Util;
+import it.unimi.dsi.bits.BitVector;
+import it.unimi.dsi.bits.Fast;
+import it.unimi.dsi.bits.LongArrayBitVector;
+import it.unimi.dsi.bits.LongBigArrayBitVector;
+import it.unimi.dsi.bits.TransformationStrategy;
+import it.unimi.dsi.fastutil.Size64;
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import it.unimi.dsi.fastutil.longs.AbstractLongBigList;
+import it.unimi.dsi.fastutil.longs.LongBigList;
+import it.unimi.dsi.fastutil.longs.LongIterable;
+import it.unimi.dsi.fastutil.longs.LongIterator;
+import it.unimi.dsi.logging.ProgressLogger;
+import it.unimi.dsi.sux4j.io.BucketedHashStore;
+import it.unimi.dsi.sux4j.io.BucketedHashStore.Bucket;
+import it.unimi.dsi.sux4j.io.BucketedHashStore.DuplicateException;
+import it.unimi.dsi.sux4j.mph.solve.Linear3SystemSolver;
+import it.unimi.dsi.util.XoRoShiRo128PlusRandomGenerator;
+
+/**
+ * An immutable function mapping each key to several values (<em>columns</em>), stored
+ * quasi-succinctly using the {@linkplain Linear3SystemSolver Genuzio-Ottaviano-Vigna method to
+ * solve <b>F</b><sub>2</sub>-linear systems}.
+ *
+ * <p>
+ * Instances of this class behave like a set of {@linkplain GOV3Function GOV3 functions} on the
+ * same keys, one for each column, but all columns share the same hashing, the same buckets and the
+ * same equations: {@link #getLongs(Object, long[])} hashes a key once, locates its bucket once, and
+ * then reads all columns from three rows of the data, which contain the values of the variables of
+ * all columns side by side. Columns can have different widths; the cost per key is
+ * {@link GOV3Function#C} times the sum of the widths, plus a small overhead per bucket.
+ *
+ * <p>
+ * Internally, columns are grouped in <em>lanes</em> of at most 64 bits, whose values are
+ * concatenated in a single {@code long}; the system of each bucket is solved once for each lane
+ * using the same local seed. In particular, when the sum of the widths does not exceed 64 the
+ * construction costs as much as that of a single {@link GOV3Function}.
+ *
+ * <p>
+ * Columns are specified by {@linkplain LongIterable iterables} returning values in the same order as
+ * the keys, and are copied during the construction into bit-packed lists of the specified width.
+ *
+ * @author Sebastiano Vigna
+ * @since 5.1.0
+ */
+
+public class MultiColumnGOV3Function<T> implements Serializable, Size64 {
+	private static final long serialVersionUID = 0L;
+	private static final Logger LOGGER = LoggerFactory.getLogger(MultiColumnGOV3Function.class);
+
+	/** The local seed is generated using this step, so to be easily embeddable in {@link #offsetAndSeed}. */
+	private static final long SEED_STEP = 1L << 56;
+	/** The lowest 56 bits of {@link #offsetAndSeed} contain the number of keys stored up to the given bucket. */
+	private static final long OFFSET_MASK = -1L >>> 8;
+
+	/** A builder class for {@link MultiColumnGOV3Function}. */
+	public static class Builder<T> {
+		protected Iterable<? extends T> keys;
+		protected TransformationStrategy<? super T> transform;
+		protected File tempDir;
+		protected BucketedHashStore<T> bucketedHashStore;
+		protected final List<LongIterable> columns = new ArrayList<>();
+		protected final IntArrayList widths = new IntArrayList();
+		protected ConstructionListener listener;
+		/** Whether {@link #build()} has already been called. */
+		protected boolean built;
+
+		/**
+		 * Specifies the keys of the function; if you have specified a {@link #store(BucketedHashStore)
+		 * BucketedHashStore}, it can be {@code null}.
+		 *
+		 * @param keys the keys of the function.
+		 * @return this builder.
+		 */
+		public Builder<T> keys(final Iterable<? extends T> keys) {
+			this.keys = keys;
+			return this;
+		}
+
+		/**
+		 * Specifies the transformation strategy for the {@linkplain #keys(Iterable) keys of the function}.
+		 *
+		 * @param transform a transformation strategy for the {@linkplain #keys(Iterable) keys of the
+		 *            function}.
+		 * @return this builder.
+		 */
+		public Builder<T> transform(final TransformationStrategy<? super T> transform) {
+			this.transform = transform;
+			return this;
+		}
+
+		/**
+		 * Specifies a temporary directory for the {@link #store(BucketedHashStore) BucketedHashStore}.
+		 *
+		 * @param tempDir a temporary directory for the {@link #store(BucketedHashStore) BucketedHashStore}
+		 *            files, or {@code null} for the standard temporary directory.
+		 * @return this builder.
+		 */
+		public Builder<T> tempDir(final File tempDir) {
+			this.tempDir = tempDir;
+			return this;
+		}
+
+		/**
+		 * Specifies a bucketed hash store containing the keys associated with their ranks.
+		 *
+		 * @param bucketedHashStore a bucketed hash store containing the keys associated with their
+		 *            ranks, or {@code null}; the store can be unchecked, but in this case you must
+		 *            specify {@linkplain #keys(Iterable) keys} and a
+		 *            {@linkplain #transform(TransformationStrategy) transform}.
+		 * @return this builder.
+		 */
+		public Builder<T> store(final BucketedHashStore<T> bucketedHashStore) {
+			this.bucketedHashStore = bucketedHashStore;
+			return this;
+		}
+
+		/**
+		 * Adds a column.
+		 *
+		 * @param values the values of the column, in the same order of the {@linkplain #keys(Iterable)
+		 *            keys}.
+		 * @param width the bit width of the column, which must be enough to represent all
+		 *            {@code values}.
+		 * @return this builder.
+		 * @see #column(LongIterable)
+		 */
+		public Builder<T> column(final LongIterable values, final int width) {
+			if (width < 0 || width > Long.SIZE) throw new IllegalArgumentException("Invalid column width: " + width);
+			columns.add(values);
+			widths.add(width);
+			return this;
+		}
+
+		/**
+		 * Adds a column whose width is the minimum width needed to represent all its values.
+		 *
+		 * <p>
+		 * Contrarily to {@link #column(LongIterable, int)}, this method requires a complete scan of
+		 * the values to determine the width.
+		 *
+		 * @param values the values of the column, in the same order of the {@linkplain #keys(Iterable)
+		 *            keys}.
+		 * @return this builder.
+		 * @see #column(LongIterable, int)
+		 */
+		public Builder<T> column(final LongIterable values) {
+			int width = 0;
+			for (final LongIterator i = values.iterator(); i.hasNext();) width = Math.max(width, Fast.mostSignificantBit(i.nextLong()) + 1);
+			return column(values, width);
+		}
+
+		/**
+		 * Specifies a listener that will receive timing and size information about the phases of
+		 * the construction.
+		 *
+		 * @param listener a construction listener.
+		 * @return this builder.
+		 */
+		public Builder<T> listener(final ConstructionListener listener) {
+			this.listener = listener;
+			return this;
+		}
+
+		/**
+		 * Builds a new function.
+		 *
+		 * @return a {@link MultiColumnGOV3Function} instance with the specified parameters.
+		 * @throws IllegalStateException if called more than once.
+		 */
+		public MultiColumnGOV3Function<T> build() throws IOException {
+			if (built) throw new IllegalStateException("This builder has been already used");
+			built = true;
+			if (transform == null) if (bucketedHashStore != null) transform = bucketedHashStore.transform();
+			else throw new IllegalArgumentException("You must specify a TransformationStrategy, either explicitly or via a given BucketedHashStore");
+			return new MultiColumnGOV3Function<>(keys, transform, columns.toArray(new LongIterable[0]), widths.toIntArray(), tempDir, bucketedHashStore, listener);
+		}
+	}
+
+	/** The multiplier for buckets. */
+	private final long multiplier;
+	/** The number of keys. */
+	protected final long n;
+	/** The number of variables. */
+	protected final long m;
+	/** The seed used to generate the initial signature. */
+	protected final long globalSeed;
+	/**
+	 * A long containing the start offset of each bucket in the lower 56 bits, and the local seed of
+	 * each bucket in the upper 8 bits.
+	 */
+	protected final long[] offsetAndSeed;
+	/** The width of each column. */
+	protected final int[] width;
+	/** The bit offset of each column in a row, plus a final element containing the row width. */
+	protected final int[] offset;
+	/** The index of the first column of each lane, plus a final element containing the number of columns. */
+	protected final int[] laneStart;
+	/** The data: for each variable, a row containing the values of the variable for all columns. */
+	protected final BitVector data;
+	/** The transformation strategy to turn objects of type <code>T</code> into bit vectors. */
+	protected final TransformationStrategy<? super T> transform;
+
+	/**
+	 * Creates a new multi-column function for the given keys and columns.
+	 *
+	 * @param keys the keys in the domain of the function, or {@code null}.
+	 * @param transform a transformation strategy for the keys.
+	 * @param columns the columns; each column returns values in the same order of {@code keys}.
+	 * @param width the width of each column.
+	 * @param tempDir a temporary directory for the store files, or {@code null} for the standard
+	 *            temporary directory.
+	 * @param bucketedHashStore a bucketed hash store containing the keys associated with their ranks,
+	 *            or {@code null}; the store can be unchecked, but in this case <code>keys</code> and
+	 *            <code>transform</code> must be non-{@code null}.
+	 * @param listener a construction listener, or {@code null}.
+	 */
+	@SuppressWarnings("resource")
+	protected MultiColumnGOV3Function(final Iterable<? extends T> keys, final TransformationStrategy<? super T> transform, final LongIterable[] columns, final int[] width, final File tempDir, BucketedHashStore<T> bucketedHashStore, final ConstructionListener listener) throws IOException {
+		this.transform = transform;
+		final int k = columns.length;
+		if (k == 0) throw new IllegalArgumentException("You must specify at least one column");
+		if (width.length != k) throw new IllegalArgumentException("The number of widths (" + width.length + ") is not equal to the number of columns (" + k + ")");
+		this.width = width.clone();
+		offset = new int[k + 1];
+		final IntArrayList laneStart = new IntArrayList();
+		laneStart.add(0);
+		for (int c = 0; c < k; c++) {
+			if (width[c] < 0 || width[c] > Long.SIZE) throw new IllegalArgumentException("Invalid column width: " + width[c]);
+			offset[c + 1] = offset[c] + width[c];
+			// Lanes are formed greedily
+			if (offset[c + 1] - offset[laneStart.getInt(laneStart.size() - 1)] > Long.SIZE) laneStart.add(c);
+		}
+		laneStart.add(k);
+		this.laneStart = laneStart.toIntArray();
+		final int numLanes = this.laneStart.length - 1;
+		final int rowWidth = offset[k];
+		final int[] laneWidth = new int[numLanes];
+		for (int l = 0; l < numLanes; l++) laneWidth[l] = offset[this.laneStart[l + 1]] - offset[this.laneStart[l]];
+
+		// Copy the columns into bit-packed lists
+		final LongBigList[] column = new LongBigList[k];
+		// Lists of width zero do not keep track of their size
+		final long[] columnSize = new long[k];
+		for (int c = 0; c < k; c++) {
+			column[c] = LongBigArrayBitVector.getInstance().asLongBigList(width[c]);
+			for (final LongIterator iterator = columns[c].iterator(); iterator.hasNext();) {
+				final long value = iterator.nextLong();
+				if (width[c] < Long.SIZE && value >>> width[c] != 0) throw new IllegalArgumentException("Value " + value + " of column " + c + " does not fit in " + width[c] + " bits");
+				column[c].add(value);
+				columnSize[c]++;
+			}
+		}
+
+		final boolean givenBucketedHashStore = bucketedHashStore != null;
+		final ProgressLogger pl = new ProgressLogger(LOGGER);
+		pl.displayLocalSpeed = true;
+		pl.displayFreeMemory = true;
+		final RandomGenerator r = new XoRoShiRo128PlusRandomGenerator();
+		pl.itemsName = "keys";
+
+		if (bucketedHashStore == null) {
+			if (keys == null) throw new IllegalArgumentException("If you do not provide a bucketed hash store, you must provide the keys");
+			bucketedHashStore = new BucketedHashStore<>(transform, tempDir, pl);
+			bucketedHashStore.listener(listener);
+			bucketedHashStore.reset(r.nextLong());
+			bucketedHashStore.addAll(keys.iterator());
+		} else if (listener != null) bucketedHashStore.listener(listener);
+		n = bucketedHashStore.size();
+
+		for (int c = 0; c < k; c++) if (columnSize[c] != n) {
+			if (!givenBucketedHashStore) bucketedHashStore.close();
+			throw new IllegalArgumentException("The number of values in column " + c + " (" + columnSize[c] + ") is not equal to the number of keys (" + n + ")");
+		}
+
+		bucketedHashStore.bucketSize(GOV3Function.BUCKET_SIZE);
+		final int numBuckets = (int)(n / GOV3Function.BUCKET_SIZE + 1);
+		multiplier = numBuckets * 2L;
+
+		LOGGER.debug("Number of buckets: " + numBuckets);
+
+		offsetAndSeed = new long[numBuckets + 1];
+
+		// Each bucket needs at most one variable more than its share of the variables for all keys
+		final long maxM = GOV3Function.bucketDataSize(n) + numBuckets;
+		final boolean big = maxM * rowWidth >= (Integer.MAX_VALUE - 8L) * Long.SIZE;
+		// Rows, directly written by the solvers
+		BitVector rawData = null;
+
+		int duplicates = 0;
+
+		for (;;) {
+			LOGGER.debug("Generating multi-column GOV function with " + k + " columns, " + numLanes + " lanes and " + rowWidth + " output bits...");
+
+			pl.expectedUpdates = numBuckets;
+			pl.itemsName = "buckets";
+			pl.start("Analysing buckets... ");
+			final AtomicLong unsolvable = new AtomicLong();
+
+			try {
+				final int numberOfThreads = GOV3Function.numberOfThreads();
+				rawData = big ? LongBigArrayBitVector.ofLength(maxM * rowWidth + Long.SIZE - 1 & -Long.SIZE) : LongArrayBitVector.ofLength(maxM * rowWidth);
+				final SolutionWriter solutionWriter = big ? new SolutionWriter((LongBigArrayBitVector)rawData, rowWidth) : new SolutionWriter((LongArrayBitVector)rawData, rowWidth);
+
+				// Threads read, sort and solve their own segments, writing rows at the offset of their bucket
+				final long totalDataSize = bucketedHashStore.parallelForEach(bucket -> {
+					final long bucketDataSize = GOV3Function.bucketDataSize(bucket.size());
+					assert bucketDataSize <= Integer.MAX_VALUE;
+					final int numVariables = (int)bucketDataSize;
+					long seed = 0;
+					int attempts = 1;
+					final long solveStart = System.nanoTime();
+					// Lanes of width zero need no solution, so when all columns have width zero no system is solved
+					final Linear3SystemSolver solver = rowWidth == 0 ? null : new Linear3SystemSolver(numVariables, bucket.size());
+					final long[][] solution = new long[numLanes][];
+
+					for (;;) {
+						boolean solved = true;
+						// All lanes must be solvable with the same local seed
+						for (int l = 0; l < numLanes && solved; l++) {
+							if (laneWidth[l] == 0) continue;
+							solved = solver.generateAndSolve(bucket, seed, laneValueList(bucket, column, l));
+							solution[l] = solver.solution;
+						}
+						if (solved) break;
+						unsolvable.incrementAndGet();
+						seed += SEED_STEP;
+						attempts++;
+						if (seed == 0) throw new AssertionError("Exhausted local seeds");
+					}
+					if (listener != null) listener.bucketSolved(bucket.index(), bucket.size(), attempts, System.nanoTime() - solveStart);
+
+					assert bucket.offset() <= OFFSET_MASK;
+					offsetAndSeed[bucket.index()] = bucket.offset() | seed;
+
+					final LongArrayBitVector rows = LongArrayBitVector.getInstance((long)numVariables * rowWidth);
+					for (int v = 0; v < numVariables; v++)
+						for (int l = 0; l < numLanes; l++) if (laneWidth[l] != 0) rows.append(solution[l][v], laneWidth[l]);
+
+					solutionWriter.write(rows, bucket.offset());
+					synchronized (pl) {
+						pl.update();
+					}
+				}, numberOfThreads, GOV3Function::bucketDataSize);
+
+				assert totalDataSize <= OFFSET_MASK + 1;
+				offsetAndSeed[numBuckets] = totalDataSize;
+				if (listener != null) listener.solverCompleted(bucketedHashStore.waitNanos(), solutionWriter.waitNanos());
+				LOGGER.debug("Bucket wait time: " + Util.format(bucketedHashStore.waitNanos() / 1E9) + "s; output wait time: " + Util.format(solutionWriter.waitNanos() / 1E9) + "s");
+
+				LOGGER.info("Unsolvable systems: " + unsolvable.get() + "/" + (unsolvable.get() + numBuckets) + " (" + Util.format(100.0 * unsolvable.get() / (unsolvable.get() + numBuckets)) + "%)");
+
+				pl.done();
+				break;
+			} catch (final DuplicateException e) {
+				if (keys == null) throw new IllegalStateException("You provided no keys, but the bucketed hash store was not checked");
+				if (duplicates++ > 3) throw new IllegalArgumentException("The input list contains duplicates");
+				LOGGER.warn("Found duplicate. Recomputing signatures...");
+				if (listener != null) listener.duplicateFound();
+				bucketedHashStore.reset(r.nextLong());
+				pl.itemsName = "keys";
+				bucketedHashStore.addAll(keys.iterator());
+				rawData = null;
+				Arrays.fill(offsetAndSeed, 0);
+			}
+		}
+
+		globalSeed = bucketedHashStore.seed();
+		m = offsetAndSeed[numBuckets];
+
+		final long dataStart = System.nanoTime();
+		data = rawData.length(m * rowWidth);
+		assert data.length() == m * rowWidth;
+		if (listener != null) listener.dataBuilt(false, data.length(), System.nanoTime() - dataStart);
+
+		LOGGER.info("Completed.");
+		LOGGER.info("Actual bit cost per element: " + (double)numBits() / n);
+
+		if (!givenBucketedHashStore) bucketedHashStore.close();
+	}
+
+	/**
+	 * Returns the values of a lane for the keys of a bucket.
+	 *
+	 * @param bucket a bucket containing ranks.
+	 * @param column the columns.
+	 * @param lane a lane.
+	 * @return a list containing, for each key of the bucket, the concatenation of the values of the
+	 *         columns of the lane.
+	 */
+	private LongBigList laneValueList(final Bucket bucket, final LongBigList[] column, final int lane) {
+		final int from = laneStart[lane], to = laneStart[lane + 1];
+		final int base = offset[from];
+		return new AbstractLongBigList() {
+			@Override
+			public long size64() {
+				return bucket.size();
+			}
+
+			@Override
+			public long getLong(final long index) {
+				final long rank = bucket.data(index);
+				long value = 0;
+				for (int c = from; c < to; c++) if (width[c] != 0) value |= column[c].getLong(rank) << offset[c] - base;
+				return value;
+			}
+		};
+	}
+
+	/**
+	 * Returns the values associated with a key.
+	 *
+	 * @param key a key.
+	 * @param out an array that will be filled with the value of each column; it must be at least as
+	 *            long as the {@linkplain #numColumns() number of columns}.
+	 * @return {@code out}.
+	 */
+	@SuppressWarnings("unchecked")
+	public long[] getLongs(final Object key, final long[] out) {
+		final long[] signature = new long[2];
+		Hashes.spooky4(transform.toBitVector((T)key), globalSeed, signature);
+		return getLongsBySignature(signature, out);
+	}
+
+	/**
+	 * Returns the value of a column associated with a key.
+	 *
+	 * @param key a key.
+	 * @param column a column.
+	 * @return the value of {@code column} associated with {@code key}.
+	 */
+	@SuppressWarnings("unchecked")
+	public long getLong(final Object key, final int column) {
+		final long[] signature = new long[2];
+		Hashes.spooky4(transform.toBitVector((T)key), globalSeed, signature);
+		return getLongBySignature(signature, column);
+	}
+
+	/**
+	 * Computes the positions in {@link #data} of the three rows associated with a signature.
+	 *
+	 * @param signature a signature.
+	 * @param row an array of three elements that will be filled with the positions.
+	 */
+	private void rows(final long[] signature, final long[] row) {
+		final int[] e = new int[3];
+		final int bucket = (int)Math.multiplyHigh(signature[0] >>> 1, multiplier);
+		final long bucketOffset = offsetAndSeed[bucket] & OFFSET_MASK;
+		final int numVariables = (int)((offsetAndSeed[bucket + 1] & OFFSET_MASK) - bucketOffset);
+		Linear3SystemSolver.signatureToEquation(signature, offsetAndSeed[bucket] & ~OFFSET_MASK, numVariables, e);
+		final long rowWidth = offset[offset.length - 1];
+		row[0] = (e[0] + bucketOffset) * rowWidth;
+		row[1] = (e[1] + bucketOffset) * rowWidth;
+		row[2] = (e[2] + bucketOffset) * rowWidth;
+	}
+
+	/**
+	 * Low-level access to the values associated with a signature.
+	 *
+	 * @param signature a signature generated as documented in {@link BucketedHashStore}.
+	 * @param out an array that will be filled with the value of each column; it must be at least as
+	 *            long as the {@linkplain #numColumns() number of columns}.
+	 * @return {@code out}.
+	 */
+	public long[] getLongsBySignature(final long[] signature, final long[] out) {
+		final long[] row = new long[3];
+		rows(signature, row);
+		final long r0 = row[0], r1 = row[1], r2 = row[2];
+		final BitVector data = this.data;
+		final int[] laneStart = this.laneStart, offset = this.offset, width = this.width;
+		for (int l = 0; l < laneStart.length - 1; l++) {
+			final int first = laneStart[l], last = laneStart[l + 1];
+			final long from = offset[first], to = offset[last];
+			if (from == to) {
+				Arrays.fill(out, first, last, 0);
+				continue;
+			}
+			final long lane = data.getLong(r0 + from, r0 + to) ^ data.getLong(r1 + from, r1 + to) ^ data.getLong(r2 + from, r2 + to);
+			for (int c = first; c < last; c++) out[c] = width[c] == 0 ? 0 : lane >>> offset[c] - from & -1L >>> Long.SIZE - width[c];
+		}
+		return out;
+	}
+
+	/**
+	 * Low-level access to the value of a column associated with a signature.
+	 *
+	 * @param signature a signature generated as documented in {@link BucketedHashStore}.
+	 * @param column a column.
+	 * @return the value of {@code column} associated with {@code signature}.
+	 */
+	public long getLongBySignature(final long[] signature, final int column) {
+		if (width[column] == 0) return 0;
+		final long[] row = new long[3];
+		rows(signature, row);
+		final long from = offset[column], to = offset[column + 1];
+		return data.getLong(row[0] + from, row[0] + to) ^ data.getLong(row[1] + from, row[1] + to) ^ data.getLong(row[2] + from, row[2] + to);
+	}
+
+	/**
+	 * Returns the number of columns of this function.
+	 *
+	 * @return the number of columns of this function.
+	 */
+	public int numColumns() {
+		return width.length;
+	}
+
+	/**
+	 * Returns the width of a column.
+	 *
+	 * @param column a column.
+	 * @return the width of {@code column}.
+	 */
+	public int width(final int column) {
+		return width[column];
+	}
+
+	@Override
+	public long size64() {
+		return n;
+	}
+
+	@Override
+	@Deprecated
+	public int size() {
+		return n > Integer.MAX_VALUE ? -1 : (int)n;
+	}
+
+	/**
+	 * Returns the number of bits used by this structure.
+	 *
+	 * @return the number of bits used by this structure.
+	 */
+	public long numBits() {
+		if (n == 0) return 0;
+		return data.length() + offsetAndSeed.length * (long)Long.SIZE;
+	}
+}
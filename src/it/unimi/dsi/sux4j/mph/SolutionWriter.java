@@ -0,0 +1,168 @@
+package it.unimi.dsi.sux4j.mph;
+
+/*
+ * Sux4J: Succinct data structures for Java
+ *
+ * Copyright (C) 2020 Sebastiano Vigna
+ *
+ *  This library is free software; you can redistribute it and/or modify it
+ *  under the terms of the GNU Lesser General Public License as published by the Free
+ *  Software Foundation; either version 3 of the License, or (at your option)
+ *  any later version.
+ *
+ *  This library is distributed in the hope that it will be useful, but
+ *  WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ *  or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License
+ *  for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with this program; if not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+import it.unimi.dsi.bits.LongArrayBitVector;
+import it.unimi.dsi.bits.LongBigArrayBitVector;
+import it.unimi.dsi.fastutil.longs.LongBigList;
+
+/** A writer of the solutions of bucket systems directly into the final bit vector of a function.
+ *
+ * <p>Since the offset of each bucket is known when the bucket is solved, solver threads can
+ * write concurrently their solution, as a sequence of fixed-width values, in disjoint portions of a
+ * preallocated bit vector. The words of the bit vector that are entirely covered by a solution
+ * are written directly; the (at most two) words shared with the neighbouring buckets are
+ * updated with a bitwise or under a lock. The bit vector must have been zeroed.
+ *
+ * <p>Writes are made visible to other threads by the usual synchronization mechanisms, such
+ * as waiting for the termination of the solver threads. The overall time spent by solver threads
+ * waiting for the lock is available from {@link #waitNanos()}.
+ *
+ * @author Sebastiano Vigna
+ * @since 5.1.0
+ */
+
+final class SolutionWriter {
+	/** The words of the bit vector, if it is a {@link LongArrayBitVector}, or {@code null}. */
+	private final long[] bits;
+	/** The words of the bit vector, if it is not a {@link LongArrayBitVector}, or {@code null}. */
+	private final LongBigList words;
+	/** The width of a value. */
+	private final int width;
+	/** The time spent waiting for the lock on boundary words; updated under the lock. */
+	private long waitNanos;
+
+	/** Creates a writer for a bit vector.
+	 *
+	 * @param bitVector a bit vector of the required length, filled with zeroes.
+	 * @param width the width of a value (it can be larger than {@link Long#SIZE} if values are
+	 *            written as {@linkplain #write(LongArrayBitVector, long) bit vectors}).
+	 */
+	public SolutionWriter(final LongArrayBitVector bitVector, final int width) {
+		this.bits = bitVector.bits();
+		this.words = null;
+		this.width = width;
+	}
+
+	/** Creates a writer for a big bit vector.
+	 *
+	 * @param bitVector a big bit vector of the required length, which must be a multiple of {@link Long#SIZE}, filled with zeroes.
+	 * @param width the width of a value (it can be larger than {@link Long#SIZE} if values are
+	 *            written as {@linkplain #write(LongArrayBitVector, long) bit vectors}).
+	 */
+	public SolutionWriter(final LongBigArrayBitVector bitVector, final int width) {
+		this(bitVector.asLongBigList(Long.SIZE), width);
+	}
+
+	/** Creates a writer for a bit vector represented by a list of words, such as a list allocated by a
+	 * {@linkplain it.unimi.dsi.sux4j.util.LongWordStorage storage strategy}.
+	 *
+	 * @param words a list of words of the required length, filled with zeroes; bit {@code i} of the bit vector
+	 *            is bit {@code i % Long.SIZE} of the word of index {@code i / Long.SIZE}.
+	 * @param width the width of a value (it can be larger than {@link Long#SIZE} if values are
+	 *            written as {@linkplain #write(LongArrayBitVector, long) bit vectors}).
+	 */
+	public SolutionWriter(final LongBigList words, final int width) {
+		this.bits = null;
+		this.words = words;
+		this.width = width;
+	}
+
+	/** Writes a solution.
+	 *
+	 * @param solution the values of a solution, each fitting in {@code width} bits.
+	 * @param offset the index of the value at which the solution must be written.
+	 */
+	public void write(final long[] solution, final long offset) {
+		final int width = this.width;
+		if (solution.length == 0 || width == 0) return;
+		final long start = offset * width, end = start + (long)solution.length * width;
+		final long firstWord = start >>> 6;
+		final long[] local = new long[(int)(((end - 1) >>> 6) - firstWord + 1)];
+
+		long pos = start & 63;
+		for (final long value : solution) {
+			final int w = (int)(pos >>> 6), b = (int)(pos & 63);
+			local[w] |= value << b;
+			if (b + width > Long.SIZE) local[w + 1] |= value >>> Long.SIZE - b;
+			pos += width;
+		}
+
+		commit(firstWord, local);
+	}
+
+	/** Writes a solution given as a bit vector.
+	 *
+	 * <p>This method makes it possible to write solutions made of values wider than
+	 * {@link Long#SIZE} bits, such as the rows of a {@link MultiColumnGOV3Function}.
+	 *
+	 * @param solution a bit vector containing the concatenation of the values of a solution; its
+	 *            length must be a multiple of {@code width}.
+	 * @param offset the index of the value at which the solution must be written.
+	 */
+	public void write(final LongArrayBitVector solution, final long offset) {
+		final long length = solution.length();
+		assert width == 0 || length % width == 0;
+		if (length == 0) return;
+		final long start = offset * width, end = start + length;
+		final long firstWord = start >>> 6;
+		final long[] local = new long[(int)(((end - 1) >>> 6) - firstWord + 1)];
+		final long[] bits = solution.bits();
+
+		final int b = (int)(start & 63), numWords = (int)((length + 63) >>> 6);
+		for (int i = 0; i < numWords; i++) {
+			// Clear the bits beyond the length of the solution
+			final long word = i == numWords - 1 ? bits[i] & -1L >>> -length : bits[i];
+			local[i] |= word << b;
+			if (b != 0 && i + 1 < local.length) local[i + 1] |= word >>> Long.SIZE - b;
+		}
+
+		commit(firstWord, local);
+	}
+
+	/** Writes a sequence of words, oring the first and the last one under a lock. */
+	private void commit(final long firstWord, final long[] local) {
+		final int last = local.length - 1;
+		// Boundary words might be shared with other buckets
+		final long waitStart = System.nanoTime();
+		synchronized (this) {
+			waitNanos += System.nanoTime() - waitStart;
+			or(firstWord, local[0]);
+			if (last != 0) or(firstWord + last, local[last]);
+		}
+		if (bits != null) System.arraycopy(local, 1, bits, (int)firstWord + 1, Math.max(0, last - 1));
+		else for (int i = 1; i < last; i++) words.set(firstWord + i, local[i]);
+	}
+
+	/** Returns the time spent by writing threads waiting for the lock on the words shared by neighbouring buckets.
+	 *
+	 * @return the overall time, in nanoseconds, spent waiting to write solutions.
+	 */
+	public synchronized long waitNanos() {
+		return waitNanos;
+	}
+
+	/** Ors a value into a word of the bit vector. */
+	private void or(final long word, final long value) {
+		if (bits != null) bits[(int)word] |= value;
+		else words.set(word, words.getLong(word) | value);
+	}
+}
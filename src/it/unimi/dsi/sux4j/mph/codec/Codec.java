@@ -20,10 +20,15 @@ package it.unimi.dsi.sux4j.mph.codec;
  *
  */
 
+import java.io.IOException;
+import java.io.ObjectInputStream;
 import java.io.Serializable;
 import java.nio.ByteBuffer;
 import java.util.Arrays;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
 import com.google.common.primitives.Longs;
 
 import it.unimi.dsi.bits.Fast;
@@ -31,6 +36,7 @@ import it.unimi.dsi.fastutil.longs.Long2IntMap;
 import it.unimi.dsi.fastutil.longs.Long2IntMaps;
 import it.unimi.dsi.fastutil.longs.Long2IntOpenHashMap;
 import it.unimi.dsi.fastutil.longs.Long2LongMap;
+import it.unimi.dsi.fastutil.longs.Long2LongMaps;
 import it.unimi.dsi.fastutil.longs.LongArrays;
 import it.unimi.dsi.sux4j.mph.GV3CompressedFunction;
 
@@ -416,8 +422,20 @@ public interface Codec {
 			private final int escapedSymbolLength;
 			private final int escapeLength;
 
+			/**
+			 * A canonical Huffman decoder.
+			 *
+			 * <p>
+			 * Besides the canonical decoding tables, this decoder uses a small direct lookup table indexed
+			 * by the first {@link #DIRECT_TABLE_BITS} bits of a codeword sequence: for codewords not
+			 * longer than that, the table contains the rank of the symbol, so decoding requires no search;
+			 * for longer codewords, the table contains the block at which the canonical scan must start.
+			 * The table is rebuilt at deserialization time.
+			 */
 			public final static class Decoder implements Codec.Decoder {
 				private static final long serialVersionUID = 0L;
+				/** The maximum number of bits used to index the direct lookup table (1024 integers, so it fits in the L1 cache). */
+				public static final int DIRECT_TABLE_BITS = 10;
 
 				private final int escapedSymbolLength;
 				private final int escapeLength;
@@ -425,6 +443,13 @@ public interface Codec {
 				private final int[] howManyUpToBlock;
 				private final long[] symbol;
 				private final byte[] shift;
+				/**
+				 * The direct lookup table: a nonnegative entry is the rank of a symbol, whereas a negative
+				 * entry is the bitwise negation of the block at which the canonical scan must start.
+				 */
+				private transient int[] direct;
+				/** The shift that turns a codeword sequence into an index in {@link #direct}. */
+				private transient int directShift;
 
 				public Decoder(final long[] lastCodeWordPlusOne, final int[] howManyUpToBlock, final byte[] shift, final int escapeLength, final int escapedSymbolLength, final long[] symbol) {
 					this.lastCodeWordPlusOne = lastCodeWordPlusOne;
@@ -433,6 +458,44 @@ public interface Codec {
 					this.escapeLength = escapeLength;
 					this.escapedSymbolLength = escapedSymbolLength;
 					this.symbol = symbol;
+					buildDirectTable();
+				}
+
+				/**
+				 * Returns the block of the canonical decoding tables containing the codeword at the start
+				 * of a sequence.
+				 *
+				 * @param value a sequence of bits as in {@link #decode(long)}.
+				 * @param curr the first block to examine.
+				 * @return the block containing the codeword at the start of {@code value}.
+				 */
+				private int block(final long value, int curr) {
+					final long[] lastCodeWordPlusOne = this.lastCodeWordPlusOne;
+					while (value >= lastCodeWordPlusOne[curr]) curr++;
+					return curr;
+				}
+
+				/** Builds the {@linkplain #direct direct lookup table}. */
+				private void buildDirectTable() {
+					// The escape codeword is the longest one, so this is the maximum codeword length
+					final int w = escapeLength + escapedSymbolLength;
+					final int bits = Math.min(w, DIRECT_TABLE_BITS);
+					directShift = w - bits;
+					direct = new int[1 << bits];
+					for (int i = 0; i < direct.length; i++) {
+						final long first = (long)i << directShift;
+						final long last = first | (1L << directShift) - 1;
+						final int curr = block(first, 0);
+						if (block(last, curr) == curr && shift[curr] >= directShift) {
+							final int s = shift[curr];
+							direct[i] = (int)((first >>> s) - (lastCodeWordPlusOne[curr] >>> s)) + howManyUpToBlock[curr];
+						} else direct[i] = ~curr;
+					}
+				}
+
+				private void readObject(final ObjectInputStream s) throws IOException, ClassNotFoundException {
+					s.defaultReadObject();
+					buildDirectTable();
 				}
 
 				@Override
@@ -447,24 +510,16 @@ public interface Codec {
 
 				@Override
 				public long decode(final long value) {
-					//System.err.println("value: " + StringUtils.leftPad(Long.toBinaryString(value), 64, '0'));
-					final long[] lastCodeWordPlusOne = this.lastCodeWordPlusOne;
-					for (int curr = 0;; curr++) {
-						// System.err.println("Checking " + Long.toHexString(value) + " against " + Long.toHexString(lastCodeWordPlusOne[curr]));
-						if (value < lastCodeWordPlusOne[curr]) {
-							//System.err.println("LC:" + StringUtils.leftPad(Long.toBinaryString(lastCodeWordPlusOne[curr]), 64, '0'));
-							//System.err.println("Diff: " + StringUtils.leftPad(Long.toBinaryString((lastCodeWordPlusOne[curr] >>> (shift[curr])) - (x >>> (shift[curr]))), 64, '0'));
-							//System.err.println(howManyUpToBlock[curr]);
-							//System.err.println(curr + " " + listLength);
-							final int s = shift[curr];
-							return symbol[(int)((value >>> s) - (lastCodeWordPlusOne[curr] >>> s)) + howManyUpToBlock[curr]];
-						}
-					}
+					final int entry = direct[(int)(value >>> directShift)];
+					if (entry >= 0) return symbol[entry];
+					final int curr = block(value, ~entry);
+					final int s = shift[curr];
+					return symbol[(int)((value >>> s) - (lastCodeWordPlusOne[curr] >>> s)) + howManyUpToBlock[curr]];
 				}
 
 				@Override
 				public long numBits() {
-					return Integer.SIZE * shift.length + Integer.SIZE * howManyUpToBlock.length + Long.SIZE * lastCodeWordPlusOne.length + Long.SIZE * symbol.length;
+					return Integer.SIZE * shift.length + Integer.SIZE * howManyUpToBlock.length + Long.SIZE * lastCodeWordPlusOne.length + Long.SIZE * symbol.length + Integer.SIZE * direct.length;
 				}
 
 				public void dump(final ByteBuffer buffer) {
@@ -697,4 +752,133 @@ public interface Codec {
 			return new Coder(codeword, Arrays.copyOf(length, cutpoint + 1), Arrays.copyOf(symbol, cutpoint + 1), symbol2Rank, maxLengthEscaped);
 		}
 	}
+
+	/**
+	 * A codec that chooses automatically, among a list of candidate codecs, the one minimizing a
+	 * combination of space and decoding cost.
+	 *
+	 * <p>
+	 * For each candidate, this codec builds a coder for the given frequencies and estimates the number
+	 * of bits per key (the expected codeword length plus the space used by the decoder, amortized over
+	 * the keys) and the expected number of table accesses of a decoding operation (zero for arithmetic
+	 * codes such as {@link Gamma}, {@link Unary} and {@link Binary}; for a {@link Huffman} code, the
+	 * accesses to the direct and symbol tables, plus the blocks scanned for long codewords, plus
+	 * {@link #ESCAPE_COST} for escaped symbols). The coder minimizing
+	 *
+	 * <blockquote>bits per key + <var>speedWeight</var> &times; table accesses per key</blockquote>
+	 *
+	 * <p>
+	 * is returned. A weight of zero chooses the most compact code; larger weights trade space for
+	 * speed. Candidates that cannot represent the given symbols (e.g., arithmetic codes with negative
+	 * symbols or codewords longer than 62 bits) are skipped.
+	 *
+	 * @since 5.1.0
+	 */
+	public static class Auto implements Codec {
+		private static final Logger LOGGER = LoggerFactory.getLogger(Auto.class);
+		/** The cost, in table accesses, of retrieving an escaped symbol, which requires three further reads of the data. */
+		public static final int ESCAPE_COST = 3;
+		/** The weight of a table access, in bits per key. */
+		private final double speedWeight;
+		/** The candidate codecs. */
+		private final Codec[] candidates;
+
+		/**
+		 * Creates a new automatic codec choosing among the given candidates.
+		 *
+		 * @param speedWeight the cost, in bits per key, of a table access during decoding.
+		 * @param candidates the candidate codecs.
+		 */
+		public Auto(final double speedWeight, final Codec... candidates) {
+			if (speedWeight < 0) throw new IllegalArgumentException("Negative speed weight: " + speedWeight);
+			if (candidates.length == 0) throw new IllegalArgumentException("You must specify at least one candidate codec");
+			this.speedWeight = speedWeight;
+			this.candidates = candidates.clone();
+		}
+
+		/**
+		 * Creates a new automatic codec choosing among an unlimited {@link Huffman} codec, a
+		 * {@link Huffman} codec with at most eight codeword lengths, and {@link Gamma}, {@link Unary}
+		 * and {@link Binary} codecs.
+		 *
+		 * @param speedWeight the cost, in bits per key, of a table access during decoding.
+		 */
+		public Auto(final double speedWeight) {
+			this(speedWeight, new Huffman(), new Huffman(8), new Gamma(), new Unary(), new Binary());
+		}
+
+		/** Creates a new automatic codec choosing the most compact code among the default candidates. */
+		public Auto() {
+			this(0);
+		}
+
+		/**
+		 * Estimates the expected number of table accesses of a decoding operation.
+		 *
+		 * @param frequencies a map from symbols to frequencies.
+		 * @param coder a {@link Huffman} coder for {@code frequencies}.
+		 * @param n the sum of the frequencies.
+		 * @return the expected number of table accesses of a decoding operation.
+		 */
+		private static double huffmanAccesses(final Long2LongMap frequencies, final Codec.Coder coder, final long n) {
+			final int directTableBits = Huffman.Coder.Decoder.DIRECT_TABLE_BITS;
+			// blocks[l] is the number of distinct codeword lengths in (DIRECT_TABLE_BITS..l]
+			final int[] blocks = new int[Long.SIZE];
+			for (final Long2LongMap.Entry e : Long2LongMaps.fastIterable(frequencies)) if (coder.encode(e.getLongKey()) != -1) blocks[coder.codewordLength(e.getLongKey())] = 1;
+			for (int l = 0; l <= directTableBits; l++) blocks[l] = 0;
+			for (int l = 1; l < blocks.length; l++) blocks[l] += blocks[l - 1];
+
+			long accesses = 0;
+			for (final Long2LongMap.Entry e : Long2LongMaps.fastIterable(frequencies)) {
+				final long symbol = e.getLongKey();
+				// Direct table and symbol table
+				long cost = 2;
+				if (coder.encode(symbol) == -1) cost += ESCAPE_COST + blocks[blocks.length - 1];
+				else cost += blocks[coder.codewordLength(symbol)];
+				accesses += cost * e.getLongValue();
+			}
+			return (double)accesses / n;
+		}
+
+		@Override
+		public Codec.Coder getCoder(final Long2LongMap frequencies) {
+			if (frequencies.isEmpty()) return ZeroCodec.getInstance().getCoder(frequencies);
+			long n = 0, min = Long.MAX_VALUE, max = Long.MIN_VALUE;
+			for (final Long2LongMap.Entry e : Long2LongMaps.fastIterable(frequencies)) {
+				n += e.getLongValue();
+				min = Math.min(min, e.getLongKey());
+				max = Math.max(max, e.getLongKey());
+			}
+
+			Codec.Coder best = null;
+			Codec bestCodec = null;
+			double bestCost = Double.POSITIVE_INFINITY;
+			for (final Codec codec : candidates) {
+				if (!(codec instanceof Huffman) && (min < 0 || codec instanceof Unary && max > 61)) continue;
+				final Codec.Coder coder = codec.getCoder(frequencies);
+				if (coder.maxCodewordLength() > 62) continue;
+				final Codec.Decoder decoder;
+				try {
+					decoder = coder.getDecoder();
+				} catch (final IllegalArgumentException e) {
+					continue;
+				}
+
+				long bits = 0;
+				for (final Long2LongMap.Entry e : Long2LongMaps.fastIterable(frequencies)) bits += coder.codewordLength(e.getLongKey()) * e.getLongValue();
+				final double accesses = codec instanceof Huffman ? huffmanAccesses(frequencies, coder, n) : 0;
+				final double cost = (double)(bits + decoder.numBits()) / n + speedWeight * accesses;
+				LOGGER.debug("Codec " + codec.getClass().getSimpleName() + ": " + (double)(bits + decoder.numBits()) / n + " bits/key, " + accesses + " accesses/key, cost " + cost);
+				if (cost < bestCost) {
+					best = coder;
+					bestCodec = codec;
+					bestCost = cost;
+				}
+			}
+
+			if (best == null) throw new IllegalArgumentException("No candidate codec can encode the given symbols");
+			LOGGER.info("Chosen codec: " + bestCodec.getClass().getSimpleName());
+			return best;
+		}
+	}
 }
@@ -204,7 +204,21 @@ public class Linear3SystemSolver {
 	 * @param e an array to store the resulting equation.
 	 */
 	public static void signatureToEquation(final long[] signature, final long seed, final int numVariables, final int e[]) {
-		final long[] hash = new long[3];
+		signatureToEquation(signature, seed, numVariables, new long[3], e);
+	}
+
+	/** Turns a signature into an equation using a given array to store intermediate hashes.
+	 *
+	 * <p>This method behaves like {@link #signatureToEquation(long[], long, int, int[])}, but it does not allocate
+	 * any object, so it can be called repeatedly on the same arrays.
+	 *
+	 * @param signature a signature (two longs). Note that if a longer vector is provided, only the first two elements will be used.
+	 * @param seed the seed for the hash function.
+	 * @param numVariables the nonzero number of variables in the system.
+	 * @param hash an array of length three used to store intermediate hashes.
+	 * @param e an array to store the resulting equation.
+	 */
+	public static void signatureToEquation(final long[] signature, final long seed, final int numVariables, final long[] hash, final int e[]) {
 		Hashes.spooky4(signature[0], signature[1], seed, hash);
 		final int shift = Long.numberOfLeadingZeros(numVariables);
 		final long mask = (1L << shift) - 1;
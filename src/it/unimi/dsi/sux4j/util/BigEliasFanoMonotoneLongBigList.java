@@ -0,0 +1,211 @@
+package it.unimi.dsi.sux4j.util;
+
+/*
+ * Sux4J: Succinct data structures for Java
+ *
+ * Copyright (C) 2020 Sebastiano Vigna
+ *
+ *  This library is free software; you can redistribute it and/or modify it
+ *  under the terms of the GNU Lesser General Public License as published by the Free
+ *  Software Foundation; either version 3 of the License, or (at your option)
+ *  any later version.
+ *
+ *  This library is distributed in the hope that it will be useful, but
+ *  WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ *  or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License
+ *  for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with this program; if not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+import java.io.Serializable;
+
+import it.unimi.dsi.bits.Fast;
+import it.unimi.dsi.fastutil.BigArrays;
+import it.unimi.dsi.fastutil.ints.IntIterable;
+import it.unimi.dsi.fastutil.longs.AbstractLongBigList;
+import it.unimi.dsi.fastutil.longs.LongBigArrays;
+import it.unimi.dsi.fastutil.longs.LongIterable;
+import it.unimi.dsi.fastutil.longs.LongIterator;
+import it.unimi.dsi.fastutil.longs.LongIterators;
+import it.unimi.dsi.sux4j.bits.BigSimpleSelect;
+
+/** An {@link EliasFanoMonotoneLongBigList} storing its bits in {@linkplain BigArrays big arrays}.
+ *
+ * <p>An {@link EliasFanoMonotoneLongBigList} stores its lower bits and its upper bits in standard arrays of longs, and thus cannot
+ * represent sequences whose lower or upper bits span more than about 2<sup>37</sup> bits (see {@link EliasFanoMonotoneLongBigList#fits(long, long)}).
+ * This class uses the same representation, but stores the lower bits in a big array, and uses a {@link BigSimpleSelect} on the upper bits,
+ * so there is no practical limit on the length of the sequence. Accesses are slightly slower than with an {@link EliasFanoMonotoneLongBigList}.
+ *
+ * @author Sebastiano Vigna
+ * @since 5.1.0
+ */
+
+public class BigEliasFanoMonotoneLongBigList extends AbstractLongBigList implements Serializable {
+	private static final long serialVersionUID = 0L;
+
+	/** The length of the sequence. */
+	protected final long length;
+	/** The number of lower bits. */
+	protected final int l;
+	/** The list of lower bits of each element, stored explicitly. */
+	protected final long[][] lowerBits;
+	/** The select structure used to extract the upper bits. */
+	protected final BigSimpleSelect selectUpper;
+	/** The mask for the lower bits. */
+	protected final long lowerBitsMask;
+
+	/** Creates an Elias&ndash;Fano representation of the values returned by the given {@linkplain Iterable iterable object}.
+	 *
+	 * @param list an iterable object.
+	 */
+	public BigEliasFanoMonotoneLongBigList(final IntIterable list) {
+		this((LongIterable) () -> LongIterators.wrap(list.iterator()));
+	}
+
+	/** Creates an Elias&ndash;Fano representation of the values returned by the given {@linkplain Iterable iterable object}.
+	 *
+	 * @param list an iterable object.
+	 */
+	public BigEliasFanoMonotoneLongBigList(final LongIterable list) {
+		this(computeParameters(list.iterator()), list.iterator());
+	}
+
+	/** Computes the number of elements and the last element returned by the given iterator.
+	 *
+	 * @param iterator an iterator.
+	 * @return a two-element array of longs containing the number of elements returned by
+	 * the iterator and the last returned element, respectively.
+	 */
+	private static long[] computeParameters(final LongIterator iterator) {
+		long v = -1, prev = -1, c = 0;
+		while(iterator.hasNext()) {
+			v = iterator.nextLong();
+			if (prev > v) throw new IllegalArgumentException("The list of values is not monotone: " + prev + " > " + v);
+			prev = v;
+			c++;
+		}
+
+		return new long[] { c, v };
+	}
+
+	/** Creates an Elias&ndash;Fano representation of the values returned by an iterator, given that
+	 * the overall number of elements and an upper bound are provided, too.
+	 *
+	 * <p>This constructor is particularly useful if the elements of the iterator are provided by
+	 * some sequential source.
+	 *
+	 * @param n the number of elements returned by <code>iterator</code>.
+	 * @param upperBound an upper bound to the values returned by <code>iterator</code>.
+	 * @param iterator an iterator returning nondecreasing elements.
+	 */
+	public BigEliasFanoMonotoneLongBigList(final long n, final long upperBound, final LongIterator iterator) {
+		this(new long[] { n, upperBound }, iterator);
+	}
+
+	/**  Creates an Elias&ndash;Fano representation of the values returned by an iterator, given that
+	 * the overall number of elements and an upper bound are provided, too.
+	 *
+	 * <p>This constructor is used only internally, to work around the usual problems
+	 * caused by the obligation to call <code>this()</code> before anything else.
+	 *
+	 * @param a an array containing the number of elements returned by <code>iterator</code> and
+	 * an upper bound to the values returned by <code>iterator</code>.
+	 * @param iterator an iterator returning nondecreasing elements.
+	 */
+	protected BigEliasFanoMonotoneLongBigList(final long[] a, final LongIterator iterator) {
+		length = a[0];
+		final long upperBound = a[1];
+		final int l = this.l = length == 0 ? 0 : Math.max(0, Fast.mostSignificantBit(upperBound / length));
+		final long lowerBitsMask = this.lowerBitsMask = (1L << l) - 1;
+		// One more word, so that lower bits can be read without checking bounds
+		final long[][] lowerBits = LongBigArrays.newBigArray((length * l + Long.SIZE - 1) / Long.SIZE + 1);
+		final long upperBitsLength = length + (upperBound >>> l) + 1;
+		final long[][] upperBits = LongBigArrays.newBigArray((upperBitsLength + Long.SIZE - 1) / Long.SIZE);
+		long last = Long.MIN_VALUE;
+		for(long i = 0; i < length; i++) {
+			final long v = iterator.nextLong();
+			if (v > upperBound) throw new IllegalArgumentException("Too large value: " + v + " > " + upperBound);
+			if (v < last) throw new IllegalArgumentException("Values are not nondecreasing: " + v + " < " + last);
+			if (l != 0) {
+				final long position = i * l;
+				final long word = position / Long.SIZE;
+				final int bit = (int)(position % Long.SIZE);
+				final long lower = v & lowerBitsMask;
+				BigArrays.set(lowerBits, word, BigArrays.get(lowerBits, word) | lower << bit);
+				if (bit + l > Long.SIZE) BigArrays.set(lowerBits, word + 1, BigArrays.get(lowerBits, word + 1) | lower >>> -bit);
+			}
+			final long position = (v >>> l) + i;
+			BigArrays.set(upperBits, position / Long.SIZE, BigArrays.get(upperBits, position / Long.SIZE) | 1L << position);
+			last = v;
+		}
+
+		if (iterator.hasNext()) throw new IllegalArgumentException("There are more than " + length + " values in the provided iterator");
+		this.lowerBits = lowerBits;
+		selectUpper = new BigSimpleSelect(upperBits, upperBitsLength);
+	}
+
+	public long numBits() {
+		return selectUpper.numBits() + selectUpper.bitVector().length() + BigArrays.length(lowerBits) * Long.SIZE;
+	}
+
+	/** Extracts the lower bits of an element.
+	 *
+	 * @param position the position of the lower bits of the element.
+	 * @return the lower bits.
+	 */
+	private long lowerBits(final long position) {
+		final long startWord = position / Long.SIZE;
+		final int startBit = (int)(position % Long.SIZE);
+		final long result = BigArrays.get(lowerBits, startWord) >>> startBit;
+		return (startBit + l <= Long.SIZE ? result : result | BigArrays.get(lowerBits, startWord + 1) << -startBit) & lowerBitsMask;
+	}
+
+	@Override
+	public long getLong(final long index) {
+		final long upperBits = selectUpper.select(index) - index;
+		if (l == 0) return upperBits;
+		return upperBits << l | lowerBits(index * l);
+	}
+
+	/** Extracts a number of consecutive entries into a given array fragment.
+	 *
+	 * @param index the index of the first entry returned.
+	 * @param dest the destination array; it will be filled with {@code length} consecutive entries starting at position {@code offset}.
+	 * @param offset the first position written in {@code dest}.
+	 * @param length the number of elements written in {@code dest} starting at {@code offset}.
+	 * @return {@code dest}
+	 * @see #get(long, long[])
+	 */
+	public long[] get(long index, final long dest[], final int offset, final int length) {
+		selectUpper.select(index, dest, offset, length);
+		if (l == 0) for(int i = 0; i < length; i++) dest[offset + i] -= index++;
+		else {
+			long position = index * l;
+			for(int i = 0; i < length; i++) {
+				dest[offset + i] = dest[offset + i] - index++ << l | lowerBits(position);
+				position += l;
+			}
+		}
+
+		return dest;
+	}
+
+	/** Extracts a number of consecutive entries into a given array.
+	 *
+	 * @param index the index of the first entry returned.
+	 * @param dest the destination array; it will be filled with consecutive entries.
+	 * @return {@code dest}
+	 * @see #get(long, long[], int, int)
+	 */
+	public long[] get(final long index, final long dest[]) {
+		return get(index, dest, 0, dest.length);
+	}
+
+	@Override
+	public long size64() {
+		return length;
+	}
+}
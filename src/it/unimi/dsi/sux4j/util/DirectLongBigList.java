@@ -0,0 +1,149 @@
+package it.unimi.dsi.sux4j.util;
+
+/*
+ * Sux4J: Succinct data structures for Java
+ *
+ * Copyright (C) 2020 Sebastiano Vigna
+ *
+ *  This library is free software; you can redistribute it and/or modify it
+ *  under the terms of the GNU Lesser General Public License as published by the Free
+ *  Software Foundation; either version 3 of the License, or (at your option)
+ *  any later version.
+ *
+ *  This library is distributed in the hope that it will be useful, but
+ *  WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ *  or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License
+ *  for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with this program; if not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+import java.io.File;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.RandomAccessFile;
+import java.io.Serializable;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+
+import it.unimi.dsi.fastutil.longs.AbstractLongBigList;
+
+/**
+ * A fixed-size big list of longs stored in direct (off-heap) or memory-mapped {@linkplain ByteBuffer
+ * byte buffers}.
+ *
+ * <p>
+ * Instances of this class are allocated by the {@linkplain LongWordStorage#offHeap() off-heap} and
+ * {@linkplain LongWordStorage#mapped(File) mapped} storage strategies. Longs are stored in native
+ * byte order in chunks of 2<sup>27</sup> elements, so the size of a list is not limited by the
+ * maximum size of a buffer. Reads and writes use absolute positioning, so concurrent reads are
+ * safe.
+ *
+ * <p>
+ * Instances are serialized by value; deserialized instances are always allocated in direct memory.
+ *
+ * @since 5.1.0
+ */
+
+public class DirectLongBigList extends AbstractLongBigList implements Serializable {
+	private static final long serialVersionUID = 0L;
+	/** The base-2 logarithm of the number of longs in a chunk. */
+	private static final int LOG2_CHUNK_SIZE = 27;
+	/** The number of longs in a chunk. */
+	private static final long CHUNK_SIZE = 1L << LOG2_CHUNK_SIZE;
+	/** The mask used to compute the index of a long in its chunk. */
+	private static final long CHUNK_MASK = CHUNK_SIZE - 1;
+
+	/** The number of elements of this list. */
+	private final long size;
+	/** The chunks of this list. */
+	private transient ByteBuffer[] buffer;
+
+	/**
+	 * Creates a new zero-filled list in direct memory.
+	 *
+	 * @param size the number of elements of the list.
+	 */
+	public DirectLongBigList(final long size) {
+		this(size, allocate(size));
+	}
+
+	private DirectLongBigList(final long size, final ByteBuffer[] buffer) {
+		this.size = size;
+		this.buffer = buffer;
+	}
+
+	private static int numChunks(final long size) {
+		if (size < 0) throw new IllegalArgumentException("Negative size: " + size);
+		return (int)(size + CHUNK_SIZE - 1 >>> LOG2_CHUNK_SIZE);
+	}
+
+	private static int chunkLength(final long size, final int chunk) {
+		return (int)Math.min(CHUNK_SIZE, size - ((long)chunk << LOG2_CHUNK_SIZE)) * Long.BYTES;
+	}
+
+	private static ByteBuffer[] allocate(final long size) {
+		final ByteBuffer[] buffer = new ByteBuffer[numChunks(size)];
+		for (int i = 0; i < buffer.length; i++) buffer[i] = ByteBuffer.allocateDirect(chunkLength(size, i)).order(ByteOrder.nativeOrder());
+		return buffer;
+	}
+
+	/**
+	 * Creates a new zero-filled list in a memory-mapped temporary file.
+	 *
+	 * <p>
+	 * The file is created in the given directory and deleted when the virtual machine exits; the
+	 * mapping is valid until the list is garbage collected.
+	 *
+	 * @param directory a directory for the temporary file, or {@code null} for the standard
+	 *            temporary directory.
+	 * @param size the number of elements of the list.
+	 * @return a new list backed by a memory-mapped temporary file.
+	 */
+	public static DirectLongBigList map(final File directory, final long size) throws IOException {
+		final ByteBuffer[] buffer = new ByteBuffer[numChunks(size)];
+		final File file = File.createTempFile(DirectLongBigList.class.getSimpleName(), ".words", directory);
+		file.deleteOnExit();
+		try (final RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+			raf.setLength(size * Long.BYTES);
+			final FileChannel channel = raf.getChannel();
+			for (int i = 0; i < buffer.length; i++) buffer[i] = channel.map(MapMode.READ_WRITE, (i * CHUNK_SIZE) * Long.BYTES, chunkLength(size, i)).order(ByteOrder.nativeOrder());
+		}
+		return new DirectLongBigList(size, buffer);
+	}
+
+	@Override
+	public long getLong(final long index) {
+		return buffer[(int)(index >>> LOG2_CHUNK_SIZE)].getLong((int)(index & CHUNK_MASK) * Long.BYTES);
+	}
+
+	@Override
+	public long set(final long index, final long value) {
+		final ByteBuffer b = buffer[(int)(index >>> LOG2_CHUNK_SIZE)];
+		final int offset = (int)(index & CHUNK_MASK) * Long.BYTES;
+		final long old = b.getLong(offset);
+		b.putLong(offset, value);
+		return old;
+	}
+
+	@Override
+	public long size64() {
+		return size;
+	}
+
+	private void writeObject(final ObjectOutputStream s) throws IOException {
+		s.defaultWriteObject();
+		for (long i = 0; i < size; i++) s.writeLong(getLong(i));
+	}
+
+	private void readObject(final ObjectInputStream s) throws IOException, ClassNotFoundException {
+		s.defaultReadObject();
+		buffer = allocate(size);
+		for (long i = 0; i < size; i++) set(i, s.readLong());
+	}
+}
@@ -1,6 +1,7 @@
 package it.unimi.dsi.sux4j.util;
 
 import java.io.Serializable;
+import java.util.stream.LongStream;
 
 /*
  * Sux4J: Succinct data structures for Java
@@ -43,10 +44,12 @@ import it.unimi.dsi.sux4j.bits.SimpleSelect;
  * <p>Instances of this class represent in a highly compacted form a nondecreasing sequence of natural numbers. Instances
  * are built by providing either an iterator returning the (nondecreasing) sequence, or an {@linkplain Iterable iterable object} that
  * provides such an iterator. In the first case, you must also provide in advance the number of elements that will be returned and an upper bound to their
- * values (see below), and at the end of the construction the iterator will be exhausted.
+ * values (see below), and at the end of the construction the iterator will be exhausted. Instances built from
+ * a {@linkplain #EliasFanoMonotoneLongBigList(LongBigList) random-access list} are built in parallel.
  *
  * <p>An additional {@linkplain #get(long, long[], int, int) bulk method} makes it possible
- * to extract several consecutive entries at high speed.
+ * to extract several consecutive entries at high speed. If you need to search for the first element greater than or
+ * equal to a given bound, or to intersect lists, use an {@link EliasFanoIndexedMonotoneLongBigList}.
  *
  * <h2>Implementation details</h2>
  *
@@ -74,7 +77,8 @@ import it.unimi.dsi.sux4j.bits.SimpleSelect;
  *
  * <p>This implementation uses {@link SimpleSelect} to support selection inside the upper-bits array, and
  * exploits {@link SimpleSelect#select(long, long[], int, int)} to implement
- * {@link #get(long, long[], int, int)}.
+ * {@link #get(long, long[], int, int)}. Sequences whose lower or upper bits do not fit into an array
+ * of longs can be represented by a {@link BigEliasFanoMonotoneLongBigList}.
  */
 
 public class EliasFanoMonotoneLongBigList extends AbstractLongBigList implements Serializable {
@@ -93,6 +97,8 @@ public class EliasFanoMonotoneLongBigList extends AbstractLongBigList implements
 
 
 	/** Returns true if this class can accommodate a list with the given number of elements and upper bound.
+	 *
+	 * <p>If this method returns false, you can use a {@link BigEliasFanoMonotoneLongBigList}.
 	 *
 	 * @return true if this class can accommodate a list with the given number of elements and upper bound.
 	 */
@@ -142,6 +148,99 @@ public class EliasFanoMonotoneLongBigList extends AbstractLongBigList implements
 		this(computeParameters(list.iterator()), list.iterator());
 	}
 
+	/** Creates an Elias&ndash;Fano representation of the values of the given random-access list.
+	 *
+	 * <p>This constructor makes two passes over the list (the first one checks monotonicity, the second one sets the bits), dividing it into
+	 * chunks that are processed in parallel, and then builds in parallel the selection structure on the upper bits. The list must support
+	 * concurrent reads. The result is the same as that of {@link #EliasFanoMonotoneLongBigList(LongIterable)}.
+	 *
+	 * @param list a random-access list of nondecreasing natural numbers.
+	 */
+	public EliasFanoMonotoneLongBigList(final LongBigList list) {
+		this(new ParallelBuilder(list));
+	}
+
+	private EliasFanoMonotoneLongBigList(final ParallelBuilder builder) {
+		this(builder.length, builder.l, builder.lowerBits, builder.selectUpper);
+	}
+
+	/** Builds in parallel the components of an Elias&ndash;Fano representation of a random-access list. */
+	private static final class ParallelBuilder {
+		/** The number of elements in a chunk; it is a multiple of {@link Long#SIZE}, so the lower bits of different chunks never share a word. */
+		private static final int CHUNK_SIZE = 1 << 20;
+
+		private final long length;
+		private final int l;
+		private final long[] lowerBits;
+		private final SimpleSelect selectUpper;
+
+		private ParallelBuilder(final LongBigList list) {
+			final long length = this.length = list.size64();
+			final long numChunks = (length + CHUNK_SIZE - 1) / CHUNK_SIZE;
+
+			// First pass: we check monotonicity.
+			chunks(numChunks).forEach(chunk -> {
+				final long from = chunk * CHUNK_SIZE, to = Math.min(length, from + CHUNK_SIZE);
+				long prev = from == 0 ? 0 : list.getLong(from - 1);
+				for(long i = from; i < to; i++) {
+					final long v = list.getLong(i);
+					if (prev > v) throw new IllegalArgumentException("The list of values is not monotone: " + prev + " > " + v);
+					prev = v;
+				}
+			});
+
+			final long upperBound = length == 0 ? -1 : list.getLong(length - 1);
+			final int l = this.l = length == 0 ? 0 : Math.max(0, Fast.mostSignificantBit(upperBound / length));
+			final long lowerBitsMask = (1L << l) - 1;
+			final LongArrayBitVector lowerBitsVector = LongArrayBitVector.getInstance();
+			lowerBitsVector.asLongBigList(l).size(length);
+			final long[] lowerBits = this.lowerBits = lowerBitsVector.bits();
+			final BitVector upperBitsVector = LongArrayBitVector.getInstance().length(length + (upperBound >>> l) + 1);
+			final long[] upperBits = upperBitsVector.bits();
+
+			// Second pass: we set the lower and upper bits.
+			chunks(numChunks).forEach(chunk -> {
+				final long from = chunk * CHUNK_SIZE, to = Math.min(length, from + CHUNK_SIZE);
+				// The first and last word of upper bits of a chunk might be shared with adjacent chunks
+				final int firstWord = (int)(((list.getLong(from) >>> l) + from) / Long.SIZE);
+				final int lastWord = (int)(((list.getLong(to - 1) >>> l) + to - 1) / Long.SIZE);
+				long first = 0, last = 0;
+				for(long i = from; i < to; i++) {
+					final long v = list.getLong(i);
+					if (l != 0) {
+						final long position = i * l;
+						final int startWord = (int)(position / Long.SIZE);
+						final int startBit = (int)(position % Long.SIZE);
+						lowerBits[startWord] |= (v & lowerBitsMask) << startBit;
+						if (startBit + l > Long.SIZE) lowerBits[startWord + 1] |= (v & lowerBitsMask) >>> -startBit;
+					}
+					final long position = (v >>> l) + i;
+					final int word = (int)(position / Long.SIZE);
+					if (word == firstWord) first |= 1L << position;
+					else if (word == lastWord) last |= 1L << position;
+					else upperBits[word] |= 1L << position;
+				}
+
+				synchronized(upperBits) {
+					upperBits[firstWord] |= first;
+					upperBits[lastWord] |= last;
+				}
+			});
+
+			selectUpper = new SimpleSelect(upperBitsVector);
+		}
+
+		/** Returns a stream of chunk indices, which is parallel if there is more than one chunk.
+		 *
+		 * @param numChunks the number of chunks.
+		 * @return a stream of chunk indices.
+		 */
+		private static LongStream chunks(final long numChunks) {
+			final LongStream chunks = LongStream.range(0, numChunks);
+			return numChunks > 1 ? chunks.parallel() : chunks;
+		}
+	}
+
 	/** Computes the number of elements and the last element returned by the given iterator.
 	 *
 	 *
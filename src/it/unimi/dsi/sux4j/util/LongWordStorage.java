@@ -0,0 +1,110 @@
+package it.unimi.dsi.sux4j.util;
+
+/*
+ * Sux4J: Succinct data structures for Java
+ *
+ * Copyright (C) 2020 Sebastiano Vigna
+ *
+ *  This library is free software; you can redistribute it and/or modify it
+ *  under the terms of the GNU Lesser General Public License as published by the Free
+ *  Software Foundation; either version 3 of the License, or (at your option)
+ *  any later version.
+ *
+ *  This library is distributed in the hope that it will be useful, but
+ *  WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ *  or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License
+ *  for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with this program; if not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+import java.io.File;
+import java.io.IOException;
+
+import it.unimi.dsi.fastutil.longs.LongBigArrayBigList;
+import it.unimi.dsi.fastutil.longs.LongBigArrays;
+import it.unimi.dsi.fastutil.longs.LongBigList;
+
+/**
+ * A strategy allocating the 64-bit words in which succinct data structures store their bit-packed
+ * data.
+ *
+ * <p>
+ * Large structures, such as the data of a {@link it.unimi.dsi.sux4j.mph.GOV3Function}, are usually
+ * stored in heap-allocated arrays; when there are many of them, or they are very large, this puts
+ * a lot of pressure on the garbage collector and limits their size. Structures that accept a
+ * storage strategy can instead place their data {@linkplain #offHeap() off-heap} or in a
+ * {@linkplain #mapped(File) memory-mapped file}. Storage is used only at construction time:
+ * serialized structures save their data by value, and on deserialization the data of an off-heap
+ * or mapped structure is always copied into direct memory, even if it was memory-mapped when the
+ * structure was built. The only way to access the data of a structure without loading it into
+ * memory is to {@linkplain it.unimi.dsi.sux4j.mph.GOV3Function#dump(String) dump} it and then
+ * {@linkplain it.unimi.dsi.sux4j.mph.GOV3Function#map(String, it.unimi.dsi.bits.TransformationStrategy)
+ * map} the dump.
+ *
+ * <p>
+ * At present, storage strategies are accepted by
+ * {@link it.unimi.dsi.sux4j.mph.GOV3Function.Builder#storage(LongWordStorage)} and
+ * {@link it.unimi.dsi.sux4j.mph.GOVMinimalPerfectHashFunction.Builder#storage(LongWordStorage)},
+ * whose solvers write directly into the allocated words, so no heap copy of the data is ever
+ * built. Ranking and selection structures such as {@link it.unimi.dsi.sux4j.bits.Rank9} and
+ * {@link it.unimi.dsi.sux4j.bits.SimpleSelect}, and the lower bits of an
+ * {@link EliasFanoMonotoneLongBigList}, are still stored in heap arrays, which their hot paths
+ * index directly.
+ *
+ * @since 5.1.0
+ */
+
+public interface LongWordStorage {
+
+	/**
+	 * Allocates a zero-filled list of words of given length.
+	 *
+	 * <p>
+	 * Callers access the returned list only through {@link LongBigList#getLong(long)} and
+	 * {@link LongBigList#set(long, long)}, and must not change its size. The lists returned by
+	 * {@link #offHeap()} and {@link #mapped(File)} have fixed size, whereas the lists returned by
+	 * {@link #heap()} are {@linkplain LongBigArrayBigList growable}.
+	 *
+	 * @param length the number of words.
+	 * @return a list of {@code length} zero words.
+	 */
+	LongBigList allocate(long length) throws IOException;
+
+	/**
+	 * Returns a storage strategy allocating words in {@linkplain LongBigArrays big arrays} on the heap.
+	 *
+	 * <p>
+	 * The big arrays are wrapped by a {@link LongBigArrayBigList}, so, unlike the lists allocated
+	 * by the other strategies, the returned lists can grow.
+	 *
+	 * @return a storage strategy allocating words on the heap.
+	 */
+	static LongWordStorage heap() {
+		return length -> LongBigArrayBigList.wrap(LongBigArrays.newBigArray(length));
+	}
+
+	/**
+	 * Returns a storage strategy allocating words in direct (off-heap) memory.
+	 *
+	 * @return a storage strategy allocating words in direct memory.
+	 * @see DirectLongBigList#DirectLongBigList(long)
+	 */
+	static LongWordStorage offHeap() {
+		return DirectLongBigList::new;
+	}
+
+	/**
+	 * Returns a storage strategy allocating words in memory-mapped temporary files.
+	 *
+	 * @param directory a directory for the temporary files, or {@code null} for the standard
+	 *            temporary directory.
+	 * @return a storage strategy allocating words in memory-mapped files.
+	 * @see DirectLongBigList#map(File, long)
+	 */
+	static LongWordStorage mapped(final File directory) {
+		return length -> DirectLongBigList.map(directory, length);
+	}
+}
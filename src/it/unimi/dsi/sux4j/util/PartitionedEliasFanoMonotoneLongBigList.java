@@ -0,0 +1,357 @@
+package it.unimi.dsi.sux4j.util;
+
+/*
+ * Sux4J: Succinct data structures for Java
+ *
+ * Copyright (C) 2020 Sebastiano Vigna
+ *
+ *  This library is free software; you can redistribute it and/or modify it
+ *  under the terms of the GNU Lesser General Public License as published by the Free
+ *  Software Foundation; either version 3 of the License, or (at your option)
+ *  any later version.
+ *
+ *  This library is distributed in the hope that it will be useful, but
+ *  WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ *  or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License
+ *  for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with this program; if not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+import java.io.Serializable;
+import java.util.Arrays;
+
+import it.unimi.dsi.bits.Fast;
+import it.unimi.dsi.bits.LongArrayBitVector;
+import it.unimi.dsi.fastutil.ints.IntIterable;
+import it.unimi.dsi.fastutil.ints.IntIterator;
+import it.unimi.dsi.fastutil.longs.AbstractLongBigList;
+import it.unimi.dsi.fastutil.longs.LongBigArrayBigList;
+import it.unimi.dsi.fastutil.longs.LongIterable;
+import it.unimi.dsi.fastutil.longs.LongIterator;
+import it.unimi.dsi.fastutil.longs.LongIterators;
+import it.unimi.dsi.sux4j.bits.SelectInWord;
+
+/** A partitioned Elias&ndash;Fano representation of monotone sequences, in which each partition is represented
+ * in the most convenient way.
+ *
+ * <p>Instances of this class represent, like instances of {@link EliasFanoMonotoneLongBigList}, a nondecreasing sequence of
+ * natural numbers, and provide the same access methods, but the sequence is divided into partitions of fixed size (by default,
+ * {@value #DEFAULT_LOG2_PARTITION_SIZE} elements), each of which is represented independently choosing the smallest among
+ * the following representations:
+ * <ul>
+ * <li>a <em>run</em>, if the partition contains consecutive values, in which case no space is used besides a header;
+ * <li>a <em>bitmap</em> of the values of the partition, if the partition contains distinct values;
+ * <li>an Elias&ndash;Fano representation of the values of the partition, using a number of lower bits that depends
+ * only on the partition.
+ * </ul>
+ *
+ * <p>Since a global Elias&ndash;Fano representation uses the same number of lower bits for all elements, sequences that
+ * alternate dense and sparse regions (e.g., timestamps, offsets or identifiers with dense runs) are represented
+ * much more compactly by a partitioned representation, at the price of a slightly slower random access.
+ *
+ * <h2>Implementation details</h2>
+ *
+ * <p>The first element of each partition and the starting bit of each partition in a single bit array are stored
+ * in two instances of {@link EliasFanoMonotoneLongBigList}. Each partition starts with an 8-bit header containing the type of
+ * representation and, in the Elias&ndash;Fano case, the number of lower bits; partitions store their values minus the first
+ * element of the partition. This scheme is a simplified version (with uniform partitions) of the one described by Giuseppe Ottaviano and Rossano Venturini in
+ * &ldquo;Partitioned Elias-Fano indexes&rdquo;, <i>Proc. of the 37th International ACM SIGIR Conference on Research
+ * &amp; Development in Information Retrieval</i>, pages 273&minus;282, ACM, 2014. Selection inside a partition is performed by
+ * broadword scanning, as partitions are small: for this reason, their size is at most 2<sup>{@value #MAX_LOG2_PARTITION_SIZE}</sup>.
+ *
+ * <p>The bits of all partitions are stored in a single array of longs, so, as in the case of an {@link EliasFanoMonotoneLongBigList},
+ * they cannot be more than about 2<sup>37</sup> (an {@link IllegalArgumentException} is thrown at construction time otherwise).
+ * Since a partition uses at least eight bits for its header, and usually a few bits per element, this limits the length of the
+ * sequence to a few billion elements in the worst case.
+ *
+ * @author Sebastiano Vigna
+ * @since 5.1.0
+ */
+
+public class PartitionedEliasFanoMonotoneLongBigList extends AbstractLongBigList implements Serializable {
+	private static final long serialVersionUID = 0L;
+
+	/** The default base-2 logarithm of the number of elements in a partition. */
+	public static final int DEFAULT_LOG2_PARTITION_SIZE = 7;
+	/** The maximum base-2 logarithm of the number of elements in a partition. */
+	public static final int MAX_LOG2_PARTITION_SIZE = 16;
+	/** The width of the header of a partition. */
+	private static final int HEADER_WIDTH = 8;
+	/** The maximum number of bits of the partitions (we need an additional word, and arrays cannot be too close to {@link Integer#MAX_VALUE}). */
+	private static final long MAX_BITS = (Integer.MAX_VALUE - 9L) * Long.SIZE;
+	/** The type of a partition containing consecutive values. */
+	private static final int RUN = 0;
+	/** The type of a partition represented by a bitmap. */
+	private static final int BITMAP = 1;
+	/** The type of a partition represented by Elias&ndash;Fano. */
+	private static final int ELIAS_FANO = 2;
+
+	/** The length of the sequence. */
+	protected final long length;
+	/** The base-2 logarithm of the number of elements in a partition. */
+	protected final int log2PartitionSize;
+	/** The first element of each partition. */
+	protected final EliasFanoMonotoneLongBigList first;
+	/** The starting bit of each partition in {@link #bits}. */
+	protected final EliasFanoMonotoneLongBigList start;
+	/** The bits of the partitions. */
+	protected final long[] bits;
+
+	/** Creates a partitioned Elias&ndash;Fano representation of the values returned by the given {@linkplain Iterable iterable object}.
+	 *
+	 * @param list an iterable object.
+	 */
+	public PartitionedEliasFanoMonotoneLongBigList(final IntIterable list) {
+		this((LongIterable) () -> LongIterators.wrap(list.iterator()));
+	}
+
+	/** Creates a partitioned Elias&ndash;Fano representation of the values returned by the given {@linkplain Iterable iterable object}.
+	 *
+	 * @param list an iterable object.
+	 */
+	public PartitionedEliasFanoMonotoneLongBigList(final LongIterable list) {
+		this(count(list.iterator()), list.iterator(), DEFAULT_LOG2_PARTITION_SIZE);
+	}
+
+	/** Creates a partitioned Elias&ndash;Fano representation of the values returned by an iterator, given that
+	 * the overall number of elements is provided, too.
+	 *
+	 * @param n the number of elements returned by <code>iterator</code>.
+	 * @param iterator an iterator returning nondecreasing elements.
+	 */
+	public PartitionedEliasFanoMonotoneLongBigList(final long n, final IntIterator iterator) {
+		this(n, LongIterators.wrap(iterator), DEFAULT_LOG2_PARTITION_SIZE);
+	}
+
+	/** Creates a partitioned Elias&ndash;Fano representation of the values returned by an iterator, given that
+	 * the overall number of elements is provided, too.
+	 *
+	 * @param n the number of elements returned by <code>iterator</code>.
+	 * @param iterator an iterator returning nondecreasing elements.
+	 */
+	public PartitionedEliasFanoMonotoneLongBigList(final long n, final LongIterator iterator) {
+		this(n, iterator, DEFAULT_LOG2_PARTITION_SIZE);
+	}
+
+	/** Creates a partitioned Elias&ndash;Fano representation of the values returned by an iterator, given that
+	 * the overall number of elements is provided, too, using partitions of given size.
+	 *
+	 * @param n the number of elements returned by <code>iterator</code>.
+	 * @param iterator an iterator returning nondecreasing elements.
+	 * @param log2PartitionSize the base-2 logarithm of the number of elements in a partition (at most {@value #MAX_LOG2_PARTITION_SIZE}).
+	 */
+	public PartitionedEliasFanoMonotoneLongBigList(final long n, final LongIterator iterator, final int log2PartitionSize) {
+		if (log2PartitionSize < 0 || log2PartitionSize > MAX_LOG2_PARTITION_SIZE) throw new IllegalArgumentException("Illegal logarithm of the partition size: " + log2PartitionSize);
+		this.length = n;
+		this.log2PartitionSize = log2PartitionSize;
+		final int partitionSize = 1 << log2PartitionSize;
+		final LongBigArrayBigList first = new LongBigArrayBigList(), start = new LongBigArrayBigList();
+		final LongArrayBitVector bits = LongArrayBitVector.getInstance();
+		final long[] partition = new long[(int)Math.min(partitionSize, n)];
+		long last = 0;
+
+		for (long i = 0; i < n; i += partitionSize) {
+			final int m = (int)Math.min(partitionSize, n - i);
+			boolean distinct = true;
+			for (int j = 0; j < m; j++) {
+				if (! iterator.hasNext()) throw new IllegalArgumentException("There are less than " + n + " values in the provided iterator");
+				final long v = partition[j] = iterator.nextLong();
+				if (v < 0) throw new IllegalArgumentException("Negative value: " + v);
+				if (v < last) throw new IllegalArgumentException("Values are not nondecreasing: " + v + " < " + last);
+				if (j != 0 && v == last) distinct = false;
+				last = v;
+			}
+
+			final long base = partition[0], range = partition[m - 1] - base;
+			first.add(base);
+			start.add(bits.length());
+
+			// Choose the smallest representation
+			final int l = Math.max(0, Fast.mostSignificantBit(range / m));
+			final long eliasFanoCost = (long)m * l + m + (range >>> l) + 1;
+			final long bitmapCost = distinct ? range + 1 : Long.MAX_VALUE;
+			final boolean run = distinct && range == m - 1;
+			if (bits.length() + HEADER_WIDTH + (run ? 0 : Math.min(bitmapCost, eliasFanoCost)) > MAX_BITS) throw new IllegalArgumentException("The partitions need more than " + MAX_BITS + " bits");
+
+			if (run) bits.append(RUN, HEADER_WIDTH);
+			else if (bitmapCost <= eliasFanoCost) {
+				bits.append(BITMAP, HEADER_WIDTH);
+				final long offset = bits.length();
+				bits.length(offset + range + 1);
+				for (int j = 0; j < m; j++) bits.set(offset + partition[j] - base);
+			} else {
+				bits.append(ELIAS_FANO | l << 2, HEADER_WIDTH);
+				final long lowerBitsMask = (1L << l) - 1;
+				if (l != 0) for (int j = 0; j < m; j++) bits.append(partition[j] - base & lowerBitsMask, l);
+				final long offset = bits.length();
+				bits.length(offset + m + (range >>> l) + 1);
+				for (int j = 0; j < m; j++) bits.set(offset + (partition[j] - base >>> l) + j);
+			}
+		}
+
+		if (iterator.hasNext()) throw new IllegalArgumentException("There are more than " + n + " values in the provided iterator");
+		this.first = new EliasFanoMonotoneLongBigList(first);
+		this.start = new EliasFanoMonotoneLongBigList(start);
+		// One more word, so that fields can be read without checking bounds
+		this.bits = Arrays.copyOf(bits.bits(), bits.bits().length == 0 ? 1 : (int)((bits.length() + Long.SIZE - 1) / Long.SIZE) + 1);
+	}
+
+	/** Returns the number of elements returned by an iterator.
+	 *
+	 * @param iterator an iterator.
+	 * @return the number of elements returned by {@code iterator}.
+	 */
+	private static long count(final LongIterator iterator) {
+		long c = 0;
+		while (iterator.hasNext()) {
+			iterator.nextLong();
+			c++;
+		}
+		return c;
+	}
+
+	/** Extracts a field from a bit array.
+	 *
+	 * @param bits a bit array.
+	 * @param position the position of the first bit of the field.
+	 * @param width the width of the field (at most 63).
+	 * @return the field.
+	 */
+	private static long extract(final long[] bits, final long position, final int width) {
+		final int startWord = (int)(position / Long.SIZE);
+		final int startBit = (int)(position % Long.SIZE);
+		final long result = bits[startWord] >>> startBit;
+		return (startBit + width <= Long.SIZE ? result : result | bits[startWord + 1] << -startBit) & (1L << width) - 1;
+	}
+
+	/** Returns the position of a one of given rank, starting from a given position.
+	 *
+	 * @param bits a bit array.
+	 * @param from a starting position.
+	 * @param rank the rank of a one, counting from {@code from}.
+	 * @return the position of the one of rank {@code rank} at or after {@code from}.
+	 */
+	private static long select(final long[] bits, final long from, int rank) {
+		int word = (int)(from / Long.SIZE);
+		long window = bits[word] & -1L << from;
+		for (;;) {
+			final int bitCount = Long.bitCount(window);
+			if (rank < bitCount) return word * (long)Long.SIZE + SelectInWord.select(window, rank);
+			rank -= bitCount;
+			window = bits[++word];
+		}
+	}
+
+	/** Returns the number of elements of a partition.
+	 *
+	 * @param partition a partition.
+	 * @return the number of elements of {@code partition}.
+	 */
+	private int partitionSize(final long partition) {
+		return (int)Math.min(1L << log2PartitionSize, length - (partition << log2PartitionSize));
+	}
+
+	@Override
+	public long getLong(final long index) {
+		final long partition = index >>> log2PartitionSize;
+		final int i = (int)(index & (1L << log2PartitionSize) - 1);
+		final long base = first.getLong(partition);
+		long position = start.getLong(partition);
+		final int header = (int)extract(bits, position, HEADER_WIDTH);
+		position += HEADER_WIDTH;
+
+		switch(header & 3) {
+		case RUN:
+			return base + i;
+		case BITMAP:
+			return base + select(bits, position, i) - position;
+		default:
+			final int l = header >>> 2;
+			final long upperStart = position + (long)partitionSize(partition) * l;
+			final long upperBits = select(bits, upperStart, i) - upperStart - i;
+			return base + (l == 0 ? upperBits : upperBits << l | extract(bits, position + (long)i * l, l));
+		}
+	}
+
+	/** Extracts a number of consecutive entries into a given array fragment.
+	 *
+	 * @param index the index of the first entry returned.
+	 * @param dest the destination array; it will be filled with {@code length} consecutive entries starting at position {@code offset}.
+	 * @param offset the first position written in {@code dest}.
+	 * @param length the number of elements written in {@code dest} starting at {@code offset}.
+	 * @return {@code dest}
+	 * @see #get(long, long[])
+	 */
+	public long[] get(long index, final long dest[], int offset, int length) {
+		while (length != 0) {
+			final long partition = index >>> log2PartitionSize;
+			final int m = partitionSize(partition);
+			final int i = (int)(index & (1L << log2PartitionSize) - 1);
+			final int k = Math.min(length, m - i);
+			final long base = first.getLong(partition);
+			long position = start.getLong(partition);
+			final int header = (int)extract(bits, position, HEADER_WIDTH);
+			position += HEADER_WIDTH;
+
+			switch(header & 3) {
+			case RUN:
+				for (int j = 0; j < k; j++) dest[offset + j] = base + i + j;
+				break;
+			case BITMAP: {
+				long p = select(bits, position, i);
+				int word = (int)(p / Long.SIZE);
+				long window = bits[word] & -1L << p;
+				for (int j = 0; j < k; j++) {
+					while (window == 0) window = bits[++word];
+					dest[offset + j] = base + word * (long)Long.SIZE + Long.numberOfTrailingZeros(window) - position;
+					window &= window - 1;
+				}
+				break;
+			}
+			default: {
+				final int l = header >>> 2;
+				final long upperStart = position + (long)m * l;
+				long p = select(bits, upperStart, i);
+				int word = (int)(p / Long.SIZE);
+				long window = bits[word] & -1L << p;
+				long lowerPosition = position + (long)i * l;
+				for (int j = 0; j < k; j++) {
+					while (window == 0) window = bits[++word];
+					final long upperBits = word * (long)Long.SIZE + Long.numberOfTrailingZeros(window) - upperStart - (i + j);
+					window &= window - 1;
+					dest[offset + j] = base + (l == 0 ? upperBits : upperBits << l | extract(bits, lowerPosition, l));
+					lowerPosition += l;
+				}
+			}
+			}
+
+			index += k;
+			offset += k;
+			length -= k;
+		}
+		return dest;
+	}
+
+	/** Extracts a number of consecutive entries into a given array.
+	 *
+	 * @param index the index of the first entry returned.
+	 * @param dest the destination array; it will be filled with consecutive entries.
+	 * @return {@code dest}
+	 * @see #get(long, long[], int, int)
+	 */
+	public long[] get(final long index, final long dest[]) {
+		return get(index, dest, 0, dest.length);
+	}
+
+	public long numBits() {
+		return first.numBits() + start.numBits() + bits.length * (long)Long.SIZE;
+	}
+
+	@Override
+	public long size64() {
+		return length;
+	}
+}
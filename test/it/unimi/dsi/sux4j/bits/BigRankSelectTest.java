@@ -0,0 +1,65 @@
+package it.unimi.dsi.sux4j.bits;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.io.File;
+import java.io.IOException;
+
+import org.junit.Test;
+
+import it.unimi.dsi.bits.LongArrayBitVector;
+import it.unimi.dsi.fastutil.BigArrays;
+import it.unimi.dsi.fastutil.io.BinIO;
+import it.unimi.dsi.util.XoRoShiRo128PlusRandom;
+
+public class BigRankSelectTest {
+
+	private static long[] random(final XoRoShiRo128PlusRandom r, final int numWords, final double density) {
+		final long[] bits = new long[numWords];
+		for (int i = 0; i < numWords * Long.SIZE; i++) if (r.nextDouble() < density) bits[i / Long.SIZE] |= 1L << i;
+		return bits;
+	}
+
+	@Test
+	public void testAgainstSmall() throws IOException, ClassNotFoundException {
+		final XoRoShiRo128PlusRandom r = new XoRoShiRo128PlusRandom(0);
+		for (final int numWords : new int[] { 1, 2, 10, 100, 10000 }) {
+			for (final double density : new double[] { 0, .0001, .01, .5, .99, 1 }) {
+				final long[] bits = random(r, numWords, density);
+				for (final long length : new long[] { numWords * 64L, numWords * 64L - 1, numWords * 64L - 63 }) {
+					final LongArrayBitVector v = LongArrayBitVector.wrap(bits.clone());
+					v.length(length);
+					final long[][] bigBits = BigArrays.wrap(v.bits().clone());
+
+					final Rank9 rank9 = new Rank9(v);
+					final BigRank9 bigRank9 = new BigRank9(bigBits, length);
+					assertEquals(rank9.count(), bigRank9.count());
+					for (long i = 0; i <= length; i++) assertEquals(Long.toString(i), rank9.rank(i), bigRank9.rank(i));
+
+					final SimpleSelect simpleSelect = new SimpleSelect(v);
+					final BigSimpleSelect bigSimpleSelect = new BigSimpleSelect(bigBits, length);
+					final long ones = rank9.count();
+					for (long i = 0; i <= ones; i++) assertEquals(simpleSelect.select(i), bigSimpleSelect.select(i));
+					assertArrayEquals(simpleSelect.select(0, new long[(int)ones]), bigSimpleSelect.select(0, new long[(int)ones]));
+
+					final SimpleSelectZero simpleSelectZero = new SimpleSelectZero(v);
+					final BigSimpleSelectZero bigSimpleSelectZero = new BigSimpleSelectZero(bigBits, length);
+					final long zeroes = length - ones;
+					for (long i = 0; i <= zeroes; i++) assertEquals(simpleSelectZero.selectZero(i), bigSimpleSelectZero.selectZero(i));
+					assertArrayEquals(simpleSelectZero.selectZero(0, new long[(int)zeroes]), bigSimpleSelectZero.selectZero(0, new long[(int)zeroes]));
+
+					assertEquals(v.length(), bigSimpleSelect.bitVector().length());
+					for (long i = 0; i < length; i++) assertEquals(v.getBoolean(i), bigRank9.bitVector().getBoolean(i));
+
+					final File temp = File.createTempFile(getClass().getSimpleName(), "test");
+					temp.deleteOnExit();
+					BinIO.storeObject(bigSimpleSelect, temp);
+					final BigSimpleSelect loaded = (BigSimpleSelect)BinIO.loadObject(temp);
+					for (long i = 0; i <= ones; i++) assertEquals(simpleSelect.select(i), loaded.select(i));
+					assertEquals(length, loaded.bitVector().length());
+				}
+			}
+		}
+	}
+}
@@ -0,0 +1,55 @@
+package it.unimi.dsi.sux4j.bits;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+import it.unimi.dsi.bits.LongArrayBitVector;
+import it.unimi.dsi.fastutil.BigArrays;
+import it.unimi.dsi.util.XoRoShiRo128PlusRandom;
+
+public class ParallelConstructionTest {
+
+	/** Returns a bit vector spanning several construction chunks, alternating regions of different density. */
+	private static LongArrayBitVector random(final XoRoShiRo128PlusRandom r, final long length, final double[] densities) {
+		final LongArrayBitVector v = LongArrayBitVector.getInstance(length).length(length);
+		final long region = length / densities.length + 1;
+		for (long i = 0; i < length; i++) if (r.nextDouble() < densities[(int)(i / region)]) v.set(i);
+		return v;
+	}
+
+	@Test
+	public void testAgainstSequential() {
+		final XoRoShiRo128PlusRandom r = new XoRoShiRo128PlusRandom(0);
+		final long length = 3L * (1 << 16) * Long.SIZE + 101;
+		for (final double[] densities : new double[][] { { .5 }, { .001 }, { .9, .00001, .5 }, { 0, 1, 0 }, { .00001 } }) {
+			final LongArrayBitVector v = random(r, length, densities);
+			final long[][] bigBits = BigArrays.wrap(v.bits().clone());
+
+			final Rank9 rank9 = new Rank9(v);
+			final BigRank9 bigRank9 = new BigRank9(bigBits, length);
+			assertEquals(bigRank9.count(), rank9.count());
+			assertEquals(bigRank9.lastOne(), rank9.lastOne());
+			for (long i = 0; i <= length; i += 1 + r.nextInt(100)) assertEquals(bigRank9.rank(i), rank9.rank(i));
+			assertEquals(bigRank9.rank(length), rank9.rank(length));
+
+			final long ones = rank9.count(), zeroes = length - ones;
+			final BigSimpleSelect bigSimpleSelect = new BigSimpleSelect(bigBits, length);
+			final SimpleSelect simpleSelect = new SimpleSelect(v);
+			final Select9 select9 = new Select9(rank9);
+			for (long i = 0; i <= ones; i += 1 + r.nextInt(50)) {
+				assertEquals(bigSimpleSelect.select(i), simpleSelect.select(i));
+				assertEquals(bigSimpleSelect.select(i), select9.select(i));
+			}
+			if (ones > 0) {
+				assertEquals(bigSimpleSelect.select(ones - 1), simpleSelect.select(ones - 1));
+				assertEquals(bigSimpleSelect.select(ones - 1), select9.select(ones - 1));
+			}
+
+			final BigSimpleSelectZero bigSimpleSelectZero = new BigSimpleSelectZero(bigBits, length);
+			final SimpleSelectZero simpleSelectZero = new SimpleSelectZero(v);
+			for (long i = 0; i <= zeroes; i += 1 + r.nextInt(50)) assertEquals(bigSimpleSelectZero.selectZero(i), simpleSelectZero.selectZero(i));
+			if (zeroes > 0) assertEquals(bigSimpleSelectZero.selectZero(zeroes - 1), simpleSelectZero.selectZero(zeroes - 1));
+		}
+	}
+}
@@ -0,0 +1,45 @@
+package it.unimi.dsi.sux4j.bits;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assume.assumeTrue;
+
+import org.junit.Test;
+
+import it.unimi.dsi.bits.Fast;
+import it.unimi.dsi.util.XoRoShiRo128PlusRandom;
+
+public class SelectInWordTest {
+
+	/** The system property set by the <code>junit-java19</code> Ant target, which puts the Java 19 version of the classes first on the class path. */
+	private static final String JAVA19_PROPERTY = "it.unimi.dsi.sux4j.test.java19";
+
+	private static void check(final long word) {
+		for (int i = 0, rank = 0; i < Long.SIZE; i++) if ((word & 1L << i) != 0) {
+			// Compare with the position and with the base (broadword) implementation
+			assertEquals(Long.toHexString(word), Fast.select(word, rank), SelectInWord.select(word, rank));
+			assertEquals(Long.toHexString(word), i, SelectInWord.select(word, rank++));
+		}
+	}
+
+	@Test
+	public void testJava19Version() throws NoSuchFieldException {
+		assumeTrue(Boolean.getBoolean(JAVA19_PROPERTY));
+		// Only the Java 19 version has this field: make sure we are not testing the base version by mistake
+		SelectInWord.class.getDeclaredField("EXPAND");
+	}
+
+	@Test
+	public void testSelect() {
+		check(1);
+		check(-1);
+		check(1L << 63);
+		check(0x5555555555555555L);
+		check(0xAAAAAAAAAAAAAAAAL);
+		final XoRoShiRo128PlusRandom r = new XoRoShiRo128PlusRandom(0);
+		for (int i = 0; i < 100000; i++) {
+			check(r.nextLong());
+			check(r.nextLong() & r.nextLong() & r.nextLong());
+			check(r.nextLong() | r.nextLong() | r.nextLong());
+		}
+	}
+}
@@ -21,13 +21,25 @@ package it.unimi.dsi.sux4j.io;
  */
 
 
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
+import java.io.File;
 import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Iterator;
 
 import org.junit.Test;
 
 import it.unimi.dsi.bits.TransformationStrategies;
+import it.unimi.dsi.fastutil.longs.LongArrayList;
+import it.unimi.dsi.fastutil.longs.LongList;
+import it.unimi.dsi.fastutil.objects.ObjectArrayList;
+import it.unimi.dsi.fastutil.objects.ObjectList;
 
 public class BucketedHashStoreTest {
 
@@ -44,4 +56,311 @@ public class BucketedHashStoreTest {
 		}
 	}
 
+	@Test
+	public void testParallelAddAll() throws IOException {
+		for(final int s: new int[] { 0, 1, 10, 100, 1000, 100000, 1000000 }) {
+			final ObjectList<String> keys = new ObjectArrayList<>();
+			final LongList values = new LongArrayList();
+			for(int i = 0; i < s; i++) {
+				keys.add(Integer.toString(i * 31));
+				values.add(i * 3L);
+			}
+			for(final boolean withValues: new boolean[] { false, true }) {
+				final BucketedHashStore<CharSequence> b = new BucketedHashStore<>(TransformationStrategies.utf16());
+				final BucketedHashStore<CharSequence> p = new BucketedHashStore<>(TransformationStrategies.utf16());
+				b.reset(0);
+				p.reset(0);
+				if (withValues) {
+					b.addAll(keys.iterator(), values.iterator());
+					p.parallelAddAll(keys.iterator(), values.iterator(), 3);
+				}
+				else {
+					b.addAll(keys.iterator());
+					p.parallelAddAll(keys.iterator(), 3);
+				}
+				assertEquals(b.size(), p.size());
+				b.bucketSize(100);
+				p.bucketSize(100);
+				final Iterator<BucketedHashStore.Bucket> i = b.iterator(), j = p.iterator();
+				while(i.hasNext()) {
+					final Iterator<long[]> x = i.next().iterator(), y = j.next().iterator();
+					while(x.hasNext()) assertArrayEquals(x.next(), y.next());
+					assertFalse(y.hasNext());
+				}
+				assertFalse(j.hasNext());
+				b.close();
+				p.close();
+			}
+		}
+	}
+
+	@Test
+	public void testMemoryBudget() throws IOException {
+		for(final int s: new int[] { 0, 1, 10, 1000, 100000 }) {
+			final ObjectList<String> keys = new ObjectArrayList<>();
+			for(int i = 0; i < s; i++) keys.add(Integer.toString(i * 31));
+			for(final int hashWidth: new int[] { 0, 10 }) {
+				final BucketedHashStore<CharSequence> b = new BucketedHashStore<>(TransformationStrategies.utf16(), null, hashWidth, null);
+				final BucketedHashStore<CharSequence> m = new BucketedHashStore<>(TransformationStrategies.utf16(), null, hashWidth, null);
+				final BucketedHashStore<CharSequence> p = new BucketedHashStore<>(TransformationStrategies.utf16(), null, hashWidth, null);
+				m.memoryBudget(1L << 30);
+				p.memoryBudget(s * 8L + 1);
+				b.reset(0);
+				m.reset(0);
+				p.reset(0);
+				b.addAll(keys.iterator());
+				m.addAll(keys.iterator());
+				p.addAll(keys.iterator());
+				assertTrue(b.spilled());
+				assertFalse(m.spilled());
+				assertEquals(s > 0, p.spilled());
+				assertEquals(b.size(), m.size());
+				assertEquals(b.size(), p.size());
+				b.bucketSize(100);
+				m.bucketSize(100);
+				p.bucketSize(100);
+				final Iterator<BucketedHashStore.Bucket> i = b.iterator(), j = m.iterator(), k = p.iterator();
+				while(i.hasNext()) {
+					final Iterator<long[]> x = i.next().iterator(), y = j.next().iterator(), z = k.next().iterator();
+					while(x.hasNext()) {
+						final long[] t = x.next();
+						assertArrayEquals(t, y.next());
+						assertArrayEquals(t, z.next());
+					}
+					assertFalse(y.hasNext());
+					assertFalse(z.hasNext());
+				}
+				assertFalse(j.hasNext());
+				assertFalse(k.hasNext());
+
+				// A reset brings back the store to memory
+				p.reset(1);
+				assertFalse(p.spilled());
+				assertEquals(0, p.size());
+
+				b.close();
+				m.close();
+				p.close();
+			}
+		}
+	}
+
+	private static void assertSameBuckets(final BucketedHashStore<CharSequence> b, final BucketedHashStore<CharSequence> c) throws IOException {
+		assertEquals(b.size(), c.size());
+		b.bucketSize(100);
+		c.bucketSize(100);
+		final Iterator<BucketedHashStore.Bucket> i = b.iterator(), j = c.iterator();
+		while(i.hasNext()) {
+			final BucketedHashStore.Bucket x = i.next(), y = j.next();
+			assertEquals(x.size(), y.size());
+			for(int k = 0; k < x.size(); k++) assertEquals(x.data(k), y.data(k));
+			final Iterator<long[]> s = x.iterator(), t = y.iterator();
+			while(s.hasNext()) assertArrayEquals(s.next(), t.next());
+			assertFalse(t.hasNext());
+		}
+		assertFalse(j.hasNext());
+	}
+
+	@Test
+	public void testCompressed() throws IOException {
+		for(final int s: new int[] { 0, 1, 10, 1000, 100000 }) {
+			final ObjectList<String> keys = new ObjectArrayList<>(), moreKeys = new ObjectArrayList<>();
+			final LongArrayList values = new LongArrayList(), moreValues = new LongArrayList();
+			for(int i = 0; i < s; i++) {
+				keys.add(Integer.toString(i * 31));
+				values.add(i * 3L - s);
+				moreKeys.add(Integer.toString(-i - 1));
+				moreValues.add(i % 2 == 0 ? Long.MIN_VALUE + i : Long.MAX_VALUE - i);
+			}
+			for(final int hashWidth: new int[] { 0, 10 }) {
+				final BucketedHashStore<CharSequence> b = new BucketedHashStore<>(TransformationStrategies.utf16(), null, hashWidth, null);
+				final BucketedHashStore<CharSequence> c = new BucketedHashStore<>(TransformationStrategies.utf16(), null, hashWidth, null);
+				final BucketedHashStore<CharSequence> p = new BucketedHashStore<>(TransformationStrategies.utf16(), null, hashWidth, null);
+				c.compressed(true);
+				p.compressed(true);
+				p.memoryBudget(s * 8L + 1);
+				assertTrue(c.compressed());
+				b.reset(0);
+				c.reset(0);
+				p.reset(0);
+				b.addAll(keys.iterator(), values.iterator());
+				c.addAll(keys.iterator(), values.iterator());
+				p.addAll(keys.iterator(), values.iterator());
+				assertSameBuckets(b, c);
+				assertSameBuckets(b, p);
+
+				// Adding after an iteration appends new runs
+				b.addAll(moreKeys.iterator(), moreValues.iterator());
+				c.addAll(moreKeys.iterator(), moreValues.iterator());
+				p.addAll(moreKeys.iterator(), moreValues.iterator());
+				assertSameBuckets(b, c);
+				assertSameBuckets(b, p);
+
+				// Reset and refill
+				b.reset(1);
+				c.reset(1);
+				b.addAll(keys.iterator(), values.iterator());
+				c.addAll(keys.iterator(), values.iterator());
+				assertSameBuckets(b, c);
+
+				b.close();
+				c.close();
+				p.close();
+			}
+		}
+	}
+
+	@Test
+	public void testSaveLoad() throws IOException, ClassNotFoundException {
+		for(final int s: new int[] { 0, 1, 10, 1000, 100000 }) {
+			final ObjectList<String> keys = new ObjectArrayList<>();
+			final LongArrayList values = new LongArrayList();
+			for(int i = 0; i < s; i++) {
+				keys.add(Integer.toString(i * 31));
+				values.add(i * 3L - s);
+			}
+			for(final int hashWidth: new int[] { -1, 0, 10 }) {
+				for(final boolean compressed: new boolean[] { false, true }) {
+					for(final long memoryBudget: new long[] { 0, 1L << 30 }) {
+						final BucketedHashStore<CharSequence> b = new BucketedHashStore<>(TransformationStrategies.utf16(), null, hashWidth, null);
+						b.compressed(compressed);
+						b.memoryBudget(memoryBudget);
+						b.reset(42);
+						b.addAll(keys.iterator(), values.iterator());
+						b.check();
+
+						final File directory = Files.createTempDirectory(getClass().getSimpleName()).toFile();
+						b.save(directory);
+						final BucketedHashStore<CharSequence> c = BucketedHashStore.load(directory);
+						assertEquals(b.seed(), c.seed());
+						assertEquals(compressed && memoryBudget == 0 && s != 0, c.compressed());
+						if (hashWidth < 0) assertEquals(b.value2FrequencyMap(), c.value2FrequencyMap());
+						assertSameBuckets(b, c);
+
+						// A loaded store is read-only
+						try {
+							c.add("foo");
+							fail();
+						}
+						catch(final IllegalStateException e) {}
+
+						// Loading twice from the same directory
+						final BucketedHashStore<CharSequence> d = BucketedHashStore.load(directory);
+						c.close();
+						assertSameBuckets(b, d);
+
+						// After a reset, a loaded store is a normal store
+						d.clear();
+						d.reset(42);
+						d.addAll(keys.iterator(), values.iterator());
+						assertSameBuckets(b, d);
+						d.close();
+
+						// Saved files are untouched
+						final BucketedHashStore<CharSequence> e = BucketedHashStore.load(directory);
+						assertSameBuckets(b, e);
+						e.close();
+
+						b.close();
+						for(final File f: directory.listFiles()) f.delete();
+						directory.delete();
+					}
+				}
+			}
+		}
+	}
+
+	@Test
+	public void testParallelForEach() throws IOException {
+		for(final int s: new int[] { 0, 1, 10, 1000, 100000 }) {
+			final ObjectList<String> keys = new ObjectArrayList<>();
+			for(int i = 0; i < s; i++) keys.add(Integer.toString(i * 31));
+			for(final int hashWidth: new int[] { 0, 10 }) {
+				for(final int bucketSize: new int[] { 10, 100, 100000 }) {
+					for(final int threads: new int[] { 1, 4 }) {
+						final BucketedHashStore<CharSequence> b = new BucketedHashStore<>(TransformationStrategies.utf16(), null, hashWidth, null);
+						b.reset(0);
+						b.addAll(keys.iterator());
+						b.bucketSize(bucketSize);
+						final int numBuckets = s / bucketSize + 1;
+						final BucketedHashStore.Bucket[] bucket = new BucketedHashStore.Bucket[numBuckets];
+						b.parallelForEach(x -> {
+							synchronized(bucket) {
+								assertNull(bucket[x.index()]);
+								bucket[x.index()] = new BucketedHashStore.Bucket(x);
+							}
+						}, threads);
+
+						final Iterator<BucketedHashStore.Bucket> i = b.iterator();
+						int n = 0;
+						while(i.hasNext()) {
+							final BucketedHashStore.Bucket x = i.next(), y = bucket[n++];
+							assertEquals(x.index(), y.index());
+							assertEquals(x.size(), y.size());
+							final Iterator<long[]> u = x.iterator(), v = y.iterator();
+							while(u.hasNext()) assertArrayEquals(u.next(), v.next());
+							assertFalse(v.hasNext());
+						}
+						// The iterator might skip trailing empty buckets
+						while(n < numBuckets) assertEquals(0, bucket[n++].size());
+						b.close();
+					}
+				}
+			}
+		}
+	}
+
+	@Test
+	public void testParallelForEachOffset() throws IOException {
+		for(final int s: new int[] { 0, 1, 10, 1000, 100000 }) {
+			final ObjectList<String> keys = new ObjectArrayList<>();
+			for(int i = 0; i < s; i++) keys.add(Integer.toString(i * 31));
+			for(final int bucketSize: new int[] { 10, 100, 100000 }) {
+				for(final int threads: new int[] { 1, 4 }) {
+					final BucketedHashStore<CharSequence> b = new BucketedHashStore<>(TransformationStrategies.utf16(), null, 0, null);
+					b.reset(0);
+					b.addAll(keys.iterator());
+					b.bucketSize(bucketSize);
+					final int numBuckets = s / bucketSize + 1;
+					final long[] offset = new long[numBuckets];
+					final int[] size = new int[numBuckets];
+					final long total = b.parallelForEach(x -> {
+						synchronized(offset) {
+							offset[x.index()] = x.offset();
+							size[x.index()] = x.size();
+						}
+					}, threads, x -> 2 * x + 1);
+
+					long sum = 0;
+					for(int i = 0; i < numBuckets; i++) {
+						assertEquals(sum, offset[i]);
+						sum += 2 * size[i] + 1;
+					}
+					assertEquals(sum, total);
+
+					// Sequential offsets are the number of preceding signatures
+					sum = 0;
+					for(final BucketedHashStore.Bucket x: b) {
+						assertEquals(sum, x.offset());
+						sum += x.size();
+					}
+					b.close();
+				}
+			}
+		}
+	}
+
+	@Test(expected = BucketedHashStore.DuplicateException.class)
+	public void testParallelForEachDuplicate() throws IOException {
+		final BucketedHashStore<CharSequence> b = new BucketedHashStore<>(TransformationStrategies.utf16());
+		b.reset(0);
+		for(int i = 0; i < 10000; i++) b.add(Integer.toString(i));
+		b.add("0");
+		b.bucketSize(100);
+		try {
+			b.parallelForEach(x -> {}, 4);
+		} finally {
+			b.close();
+		}
+	}
 }
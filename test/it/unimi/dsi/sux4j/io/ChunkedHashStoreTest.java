@@ -0,0 +1,142 @@
+package it.unimi.dsi.sux4j.io;
+
+/*
+ * Sux4J: Succinct data structures for Java
+ *
+ * Copyright (C) 2020 Sebastiano Vigna
+ *
+ *  This library is free software; you can redistribute it and/or modify it
+ *  under the terms of the GNU Lesser General Public License as published by the Free
+ *  Software Foundation; either version 3 of the License, or (at your option)
+ *  any later version.
+ *
+ *  This library is distributed in the hope that it will be useful, but
+ *  WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ *  or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License
+ *  for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with this program; if not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.util.Iterator;
+
+import org.junit.Test;
+
+import it.unimi.dsi.bits.TransformationStrategies;
+import it.unimi.dsi.fastutil.longs.LongArrayList;
+import it.unimi.dsi.fastutil.longs.LongList;
+import it.unimi.dsi.fastutil.objects.ObjectArrayList;
+import it.unimi.dsi.fastutil.objects.ObjectList;
+
+@SuppressWarnings("deprecation")
+public class ChunkedHashStoreTest {
+
+	/** Fills a store with the given keys and values, flushing it halfway, so that each compressed disk chunk contains two runs. */
+	private static ChunkedHashStore<CharSequence> store(final ObjectList<String> keys, final LongList values, final boolean compressed) throws IOException {
+		final ChunkedHashStore<CharSequence> s = new ChunkedHashStore<>(TransformationStrategies.utf16());
+		s.compressed(compressed);
+		s.reset(0);
+		final int half = keys.size() / 2;
+		s.addAll(keys.subList(0, half).iterator(), values.subList(0, half).iterator());
+		// Creating an iterator flushes the disk chunks
+		s.iterator();
+		s.addAll(keys.subList(half, keys.size()).iterator(), values.subList(half, keys.size()).iterator());
+		return s;
+	}
+
+	private static void assertSameChunks(final ChunkedHashStore<CharSequence> expected, final ChunkedHashStore<CharSequence> actual) {
+		final Iterator<ChunkedHashStore.Chunk> i = expected.iterator(), j = actual.iterator();
+		while (i.hasNext()) {
+			final ChunkedHashStore.Chunk x = i.next(), y = j.next();
+			assertEquals(x.index(), y.index());
+			assertEquals(x.size(), y.size());
+			final Iterator<long[]> p = x.iterator(), q = y.iterator();
+			while (p.hasNext()) assertArrayEquals(p.next(), q.next());
+			assertFalse(q.hasNext());
+		}
+		assertFalse(j.hasNext());
+	}
+
+	@Test
+	public void testCompressed() throws IOException {
+		for (final int size : new int[] { 0, 1, 10, 1000, 100000 }) {
+			final ObjectList<String> keys = new ObjectArrayList<>();
+			final LongList values = new LongArrayList();
+			for (int i = 0; i < size; i++) {
+				keys.add(Integer.toString(i * 31));
+				values.add(i * 3L);
+			}
+			// Fewer chunks than disk chunks join several disk chunks (and their runs) in a single stream
+			for (final int log2Chunks : new int[] { 0, 3, ChunkedHashStore.LOG2_DISK_CHUNKS, 10 }) {
+				final ChunkedHashStore<CharSequence> u = store(keys, values, false);
+				final ChunkedHashStore<CharSequence> c = store(keys, values, true);
+				assertEquals(size, c.size());
+				u.log2Chunks(log2Chunks);
+				c.log2Chunks(log2Chunks);
+				long t = 0;
+				for (final ChunkedHashStore.Chunk chunk : c) t += chunk.size();
+				assertEquals(size, t);
+				assertSameChunks(u, c);
+				u.close();
+				c.close();
+			}
+		}
+	}
+
+	@Test
+	public void testCompressedFilteredSize() throws IOException {
+		final ObjectList<String> keys = new ObjectArrayList<>();
+		final LongList values = new LongArrayList();
+		for (int i = 0; i < 100000; i++) {
+			keys.add(Integer.toString(i * 31));
+			values.add(i);
+		}
+		final ChunkedHashStore<CharSequence> u = store(keys, values, false);
+		final ChunkedHashStore<CharSequence> c = store(keys, values, true);
+		u.filter(triple -> (((long[])triple)[1] & 1) == 0);
+		c.filter(triple -> (((long[])triple)[1] & 1) == 0);
+		final long filteredSize = u.size();
+		assertEquals(filteredSize, c.size());
+		// About half of the triples pass the filter
+		assertEquals(50000, filteredSize, 1000);
+		u.log2Chunks(3);
+		c.log2Chunks(3);
+		long t = 0;
+		for (final ChunkedHashStore.Chunk chunk : c) t += chunk.size();
+		assertEquals(filteredSize, t);
+		assertSameChunks(u, c);
+		u.close();
+		c.close();
+	}
+
+	@Test
+	public void testCompressedDuplicates() throws IOException {
+		for (final int log2Chunks : new int[] { 0, 3, 10 }) {
+			final ObjectList<String> keys = new ObjectArrayList<>();
+			final LongList values = new LongArrayList();
+			for (int i = 0; i < 10000; i++) {
+				keys.add(Integer.toString(i * 31));
+				values.add(0);
+			}
+			// The duplicate ends up in a different run than the original key
+			keys.add(keys.get(0));
+			values.add(0);
+			final ChunkedHashStore<CharSequence> c = store(keys, values, true);
+			c.log2Chunks(log2Chunks);
+			try {
+				c.check();
+				fail();
+			} catch (final ChunkedHashStore.DuplicateException e) {}
+			c.close();
+		}
+	}
+}
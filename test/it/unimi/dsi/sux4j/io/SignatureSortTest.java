@@ -0,0 +1,102 @@
+package it.unimi.dsi.sux4j.io;
+
+/*
+ * Sux4J: Succinct data structures for Java
+ *
+ * Copyright (C) 2019 Sebastiano Vigna
+ *
+ *  This library is free software; you can redistribute it and/or modify it
+ *  under the terms of the GNU Lesser General Public License as published by the Free
+ *  Software Foundation; either version 3 of the License, or (at your option)
+ *  any later version.
+ *
+ *  This library is distributed in the hope that it will be useful, but
+ *  WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ *  or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License
+ *  for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with this program; if not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+
+import static org.junit.Assert.assertArrayEquals;
+
+import java.util.Arrays;
+
+import org.junit.Test;
+
+import it.unimi.dsi.util.XoRoShiRo128PlusRandom;
+
+public class SignatureSortTest {
+
+	private static long[][] random(final int n, final int width, final long mask, final long fixed, final XoRoShiRo128PlusRandom r) {
+		final long[][] a = new long[width][n];
+		for (int i = 0; i < n; i++) {
+			a[0][i] = r.nextLong() & mask | fixed;
+			for (int j = 1; j < width; j++) a[j][i] = r.nextLong();
+		}
+		return a;
+	}
+
+	private static void check(final long[][] a, final int from, final int to, final boolean parallel) {
+		final int width = a.length;
+		final long[][] b = new long[width][];
+		for (int j = 0; j < width; j++) b[j] = a[j].clone();
+		final Integer[] perm = new Integer[to - from];
+		for (int i = 0; i < perm.length; i++) perm[i] = from + i;
+		Arrays.sort(perm, (x, y) -> {
+			for (int j = 0; j < width; j++) {
+				final int t = Long.compareUnsigned(b[j][x], b[j][y]);
+				if (t != 0) return t;
+			}
+			return 0;
+		});
+		final long[][] expected = new long[width][];
+		for (int j = 0; j < width; j++) {
+			expected[j] = b[j].clone();
+			for (int i = 0; i < perm.length; i++) expected[j][from + i] = b[j][perm[i]];
+		}
+		if (parallel) SignatureSort.parallelSort(a, from, to);
+		else SignatureSort.sort(a, from, to);
+		for (int j = 0; j < width; j++) assertArrayEquals(expected[j], a[j]);
+	}
+
+	@Test
+	public void testRandom() {
+		final XoRoShiRo128PlusRandom r = new XoRoShiRo128PlusRandom(0);
+		for (final int n : new int[] { 0, 1, 2, 10, 63, 64, 65, 1000, 100000, 300000 }) {
+			for (final int width : new int[] { 1, 2, 3, 4 }) {
+				for (final boolean parallel : new boolean[] { false, true }) {
+					// Full range (crossing the sign bit), a fixed highest byte (as in a disk segment), few distinct values
+					check(random(n, width, -1L, 0, r), 0, n, parallel);
+					check(random(n, width, -1L >>> 8, 0x8FL << 56, r), 0, n, parallel);
+					check(random(n, width, 3, 0, r), 0, n, parallel);
+					check(random(n, width, 0x0F0F, 0xFFL << 56, r), 0, n, parallel);
+					check(random(n, width, 0, 42, r), 0, n, parallel);
+					if (n > 2) check(random(n, width, -1L, 0, r), 1, n - 1, parallel);
+				}
+			}
+		}
+	}
+
+	@Test
+	public void testMergeRuns() {
+		final XoRoShiRo128PlusRandom r = new XoRoShiRo128PlusRandom(0);
+		for (final int n : new int[] { 0, 1, 2, 10, 1000, 100000 }) {
+			for (final int width : new int[] { 1, 2, 3, 4 }) {
+				for (final int runs : new int[] { 1, 2, 3, 100 }) {
+					final long[][] a = random(n, width, -1L >>> 8, 0x8FL << 56, r);
+					// Sort runs of (almost) equal length
+					for (int i = 0; i < runs; i++) SignatureSort.sort(a, (int)((long)n * i / runs), (int)((long)n * (i + 1) / runs));
+					final long[][] expected = new long[width][];
+					for (int j = 0; j < width; j++) expected[j] = a[j].clone();
+					SignatureSort.sort(expected, 0, n);
+					SignatureSort.mergeRuns(a, 0, n);
+					for (int j = 0; j < width; j++) assertArrayEquals(expected[j], a[j]);
+				}
+			}
+		}
+	}
+}
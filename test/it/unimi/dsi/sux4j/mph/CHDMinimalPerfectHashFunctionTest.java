@@ -4,6 +4,9 @@ import static org.junit.Assert.assertEquals;
 
 import java.io.File;
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
@@ -11,6 +14,7 @@ import java.util.List;
 import org.junit.Test;
 
 import it.unimi.dsi.bits.TransformationStrategies;
+import it.unimi.dsi.bits.TransformationStrategy;
 import it.unimi.dsi.fastutil.io.BinIO;
 import it.unimi.dsi.sux4j.io.ChunkedHashStore;
 import it.unimi.dsi.sux4j.mph.CHDMinimalPerfectHashFunction.Builder;
@@ -72,4 +76,29 @@ public class CHDMinimalPerfectHashFunctionTest {
 		final CHDMinimalPerfectHashFunction<String> mph = new CHDMinimalPerfectHashFunction.Builder<String>().keys(emptyList).transform(TransformationStrategies.utf16()).build();
 		assertEquals(-1, mph.getLong("a"));
 	}
+
+	@Test
+	public void testByteSlices() throws IOException {
+		// Slice hashing is tested by HashesTest: here we just check the overloads against getLong(byte[])
+		final byte[] a = "0123456789".getBytes(StandardCharsets.US_ASCII);
+		final ByteBuffer buffer = ByteBuffer.allocateDirect(a.length).put(a);
+		final List<byte[]> keys = new ArrayList<>();
+		for (int i = 0; i < a.length - 1; i++) keys.add(Arrays.copyOfRange(a, i, i + 2));
+		for (final TransformationStrategy<byte[]> transform : Arrays.asList(TransformationStrategies.rawByteArray(), TransformationStrategies.byteArray())) {
+			final CHDMinimalPerfectHashFunction<byte[]> function = new CHDMinimalPerfectHashFunction.Builder<byte[]>().keys(keys).transform(transform).signed(32).build();
+			for (int offset = 0; offset < a.length; offset++) {
+				for (int length = 0; offset + length <= a.length; length++) {
+					final long expected = function.getLong(Arrays.copyOfRange(a, offset, offset + length));
+					assertEquals(expected, function.getLong(a, offset, length));
+					assertEquals(expected, function.getLong(buffer, offset, length));
+				}
+			}
+		}
+	}
+
+	@Test(expected = UnsupportedOperationException.class)
+	public void testByteSlicesWrongStrategy() throws IOException {
+		final CHDMinimalPerfectHashFunction<CharSequence> function = new CHDMinimalPerfectHashFunction.Builder<CharSequence>().keys(Arrays.asList("a", "b")).transform(TransformationStrategies.utf16()).signed(32).build();
+		function.getLong(new byte[1], 0, 1);
+	}
 }
@@ -1,9 +1,14 @@
 package it.unimi.dsi.sux4j.mph;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
 
 import java.io.File;
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.Iterator;
@@ -12,10 +17,12 @@ import java.util.List;
 import org.junit.Test;
 
 import it.unimi.dsi.bits.TransformationStrategies;
+import it.unimi.dsi.bits.TransformationStrategy;
 import it.unimi.dsi.fastutil.io.BinIO;
 import it.unimi.dsi.fastutil.longs.LongArrayList;
 import it.unimi.dsi.fastutil.longs.LongLists;
 import it.unimi.dsi.sux4j.io.BucketedHashStore;
+import it.unimi.dsi.sux4j.util.LongWordStorage;
 
 public class GOV3FunctionTest {
 
@@ -28,6 +35,13 @@ public class GOV3FunctionTest {
 		if (signatureWidth == 0) for (int i = size; i-- != 0;) function.getLong(Integer.toString(i + size));
 		else if (signatureWidth < 0) for (int i = size; i-- != 0;) assertEquals(0, function.getLong(Integer.toString(i + size)));
 		else for (int i = size; i-- != 0;) assertEquals(-1, function.getLong(Integer.toString(i + size)));
+
+		// Batched queries, including negative results
+		final List<String> keys = new ArrayList<>(Arrays.asList(s));
+		for (int i = size; i-- != 0;) keys.add(Integer.toString(i + size));
+		final long[] out = new long[keys.size()];
+		function.getLongs(keys, out);
+		for (int i = keys.size(); i-- != 0;) assertEquals(function.getLong(keys.get(i)), out[i]);
 	}
 
 	@SuppressWarnings("unchecked")
@@ -84,6 +98,121 @@ public class GOV3FunctionTest {
 		assertEquals(l.getLong(3), function.getLong("d"));
 	}
 
+	@Test
+	public void testSignatures() throws IOException {
+		for (final int size : new int[] { 0, 1, 10, 1000, 100000 }) {
+			final String[] s = new String[size];
+			final long[] hi = new long[size], lo = new long[size], v = new long[size];
+			final long[] signature = new long[2];
+			for (int i = s.length; i-- != 0;) {
+				s[i] = Integer.toString(i);
+				Hashes.spooky4(TransformationStrategies.utf16().toBitVector(s[i]), 42, signature);
+				hi[i] = signature[0];
+				lo[i] = signature[1];
+				v[i] = i * 3L;
+			}
+
+			final BucketedHashStore<CharSequence> bucketedHashStore = new BucketedHashStore<>(TransformationStrategies.utf16());
+			bucketedHashStore.reset(42);
+			bucketedHashStore.addSignatures(LongArrayList.wrap(hi).iterator(), LongArrayList.wrap(lo).iterator(), LongArrayList.wrap(v).iterator());
+			bucketedHashStore.check();
+			final GOV3Function<CharSequence> function = new GOV3Function.Builder<CharSequence>().store(bucketedHashStore, 20).build();
+			bucketedHashStore.close();
+
+			for (int i = s.length; i-- != 0;) {
+				assertEquals(i * 3L, function.getLong(s[i]));
+				assertEquals(i * 3L, function.getLongBySignature(new long[] { hi[i], lo[i] }));
+			}
+		}
+	}
+
+	@Test
+	public void testLoadedStore() throws IOException, ClassNotFoundException {
+		final String[] s = new String[10000];
+		for (int i = s.length; i-- != 0;) s[i] = Integer.toString(i);
+		final BucketedHashStore<CharSequence> bucketedHashStore = new BucketedHashStore<>(TransformationStrategies.utf16());
+		bucketedHashStore.reset(0);
+		bucketedHashStore.addAll(Arrays.asList(s).iterator());
+		bucketedHashStore.checkAndRetry(Arrays.asList(s));
+		final File directory = Files.createTempDirectory(getClass().getSimpleName()).toFile();
+		bucketedHashStore.save(directory);
+		bucketedHashStore.close();
+
+		// Two functions from the same saved store
+		for (final int signatureWidth : new int[] { 0, 32 }) {
+			final BucketedHashStore<CharSequence> loaded = BucketedHashStore.load(directory);
+			final GOV3Function<CharSequence> function = new GOV3Function.Builder<CharSequence>().store(loaded).signed(signatureWidth).build();
+			loaded.close();
+			check(s.length, s, function, signatureWidth);
+		}
+
+		for (final File f : directory.listFiles()) f.delete();
+		directory.delete();
+	}
+
+	@Test
+	public void testCompacted() throws IOException {
+		for (final int size : new int[] { 0, 1, 10, 1000, 10000 }) {
+			final String[] s = new String[size];
+			for (int i = s.length; i-- != 0;) s[i] = Integer.toString(i);
+			final LongArrayList values = new LongArrayList(size);
+			for (int i = 0; i < size; i++) values.add(i % 3 == 0 ? i : 0);
+			final GOV3Function<CharSequence> function = new GOV3Function.Builder<CharSequence>().keys(Arrays.asList(s)).transform(TransformationStrategies.utf16()).values(values).compacted().build();
+			for (int i = s.length; i-- != 0;) assertEquals(values.getLong(i), function.getLong(s[i]));
+			final long[] out = new long[size];
+			function.getLongs(Arrays.asList(s), out);
+			for (int i = s.length; i-- != 0;) assertEquals(values.getLong(i), out[i]);
+		}
+	}
+
+	@Test
+	public void testMap() throws IOException {
+		for (final int outputWidth : new int[] { 0, 1, 7, 20, 33, 63, 64 }) {
+			for (final int size : new int[] { 0, 1, 2, 10, 1000, 100000 }) {
+				final String[] s = new String[size];
+				for (int i = s.length; i-- != 0;) s[i] = Integer.toString(i);
+				final LongArrayList values = new LongArrayList(size);
+				final long mask = outputWidth == 0 ? 0 : -1L >>> Long.SIZE - outputWidth;
+				for (int i = 0; i < size; i++) values.add(i * 0x9E3779B97F4A7C15L & mask);
+
+				final GOV3Function<CharSequence> function = new GOV3Function.Builder<CharSequence>().keys(Arrays.asList(s)).transform(TransformationStrategies.utf16()).values(values, outputWidth).build();
+				final File temp = File.createTempFile(getClass().getSimpleName(), "dump");
+				temp.deleteOnExit();
+				function.dump(temp.toString());
+				final GOV3Function<CharSequence> mapped = GOV3Function.map(temp.toString(), TransformationStrategies.utf16());
+
+				assertEquals(function.size64(), mapped.size64());
+				assertEquals(function.numBits(), mapped.numBits());
+				for (int i = s.length; i-- != 0;) assertEquals(values.getLong(i), mapped.getLong(s[i]));
+				for (int i = size; i-- != 0;) assertEquals(function.getLong(Integer.toString(i + size)), mapped.getLong(Integer.toString(i + size)));
+			}
+		}
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void testDumpCompacted() throws IOException {
+		final GOV3Function<CharSequence> function = new GOV3Function.Builder<CharSequence>().keys(Arrays.asList(new String[] { "a", "b", "c", "d" })).transform(TransformationStrategies.utf16()).compacted().build();
+		final File temp = File.createTempFile(getClass().getSimpleName(), "dump");
+		temp.deleteOnExit();
+		function.dump(temp.toString());
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void testDumpSigned() throws IOException {
+		final GOV3Function<CharSequence> function = new GOV3Function.Builder<CharSequence>().keys(Arrays.asList(new String[] { "a", "b", "c", "d" })).transform(TransformationStrategies.utf16()).signed(32).build();
+		final File temp = File.createTempFile(getClass().getSimpleName(), "dump");
+		temp.deleteOnExit();
+		function.dump(temp.toString());
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void testDumpDictionary() throws IOException {
+		final GOV3Function<CharSequence> function = new GOV3Function.Builder<CharSequence>().keys(Arrays.asList(new String[] { "a", "b", "c", "d" })).transform(TransformationStrategies.utf16()).dictionary(8).build();
+		final File temp = File.createTempFile(getClass().getSimpleName(), "dump");
+		temp.deleteOnExit();
+		function.dump(temp.toString());
+	}
+
 	@Test
 	public void testDictionary() throws IOException {
 		final GOV3Function<CharSequence> mph = new GOV3Function.Builder<CharSequence>().keys(Arrays.asList(new String[] { "a", "b", "c", "d" })).transform(TransformationStrategies.utf16()).dictionary(8).build();
@@ -129,4 +258,100 @@ public class GOV3FunctionTest {
 		assertEquals(0, mph.getLong("a"));
 
 	}
+
+	@Test
+	public void testByteSlices() throws IOException {
+		// Slice hashing is tested by HashesTest: here we just check the overloads against getLong(byte[])
+		final byte[] a = "0123456789".getBytes(StandardCharsets.US_ASCII);
+		final ByteBuffer buffer = ByteBuffer.allocateDirect(a.length).put(a);
+		final List<byte[]> keys = new ArrayList<>();
+		for (int i = 0; i < a.length - 1; i++) keys.add(Arrays.copyOfRange(a, i, i + 2));
+		for (final TransformationStrategy<byte[]> transform : Arrays.asList(TransformationStrategies.rawByteArray(), TransformationStrategies.byteArray())) {
+			final GOV3Function<byte[]> function = new GOV3Function.Builder<byte[]>().keys(keys).transform(transform).build();
+			for (int offset = 0; offset < a.length; offset++) {
+				for (int length = 0; offset + length <= a.length; length++) {
+					final long expected = function.getLong(Arrays.copyOfRange(a, offset, offset + length));
+					assertEquals(expected, function.getLong(a, offset, length));
+					assertEquals(expected, function.getLong(buffer, offset, length));
+				}
+			}
+		}
+	}
+
+	@Test(expected = UnsupportedOperationException.class)
+	public void testByteSlicesWrongStrategy() throws IOException {
+		final GOV3Function<CharSequence> function = new GOV3Function.Builder<CharSequence>().keys(Arrays.asList("a", "b")).transform(TransformationStrategies.utf16()).build();
+		function.getLong(new byte[1], 0, 1);
+	}
+
+	@SuppressWarnings("unchecked")
+	@Test
+	public void testStorage() throws IOException, ClassNotFoundException {
+		for (final LongWordStorage storage : new LongWordStorage[] { LongWordStorage.heap(), LongWordStorage.offHeap(), LongWordStorage.mapped(null) }) {
+			for (final int outputWidth : new int[] { 0, 1, 7, 20, 33, 63, 64 }) {
+				for (final boolean compacted : new boolean[] { false, true }) {
+					final int size = 10000;
+					final String[] s = new String[size];
+					for (int i = s.length; i-- != 0;) s[i] = Integer.toString(i);
+					final LongArrayList values = new LongArrayList(size);
+					final long mask = outputWidth == 0 ? 0 : -1L >>> Long.SIZE - outputWidth;
+					for (int i = 0; i < size; i++) values.add(i % 3 == 0 ? i * 0x9E3779B97F4A7C15L & mask : 0);
+					final GOV3Function.Builder<CharSequence> builder = new GOV3Function.Builder<CharSequence>().keys(Arrays.asList(s)).transform(TransformationStrategies.utf16()).values(values, outputWidth).storage(storage);
+					GOV3Function<CharSequence> function = (compacted ? builder.compacted() : builder).build();
+					for (int i = s.length; i-- != 0;) assertEquals(values.getLong(i), function.getLong(s[i]));
+
+					final File temp = File.createTempFile(getClass().getSimpleName(), "test");
+					temp.deleteOnExit();
+					BinIO.storeObject(function, temp);
+					function = (GOV3Function<CharSequence>)BinIO.loadObject(temp);
+					for (int i = s.length; i-- != 0;) assertEquals(values.getLong(i), function.getLong(s[i]));
+				}
+			}
+		}
+	}
+
+	@Test
+	public void testStorageAllocation() throws IOException {
+		for (final boolean compacted : new boolean[] { false, true }) {
+			final int size = 10000;
+			final String[] s = new String[size];
+			for (int i = s.length; i-- != 0;) s[i] = Integer.toString(i);
+			final LongArrayList values = new LongArrayList(size);
+			for (int i = 0; i < size; i++) values.add(i % 3 == 0 ? i : 0);
+			final LongArrayList allocated = new LongArrayList();
+			final LongWordStorage storage = length -> {
+				allocated.add(length);
+				return LongWordStorage.offHeap().allocate(length);
+			};
+			final GOV3Function.Builder<CharSequence> builder = new GOV3Function.Builder<CharSequence>().keys(Arrays.asList(s)).transform(TransformationStrategies.utf16()).values(values, 14).storage(storage);
+			final GOV3Function<CharSequence> function = (compacted ? builder.compacted() : builder).build();
+			// Solutions are written directly into storage, and compaction allocates again
+			assertEquals(compacted ? 2 : 1, allocated.size());
+			assertTrue(function.data instanceof GOV3Function.WordLongBigList);
+			assertEquals(compacted ? function.marker.count() + 1 : function.m + 1, function.data.size64());
+			for (int i = s.length; i-- != 0;) assertEquals(values.getLong(i), function.getLong(s[i]));
+		}
+	}
+
+	@Test
+	public void testListener() throws IOException {
+		for (final boolean compacted : new boolean[] { false, true }) {
+			final int size = 100000;
+			final String[] s = new String[size];
+			for (int i = s.length; i-- != 0;) s[i] = Integer.toString(i);
+			final ConstructionStatistics statistics = new ConstructionStatistics();
+			final GOV3Function.Builder<CharSequence> builder = new GOV3Function.Builder<CharSequence>().keys(Arrays.asList(s)).transform(TransformationStrategies.utf16()).listener(statistics);
+			final GOV3Function<CharSequence> function = (compacted ? builder.compacted() : builder).build();
+			for (int i = s.length; i-- != 0;) assertEquals(i, function.getLong(s[i]));
+
+			assertEquals(size, statistics.ingestedKeys.sum());
+			assertEquals(size * 3L * Long.BYTES, statistics.ingestedBytes.sum());
+			assertEquals(statistics.ingestedBytes.sum(), statistics.readBytes.sum());
+			assertEquals(size, statistics.sortedSignatures.sum());
+			assertEquals(size / GOV3Function.BUCKET_SIZE + 1, statistics.buckets.sum());
+			assertEquals(0, statistics.duplicates.sum());
+			assertTrue(statistics.solveNanos.sum() > 0);
+			assertTrue(statistics.dataNanos.sum() > 0);
+		}
+	}
 }
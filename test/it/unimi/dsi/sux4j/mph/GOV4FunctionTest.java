@@ -4,6 +4,9 @@ import static org.junit.Assert.assertEquals;
 
 import java.io.File;
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.Iterator;
@@ -12,6 +15,7 @@ import java.util.List;
 import org.junit.Test;
 
 import it.unimi.dsi.bits.TransformationStrategies;
+import it.unimi.dsi.bits.TransformationStrategy;
 import it.unimi.dsi.fastutil.io.BinIO;
 import it.unimi.dsi.fastutil.longs.LongArrayList;
 import it.unimi.dsi.fastutil.longs.LongLists;
@@ -27,6 +31,13 @@ public class GOV4FunctionTest {
 		if (signatureWidth == 0) for (int i = size; i-- != 0;) function.getLong(Integer.toString(i + size));
 		else if (signatureWidth < 0) for (int i = size; i-- != 0;) assertEquals(0, function.getLong(Integer.toString(i + size)));
 		else for (int i = size; i-- != 0;) assertEquals(-1, function.getLong(Integer.toString(i + size)));
+
+		// Batched queries, including negative results
+		final List<String> keys = new ArrayList<>(Arrays.asList(s));
+		for (int i = size; i-- != 0;) keys.add(Integer.toString(i + size));
+		final long[] out = new long[keys.size()];
+		function.getLongs(keys, out);
+		for (int i = keys.size(); i-- != 0;) assertEquals(function.getLong(keys.get(i)), out[i]);
 	}
 
 	@SuppressWarnings("unchecked")
@@ -115,4 +126,29 @@ public class GOV4FunctionTest {
 		assertEquals(0, mph.getLong("a"));
 
 	}
+
+	@Test
+	public void testByteSlices() throws IOException {
+		// Slice hashing is tested by HashesTest: here we just check the overloads against getLong(byte[])
+		final byte[] a = "0123456789".getBytes(StandardCharsets.US_ASCII);
+		final ByteBuffer buffer = ByteBuffer.allocateDirect(a.length).put(a);
+		final List<byte[]> keys = new ArrayList<>();
+		for (int i = 0; i < a.length - 1; i++) keys.add(Arrays.copyOfRange(a, i, i + 2));
+		for (final TransformationStrategy<byte[]> transform : Arrays.asList(TransformationStrategies.rawByteArray(), TransformationStrategies.byteArray())) {
+			final GOV4Function<byte[]> function = new GOV4Function.Builder<byte[]>().keys(keys).transform(transform).build();
+			for (int offset = 0; offset < a.length; offset++) {
+				for (int length = 0; offset + length <= a.length; length++) {
+					final long expected = function.getLong(Arrays.copyOfRange(a, offset, offset + length));
+					assertEquals(expected, function.getLong(a, offset, length));
+					assertEquals(expected, function.getLong(buffer, offset, length));
+				}
+			}
+		}
+	}
+
+	@Test(expected = UnsupportedOperationException.class)
+	public void testByteSlicesWrongStrategy() throws IOException {
+		final GOV4Function<CharSequence> function = new GOV4Function.Builder<CharSequence>().keys(Arrays.asList("a", "b")).transform(TransformationStrategies.utf16()).build();
+		function.getLong(new byte[1], 0, 1);
+	}
 }
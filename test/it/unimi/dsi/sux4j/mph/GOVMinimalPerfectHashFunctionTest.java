@@ -2,18 +2,26 @@ package it.unimi.dsi.sux4j.mph;
 
 import static it.unimi.dsi.sux4j.mph.GOVMinimalPerfectHashFunction.countNonzeroPairs;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
 
 import java.io.File;
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
 
 import org.junit.Test;
 
 import it.unimi.dsi.bits.TransformationStrategies;
+import it.unimi.dsi.bits.TransformationStrategy;
 import it.unimi.dsi.fastutil.io.BinIO;
+import it.unimi.dsi.fastutil.longs.LongArrayList;
 import it.unimi.dsi.fastutil.objects.ObjectLists;
 import it.unimi.dsi.sux4j.io.BucketedHashStore;
 import it.unimi.dsi.sux4j.mph.GOVMinimalPerfectHashFunction.Builder;
+import it.unimi.dsi.sux4j.util.LongWordStorage;
 
 public class GOVMinimalPerfectHashFunctionTest {
 
@@ -29,6 +37,13 @@ public class GOVMinimalPerfectHashFunctionTest {
 		for (int i = 1000; i-- != 0;)
 			if (w != 0) assertEquals(-1, mph.getLong(Integer.toString(i + size)));
 			else mph.getLong(Integer.toString(i + size));
+
+		// Batched queries, including negative results
+		final List<String> keys = new ArrayList<>(Arrays.asList(s));
+		for (int i = 1000; i-- != 0;) keys.add(Integer.toString(i + size));
+		final long[] out = new long[keys.size()];
+		mph.getLongs(keys, out);
+		for (int i = keys.size(); i-- != 0;) assertEquals(mph.getLong(keys.get(i)), out[i]);
 	}
 
 	@SuppressWarnings("unchecked")
@@ -73,6 +88,31 @@ public class GOVMinimalPerfectHashFunctionTest {
 		}
 	}
 
+	@Test
+	public void testSignatures() throws IOException {
+		for (final int size : new int[] { 0, 1, 10, 1000, 100000 }) {
+			final String[] s = new String[size];
+			final long[] hi = new long[size], lo = new long[size];
+			final long[] signature = new long[2];
+			for (int i = s.length; i-- != 0;) {
+				s[i] = Integer.toString(i);
+				Hashes.spooky4(TransformationStrategies.utf16().toBitVector(s[i]), 42, signature);
+				hi[i] = signature[0];
+				lo[i] = signature[1];
+			}
+
+			final BucketedHashStore<CharSequence> bucketedHashStore = new BucketedHashStore<>(TransformationStrategies.utf16());
+			bucketedHashStore.reset(42);
+			bucketedHashStore.addSignatures(LongArrayList.wrap(hi).iterator(), LongArrayList.wrap(lo).iterator());
+			bucketedHashStore.check();
+			final GOVMinimalPerfectHashFunction<CharSequence> mph = new Builder<CharSequence>().store(bucketedHashStore).build();
+			bucketedHashStore.close();
+
+			check(size, s, mph, 0);
+			for (int i = s.length; i-- != 0;) assertEquals(mph.getLong(s[i]), mph.getLongBySignature(new long[] { hi[i], lo[i] }));
+		}
+	}
+
 	@Test
 	public void testCountNonZeroPairs() {
 		assertEquals(0, countNonzeroPairs(0));
@@ -86,4 +126,86 @@ public class GOVMinimalPerfectHashFunctionTest {
 		assertEquals(4, countNonzeroPairs(0x3333));
 		assertEquals(8, countNonzeroPairs(0xFFFF));
 	}
+
+	@Test
+	public void testByteSlices() throws IOException {
+		// Slice hashing is tested by HashesTest: here we just check the overloads against getLong(byte[])
+		final byte[] a = "0123456789".getBytes(StandardCharsets.US_ASCII);
+		final ByteBuffer buffer = ByteBuffer.allocateDirect(a.length).put(a);
+		final List<byte[]> keys = new ArrayList<>();
+		for (int i = 0; i < a.length - 1; i++) keys.add(Arrays.copyOfRange(a, i, i + 2));
+		for (final TransformationStrategy<byte[]> transform : Arrays.asList(TransformationStrategies.rawByteArray(), TransformationStrategies.byteArray())) {
+			final GOVMinimalPerfectHashFunction<byte[]> function = new GOVMinimalPerfectHashFunction.Builder<byte[]>().keys(keys).transform(transform).signed(32).build();
+			for (int offset = 0; offset < a.length; offset++) {
+				for (int length = 0; offset + length <= a.length; length++) {
+					final long expected = function.getLong(Arrays.copyOfRange(a, offset, offset + length));
+					assertEquals(expected, function.getLong(a, offset, length));
+					assertEquals(expected, function.getLong(buffer, offset, length));
+				}
+			}
+		}
+	}
+
+	@Test(expected = UnsupportedOperationException.class)
+	public void testByteSlicesWrongStrategy() throws IOException {
+		final GOVMinimalPerfectHashFunction<CharSequence> function = new GOVMinimalPerfectHashFunction.Builder<CharSequence>().keys(Arrays.asList("a", "b")).transform(TransformationStrategies.utf16()).signed(32).build();
+		function.getLong(new byte[1], 0, 1);
+	}
+
+	@SuppressWarnings("unchecked")
+	@Test
+	public void testStorage() throws IOException, ClassNotFoundException {
+		for (final LongWordStorage storage : new LongWordStorage[] { LongWordStorage.heap(), LongWordStorage.offHeap(), LongWordStorage.mapped(null) }) {
+			for (final int size : new int[] { 0, 1, 10, 1000, 100000 }) {
+				for (final int signatureWidth : new int[] { 0, 32 }) {
+					final String[] s = new String[size];
+					for (int i = s.length; i-- != 0;) s[i] = Integer.toString(i);
+
+					GOVMinimalPerfectHashFunction<CharSequence> mph = new Builder<CharSequence>().keys(Arrays.asList(s)).transform(TransformationStrategies.utf16()).signed(signatureWidth).storage(storage).build();
+					check(size, s, mph, signatureWidth);
+
+					final File temp = File.createTempFile(getClass().getSimpleName(), "test");
+					temp.deleteOnExit();
+					BinIO.storeObject(mph, temp);
+					mph = (GOVMinimalPerfectHashFunction<CharSequence>)BinIO.loadObject(temp);
+					check(size, s, mph, signatureWidth);
+				}
+			}
+		}
+	}
+
+	@Test
+	public void testStorageAllocation() throws IOException {
+		final int size = 10000;
+		final String[] s = new String[size];
+		for (int i = s.length; i-- != 0;) s[i] = Integer.toString(i);
+		final LongArrayList allocated = new LongArrayList();
+		final LongWordStorage storage = length -> {
+			allocated.add(length);
+			return LongWordStorage.offHeap().allocate(length);
+		};
+		final GOVMinimalPerfectHashFunction<CharSequence> mph = new Builder<CharSequence>().keys(Arrays.asList(s)).transform(TransformationStrategies.utf16()).storage(storage).build();
+		// Solutions are written directly into storage
+		assertEquals(1, allocated.size());
+		assertEquals(null, mph.bitVector);
+		assertTrue(mph.values instanceof GOV3Function.WordLongBigList);
+		check(size, s, mph, 0);
+	}
+
+	@Test
+	public void testListener() throws IOException {
+		final int size = 100000;
+		final String[] s = new String[size];
+		for (int i = s.length; i-- != 0;) s[i] = Integer.toString(i);
+		final ConstructionStatistics statistics = new ConstructionStatistics();
+		final GOVMinimalPerfectHashFunction<CharSequence> mph = new Builder<CharSequence>().keys(Arrays.asList(s)).transform(TransformationStrategies.utf16()).signed(32).listener(statistics).build();
+		check(size, s, mph, 32);
+
+		assertEquals(size, statistics.ingestedKeys.sum());
+		// Buckets are scanned twice: once for solving, once for signing
+		assertEquals(2 * statistics.ingestedBytes.sum(), statistics.readBytes.sum());
+		assertEquals(2 * size, statistics.sortedSignatures.sum());
+		assertEquals(size / GOVMinimalPerfectHashFunction.BUCKET_SIZE + 1, statistics.buckets.sum());
+		assertTrue(statistics.signatureNanos.sum() > 0);
+	}
 }
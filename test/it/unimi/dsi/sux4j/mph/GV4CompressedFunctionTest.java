@@ -4,6 +4,7 @@ import static org.junit.Assert.assertEquals;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.Iterator;
@@ -27,6 +28,13 @@ public class GV4CompressedFunctionTest {
 		for (int i = size; i-- != 0;) assertEquals("globalSeed " + function.globalSeed + " i = " + i, value[i], function.getLong(s[i]));
 		function.defaultReturnValue(-1);
 		for (int i = 0; i < 100; i++) function.getLong("DEAD" + size + i);
+
+		// Batched queries, including keys outside the key set
+		final List<String> keys = new ArrayList<>(Arrays.asList(s).subList(0, size));
+		for (int i = 0; i < 100; i++) keys.add("DEAD" + size + i);
+		final long[] out = new long[keys.size()];
+		function.getLongs(keys, out);
+		for (int i = keys.size(); i-- != 0;) assertEquals(function.getLong(keys.get(i)), out[i]);
 	}
 
 	@SuppressWarnings("unchecked")
@@ -121,6 +129,28 @@ public class GV4CompressedFunctionTest {
 
 	}
 
+	@SuppressWarnings("unchecked")
+	@Test
+	public void testGeometricValuesAuto() throws IOException, ClassNotFoundException {
+		// The default automatic codec (which chooses Huffman), and one in which table accesses are expensive enough to choose a code without tables
+		for (final Codec cdc : new Codec[] { new Codec.Auto(), new Codec.Auto(100) }) {
+			for (final int size : new int[] { 0, 1, 100, 1000, 10000 }) {
+				final String[] s = new String[size];
+				for (int i = s.length; i-- != 0;) s[i] = Integer.toString(i);
+				final XoRoShiRo128PlusRandom r = new XoRoShiRo128PlusRandom(0);
+				final long[] values = new long[size];
+				for (int i = 0; i < size; i++) values[i] = Integer.numberOfTrailingZeros(r.nextInt()) * 1000L;
+				GV4CompressedFunction<CharSequence> function = new GV4CompressedFunction.Builder<CharSequence>().keys(Arrays.asList(s)).codec(cdc).transform(TransformationStrategies.utf16()).values(LongArrayList.wrap(values)).build();
+				check(size, s, function, values);
+				final File temp = File.createTempFile(getClass().getSimpleName(), "test");
+				temp.deleteOnExit();
+				BinIO.storeObject(function, temp);
+				function = (GV4CompressedFunction<CharSequence>)BinIO.loadObject(temp);
+				check(size, s, function, values);
+			}
+		}
+	}
+
 	@SuppressWarnings("unchecked")
 	@Test
 	public void testGeometricValuesLengthLimitedHuffman() throws IOException, ClassNotFoundException {
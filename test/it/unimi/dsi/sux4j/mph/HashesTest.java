@@ -3,12 +3,16 @@ package it.unimi.dsi.sux4j.mph;
 import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
 
+import java.nio.ByteBuffer;
+import java.util.Arrays;
 import java.util.Random;
 
 import org.junit.Test;
 
+import it.unimi.dsi.bits.BitVector;
 import it.unimi.dsi.bits.BitVectors;
 import it.unimi.dsi.bits.LongArrayBitVector;
+import it.unimi.dsi.bits.TransformationStrategies;
 import it.unimi.dsi.util.XoRoShiRo128PlusRandom;
 
 public class HashesTest {
@@ -105,4 +109,50 @@ public class HashesTest {
 			}
 		}
 	}
+
+	@Test
+	public void testSpooky4Long() {
+		final Random r = new XoRoShiRo128PlusRandom(1);
+		for (int i = 0; i < 10000; i++) {
+			final long x = i < 100 ? i - 50 : r.nextLong();
+			final long seed = r.nextLong();
+			final long[] k = new long[4];
+			Hashes.spooky4(TransformationStrategies.rawFixedLong().toBitVector(Long.valueOf(x)), seed, k);
+			for (int length = 0; length <= 4; length++) {
+				final long[] h = new long[length];
+				Hashes.spooky4(x, seed, h);
+				assertArrayEquals(Long.toString(x), Arrays.copyOf(k, length), h);
+			}
+		}
+	}
+
+	@Test
+	public void testSpooky4ByteSlices() {
+		final Random r = new XoRoShiRo128PlusRandom(1);
+		final byte[] a = new byte[100];
+		r.nextBytes(a);
+		final ByteBuffer buffer = ByteBuffer.allocateDirect(a.length).put(a);
+		final long[] h = new long[4], k = new long[4];
+		for (int offset = 0; offset < 10; offset++) {
+			for (int length = 0; offset + length <= a.length; length++) {
+				final byte[] slice = Arrays.copyOfRange(a, offset, offset + length);
+				final long seed = r.nextLong();
+				for (final boolean lexicographic : new boolean[] { false, true }) {
+					final BitVector bv = (lexicographic ? TransformationStrategies.byteArray() : TransformationStrategies.rawByteArray()).toBitVector(slice);
+					Hashes.spooky4(bv, seed, k);
+					Hashes.spooky4(a, offset, length, lexicographic, seed, h);
+					assertArrayEquals(offset + ", " + length, k, h);
+					Hashes.spooky4(buffer, offset, length, lexicographic, seed, h);
+					assertArrayEquals(offset + ", " + length, k, h);
+					for (long prefix = 0; prefix <= bv.length(); prefix += 7) {
+						Hashes.spooky4(bv.subVector(0, prefix), seed, k);
+						Hashes.spooky4(Hashes.BYTE_ARRAY_READER, a, offset, prefix, lexicographic, seed, h);
+						assertArrayEquals(offset + ", " + length + ", " + prefix, k, h);
+						Hashes.spooky4(Hashes.BYTE_BUFFER_READER, buffer, offset, prefix, lexicographic, seed, h);
+						assertArrayEquals(offset + ", " + length + ", " + prefix, k, h);
+					}
+				}
+			}
+		}
+	}
 }
@@ -7,6 +7,8 @@ import it.unimi.dsi.fastutil.io.BinIO;
 
 import java.io.File;
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
 import java.util.Arrays;
 
 import org.junit.Test;
@@ -68,4 +70,27 @@ public class LcpMonotoneMinimalPerfectHashFunctionTest {
 		LcpMonotoneMinimalPerfectHashFunction<String> mph = new LcpMonotoneMinimalPerfectHashFunction.Builder<String>().keys(Arrays.asList(new String[] {})).transform(TransformationStrategies.prefixFreeUtf16()).build();
 		assertEquals(-1, mph.getLong(""));
 	}
+
+	@Test
+	public void testByteSlices() throws IOException {
+		for (int size = 1000; size < 1000000; size *= 10) {
+			for (int signatureWidth: new int[] { 0, 32 }) {
+				final byte[][] keys = new byte[size][];
+				for (int i = size; i-- != 0;) keys[i] = binary(i).getBytes(StandardCharsets.US_ASCII);
+				final LcpMonotoneMinimalPerfectHashFunction<byte[]> mph = new LcpMonotoneMinimalPerfectHashFunction.Builder<byte[]>().keys(Arrays.asList(keys)).transform(TransformationStrategies.byteArray()).signed(signatureWidth).build();
+
+				final byte[] a = new byte[2 * size * 32 + 1];
+				for (int i = 0; i < 2 * size; i++) System.arraycopy(binary(i).getBytes(StandardCharsets.US_ASCII), 0, a, i * 32 + 1, 32);
+				final ByteBuffer buffer = ByteBuffer.allocateDirect(a.length).put(a);
+				for (int i = 0; i < 2 * size; i++) {
+					final long expected = mph.getLong(Arrays.copyOfRange(a, i * 32 + 1, (i + 1) * 32 + 1));
+					if (i < size) assertEquals(i, expected);
+					assertEquals(expected, mph.getLong(a, i * 32 + 1, 32));
+					assertEquals(expected, mph.getLong(buffer, i * 32 + 1, 32));
+					// Shorter slices exercise prefixes longer than the key
+					assertEquals(mph.getLong(Arrays.copyOfRange(a, i * 32 + 1, i * 32 + 17)), mph.getLong(a, i * 32 + 1, 16));
+				}
+			}
+		}
+	}
 }
@@ -0,0 +1,88 @@
+package it.unimi.dsi.sux4j.mph;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+
+import org.junit.Test;
+
+import it.unimi.dsi.fastutil.io.BinIO;
+import it.unimi.dsi.fastutil.longs.LongArrayList;
+import it.unimi.dsi.util.XoRoShiRo128PlusRandom;
+
+public class Long2LongGOV3FunctionTest {
+
+	private void check(final long[] s, final long[] values, final Long2LongGOV3Function function, final int signatureWidth) {
+		for (int i = s.length; i-- != 0;) {
+			assertEquals(signatureWidth < 0 ? 1 : values == null ? i : values[i], function.getLong(s[i]));
+			assertEquals(function.getLong(s[i]), function.getLong(Long.valueOf(s[i])));
+		}
+
+		// Exercise code for negative results
+		if (signatureWidth == 0) for (int i = s.length; i-- != 0;) function.getLong(-i - 1);
+		else if (signatureWidth < 0) for (int i = s.length; i-- != 0;) assertEquals(0, function.getLong(-i - 1));
+		else for (int i = s.length; i-- != 0;) assertEquals(-1, function.getLong(-i - 1));
+
+		// Batched queries, including negative results
+		final long[] keys = Arrays.copyOf(s, 2 * s.length);
+		for (int i = s.length; i-- != 0;) keys[s.length + i] = -i - 1;
+		final long[] out = new long[keys.length];
+		function.getLongs(keys, out);
+		for (int i = keys.length; i-- != 0;) assertEquals(function.getLong(keys[i]), out[i]);
+	}
+
+	@Test
+	public void testNumbers() throws IOException, ClassNotFoundException {
+		for (final int signatureWidth: new int[] { -32, 0, 32, 64 }) {
+			for (final int size : new int[] { 0, 1, 2, 3, 4, 5, 6, 7, 8, 9, 10, 20, 64, 100, 1000, 10000, 100000 }) {
+				final long[] s = new long[size];
+				for (int i = s.length; i-- != 0;) s[i] = i * 0x9E3779B97F4A7C15L >>> 1;
+
+				Long2LongGOV3Function function = new Long2LongGOV3Function.Builder().keys(LongArrayList.wrap(s)).signed(signatureWidth).build();
+
+				check(s, null, function, signatureWidth);
+
+				final File temp = File.createTempFile(getClass().getSimpleName(), "test");
+				temp.deleteOnExit();
+				BinIO.storeObject(function, temp);
+				function = (Long2LongGOV3Function)BinIO.loadObject(temp);
+
+				check(s, null, function, signatureWidth);
+			}
+		}
+	}
+
+	@Test
+	public void testValues() throws IOException {
+		for (final int size : new int[] { 0, 1, 10, 1000, 100000 }) {
+			final long[] s = new long[size];
+			final long[] values = new long[size];
+			for (int i = s.length; i-- != 0;) {
+				s[i] = i * 0x9E3779B97F4A7C15L >>> 1;
+				values[i] = i % 3 == 0 ? i * 31L : 0;
+			}
+
+			check(s, values, new Long2LongGOV3Function.Builder().keys(LongArrayList.wrap(s)).values(LongArrayList.wrap(values)).build(), 0);
+			check(s, values, new Long2LongGOV3Function.Builder().keys(LongArrayList.wrap(s)).values(LongArrayList.wrap(values), Long.SIZE).build(), 0);
+			check(s, values, new Long2LongGOV3Function.Builder().keys(LongArrayList.wrap(s)).values(LongArrayList.wrap(values)).compacted().build(), 0);
+		}
+	}
+
+	@Test
+	public void testRandomKeys() throws IOException {
+		final XoRoShiRo128PlusRandom r = new XoRoShiRo128PlusRandom(0);
+		// Each build uses a different global seed
+		for (int b = 0; b < 10; b++) {
+			final long[] s = new long[1000];
+			for (int i = s.length; i-- != 0;) s[i] = r.nextLong();
+			final Long2LongGOV3Function function = new Long2LongGOV3Function.Builder().keys(LongArrayList.wrap(s)).build();
+			for (int i = s.length; i-- != 0;) assertEquals(function.getLong(s[i]), function.getLong(Long.valueOf(s[i])));
+			for (int i = 100000; i-- != 0;) {
+				final long x = r.nextLong();
+				assertEquals(function.getLong(x), function.getLong(Long.valueOf(x)));
+			}
+		}
+	}
+}
@@ -0,0 +1,85 @@
+package it.unimi.dsi.sux4j.mph;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+
+import org.junit.Test;
+
+import it.unimi.dsi.fastutil.io.BinIO;
+import it.unimi.dsi.fastutil.longs.LongArrayList;
+import it.unimi.dsi.fastutil.longs.LongLists;
+import it.unimi.dsi.util.XoRoShiRo128PlusRandom;
+
+public class LongGOVMinimalPerfectHashFunctionTest {
+
+	private void check(final long[] s, final LongGOVMinimalPerfectHashFunction mph, final int w) {
+		final int[] check = new int[s.length];
+		Arrays.fill(check, -1);
+		for (int i = s.length; i-- != 0;) {
+			assertEquals(Integer.toString(i), -1, check[(int)mph.getLong(s[i])]);
+			check[(int)mph.getLong(s[i])] = i;
+			assertEquals(mph.getLong(s[i]), mph.getLong(Long.valueOf(s[i])));
+		}
+
+		// Exercise code for negative results
+		for (int i = 1000; i-- != 0;)
+			if (w != 0) assertEquals(-1, mph.getLong(-i - 1));
+			else mph.getLong(-i - 1);
+
+		// Batched queries, including negative results
+		final long[] keys = Arrays.copyOf(s, s.length + 1000);
+		for (int i = 1000; i-- != 0;) keys[s.length + i] = -i - 1;
+		final long[] out = new long[keys.length];
+		mph.getLongs(keys, out);
+		for (int i = keys.length; i-- != 0;) assertEquals(mph.getLong(keys[i]), out[i]);
+	}
+
+	@Test
+	public void testNumbers() throws IOException, ClassNotFoundException {
+		for (final int size : new int[] { 0, 1, 2, 3, 4, 5, 6, 7, 8, 9, 10, 20, 64, 100, 1000, 10000, 100000 }) {
+			for(final int signatureWidth: new int[] { 0, 32, 64 }) {
+				System.err.println("Size: " + size  + " w: " + signatureWidth);
+				final long[] s = new long[size];
+				for (int i = s.length; i-- != 0;) s[i] = i * 0x9E3779B97F4A7C15L >>> 1;
+
+				LongGOVMinimalPerfectHashFunction mph = new LongGOVMinimalPerfectHashFunction.Builder().keys(LongArrayList.wrap(s)).signed(signatureWidth).build();
+
+				check(s, mph, signatureWidth);
+
+				final File temp = File.createTempFile(getClass().getSimpleName(), "test");
+				temp.deleteOnExit();
+				BinIO.storeObject(mph, temp);
+				mph = (LongGOVMinimalPerfectHashFunction)BinIO.loadObject(temp);
+
+				check(s, mph, signatureWidth);
+			}
+		}
+	}
+
+	@Test
+	public void checkEmpty() throws IOException {
+		for(final int signatureWidth: new int[] { 0, 32, 64 }) {
+			final LongGOVMinimalPerfectHashFunction mph = new LongGOVMinimalPerfectHashFunction.Builder().keys(LongLists.EMPTY_LIST).signed(signatureWidth).build();
+			check(new long[0], mph, 0);
+		}
+	}
+
+	@Test
+	public void testRandomKeys() throws IOException {
+		final XoRoShiRo128PlusRandom r = new XoRoShiRo128PlusRandom(0);
+		// Each build uses a different global seed
+		for (int b = 0; b < 10; b++) {
+			final long[] s = new long[1000];
+			for (int i = s.length; i-- != 0;) s[i] = r.nextLong();
+			final LongGOVMinimalPerfectHashFunction mph = new LongGOVMinimalPerfectHashFunction.Builder().keys(LongArrayList.wrap(s)).build();
+			for (int i = s.length; i-- != 0;) assertEquals(mph.getLong(s[i]), mph.getLong(Long.valueOf(s[i])));
+			for (int i = 100000; i-- != 0;) {
+				final long x = r.nextLong();
+				assertEquals(mph.getLong(x), mph.getLong(Long.valueOf(x)));
+			}
+		}
+	}
+}
@@ -122,4 +122,24 @@ public class MWHCFunctionTest {
 		assertEquals(-1, mph.getLong("a"));
 
 	}
+
+	@Test
+	public void testMultipleThreads() throws IOException {
+		final String numberOfThreads = System.getProperty(MWHCFunction.NUMBER_OF_THREADS_PROPERTY);
+		System.setProperty(MWHCFunction.NUMBER_OF_THREADS_PROPERTY, "4");
+		try {
+			final int size = 100000;
+			final String[] s = new String[size];
+			final LongArrayList values = new LongArrayList(size);
+			for (int i = 0; i < size; i++) {
+				s[i] = Integer.toString(i);
+				values.add(i * 0x9E3779B97F4A7C15L >>> 44);
+			}
+			final MWHCFunction<CharSequence> mph = new MWHCFunction.Builder<CharSequence>().keys(Arrays.asList(s)).transform(TransformationStrategies.utf16()).values(values, 20).build();
+			for (int i = size; i-- != 0;) assertEquals(values.getLong(i), mph.getLong(s[i]));
+		} finally {
+			if (numberOfThreads == null) System.clearProperty(MWHCFunction.NUMBER_OF_THREADS_PROPERTY);
+			else System.setProperty(MWHCFunction.NUMBER_OF_THREADS_PROPERTY, numberOfThreads);
+		}
+	}
 }
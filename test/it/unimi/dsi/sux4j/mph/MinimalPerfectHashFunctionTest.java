@@ -78,4 +78,21 @@ public class MinimalPerfectHashFunctionTest {
 		assertEquals(4, countNonzeroPairs(0x3333));
 		assertEquals(8, countNonzeroPairs(0xFFFF));
 	}
+
+	@Test
+	public void testMultipleThreads() throws IOException {
+		final String numberOfThreads = System.getProperty(MinimalPerfectHashFunction.NUMBER_OF_THREADS_PROPERTY);
+		System.setProperty(MinimalPerfectHashFunction.NUMBER_OF_THREADS_PROPERTY, "4");
+		try {
+			final int size = 100000;
+			final String[] s = new String[size];
+			for (int i = s.length; i-- != 0;) s[i] = Integer.toString(i);
+			final MinimalPerfectHashFunction<CharSequence> mph = new MinimalPerfectHashFunction.Builder<CharSequence>().keys(Arrays.asList(s)).transform(TransformationStrategies.utf16()).signed(32).build();
+			assertEquals(size, mph.size64());
+			check(size, s, mph, 32);
+		} finally {
+			if (numberOfThreads == null) System.clearProperty(MinimalPerfectHashFunction.NUMBER_OF_THREADS_PROPERTY);
+			else System.setProperty(MinimalPerfectHashFunction.NUMBER_OF_THREADS_PROPERTY, numberOfThreads);
+		}
+	}
 }
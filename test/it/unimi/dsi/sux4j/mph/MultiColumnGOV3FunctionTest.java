@@ -0,0 +1,78 @@
+package it.unimi.dsi.sux4j.mph;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+
+import org.junit.Test;
+
+import it.unimi.dsi.bits.TransformationStrategies;
+import it.unimi.dsi.fastutil.io.BinIO;
+import it.unimi.dsi.fastutil.longs.LongArrayList;
+import it.unimi.dsi.sux4j.io.BucketedHashStore;
+import it.unimi.dsi.util.XoRoShiRo128PlusRandomGenerator;
+
+public class MultiColumnGOV3FunctionTest {
+
+	private static void check(final String[] s, final LongArrayList[] column, final MultiColumnGOV3Function<CharSequence> function) {
+		final long[] out = new long[column.length];
+		for (int i = s.length; i-- != 0;) {
+			function.getLongs(s[i], out);
+			for (int c = column.length; c-- != 0;) {
+				assertEquals(column[c].getLong(i), out[c]);
+				assertEquals(column[c].getLong(i), function.getLong(s[i], c));
+			}
+		}
+	}
+
+	@SuppressWarnings("unchecked")
+	@Test
+	public void testColumns() throws IOException, ClassNotFoundException {
+		final XoRoShiRo128PlusRandomGenerator r = new XoRoShiRo128PlusRandomGenerator(0);
+		for (final int[] width : new int[][] { { 20 }, { 1, 7, 20, 33, 64, 0 }, { 32, 32, 32 }, { 0, 0 } }) {
+			for (final int size : new int[] { 0, 1, 10, 1000, 100000 }) {
+				final String[] s = new String[size];
+				for (int i = s.length; i-- != 0;) s[i] = Integer.toString(i);
+				final LongArrayList[] column = new LongArrayList[width.length];
+				for (int c = width.length; c-- != 0;) {
+					column[c] = new LongArrayList();
+					for (int i = 0; i < size; i++) column[c].add(width[c] == 0 ? 0 : r.nextLong() >>> Long.SIZE - width[c]);
+				}
+
+				final MultiColumnGOV3Function.Builder<CharSequence> builder = new MultiColumnGOV3Function.Builder<CharSequence>().keys(Arrays.asList(s)).transform(TransformationStrategies.utf16());
+				for (int c = 0; c < width.length; c++) builder.column(column[c], width[c]);
+				MultiColumnGOV3Function<CharSequence> function = builder.build();
+				assertEquals(width.length, function.numColumns());
+				assertEquals(size, function.size64());
+				check(s, column, function);
+
+				final File temp = File.createTempFile(getClass().getSimpleName(), "test");
+				temp.deleteOnExit();
+				BinIO.storeObject(function, temp);
+				function = (MultiColumnGOV3Function<CharSequence>)BinIO.loadObject(temp);
+				check(s, column, function);
+
+				// From store, with automatic widths
+				final BucketedHashStore<CharSequence> bucketedHashStore = new BucketedHashStore<>(TransformationStrategies.utf16());
+				bucketedHashStore.addAll(Arrays.asList(s).iterator());
+				final MultiColumnGOV3Function.Builder<CharSequence> storeBuilder = new MultiColumnGOV3Function.Builder<CharSequence>().store(bucketedHashStore);
+				for (int c = 0; c < width.length; c++) storeBuilder.column(column[c]);
+				function = storeBuilder.build();
+				bucketedHashStore.close();
+				check(s, column, function);
+			}
+		}
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testValueTooLarge() throws IOException {
+		new MultiColumnGOV3Function.Builder<CharSequence>().keys(Arrays.asList("a", "b")).transform(TransformationStrategies.utf16()).column(LongArrayList.wrap(new long[] { 1, 4 }), 2).build();
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testWrongSize() throws IOException {
+		new MultiColumnGOV3Function.Builder<CharSequence>().keys(Arrays.asList("a", "b")).transform(TransformationStrategies.utf16()).column(LongArrayList.wrap(new long[] { 1 }), 2).build();
+	}
+}
@@ -1,10 +1,16 @@
 package it.unimi.dsi.sux4j.mph.codec;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
 
 import org.junit.Test;
 
 import it.unimi.dsi.bits.Fast;
+import it.unimi.dsi.fastutil.io.BinIO;
 import it.unimi.dsi.fastutil.longs.Long2LongMap;
 import it.unimi.dsi.fastutil.longs.Long2LongMaps;
 import it.unimi.dsi.fastutil.longs.Long2LongOpenHashMap;
@@ -12,6 +18,7 @@ import it.unimi.dsi.sux4j.mph.codec.Codec.Binary;
 import it.unimi.dsi.sux4j.mph.codec.Codec.Coder;
 import it.unimi.dsi.sux4j.mph.codec.Codec.Decoder;
 import it.unimi.dsi.sux4j.mph.codec.Codec.Huffman;
+import it.unimi.dsi.util.XoRoShiRo128PlusRandomGenerator;
 
 public class CodecTest {
 
@@ -93,6 +100,75 @@ public class CodecTest {
 		}
 	}
 
+	@Test
+	public void testHuffmanLongCodewords() throws IOException, ClassNotFoundException {
+		// Codewords much longer than the direct lookup table, followed by random bits
+		final int size = 50;
+		final long[] symbols = new long[size];
+		final long[] frequency = new long[size];
+		for (int i = 0; i < size; i++) {
+			symbols[i] = i * 3;
+			frequency[i] = 1L << Math.min(i, 40);
+		}
+
+		final XoRoShiRo128PlusRandomGenerator r = new XoRoShiRo128PlusRandomGenerator(0);
+		for (final int maxLength : new int[] { 5, 10, 11, 20, Integer.MAX_VALUE }) {
+			final Huffman huffman = new Codec.Huffman(maxLength);
+			final Long2LongOpenHashMap frequencies = new Long2LongOpenHashMap(symbols, frequency);
+			final Coder coder = huffman.getCoder(frequencies);
+			final int w = coder.maxCodewordLength();
+			final File temp = File.createTempFile(getClass().getSimpleName(), "test");
+			temp.deleteOnExit();
+			BinIO.storeObject(coder.getDecoder(), temp);
+			for (final Decoder decoder : new Decoder[] { coder.getDecoder(), (Decoder)BinIO.loadObject(temp) }) {
+				for (final long l : frequencies.keySet()) {
+					final long encoded = coder.encode(l);
+					if (encoded == -1) continue;
+					final int length = coder.codewordLength(l);
+					for (int i = 0; i < 10; i++) {
+						final long longEncoded = Long.reverse(encoded) >>> 64 - w | r.nextLong() & (1L << w - length) - 1;
+						assertEquals(l, decoder.decode(longEncoded));
+					}
+				}
+			}
+		}
+	}
+
+	@Test
+	public void testAuto() {
+		// A skewed distribution of large symbols: Huffman is the most compact code
+		final int size = 40;
+		final long[] symbols = new long[size];
+		final long[] frequency = new long[size];
+		for (int i = 0; i < size; i++) {
+			symbols[i] = i * 1000;
+			frequency[i] = 1L << size - i;
+		}
+		final Long2LongOpenHashMap frequencies = new Long2LongOpenHashMap(symbols, frequency);
+
+		Coder coder = new Codec.Auto().getCoder(frequencies);
+		assertTrue(coder instanceof Huffman.Coder);
+		Decoder decoder = coder.getDecoder();
+		for (final long l : frequencies.keySet()) assertEquals(l, decoder.decode(Long.reverse(coder.encode(l)) >>> 64 - coder.maxCodewordLength()));
+
+		// If table accesses are expensive enough, an arithmetic code wins
+		coder = new Codec.Auto(100).getCoder(frequencies);
+		assertFalse(coder instanceof Huffman.Coder);
+		decoder = coder.getDecoder();
+		for (final long l : frequencies.keySet()) assertEquals(l, decoder.decode(Long.reverse(coder.encode(l)) >>> 64 - coder.maxCodewordLength()));
+
+		// Negative symbols can be encoded by Huffman only
+		coder = new Codec.Auto(100).getCoder(new Long2LongOpenHashMap(new long[] { -1, 1 }, new long[] { 1, 1 }));
+		assertTrue(coder instanceof Huffman.Coder);
+
+		assertEquals(0, new Codec.Auto().getCoder(Long2LongMaps.EMPTY_MAP).getDecoder().numBits());
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testAutoNoCandidate() {
+		new Codec.Auto(0, new Codec.Unary()).getCoder(new Long2LongOpenHashMap(new long[] { 100 }, new long[] { 1 }));
+	}
+
 	@Test
 	public void testUnary() {
 		final Codec.Unary unary = new Codec.Unary();
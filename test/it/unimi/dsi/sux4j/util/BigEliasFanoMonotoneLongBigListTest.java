@@ -0,0 +1,30 @@
+package it.unimi.dsi.sux4j.util;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+import it.unimi.dsi.fastutil.longs.LongArrayList;
+import it.unimi.dsi.util.XoRoShiRo128PlusRandom;
+
+public class BigEliasFanoMonotoneLongBigListTest {
+
+	@Test
+	public void testAgainstSmall() {
+		final XoRoShiRo128PlusRandom r = new XoRoShiRo128PlusRandom(0);
+		for (final int n : new int[] { 0, 1, 2, 10, 100, 10000 }) {
+			for (final long maxGap : new long[] { 0, 1, 2, 10, 1000, 1L << 40 }) {
+				final long[] a = new long[n];
+				for (int i = 1; i < n; i++) a[i] = a[i - 1] + (maxGap == 0 ? 0 : r.nextLong(maxGap + 1));
+				final EliasFanoMonotoneLongBigList small = new EliasFanoMonotoneLongBigList(LongArrayList.wrap(a));
+				final BigEliasFanoMonotoneLongBigList big = new BigEliasFanoMonotoneLongBigList(LongArrayList.wrap(a));
+				assertEquals(n, big.size64());
+				for (int i = 0; i < n; i++) assertEquals(a[i], big.getLong(i));
+				assertArrayEquals(a, big.get(0, new long[n]));
+				if (n > 2) assertArrayEquals(small.get(1, new long[n - 2]), big.get(1, new long[n - 2]));
+				assertEquals(small.numBits(), big.numBits(), small.numBits() / 10 + 2 * Long.SIZE);
+			}
+		}
+	}
+}
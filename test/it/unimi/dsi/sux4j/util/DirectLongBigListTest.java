@@ -0,0 +1,36 @@
+package it.unimi.dsi.sux4j.util;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.File;
+import java.io.IOException;
+
+import org.junit.Test;
+
+import it.unimi.dsi.fastutil.io.BinIO;
+import it.unimi.dsi.fastutil.longs.LongBigList;
+import it.unimi.dsi.util.XoRoShiRo128PlusRandom;
+
+public class DirectLongBigListTest {
+
+	@Test
+	public void testStorages() throws IOException, ClassNotFoundException {
+		final XoRoShiRo128PlusRandom random = new XoRoShiRo128PlusRandom(0);
+		for (final LongWordStorage storage : new LongWordStorage[] { LongWordStorage.heap(), LongWordStorage.offHeap(), LongWordStorage.mapped(null) }) {
+			for (final int size : new int[] { 0, 1, 10, 100000 }) {
+				final LongBigList list = storage.allocate(size);
+				assertEquals(size, list.size64());
+				for (long i = 0; i < size; i++) assertEquals(0, list.getLong(i));
+				final long[] a = new long[size];
+				for (int i = 0; i < size; i++) list.set(i, a[i] = random.nextLong());
+				for (int i = 0; i < size; i++) assertEquals(a[i], list.getLong(i));
+
+				final File temp = File.createTempFile(getClass().getSimpleName(), "test");
+				temp.deleteOnExit();
+				BinIO.storeObject(list, temp);
+				final LongBigList loaded = (LongBigList)BinIO.loadObject(temp);
+				assertEquals(list, loaded);
+			}
+		}
+	}
+}
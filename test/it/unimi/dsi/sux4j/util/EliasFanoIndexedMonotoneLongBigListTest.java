@@ -0,0 +1,117 @@
+package it.unimi.dsi.sux4j.util;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+import it.unimi.dsi.fastutil.longs.LongArrayList;
+import it.unimi.dsi.fastutil.longs.LongArrays;
+import it.unimi.dsi.fastutil.longs.LongLinkedOpenHashSet;
+import it.unimi.dsi.fastutil.longs.LongOpenHashSet;
+import it.unimi.dsi.fastutil.longs.LongRBTreeSet;
+import it.unimi.dsi.util.XoRoShiRo128PlusRandom;
+
+public class EliasFanoIndexedMonotoneLongBigListTest {
+
+	private static long[] randomList(final XoRoShiRo128PlusRandom r, final int n, final long maxGap) {
+		final long[] a = new long[n];
+		for (int i = 1; i < n; i++) a[i] = a[i - 1] + (maxGap == 0 ? 0 : r.nextLong(maxGap + 1));
+		return a;
+	}
+
+	/** Returns the index of the first element greater than or equal to x, or a.length. */
+	private static int firstGEQ(final long[] a, final long x) {
+		int from = 0, to = a.length;
+		while (from < to) {
+			final int mid = from + to >>> 1;
+			if (a[mid] < x) from = mid + 1;
+			else to = mid;
+		}
+		return from;
+	}
+
+	@Test
+	public void testCursor() {
+		final XoRoShiRo128PlusRandom r = new XoRoShiRo128PlusRandom(0);
+		for (final int n : new int[] { 0, 1, 2, 10, 100, 1000, 10000 }) {
+			for (final long maxGap : new long[] { 0, 1, 2, 10, 1000, 1L << 40 }) {
+				final long[] a = randomList(r, n, maxGap);
+				final EliasFanoIndexedMonotoneLongBigList list = new EliasFanoIndexedMonotoneLongBigList(LongArrayList.wrap(a));
+
+				// Sequential scan
+				EliasFanoIndexedMonotoneLongBigList.Cursor cursor = list.cursor();
+				assertEquals(-1, cursor.index());
+				for (int i = 0; i < n; i++) {
+					assertEquals(a[i], cursor.next());
+					assertEquals(i, cursor.index());
+				}
+				assertEquals(-1, cursor.next());
+				assertEquals(n, cursor.index());
+
+				// Increasing bounds, with both short and long jumps
+				final long max = n == 0 ? 10 : a[n - 1] + 10;
+				for (final long step : new long[] { 1, 3, maxGap + 1, 20 * maxGap + 1, max / 3 + 1 }) {
+					if (max / step > 100000) continue;
+					cursor = list.cursor();
+					int expected = -1;
+					for (long x = 0; x <= max; x += step) {
+						final long v = cursor.nextGEQ(x);
+						expected = Math.max(expected, firstGEQ(a, x));
+						if (expected == n) assertEquals(-1, v);
+						else {
+							assertEquals(a[expected], v);
+							assertEquals(expected, cursor.index());
+						}
+					}
+				}
+
+				// Random positioning, followed by a bounded search
+				cursor = list.cursor();
+				for (int k = 0; k < 100; k++) {
+					final int i = r.nextInt(n + 1);
+					assertEquals(i == n ? -1 : a[i], cursor.skipTo(i));
+					if (i < n) {
+						assertEquals(i, cursor.index());
+						final long x = a[i] + r.nextLong(maxGap * 50 + 1);
+						final int j = Math.max(i, firstGEQ(a, x));
+						assertEquals(j == n ? -1 : a[j], cursor.nextGEQ(x));
+					}
+				}
+			}
+		}
+	}
+
+	@Test
+	public void testIntersectionUnion() {
+		final XoRoShiRo128PlusRandom r = new XoRoShiRo128PlusRandom(0);
+		for (final int k : new int[] { 1, 2, 3, 5 }) {
+			for (final int n : new int[] { 0, 1, 10, 1000, 10000 }) {
+				final EliasFanoIndexedMonotoneLongBigList[] lists = new EliasFanoIndexedMonotoneLongBigList[k];
+				final LongOpenHashSet[] sets = new LongOpenHashSet[k];
+				for (int i = 0; i < k; i++) {
+					// Lists of different lengths and densities, with duplicates
+					final long[] a = new long[n / (i + 1)];
+					for (int j = 0; j < a.length; j++) a[j] = r.nextLong(3L * n + 1);
+					LongArrays.quickSort(a);
+					lists[i] = new EliasFanoIndexedMonotoneLongBigList(LongArrayList.wrap(a));
+					sets[i] = new LongOpenHashSet(a);
+				}
+
+				final LongRBTreeSet intersection = new LongRBTreeSet(sets[0]);
+				final LongRBTreeSet union = new LongRBTreeSet();
+				for (final LongOpenHashSet s : sets) {
+					intersection.retainAll(s);
+					union.addAll(s);
+				}
+
+				final LongLinkedOpenHashSet result = new LongLinkedOpenHashSet();
+				assertEquals(intersection.size(), EliasFanoIndexedMonotoneLongBigList.intersection(result::add, lists));
+				assertEquals(new LongArrayList(intersection), new LongArrayList(result));
+
+				result.clear();
+				assertEquals(union.size(), EliasFanoIndexedMonotoneLongBigList.union(result::add, lists));
+				assertEquals(new LongArrayList(union), new LongArrayList(result));
+			}
+		}
+	}
+}
@@ -96,4 +96,25 @@ public class EliasFanoMonotoneLongBigListTest {
 			}
 		}
 	}
+
+	@Test
+	public void testParallel() {
+		final XoRoShiRo128PlusRandom random = new XoRoShiRo128PlusRandom(0);
+		for(final int jump : new int[] { 1, 2, 100, 1 << 20 }) {
+			final LongBigArrayBigList l = new LongBigArrayBigList();
+			for(long i = 3 * (1 << 20) + 17, c = 0; i-- != 0;) l.add(c += random.nextInt(jump));
+			final EliasFanoMonotoneLongBigList parallel = new EliasFanoMonotoneLongBigList(l);
+			final EliasFanoMonotoneLongBigList sequential = new EliasFanoMonotoneLongBigList(l.size64(), l.getLong(l.size64() - 1), l.iterator());
+			assertEquals(sequential.numBits(), parallel.numBits());
+			assertEquals(sequential, parallel);
+			assertEquals(l, parallel);
+		}
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testParallelNotMonotone() {
+		final LongBigArrayBigList l = new LongBigArrayBigList(Util.identity(3 * (1L << 20)));
+		l.set(2 * (1 << 20), 0);
+		new EliasFanoMonotoneLongBigList(l);
+	}
 }
@@ -0,0 +1,88 @@
+package it.unimi.dsi.sux4j.util;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+
+import org.junit.Test;
+
+import it.unimi.dsi.fastutil.io.BinIO;
+import it.unimi.dsi.fastutil.longs.LongArrayList;
+import it.unimi.dsi.util.XoRoShiRo128PlusRandom;
+
+public class PartitionedEliasFanoMonotoneLongBigListTest {
+
+	private static long[] randomList(final XoRoShiRo128PlusRandom r, final int n, final long maxGap) {
+		final long[] a = new long[n];
+		for (int i = 1; i < n; i++) a[i] = a[i - 1] + (maxGap == 0 ? 0 : r.nextLong(maxGap + 1));
+		return a;
+	}
+
+	/** Returns a list alternating dense runs, dense regions and sparse regions. */
+	private static long[] clusteredList(final XoRoShiRo128PlusRandom r, final int n) {
+		final long[] a = new long[n];
+		for (int i = 1; i < n; i++) {
+			switch((i / 1000) % 3) {
+			case 0: a[i] = a[i - 1] + 1; break;
+			case 1: a[i] = a[i - 1] + 1 + r.nextLong(3); break;
+			default: a[i] = a[i - 1] + r.nextLong(1L << 20);
+			}
+		}
+		return a;
+	}
+
+	private static void check(final long[] a, final int log2PartitionSize) throws IOException, ClassNotFoundException {
+		final PartitionedEliasFanoMonotoneLongBigList list = log2PartitionSize < 0
+				? new PartitionedEliasFanoMonotoneLongBigList(LongArrayList.wrap(a))
+				: new PartitionedEliasFanoMonotoneLongBigList(a.length, LongArrayList.wrap(a).iterator(), log2PartitionSize);
+		assertEquals(a.length, list.size64());
+		for (int i = 0; i < a.length; i++) assertEquals(a[i], list.getLong(i));
+		assertArrayEquals(a, list.get(0, new long[a.length]));
+		for (int from = 0; from < a.length; from += 1 + from / 3) {
+			final int length = Math.min(a.length - from, 1 + from / 2);
+			final long[] dest = new long[length + 2];
+			list.get(from, dest, 1, length);
+			for (int i = 0; i < length; i++) assertEquals(a[from + i], dest[i + 1]);
+		}
+
+		final File temp = File.createTempFile(PartitionedEliasFanoMonotoneLongBigListTest.class.getSimpleName(), "test");
+		temp.deleteOnExit();
+		BinIO.storeObject(list, temp);
+		final PartitionedEliasFanoMonotoneLongBigList loaded = (PartitionedEliasFanoMonotoneLongBigList)BinIO.loadObject(temp);
+		for (int i = 0; i < a.length; i++) assertEquals(a[i], loaded.getLong(i));
+	}
+
+	@Test
+	public void testRandom() throws IOException, ClassNotFoundException {
+		final XoRoShiRo128PlusRandom r = new XoRoShiRo128PlusRandom(0);
+		for (final int n : new int[] { 0, 1, 2, 10, 127, 128, 129, 1000, 10000 }) {
+			for (final long maxGap : new long[] { 0, 1, 2, 3, 10, 1000, 1L << 40 }) {
+				final long[] a = randomList(r, n, maxGap);
+				check(a, -1);
+				check(a, 0);
+				check(a, 3);
+			}
+		}
+	}
+
+	@Test
+	public void testClustered() throws IOException, ClassNotFoundException {
+		final XoRoShiRo128PlusRandom r = new XoRoShiRo128PlusRandom(0);
+		final long[] a = clusteredList(r, 100000);
+		check(a, -1);
+		check(a, 5);
+		check(a, 10);
+		check(a, PartitionedEliasFanoMonotoneLongBigList.MAX_LOG2_PARTITION_SIZE);
+		final PartitionedEliasFanoMonotoneLongBigList partitioned = new PartitionedEliasFanoMonotoneLongBigList(LongArrayList.wrap(a));
+		final EliasFanoMonotoneLongBigList eliasFano = new EliasFanoMonotoneLongBigList(LongArrayList.wrap(a));
+		assertTrue(partitioned.numBits() + " >= " + eliasFano.numBits(), partitioned.numBits() < eliasFano.numBits());
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testLargePartitions() {
+		new PartitionedEliasFanoMonotoneLongBigList(1, LongArrayList.wrap(new long[] { 0 }).iterator(), PartitionedEliasFanoMonotoneLongBigList.MAX_LOG2_PARTITION_SIZE + 1);
+	}
+}